@@ -52,6 +52,28 @@ public interface IActionSequence extends ISequenceDefinition {
    */
   public boolean hasLoop();
 
+  /**
+   * Returns how many iterations of the loop may run at the same time. Loops run one iteration after another unless
+   * the ActionSequence declares them parallel. The actions of a parallel loop share the output handler of the
+   * execution and must not write response or feedback content; only their outputs are taken over.
+   * 
+   * @return the maximum number of concurrent iterations, 1 if the loop is not parallel
+   */
+  default int getLoopConcurrency() {
+    return 1;
+  }
+
+  /**
+   * Returns whether the iterations of a parallel loop are merged back into the execution in iteration order, so that
+   * the outputs after the loop are the same as if it had not run in parallel, rather than in the order the iterations
+   * complete.
+   * 
+   * @return true if parallel iterations complete in order
+   */
+  default boolean getLoopOrdered() {
+    return true;
+  }
+
   /**
    * @return The conditional execution object that determines whether a set of actions will be executed.
    */
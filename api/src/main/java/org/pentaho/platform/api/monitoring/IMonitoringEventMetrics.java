@@ -0,0 +1,51 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.platform.api.monitoring;
+
+/**
+ * counters of the monitoring service for one type of event, as of the time they were taken
+ */
+public interface IMonitoringEventMetrics {
+
+  /**
+   * @return fully qualified class name of the events counted
+   */
+  String getEventType();
+
+  /**
+   * @return number of events posted
+   */
+  long getPostedCount();
+
+  /**
+   * @return number of events handed to their subscribers
+   */
+  long getDispatchedCount();
+
+  /**
+   * @return number of events discarded because the dispatch queue was full or the service was shut down
+   */
+  long getDroppedCount();
+
+  /**
+   * @return number of events waiting in the dispatch queue
+   */
+  long getQueueDepth();
+
+  /**
+   * @return total time spent handing events to their subscribers, in milliseconds
+   */
+  long getDispatchMillis();
+
+}
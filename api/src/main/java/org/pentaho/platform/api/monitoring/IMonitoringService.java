@@ -13,6 +13,8 @@
 
 package org.pentaho.platform.api.monitoring;
 
+import java.util.Collections;
+import java.util.Map;
 
 public interface IMonitoringService {
 
@@ -39,4 +41,22 @@ public interface IMonitoringService {
    */
   <T extends IMonitoringEvent> void post( T event );
 
+
+  /**
+   * dispatch counters per type of event posted so far
+   *
+   * @return event class name -> counters of that event type; empty if the implementation keeps none
+   */
+  default Map<String, IMonitoringEventMetrics> getEventMetrics() {
+    return Collections.emptyMap();
+  }
+
+
+  /**
+   * @return number of events waiting to be dispatched, over all event types
+   */
+  default long getQueueDepth() {
+    return 0;
+  }
+
 }
@@ -15,6 +15,7 @@ package org.pentaho.platform.api.repository2.unified;
 
 import java.io.Serializable;
 import java.util.EnumSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -667,6 +668,22 @@ public interface IUnifiedRepository {
    */
   Map<String, Serializable> getFileMetadata( final Serializable fileId );
 
+  /**
+   * Gets the metadata for each of the given file ids. Implementations backed by a remote store should override this
+   * method to read all entries in a single pass instead of one round trip per file.
+   * 
+   * @param fileIds
+   *          file ids
+   * @return map of file id to the metadata of that file, in the iteration order of {@code fileIds}
+   */
+  default Map<Serializable, Map<String, Serializable>> getFilesMetadata( final List<Serializable> fileIds ) {
+    Map<Serializable, Map<String, Serializable>> metadata = new LinkedHashMap<Serializable, Map<String, Serializable>>();
+    for ( Serializable fileId : fileIds ) {
+      metadata.put( fileId, getFileMetadata( fileId ) );
+    }
+    return metadata;
+  }
+
   /**
    * Returns a list of characters which cannot be used in file/folder names. These characters must be escaped using
    * percent-encoding. Callers may safely cache this value. Note that it is the responsibility of the
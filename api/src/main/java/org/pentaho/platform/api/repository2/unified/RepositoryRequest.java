@@ -32,6 +32,7 @@ public class RepositoryRequest {
   private boolean showHidden = false;
   private boolean includeAcls = false;
   private boolean includeSystemFolders = true; // default: PDI uses this web-service and system folders must be returned to admin repository database connections.
+  private boolean parallel = false;
   private Integer depth = -1;
   private FILES_TYPE_FILTER types = FILES_TYPE_FILTER.FILES_FOLDERS;
   private Set<String> includeMemberSet = null;
@@ -235,6 +236,20 @@ public class RepositoryRequest {
     this.path = path;
   }
 
+  public boolean isParallel() {
+    return parallel;
+  }
+
+  /**
+   * @param parallel
+   *     Set to true to walk the top level folders of the tree concurrently, each on its own repository session. The
+   *     result is the same as for a sequential walk. Intended for large trees requested by admin tooling and exports.
+   *     Default is false.
+   */
+  public void setParallel( boolean parallel ) {
+    this.parallel = parallel;
+  }
+
   public boolean isIncludeAcls() {
     return includeAcls;
   }
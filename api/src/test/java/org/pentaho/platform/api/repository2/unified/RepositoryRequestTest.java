@@ -67,6 +67,7 @@ public class RepositoryRequestTest {
     assertFalse( defaultRequest.isIncludeAcls() );
     assertNull( defaultRequest.getChildNodeFilter() );
     assertTrue( defaultRequest.isIncludeSystemFolders() );
+    assertFalse( defaultRequest.isParallel() );
 
     // Test constructor with nulls
     RepositoryRequest nullRequest = new RepositoryRequest( null, null, null, null );
@@ -93,6 +94,9 @@ public class RepositoryRequestTest {
     request.setIncludeSystemFolders( newIncludeSystemFolders );
     assertEquals( newIncludeSystemFolders, request.isIncludeSystemFolders() );
 
+    request.setParallel( true );
+    assertTrue( request.isParallel() );
+
     String newPath = "newPath";
     request.setPath( newPath );
     assertEquals( newPath, request.getPath() );
@@ -0,0 +1,199 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.platform.engine.services;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.pentaho.platform.engine.services.actionsequence.CompiledActionSequence;
+
+import java.io.Serializable;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Caches compiled action sequences by repository file id, version id and locale, so that running the same xaction
+ * again does not read, parse and localize it again.
+ * <p>
+ * An entry is only used while the file it was compiled from is unchanged: the version id is part of the key and the
+ * last modified date of the file is compared on every lookup, so saving an xaction replaces its entry. The message
+ * bundles an xaction is localized with are not tracked, which is why entries also expire after a while. Both limits
+ * are system settings: <code>action-sequence-cache/max-entries</code> (default 500, 0 disables the cache) and
+ * <code>action-sequence-cache/ttl-seconds</code> (default 300, 0 keeps entries until the file changes).
+ */
+public class ActionSequenceCache {
+
+  private static final Log logger = LogFactory.getLog( ActionSequenceCache.class );
+
+  private static final String MAX_ENTRIES_SETTING = "action-sequence-cache/max-entries"; //$NON-NLS-1$
+
+  private static final String TTL_SETTING = "action-sequence-cache/ttl-seconds"; //$NON-NLS-1$
+
+  private static final int DEFAULT_MAX_ENTRIES = 500;
+
+  private static final int DEFAULT_TTL_SECONDS = 300;
+
+  private static ActionSequenceCache instance;
+
+  private final int maxEntries;
+
+  private final long ttlMillis;
+
+  // access ordered, guarded by itself
+  private final LinkedHashMap<Key, Entry> entries;
+
+  ActionSequenceCache( final int maxEntries, final long ttlMillis ) {
+    this.maxEntries = maxEntries;
+    this.ttlMillis = ttlMillis;
+    this.entries = new LinkedHashMap<Key, Entry>( 16, 0.75f, true ) {
+      @Override
+      protected boolean removeEldestEntry( final Map.Entry<Key, Entry> eldest ) {
+        return size() > ActionSequenceCache.this.maxEntries;
+      }
+    };
+  }
+
+  public static synchronized ActionSequenceCache getInstance() {
+    if ( instance == null ) {
+      instance =
+          new ActionSequenceCache( getSetting( MAX_ENTRIES_SETTING, DEFAULT_MAX_ENTRIES ), getSetting( TTL_SETTING,
+              DEFAULT_TTL_SECONDS ) * 1000L );
+    }
+    return instance;
+  }
+
+  private static int getSetting( final String path, final int defaultValue ) {
+    String value = PentahoSystem.getSystemSetting( path, null );
+    if ( value == null || value.trim().length() == 0 ) {
+      return defaultValue;
+    }
+    try {
+      return Integer.parseInt( value.trim() );
+    } catch ( NumberFormatException e ) {
+      logger.warn( "Invalid value for " + path + ": " + value //$NON-NLS-1$ //$NON-NLS-2$
+          + ", using " + defaultValue ); //$NON-NLS-1$
+      return defaultValue;
+    }
+  }
+
+  /**
+   * @return the sequence compiled from the current state of <code>file</code> for <code>locale</code>, or
+   *         <code>null</code> if there is none
+   */
+  public CompiledActionSequence get( final RepositoryFile file, final Locale locale ) {
+    Key key = new Key( file, locale );
+    synchronized ( entries ) {
+      Entry entry = entries.get( key );
+      if ( entry == null ) {
+        return null;
+      }
+      if ( !entry.isCurrent( file, System.currentTimeMillis() ) ) {
+        entries.remove( key );
+        return null;
+      }
+      return entry.compiled;
+    }
+  }
+
+  public void put( final RepositoryFile file, final Locale locale, final CompiledActionSequence compiled ) {
+    if ( maxEntries <= 0 ) {
+      return;
+    }
+    Entry entry = new Entry( compiled, file.getLastModifiedDate(), System.currentTimeMillis() );
+    synchronized ( entries ) {
+      entries.put( new Key( file, locale ), entry );
+    }
+  }
+
+  /**
+   * Removes every version and localization of a file.
+   */
+  public void invalidate( final Serializable fileId ) {
+    synchronized ( entries ) {
+      for ( Iterator<Key> keys = entries.keySet().iterator(); keys.hasNext(); ) {
+        if ( Objects.equals( fileId, keys.next().fileId ) ) {
+          keys.remove();
+        }
+      }
+    }
+  }
+
+  public void clear() {
+    synchronized ( entries ) {
+      entries.clear();
+    }
+  }
+
+  public int size() {
+    synchronized ( entries ) {
+      return entries.size();
+    }
+  }
+
+  private class Entry {
+    private final CompiledActionSequence compiled;
+
+    private final Date lastModified;
+
+    private final long created;
+
+    Entry( final CompiledActionSequence compiled, final Date lastModified, final long created ) {
+      this.compiled = compiled;
+      this.lastModified = lastModified;
+      this.created = created;
+    }
+
+    boolean isCurrent( final RepositoryFile file, final long now ) {
+      return Objects.equals( lastModified, file.getLastModifiedDate() )
+          && ( ttlMillis <= 0 || now - created < ttlMillis );
+    }
+  }
+
+  private static class Key {
+    private final Serializable fileId;
+
+    private final Serializable versionId;
+
+    private final Locale locale;
+
+    Key( final RepositoryFile file, final Locale locale ) {
+      this.fileId = file.getId();
+      this.versionId = file.getVersionId();
+      this.locale = locale;
+    }
+
+    @Override
+    public boolean equals( final Object obj ) {
+      if ( this == obj ) {
+        return true;
+      }
+      if ( !( obj instanceof Key ) ) {
+        return false;
+      }
+      Key other = (Key) obj;
+      return Objects.equals( fileId, other.fileId ) && Objects.equals( versionId, other.versionId )
+          && Objects.equals( locale, other.locale );
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash( fileId, versionId, locale );
+    }
+  }
+}
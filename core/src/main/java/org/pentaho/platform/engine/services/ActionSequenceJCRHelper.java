@@ -28,7 +28,7 @@ import org.pentaho.platform.api.repository2.unified.RepositoryFilePermission;
 import org.pentaho.platform.api.repository2.unified.data.simple.SimpleRepositoryFileData;
 import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
-import org.pentaho.platform.engine.services.actionsequence.SequenceDefinition;
+import org.pentaho.platform.engine.services.actionsequence.CompiledActionSequence;
 import org.pentaho.platform.engine.services.messages.Messages;
 import org.pentaho.platform.util.messages.LocaleHelper;
 import org.pentaho.platform.util.xml.dom4j.XmlDom4JHelper;
@@ -83,49 +83,61 @@ public class ActionSequenceJCRHelper {
 
   public IActionSequence getActionSequence( String actionPath, int loggingLevel,
       RepositoryFilePermission actionOperation ) {
-    Document actionSequenceDocument = getSolutionDocument( actionPath, actionOperation );
-    if ( actionSequenceDocument == null ) {
+    RepositoryFile file = repository.getFile( actionPath );
+    if ( file == null ) {
       return null;
     }
-    IActionSequence actionSequence =
-        SequenceDefinition.ActionSequenceFactory( actionSequenceDocument, actionPath, pentahoSession, PentahoSystem
-            .getApplicationContext(), loggingLevel );
-    if ( actionSequence == null ) {
-      return null;
+    ActionSequenceCache cache = ActionSequenceCache.getInstance();
+    Locale locale = getLocale();
+    CompiledActionSequence compiledSequence = cache.get( file, locale );
+    if ( compiledSequence == null ) {
+      Document actionSequenceDocument = getSolutionDocument( file, actionPath );
+      if ( actionSequenceDocument == null ) {
+        return null;
+      }
+      compiledSequence =
+          CompiledActionSequence.compile( actionSequenceDocument, actionPath, pentahoSession, PentahoSystem
+              .getApplicationContext() );
+      if ( compiledSequence == null ) {
+        return null;
+      }
+      cache.put( file, locale, compiledSequence );
     }
 
-    return actionSequence;
+    return compiledSequence.newInstance( loggingLevel );
   }
 
   public Document getSolutionDocument( final String documentPath, final RepositoryFilePermission actionOperation ) {
-
     RepositoryFile file = repository.getFile( documentPath );
+    if ( file == null ) {
+      return null;
+    }
+    return getSolutionDocument( file, documentPath );
+  }
 
+  private Document getSolutionDocument( final RepositoryFile file, final String documentPath ) {
     Document document = null;
-    SimpleRepositoryFileData data = null;
-    if ( file != null ) {
-      data = repository.getDataForRead( file.getId(), SimpleRepositoryFileData.class );
-      if ( data != null ) {
-        try {
-          document = XmlDom4JHelper.getDocFromStream( data.getStream() );
-        } catch ( Throwable t ) {
-          logger.error( Messages.getInstance().getErrorString(
-              "ActionSequenceJCRHelper.ERROR_0017_INVALID_XML_DOCUMENT", documentPath ), t ); //$NON-NLS-1$
-          return null;
-        }
-      } else {
-        logger.error( Messages.getInstance().getErrorString(
-            "ActionSequenceJCRHelper.ERROR_0019_NO_DATA_IN_FILE", file.getName() ) ); //$NON-NLS-1$
-        return null;
-      }
-      if ( ( document == null ) && ( file != null ) && ( data != null ) ) {
-        // the document exists but cannot be parsed
+    SimpleRepositoryFileData data = repository.getDataForRead( file.getId(), SimpleRepositoryFileData.class );
+    if ( data != null ) {
+      try {
+        document = XmlDom4JHelper.getDocFromStream( data.getStream() );
+      } catch ( Throwable t ) {
         logger.error( Messages.getInstance().getErrorString(
-            "ActionSequenceJCRHelper.ERROR_0009_INVALID_DOCUMENT", documentPath ) ); //$NON-NLS-1$
+            "ActionSequenceJCRHelper.ERROR_0017_INVALID_XML_DOCUMENT", documentPath ), t ); //$NON-NLS-1$
         return null;
       }
-      localizeDoc( document, file );
+    } else {
+      logger.error( Messages.getInstance().getErrorString(
+          "ActionSequenceJCRHelper.ERROR_0019_NO_DATA_IN_FILE", file.getName() ) ); //$NON-NLS-1$
+      return null;
+    }
+    if ( document == null ) {
+      // the document exists but cannot be parsed
+      logger.error( Messages.getInstance().getErrorString(
+          "ActionSequenceJCRHelper.ERROR_0009_INVALID_DOCUMENT", documentPath ) ); //$NON-NLS-1$
+      return null;
     }
+    localizeDoc( document, file );
 
     return document;
   }
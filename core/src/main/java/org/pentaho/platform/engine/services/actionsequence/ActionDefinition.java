@@ -111,6 +111,46 @@ public class ActionDefinition implements ISolutionActionDefinition {
     // TODO populate preExecuteAuditList and postExecuteAuditList
   }
 
+  /**
+   * Creates a copy of an action definition for a new execution, bound to copies of the template's nodes. The
+   * parameter definitions are copied; the mappings and descriptive entries are shared.
+   *
+   * @param template
+   *          the compiled action definition
+   * @param actionRootNode
+   *          the copy of the template's action node
+   * @param componentNode
+   *          the copy of the template's component definition node
+   */
+  protected ActionDefinition( final ActionDefinition template, final Node actionRootNode, final Node componentNode ) {
+    this.actionRootNode = actionRootNode;
+    this.componentNode = componentNode;
+    errorCode = template.errorCode;
+    loggingLevel = template.loggingLevel;
+    preExecuteAuditList = template.preExecuteAuditList;
+    postExecuteAuditList = template.postExecuteAuditList;
+    description = template.description;
+    author = template.author;
+    help = template.help;
+    iconUrl = template.iconUrl;
+    componentName = template.componentName;
+    actionInputDefinitions = ActionDefinition.copyParameters( template.actionInputDefinitions );
+    actionInputMapping = template.actionInputMapping;
+    actionOutputDefinitions = ActionDefinition.copyParameters( template.actionOutputDefinitions );
+    actionOutputMapping = template.actionOutputMapping;
+    actionResourceMapping = template.actionResourceMapping;
+    hasActionResources = template.hasActionResources;
+  }
+
+  static Map copyParameters( final Map parameters ) {
+    Map copy = new ListOrderedMap();
+    for ( Object entry : parameters.entrySet() ) {
+      Map.Entry parameter = (Map.Entry) entry;
+      copy.put( parameter.getKey(), ( (ActionParameter) parameter.getValue() ).copy() );
+    }
+    return copy;
+  }
+
   public int getErrorCode() {
     return errorCode;
   }
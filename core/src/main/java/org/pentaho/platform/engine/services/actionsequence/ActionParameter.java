@@ -13,6 +13,7 @@
 
 package org.pentaho.platform.engine.services.actionsequence;
 
+import org.apache.commons.collections.map.ListOrderedMap;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.pentaho.commons.connection.IDisposable;
@@ -44,6 +45,9 @@ public class ActionParameter implements IActionParameter {
 
   private boolean isOutputParameter = true;
 
+  // false while the value is one this parameter was copied with, which belongs to the original
+  private boolean ownsValue = true;
+
   private static final Log logger = LogFactory.getLog( ActionParameter.class );
 
   // should we force this to String for serialization?
@@ -95,6 +99,44 @@ public class ActionParameter implements IActionParameter {
     }
   }
 
+  /**
+   * Creates a copy of a parameter for a new execution. Values that executions may change (the value, the prompt
+   * status, the save locations and any list, map or result set default value) are copied, the rest is shared. The
+   * copy does not dispose of the value it was created with, only of values set on it later.
+   */
+  protected ActionParameter( final ActionParameter template ) {
+    this.name = template.name;
+    this.type = template.type;
+    this.value = template.value;
+    this.variables = template.variables;
+    this.defaultValue = copyDefaultValue( template.defaultValue );
+    this.paramSelections = template.paramSelections;
+    this.promptType = template.promptType;
+    this.saveLocations = ( template.saveLocations == null ) ? null : new ArrayList( template.saveLocations );
+    this.isOutputParameter = template.isOutputParameter;
+    this.ownsValue = false;
+  }
+
+  private static Object copyDefaultValue( final Object defaultValue ) {
+    if ( defaultValue instanceof List ) {
+      return new ArrayList( (List) defaultValue );
+    } else if ( defaultValue instanceof Map ) {
+      Map copy = new ListOrderedMap();
+      copy.putAll( (Map) defaultValue );
+      return copy;
+    } else if ( defaultValue instanceof IPentahoResultSet ) {
+      return ( (IPentahoResultSet) defaultValue ).memoryCopy();
+    }
+    return defaultValue;
+  }
+
+  /**
+   * @return a copy of this parameter that can be handed to a new execution
+   */
+  public ActionParameter copy() {
+    return new ActionParameter( this );
+  }
+
   public List getSaveLocations() {
     return ( saveLocations == null ) ? new ArrayList() : saveLocations;
   }
@@ -161,6 +203,7 @@ public class ActionParameter implements IActionParameter {
     if ( this.value != value ) {
       dispose();
       this.value = value;
+      ownsValue = true;
     }
   }
 
@@ -181,7 +224,7 @@ public class ActionParameter implements IActionParameter {
   }
 
   public void dispose() {
-    if ( ( value != null ) && ( value instanceof IDisposable ) ) {
+    if ( ownsValue && ( value != null ) && ( value instanceof IDisposable ) ) {
       ( (IDisposable) value ).dispose();
     }
   }
@@ -31,6 +31,10 @@ public class ActionSequence implements IActionSequence {
 
   private boolean loopUsingPeek;
 
+  private int loopConcurrency = 1;
+
+  private boolean loopOrdered = true;
+
   protected ActionSequence( final String loopParameter, final ISequenceDefinition sequenceDefinition,
       final List actionDefinitions, boolean loopUsingPeek ) {
     this.loopParameter = loopParameter;
@@ -39,6 +43,10 @@ public class ActionSequence implements IActionSequence {
     this.loopUsingPeek = loopUsingPeek;
   }
 
+  ISequenceDefinition getSequenceDefinition() {
+    return sequenceDefinition;
+  }
+
   public List getActionDefinitions() {
     return actionDefinitions;
   }
@@ -123,4 +131,22 @@ public class ActionSequence implements IActionSequence {
     return loopUsingPeek;
   }
 
+  @Override
+  public int getLoopConcurrency() {
+    return loopConcurrency;
+  }
+
+  void setLoopConcurrency( final int loopConcurrency ) {
+    this.loopConcurrency = loopConcurrency;
+  }
+
+  @Override
+  public boolean getLoopOrdered() {
+    return loopOrdered;
+  }
+
+  void setLoopOrdered( final boolean loopOrdered ) {
+    this.loopOrdered = loopOrdered;
+  }
+
 }
@@ -0,0 +1,156 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.platform.engine.services.actionsequence;
+
+import org.dom4j.Branch;
+import org.dom4j.Document;
+import org.dom4j.Node;
+import org.pentaho.platform.api.engine.IActionSequence;
+import org.pentaho.platform.api.engine.IApplicationContext;
+import org.pentaho.platform.api.engine.ILogger;
+import org.pentaho.platform.api.engine.ISequenceDefinition;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * An action sequence that has been parsed and localized once and can be handed out to any number of executions.
+ * <p>
+ * The compiled sequence itself is never handed out. Executions set values on parameter definitions, attach components
+ * to action definitions and components may rewrite the text of the action document they read their settings from
+ * (see {@link org.pentaho.platform.engine.services.solution.ComponentBase#getComponentDefinition(boolean)}), so
+ * {@link #newInstance(int)} gives every execution its own copy of the document and of the parameter definitions.
+ * Everything else - the descriptive entries, mappings, resources and conditions - is shared, and no XPath is
+ * evaluated.
+ */
+public class CompiledActionSequence {
+
+  private final Document document;
+
+  private final ActionSequence actionSequence;
+
+  private CompiledActionSequence( final Document document, final ActionSequence actionSequence ) {
+    this.document = document;
+    this.actionSequence = actionSequence;
+  }
+
+  /**
+   * Compiles a localized action sequence document. The document becomes part of the compiled sequence and must not
+   * be used by the caller afterwards.
+   * 
+   * @return the compiled sequence, or <code>null</code> if the document does not define an action sequence
+   */
+  public static CompiledActionSequence compile( final Document document, final String solutionPath,
+      final ILogger logger, final IApplicationContext applicationContext ) {
+    IActionSequence actionSequence =
+        SequenceDefinition.ActionSequenceFactory( document, solutionPath, logger, applicationContext,
+            ILogger.UNKNOWN );
+    if ( actionSequence == null ) {
+      return null;
+    }
+    return new CompiledActionSequence( document, (ActionSequence) actionSequence );
+  }
+
+  /**
+   * Creates a copy of the action sequence for a single execution.
+   * 
+   * @param loggingLevel
+   *          the logging level of the actions
+   */
+  public synchronized IActionSequence newInstance( final int loggingLevel ) {
+    // dom4j creates some of its internal lists lazily, even on reads, so the template is only read under the lock
+    Document copy = (Document) document.clone();
+    SequenceDefinition sequenceDefinition =
+        new SequenceDefinition( (SequenceDefinition) actionSequence.getSequenceDefinition() );
+    return CompiledActionSequence.copy( actionSequence, sequenceDefinition, copy, loggingLevel );
+  }
+
+  /**
+   * Copies a loop group of a running action sequence for an execution of its own, such as one iteration of a parallel
+   * loop. The group's actions get their own copy of the action document and of their parameter definitions; parameter
+   * values are carried over but not disposed of by the copy. The sequence definition is shared.
+   * 
+   * @param sequence
+   *          the loop group, as created by {@link #newInstance(int)}
+   */
+  public static IActionSequence copyOf( final IActionSequence sequence ) {
+    ActionSequence template = (ActionSequence) sequence;
+    Node node = CompiledActionSequence.findActionNode( template );
+    Document copy = ( node == null ) ? null : (Document) node.getDocument().clone();
+    return CompiledActionSequence.copy( template, template.getSequenceDefinition(), copy, null );
+  }
+
+  private static Node findActionNode( final ActionSequence sequence ) {
+    for ( Object action : sequence.getActionDefinitions() ) {
+      Node node =
+          ( action instanceof ActionSequence ) ? CompiledActionSequence.findActionNode( (ActionSequence) action )
+              : ( (ActionDefinition) action ).getNode();
+      if ( node != null ) {
+        return node;
+      }
+    }
+    return null;
+  }
+
+  private static ActionSequence copy( final ActionSequence template, final ISequenceDefinition sequenceDefinition,
+      final Document copy, final Integer loggingLevel ) {
+    List actionDefinitions = new ArrayList( template.getActionDefinitions().size() );
+    for ( Object action : template.getActionDefinitions() ) {
+      if ( action instanceof ActionSequence ) {
+        actionDefinitions.add( CompiledActionSequence.copy( (ActionSequence) action, sequenceDefinition, copy,
+            loggingLevel ) );
+      } else {
+        ActionDefinition actionDefinition = (ActionDefinition) action;
+        ActionDefinition actionCopy =
+            new ActionDefinition( actionDefinition, CompiledActionSequence.findCopy( actionDefinition.getNode(), copy ),
+                CompiledActionSequence.findCopy( actionDefinition.getComponentSection(), copy ) );
+        if ( loggingLevel != null ) {
+          actionCopy.setLoggingLevel( loggingLevel );
+        }
+        actionDefinitions.add( actionCopy );
+      }
+    }
+    ActionSequence sequence =
+        new ActionSequence( template.getLoopParameter(), sequenceDefinition, actionDefinitions, template
+            .getLoopUsingPeek() );
+    sequence.setConditionalExecution( template.getConditionalExecution() );
+    sequence.setLoopConcurrency( template.getLoopConcurrency() );
+    sequence.setLoopOrdered( template.getLoopOrdered() );
+    return sequence;
+  }
+
+  /**
+   * Finds the node of a copied document that is at the same position as the given node of the original document.
+   */
+  static Node findCopy( final Node node, final Document copy ) {
+    Deque<Integer> path = new ArrayDeque<Integer>();
+    Node current = node;
+    Branch parent = current.getParent();
+    while ( parent != null ) {
+      path.push( parent.indexOf( current ) );
+      current = parent;
+      parent = current.getParent();
+    }
+    path.push( current.getDocument().indexOf( current ) );
+
+    Node result = copy;
+    for ( int index : path ) {
+      result = ( (Branch) result ).node( index );
+    }
+    return result;
+  }
+
+}
@@ -126,9 +126,31 @@ public class SequenceDefinition implements ISequenceDefinition {
     ActionSequence sequence = new ActionSequence( loopParameterName, seqDef, actionDefinitionList, loopUsingPeek );
 
     sequence.setConditionalExecution( conditionalExecution );
+    if ( loopParameterName != null
+        && "true".equalsIgnoreCase( XmlDom4JHelper.getNodeText( "@parallel", actionsNode ) ) ) { //$NON-NLS-1$ //$NON-NLS-2$
+      sequence.setLoopConcurrency( SequenceDefinition.parseLoopConcurrency( actionsNode, solutionPath, logger ) );
+      sequence.setLoopOrdered( !"false".equalsIgnoreCase( XmlDom4JHelper.getNodeText( "@ordered", actionsNode ) ) ); //$NON-NLS-1$ //$NON-NLS-2$
+    }
     return sequence;
   }
 
+  /**
+   * Reads the <code>max-concurrency</code> of a parallel loop. Without one the loop may use as many threads as the
+   * runtime allows.
+   */
+  private static int parseLoopConcurrency( final Node actionsNode, final String solutionPath, final ILogger logger ) {
+    String maxConcurrency = XmlDom4JHelper.getNodeText( "@max-concurrency", actionsNode ); //$NON-NLS-1$
+    if ( maxConcurrency != null ) {
+      try {
+        return Math.max( 1, Integer.parseInt( maxConcurrency.trim() ) );
+      } catch ( NumberFormatException e ) {
+        logger.warn( Messages.getInstance().getString(
+            "SequenceDefinition.WARN_INVALID_LOOP_CONCURRENCY", maxConcurrency, solutionPath ) ); //$NON-NLS-1$
+      }
+    }
+    return Integer.MAX_VALUE;
+  }
+
   private SequenceDefinition( final Node sequenceRootNode, final String solutionPath, final ILogger logger,
       final IApplicationContext applicationContext ) {
 
@@ -168,6 +190,30 @@ public class SequenceDefinition implements ISequenceDefinition {
     }
   }
 
+  /**
+   * Creates a copy of a sequence definition for a new execution. The input and output parameter definitions are
+   * copied; the resource definitions and descriptive entries are shared.
+   */
+  SequenceDefinition( final SequenceDefinition template ) {
+    xactionPath = template.xactionPath;
+    applicationContext = template.applicationContext;
+    errorCode = template.errorCode;
+    version = template.version;
+    title = template.title;
+    isWebService = template.isWebService;
+    cacheLevel = template.cacheLevel;
+    loggingLevel = template.loggingLevel;
+    description = template.description;
+    author = template.author;
+    help = template.help;
+    resultType = template.resultType;
+    iconPath = template.iconPath;
+    inputDefinitions = ActionDefinition.copyParameters( template.inputDefinitions );
+    outputDefinitions = ActionDefinition.copyParameters( template.outputDefinitions );
+    resourceDefinitions = template.resourceDefinitions;
+    actionDefinitions = template.actionDefinitions;
+  }
+
   public String getVersion() {
     return version;
   }
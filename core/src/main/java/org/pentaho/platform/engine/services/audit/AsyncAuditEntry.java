@@ -0,0 +1,375 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.platform.engine.services.audit;
+
+import org.pentaho.platform.api.engine.AuditException;
+import org.pentaho.platform.api.engine.IAuditEntry;
+import org.pentaho.platform.engine.core.messages.Messages;
+import org.pentaho.platform.util.logging.Logger;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Records audit entries asynchronously. Entries are put in a bounded lock-free buffer and written by a single
+ * background thread, which hands everything that piled up since its last write to the wrapped entry at once: with an
+ * {@link IBatchAuditEntry} such as {@link AuditFileEntry} or {@link AuditSQLEntry} a whole batch costs one file append
+ * or one JDBC batch, any other {@link IAuditEntry} is called once per entry. Request threads never wait for the audit
+ * storage location, unless the buffer is full and the {@link BackPressurePolicy} says so.
+ * <p>
+ * To enable, wrap the actual audit entry in <code>pentahoObjects.spring.xml</code>:
+ * 
+ * <pre>
+ * &lt;bean id="IAuditEntry" class="org.pentaho.platform.engine.services.audit.AsyncAuditEntry" scope="singleton"
+ *       destroy-method="shutdown"&gt;
+ *   &lt;constructor-arg&gt;
+ *     &lt;bean class="org.pentaho.platform.engine.services.audit.AuditFileEntry"/&gt;
+ *   &lt;/constructor-arg&gt;
+ *   &lt;property name="flushInterval" value="200"/&gt;
+ *   &lt;property name="backPressurePolicy" value="BLOCK"/&gt;
+ * &lt;/bean&gt;
+ * </pre>
+ */
+public class AsyncAuditEntry implements IAuditEntry {
+
+  /**
+   * What to do with an entry when the buffer is full.
+   */
+  public enum BackPressurePolicy {
+    /**
+     * Wait for the writer to make room. Nothing is lost and entries keep their order.
+     */
+    BLOCK,
+    /**
+     * Discard the entry; see {@link AsyncAuditEntry#getDroppedCount()}.
+     */
+    DROP,
+    /**
+     * Write the entry from the calling thread, ahead of the ones still in the buffer.
+     */
+    CALLER_RUNS
+  }
+
+  static final int DEFAULT_CAPACITY = 8192;
+
+  static final int DEFAULT_BATCH_SIZE = 512;
+
+  static final long DEFAULT_FLUSH_INTERVAL = 200;
+
+  private static final String WRITER_THREAD_NAME = "pentaho-audit-writer"; //$NON-NLS-1$
+
+  private final IAuditEntry delegate;
+
+  private int capacity = DEFAULT_CAPACITY;
+
+  private int batchSize = DEFAULT_BATCH_SIZE;
+
+  private long flushInterval = DEFAULT_FLUSH_INTERVAL;
+
+  private BackPressurePolicy backPressurePolicy = BackPressurePolicy.BLOCK;
+
+  private volatile AuditRingBuffer buffer;
+
+  private volatile Thread writer;
+
+  private volatile boolean running;
+
+  private final LongAdder queuedCount = new LongAdder();
+
+  private final LongAdder droppedCount = new LongAdder();
+
+  private final LongAdder callerRunsCount = new LongAdder();
+
+  private final AtomicLong writtenCount = new AtomicLong();
+
+  private final AtomicLong failedCount = new AtomicLong();
+
+  private final AtomicLong batchCount = new AtomicLong();
+
+  private final AtomicLong totalLatency = new AtomicLong();
+
+  private final AtomicLong maxLatency = new AtomicLong();
+
+  /**
+   * @param delegate the entry that writes to the audit storage location
+   */
+  public AsyncAuditEntry( final IAuditEntry delegate ) {
+    if ( delegate == null ) {
+      throw new IllegalArgumentException( "delegate must not be null" ); //$NON-NLS-1$
+    }
+    this.delegate = delegate;
+  }
+
+  public void auditAll( final String jobId, final String instId, final String objId, final String objType,
+      final String actor, final String messageType, final String messageName, final String messageTxtValue,
+      final BigDecimal messageNumValue, final double duration ) throws AuditException {
+    AuditRecord record =
+        new AuditRecord( jobId, instId, objId, objType, actor, messageType, messageName, messageTxtValue,
+            messageNumValue, duration, System.currentTimeMillis() );
+    AuditRingBuffer buffer = start();
+    if ( buffer == null ) {
+      // shut down; don't lose what comes in late
+      write( Collections.singletonList( record ) );
+      return;
+    }
+    while ( !buffer.offer( record ) ) {
+      switch ( backPressurePolicy ) {
+        case DROP:
+          droppedCount.increment();
+          return;
+        case CALLER_RUNS:
+          callerRunsCount.increment();
+          write( Collections.singletonList( record ) );
+          return;
+        default:
+          LockSupport.unpark( writer );
+          LockSupport.parkNanos( this, TimeUnit.MILLISECONDS.toNanos( 1 ) );
+          if ( !running ) {
+            write( Collections.singletonList( record ) );
+            return;
+          }
+      }
+    }
+    queuedCount.increment();
+    if ( !running ) {
+      // raced with shutdown(), the writer may have finished already
+      drainAfterShutdown();
+    } else if ( buffer.size() >= batchSize ) {
+      LockSupport.unpark( writer );
+    }
+  }
+
+  /**
+   * Starts the writer on first use, so that the properties set after construction apply.
+   *
+   * @return the buffer to queue entries in, or <code>null</code> after {@link #shutdown()}
+   */
+  private AuditRingBuffer start() {
+    AuditRingBuffer current = buffer;
+    if ( current == null && writer == null ) {
+      synchronized ( this ) {
+        if ( buffer == null && writer == null ) {
+          buffer = new AuditRingBuffer( capacity );
+          running = true;
+          Thread thread = new Thread( this::writeLoop, WRITER_THREAD_NAME );
+          thread.setDaemon( true );
+          writer = thread;
+          thread.start();
+        }
+        current = buffer;
+      }
+    }
+    return running ? current : null;
+  }
+
+  private void writeLoop() {
+    AuditRingBuffer buffer = this.buffer;
+    List<AuditRecord> batch = new ArrayList<>( batchSize );
+    while ( true ) {
+      batch.clear();
+      if ( buffer.drainTo( batch, batchSize ) > 0 ) {
+        write( batch );
+      } else if ( running ) {
+        LockSupport.parkNanos( this, TimeUnit.MILLISECONDS.toNanos( flushInterval ) );
+      } else {
+        break;
+      }
+    }
+  }
+
+  private void write( final List<AuditRecord> records ) {
+    try {
+      if ( delegate instanceof IBatchAuditEntry ) {
+        ( (IBatchAuditEntry) delegate ).auditBatch( records );
+      } else {
+        for ( AuditRecord record : records ) {
+          delegate.auditAll( record.getJobId(), record.getInstId(), record.getObjId(), record.getObjType(), record
+              .getActor(), record.getMessageType(), record.getMessageName(), record.getMessageTxtValue(), record
+              .getMessageNumValue(), record.getDuration() );
+        }
+      }
+      writtenCount.addAndGet( records.size() );
+      batchCount.incrementAndGet();
+    } catch ( RuntimeException ex ) {
+      // AuditException included; the writer must survive a failing audit storage location
+      failedCount.addAndGet( records.size() );
+      Logger.error( this, Messages.getInstance().getErrorString(
+          "AUDASYNC.ERROR_0001_COULD_NOT_WRITE_ENTRIES", String.valueOf( records.size() ) ), ex ); //$NON-NLS-1$
+    }
+    long now = System.currentTimeMillis();
+    for ( AuditRecord record : records ) {
+      long latency = now - record.getTimestamp();
+      totalLatency.addAndGet( latency );
+      maxLatency.accumulateAndGet( latency, Math::max );
+    }
+  }
+
+  /**
+   * Writes the entries still in the buffer and stops the writer. Entries recorded afterwards are written from the
+   * calling thread.
+   */
+  public void shutdown() {
+    Thread thread;
+    synchronized ( this ) {
+      running = false;
+      thread = writer;
+    }
+    if ( thread != null ) {
+      LockSupport.unpark( thread );
+      try {
+        thread.join();
+      } catch ( InterruptedException e ) {
+        Thread.currentThread().interrupt();
+      }
+      drainAfterShutdown();
+    }
+    if ( delegate instanceof IBatchAuditEntry ) {
+      ( (IBatchAuditEntry) delegate ).close();
+    }
+  }
+
+  /**
+   * Writes whatever was queued after the writer's last look at the buffer. Once the writer has terminated, whoever
+   * holds the lock is the only consumer of the buffer.
+   */
+  private synchronized void drainAfterShutdown() {
+    if ( writer == null || writer.isAlive() ) {
+      return;
+    }
+    List<AuditRecord> batch = new ArrayList<>();
+    while ( buffer.drainTo( batch, batchSize ) > 0 ) {
+      write( batch );
+      batch.clear();
+    }
+  }
+
+  public IAuditEntry getDelegate() {
+    return delegate;
+  }
+
+  public int getCapacity() {
+    return capacity;
+  }
+
+  /**
+   * @param capacity number of entries the buffer holds, rounded up to a power of two; only applies before the first
+   *                 entry is recorded
+   */
+  public void setCapacity( final int capacity ) {
+    this.capacity = capacity;
+  }
+
+  public int getBatchSize() {
+    return batchSize;
+  }
+
+  /**
+   * @param batchSize maximum number of entries handed to the wrapped entry at once. The writer is also woken up as soon
+   *                  as this many entries are waiting.
+   */
+  public void setBatchSize( final int batchSize ) {
+    this.batchSize = Math.max( 1, batchSize );
+  }
+
+  public long getFlushInterval() {
+    return flushInterval;
+  }
+
+  /**
+   * @param flushInterval milliseconds the writer waits for entries to pile up once the buffer is empty, which bounds
+   *                      the time an entry waits to be written under light load
+   */
+  public void setFlushInterval( final long flushInterval ) {
+    this.flushInterval = Math.max( 1, flushInterval );
+  }
+
+  public BackPressurePolicy getBackPressurePolicy() {
+    return backPressurePolicy;
+  }
+
+  public void setBackPressurePolicy( final BackPressurePolicy backPressurePolicy ) {
+    this.backPressurePolicy = backPressurePolicy != null ? backPressurePolicy : BackPressurePolicy.BLOCK;
+  }
+
+  /**
+   * @return number of entries put in the buffer
+   */
+  public long getQueuedCount() {
+    return queuedCount.sum();
+  }
+
+  /**
+   * @return number of entries waiting in the buffer
+   */
+  public int getPendingCount() {
+    AuditRingBuffer current = buffer;
+    return current != null ? current.size() : 0;
+  }
+
+  /**
+   * @return number of entries discarded because the buffer was full
+   */
+  public long getDroppedCount() {
+    return droppedCount.sum();
+  }
+
+  /**
+   * @return number of entries written from the calling thread because the buffer was full
+   */
+  public long getCallerRunsCount() {
+    return callerRunsCount.sum();
+  }
+
+  /**
+   * @return number of entries the wrapped entry saved
+   */
+  public long getWrittenCount() {
+    return writtenCount.get();
+  }
+
+  /**
+   * @return number of entries the wrapped entry failed to save
+   */
+  public long getFailedCount() {
+    return failedCount.get();
+  }
+
+  /**
+   * @return number of successful writes to the wrapped entry
+   */
+  public long getBatchCount() {
+    return batchCount.get();
+  }
+
+  /**
+   * @return average milliseconds between recording an entry and the end of its write attempt
+   */
+  public double getAverageLatency() {
+    long attempts = writtenCount.get() + failedCount.get();
+    return attempts == 0 ? 0 : (double) totalLatency.get() / attempts;
+  }
+
+  /**
+   * @return longest time, in milliseconds, between recording an entry and the end of its write attempt
+   */
+  public long getMaxLatency() {
+    return maxLatency.get();
+  }
+}
@@ -14,19 +14,23 @@
 package org.pentaho.platform.engine.services.audit;
 
 import org.pentaho.platform.api.engine.AuditException;
-import org.pentaho.platform.api.engine.IAuditEntry;
 import org.pentaho.platform.engine.core.messages.Messages;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
 import org.pentaho.platform.util.logging.Logger;
 
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
 import java.text.DecimalFormat;
 import java.text.SimpleDateFormat;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
 
 /**
  * @author mbatchel
@@ -34,7 +38,7 @@ import java.util.Date;
  *         TODO To change the template for this generated type comment go to Window - Preferences - Java - Code
  *         Style - Code Templates
  */
-public class AuditFileEntry implements IAuditEntry {
+public class AuditFileEntry implements IBatchAuditEntry {
   private static final String auditDirPath = "system/logs/audit"; //$NON-NLS-1$
 
   private static final String auditFileName = PentahoSystem.getSystemSetting(
@@ -44,6 +48,8 @@ public class AuditFileEntry implements IAuditEntry {
 
   private static String ID_SEPARATOR = PentahoSystem.getSystemSetting( "audit/id_separator", "\t" ); //$NON-NLS-1$ //$NON-NLS-2$
 
+  private FileChannel channel;
+
   private static final SimpleDateFormat auditDateFormat = new SimpleDateFormat( PentahoSystem.getSystemSetting(
       "audit/auditDateFormat", "yyyy/MM/dd k:mm:ss" ) ); //$NON-NLS-1$ //$NON-NLS-2$
 
@@ -62,48 +68,82 @@ public class AuditFileEntry implements IAuditEntry {
     }
   }
 
-  public synchronized void auditAll( final String jobId, final String instId, final String objId, final String objType,
+  public void auditAll( final String jobId, final String instId, final String objId, final String objType,
       final String actor, final String messageType, final String messageName, final String messageTxtValue,
       final BigDecimal messageNumValue, final double duration ) throws AuditException {
+    auditBatch( Collections.singletonList( new AuditRecord( jobId, instId, objId, objType, actor, messageType,
+        messageName, messageTxtValue, messageNumValue, duration, System.currentTimeMillis() ) ) );
+  }
 
-    if ( AuditFileEntry.auditFile == null ) {
+  /**
+   * Appends all entries to the audit file with a single write. The file is kept open between calls, and reopened when
+   * it has been moved away, e.g. by log rotation.
+   */
+  public synchronized void auditBatch( final List<AuditRecord> records ) throws AuditException {
+
+    if ( AuditFileEntry.auditFile == null || records.isEmpty() ) {
       return;
     }
+    StringBuilder lines = new StringBuilder( 128 * records.size() );
+    for ( AuditRecord record : records ) {
+      lines.append( AuditFileEntry.auditDateFormat.format( new Date( record.getTimestamp() ) ) );
+      lines.append( AuditFileEntry.ID_SEPARATOR );
+      lines.append( getWritable( record.getJobId() ) );
+      lines.append( AuditFileEntry.ID_SEPARATOR );
+      lines.append( getWritable( record.getInstId() ) );
+      lines.append( AuditFileEntry.ID_SEPARATOR );
+      lines.append( getWritable( record.getObjId() ) );
+      lines.append( AuditFileEntry.ID_SEPARATOR );
+      lines.append( getWritable( record.getObjType() ) );
+      lines.append( AuditFileEntry.ID_SEPARATOR );
+      lines.append( getWritable( record.getActor() ) );
+      lines.append( AuditFileEntry.ID_SEPARATOR );
+      lines.append( getWritable( record.getMessageType() ) );
+      lines.append( AuditFileEntry.ID_SEPARATOR );
+      lines.append( getWritable( record.getMessageName() ) );
+      lines.append( AuditFileEntry.ID_SEPARATOR );
+      lines.append( getWritable( record.getMessageTxtValue() ) );
+      lines.append( AuditFileEntry.ID_SEPARATOR );
+      lines.append( getWritable( record.getMessageNumValue() ) );
+      lines.append( AuditFileEntry.ID_SEPARATOR );
+      lines.append( getWritable( record.getDuration() ) );
+      lines.append( System.lineSeparator() );
+    }
     try {
-      BufferedWriter fw = new BufferedWriter( new FileWriter( AuditFileEntry.auditFile, true ) );
-      try {
-        Date dt = new Date();
-        fw.write( AuditFileEntry.auditDateFormat.format( dt ) );
-        fw.write( AuditFileEntry.ID_SEPARATOR );
-        fw.write( getWritable( jobId ) );
-        fw.write( AuditFileEntry.ID_SEPARATOR );
-        fw.write( getWritable( instId ) );
-        fw.write( AuditFileEntry.ID_SEPARATOR );
-        fw.write( getWritable( objId ) );
-        fw.write( AuditFileEntry.ID_SEPARATOR );
-        fw.write( getWritable( objType ) );
-        fw.write( AuditFileEntry.ID_SEPARATOR );
-        fw.write( getWritable( actor ) );
-        fw.write( AuditFileEntry.ID_SEPARATOR );
-        fw.write( getWritable( messageType ) );
-        fw.write( AuditFileEntry.ID_SEPARATOR );
-        fw.write( getWritable( messageName ) );
-        fw.write( AuditFileEntry.ID_SEPARATOR );
-        fw.write( getWritable( messageTxtValue ) );
-        fw.write( AuditFileEntry.ID_SEPARATOR );
-        fw.write( getWritable( messageNumValue ) );
-        fw.write( AuditFileEntry.ID_SEPARATOR );
-        fw.write( getWritable( duration ) );
-        fw.newLine();
-      } finally {
-        fw.flush();
-        fw.close();
+      ByteBuffer bytes = Charset.defaultCharset().encode( CharBuffer.wrap( lines ) );
+      FileChannel channel = getChannel();
+      while ( bytes.hasRemaining() ) {
+        channel.write( bytes );
       }
     } catch ( IOException ex ) {
+      close();
       throw new AuditException( ex );
     }
   }
 
+  private FileChannel getChannel() throws IOException {
+    if ( channel != null && ( !channel.isOpen() || !AuditFileEntry.auditFile.exists() ) ) {
+      close();
+    }
+    if ( channel == null ) {
+      channel = FileChannel.open( AuditFileEntry.auditFile.toPath(), StandardOpenOption.CREATE,
+          StandardOpenOption.WRITE, StandardOpenOption.APPEND );
+    }
+    return channel;
+  }
+
+  @Override
+  public synchronized void close() {
+    if ( channel != null ) {
+      try {
+        channel.close();
+      } catch ( IOException ex ) {
+        Logger.debug( this, ex.getMessage(), ex );
+      }
+      channel = null;
+    }
+  }
+
   private String getWritable( final Object obj ) {
     if ( obj instanceof BigDecimal ) {
       DecimalFormat format = new DecimalFormat( "#.###" ); //$NON-NLS-1$
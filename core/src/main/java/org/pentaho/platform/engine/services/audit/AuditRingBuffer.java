@@ -0,0 +1,113 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.platform.engine.services.audit;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded queue of audit records for many producers and a single consumer, without locks. Every slot carries a
+ * sequence number telling whose turn it is: a producer claims the next position with a compare-and-set and publishes
+ * its record by advancing the slot's sequence, the consumer frees a slot by advancing it once more, a whole lap ahead.
+ */
+class AuditRingBuffer {
+
+  private final AtomicReferenceArray<AuditRecord> slots;
+
+  private final AtomicLongArray sequences;
+
+  private final int mask;
+
+  private final AtomicLong tail = new AtomicLong();
+
+  // only written by the consumer
+  private volatile long head;
+
+  /**
+   * @param capacity minimum number of records the buffer holds, rounded up to a power of two
+   */
+  AuditRingBuffer( final int capacity ) {
+    int size = Integer.highestOneBit( Math.max( 2, capacity ) - 1 ) << 1;
+    slots = new AtomicReferenceArray<>( size );
+    sequences = new AtomicLongArray( size );
+    for ( int i = 0; i < size; i++ ) {
+      sequences.set( i, i );
+    }
+    mask = size - 1;
+  }
+
+  /**
+   * Adds a record, from any thread.
+   *
+   * @return <code>false</code> if the buffer is full
+   */
+  boolean offer( final AuditRecord record ) {
+    long position;
+    while ( true ) {
+      position = tail.get();
+      long available = sequences.get( (int) ( position & mask ) ) - position;
+      if ( available == 0 ) {
+        if ( tail.compareAndSet( position, position + 1 ) ) {
+          break;
+        }
+      } else if ( available < 0 ) {
+        // the consumer has not freed this slot since the last lap
+        return false;
+      }
+      // otherwise another producer took the position first, try the next one
+    }
+    int index = (int) ( position & mask );
+    slots.set( index, record );
+    sequences.set( index, position + 1 );
+    return true;
+  }
+
+  /**
+   * Moves published records to <code>records</code>, in the order their positions were claimed. Only ever called by
+   * the consumer.
+   *
+   * @return number of records moved
+   */
+  int drainTo( final List<AuditRecord> records, final int maxRecords ) {
+    int drained = 0;
+    long position = head;
+    while ( drained < maxRecords ) {
+      int index = (int) ( position & mask );
+      if ( sequences.get( index ) != position + 1 ) {
+        // empty, or claimed but not published yet
+        break;
+      }
+      records.add( slots.get( index ) );
+      slots.set( index, null );
+      sequences.set( index, position + mask + 1 );
+      position++;
+      drained++;
+    }
+    head = position;
+    return drained;
+  }
+
+  /**
+   * @return number of positions claimed but not drained yet
+   */
+  int size() {
+    return (int) Math.max( 0, tail.get() - head );
+  }
+
+  int capacity() {
+    return mask + 1;
+  }
+}
@@ -14,7 +14,6 @@
 package org.pentaho.platform.engine.services.audit;
 
 import org.pentaho.platform.api.engine.AuditException;
-import org.pentaho.platform.api.engine.IAuditEntry;
 import org.pentaho.platform.engine.core.audit.AuditHelper;
 import org.pentaho.platform.engine.core.messages.Messages;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
@@ -28,14 +27,16 @@ import java.sql.Types;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.Timestamp;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
  * @author mbatchel
  * 
  */
-public class AuditSQLEntry implements IAuditEntry {
+public class AuditSQLEntry implements IBatchAuditEntry {
   private static AuditConnection audc;
 
   private Map<String, String> columnsSizeMap;
@@ -127,25 +128,45 @@ public class AuditSQLEntry implements IAuditEntry {
   public void auditAll( final String jobId, final String instId, final String objId, final String objType,
       final String actor, final String messageType, final String messageName, final String messageTxtValue,
       final BigDecimal messageNumValue, final double duration ) throws AuditException {
+    auditBatch( Collections.singletonList( new AuditRecord( jobId, instId, objId, objType, actor, messageType,
+        messageName, messageTxtValue, messageNumValue, duration, System.currentTimeMillis() ) ) );
+  }
+
+  /**
+   * Inserts all entries through one connection and one statement; more than one entry is sent as a single JDBC batch.
+   */
+  public void auditBatch( final List<AuditRecord> records ) throws AuditException {
 
+    if ( records.isEmpty() ) {
+      return;
+    }
     Connection con = null;
     try {
       con = AuditSQLEntry.audc.getAuditConnection();
       try {
         PreparedStatement stmt = con.prepareStatement( AuditSQLEntry.INSERT_STMT );
         try {
-          setString( stmt, 1, jobId );
-          setString( stmt, 2, instId );
-          setString( stmt, 3, objId );
-          setString( stmt, 4, objType );
-          setString( stmt, 5, actor );
-          setString( stmt, 6, messageType );
-          setString( stmt, 7, messageName );
-          setObject( stmt, 8, messageTxtValue );
-          setBigDec( stmt, 9, messageNumValue );
-          setBigDec( stmt, 10, BigDecimal.valueOf( duration ) );
-          stmt.setTimestamp( 11, new Timestamp( System.currentTimeMillis() ) );
-          stmt.executeUpdate();
+          for ( AuditRecord record : records ) {
+            setString( stmt, 1, record.getJobId() );
+            setString( stmt, 2, record.getInstId() );
+            setString( stmt, 3, record.getObjId() );
+            setString( stmt, 4, record.getObjType() );
+            setString( stmt, 5, record.getActor() );
+            setString( stmt, 6, record.getMessageType() );
+            setString( stmt, 7, record.getMessageName() );
+            setObject( stmt, 8, record.getMessageTxtValue() );
+            setBigDec( stmt, 9, record.getMessageNumValue() );
+            setBigDec( stmt, 10, BigDecimal.valueOf( record.getDuration() ) );
+            stmt.setTimestamp( 11, new Timestamp( record.getTimestamp() ) );
+            if ( records.size() == 1 ) {
+              stmt.executeUpdate();
+            } else {
+              stmt.addBatch();
+            }
+          }
+          if ( records.size() > 1 ) {
+            stmt.executeBatch();
+          }
         } catch ( SQLException ex ) {
           Logger.error( this.getClass().getName(), ex.getMessage(), ex );
           try {
@@ -0,0 +1,40 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.platform.engine.services.audit;
+
+import org.pentaho.platform.api.engine.AuditException;
+import org.pentaho.platform.api.engine.IAuditEntry;
+
+import java.util.List;
+
+/**
+ * An {@link IAuditEntry} that can record several entries at once, sharing the cost of reaching the audit storage
+ * location between them. Used by {@link AsyncAuditEntry} to write the entries it has queued up.
+ */
+public interface IBatchAuditEntry extends IAuditEntry {
+
+  /**
+   * Saves the given entries to the audit storage location, in order.
+   *
+   * @param records entries to save
+   * @throws AuditException if the entries could not be saved
+   */
+  void auditBatch( List<AuditRecord> records ) throws AuditException;
+
+  /**
+   * Releases any resource kept open between calls. Further calls may reacquire them.
+   */
+  default void close() {
+  }
+}
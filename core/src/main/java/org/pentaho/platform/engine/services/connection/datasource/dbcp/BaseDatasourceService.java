@@ -40,6 +40,8 @@ public abstract class BaseDatasourceService implements IDBDatasourceService {
    */
   public void clearCache() {
     cacheManager.removeRegionCache( IDBDatasourceService.JDBC_DATASOURCE );
+    // pools are only closed once their datasource turns out to be changed or deleted, see retrieve
+    PooledDataSourceRegistry.getInstance().releaseAll();
   }
 
   /**
@@ -49,10 +51,16 @@ public abstract class BaseDatasourceService implements IDBDatasourceService {
    */
   public void clearDataSource( String dsName ) {
     cacheManager.removeFromRegionCache( IDBDatasourceService.JDBC_DATASOURCE, dsName );
+    // also called after failed connection attempts, so the pool, which other threads may be using, stays open
+    PooledDataSourceRegistry.getInstance().release( dsName );
   }
 
   public DataSource getDataSource( String dsName ) throws DBDatasourceServiceException {
-    DataSource dataSource = null;
+    // connection pools are pinned in the registry, whatever the cache may have evicted
+    DataSource dataSource = PooledDataSourceRegistry.getInstance().get( dsName );
+    if ( dataSource != null ) {
+      return dataSource;
+    }
     if ( cacheManager != null ) {
       if ( !cacheManager.cacheEnabled( IDBDatasourceService.JDBC_DATASOURCE ) ) {
         cacheManager.addCacheRegion( IDBDatasourceService.JDBC_DATASOURCE );
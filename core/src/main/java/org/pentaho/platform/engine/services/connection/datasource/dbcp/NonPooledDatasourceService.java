@@ -36,6 +36,8 @@ public class NonPooledDatasourceService extends BaseDatasourceService {
           cacheManager.putInRegionCache( IDBDatasourceService.JDBC_DATASOURCE, dsName, ds );
         }
       } else {
+        // the datasource was deleted, so a pool built for it is no longer needed
+        PooledDataSourceRegistry.getInstance().remove( dsName );
         throw new DBDatasourceServiceException( Messages.getInstance().getErrorString(
             "DatasourceService.ERROR_0002_UNABLE_TO_GET_DATASOURCE" ) ); //$NON-NLS-1$
       }
@@ -41,6 +41,8 @@ public class NonPooledOrJndiDatasourceService extends BaseDatasourceService {
         ds = resolveDatabaseConnection( databaseConnection );
         // Database does not have the datasource, look in jndi now
       } else {
+        // the datasource was deleted or turned into a JNDI one, so a pool built for it is no longer needed
+        PooledDataSourceRegistry.getInstance().remove( dsName );
         try {
           ds = getJndiDataSource( dsName );
         } catch ( DBDatasourceServiceException e ) {
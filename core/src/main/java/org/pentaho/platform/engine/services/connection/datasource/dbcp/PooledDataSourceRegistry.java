@@ -0,0 +1,291 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.platform.engine.services.connection.datasource.dbcp;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.commons.pool2.impl.GenericObjectPool;
+import org.pentaho.platform.plugin.action.kettle.PoolingManagedDataSource;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Holds the connection pools built by {@link PooledDatasourceHelper}, one per datasource name. Unlike the
+ * {@link org.pentaho.platform.api.data.IDBDatasourceService#JDBC_DATASOURCE} cache region, pools are never evicted:
+ * a pool stays registered until it is replaced by a pool with a different configuration, removed or cleared, and is
+ * closed when that happens. Connections borrowed from a closed pool remain usable and are destroyed when returned.
+ * <p>
+ * {@link #release(String)} does not close anything: it only makes {@link #get(String)} miss, so that the next lookup
+ * goes through {@link #getOrCreate(String, String, PoolFactory)} and checks the pool against the current definition
+ * of the datasource. The pool is kept, and used again, if that definition is unchanged.
+ * <p>
+ * A pool is built once per configuration, also when several threads ask for it at the same time.
+ */
+public class PooledDataSourceRegistry {
+
+  private static final Log logger = LogFactory.getLog( PooledDataSourceRegistry.class );
+
+  private static final PooledDataSourceRegistry instance = new PooledDataSourceRegistry();
+
+  private final ConcurrentMap<String, Registration> registrations = new ConcurrentHashMap<>();
+
+  /**
+   * Builds a pool for {@link #getOrCreate(String, String, PoolFactory)}.
+   */
+  public interface PoolFactory {
+    PoolingManagedDataSource create() throws Exception;
+  }
+
+  PooledDataSourceRegistry() {
+  }
+
+  public static PooledDataSourceRegistry getInstance() {
+    return instance;
+  }
+
+  /**
+   * @return the pool registered under the given name, or <code>null</code> if there is none, it has been expired or
+   *         it has been released
+   */
+  public PoolingManagedDataSource get( String name ) {
+    Registration registration = registrations.get( name );
+    if ( registration == null || registration.released ) {
+      return null;
+    }
+    PoolingManagedDataSource dataSource = registration.dataSource;
+    return dataSource != null && !dataSource.isExpired() ? dataSource : null;
+  }
+
+  /**
+   * Returns the pool registered under the given name if it was built from the same configuration and has not been
+   * expired. Otherwise builds a new pool, registers it and closes the one it replaces.
+   *
+   * @param name       the datasource name
+   * @param configHash the hash of the connection configuration, see
+   *                   {@link org.pentaho.database.model.IDatabaseConnection#calculateHash()}
+   * @param factory    builds the pool if needed
+   */
+  public PoolingManagedDataSource getOrCreate( String name, String configHash, PoolFactory factory )
+    throws Exception {
+    while ( true ) {
+      Registration registration = registrations.computeIfAbsent( name, key -> new Registration() );
+      PoolingManagedDataSource current = registration.dataSource;
+      if ( isUsable( current, configHash ) ) {
+        registration.released = false;
+        return current;
+      }
+      synchronized ( registration ) {
+        if ( registration.removed ) {
+          // removed while waiting for the lock; start over with the registration that took its place
+          continue;
+        }
+        current = registration.dataSource;
+        if ( isUsable( current, configHash ) ) {
+          registration.released = false;
+          return current;
+        }
+        PoolingManagedDataSource created = factory.create();
+        registration.dataSource = created;
+        registration.released = false;
+        if ( current != null ) {
+          logger.debug( "Replacing the connection pool of datasource " + name );
+          close( name, current );
+        }
+        return created;
+      }
+    }
+  }
+
+  /**
+   * Makes the next lookup of the given datasource check its pool against the current definition of the datasource,
+   * see {@link #getOrCreate(String, String, PoolFactory)}. The pool is neither closed nor unregistered, so it is safe
+   * to call this after a failed connection attempt while other threads are using the pool.
+   */
+  public void release( String name ) {
+    Registration registration = registrations.get( name );
+    if ( registration != null ) {
+      registration.released = true;
+    }
+  }
+
+  /**
+   * {@link #release(String) Releases} all pools.
+   */
+  public void releaseAll() {
+    for ( Registration registration : registrations.values() ) {
+      registration.released = true;
+    }
+  }
+
+  /**
+   * Unregisters and closes the pool registered under the given name, if any. Only meant for datasources that no
+   * longer exist, as threads waiting for a connection of a closed pool fail.
+   */
+  public void remove( String name ) {
+    Registration registration = registrations.remove( name );
+    if ( registration != null ) {
+      synchronized ( registration ) {
+        registration.removed = true;
+        close( name, registration.dataSource );
+        registration.dataSource = null;
+      }
+    }
+  }
+
+  /**
+   * Unregisters and closes all pools.
+   */
+  public void clear() {
+    for ( String name : new ArrayList<>( registrations.keySet() ) ) {
+      remove( name );
+    }
+  }
+
+  /**
+   * @return the current statistics of every registered pool, by datasource name
+   */
+  public Map<String, PoolStatistics> getStatistics() {
+    Map<String, PoolStatistics> statistics = new TreeMap<>();
+    for ( Map.Entry<String, Registration> entry : registrations.entrySet() ) {
+      PoolingManagedDataSource dataSource = entry.getValue().dataSource;
+      GenericObjectPool<?> pool = dataSource != null ? dataSource.getConnectionPool() : null;
+      if ( pool != null ) {
+        statistics.put( entry.getKey(), new PoolStatistics( pool ) );
+      }
+    }
+    return Collections.unmodifiableMap( statistics );
+  }
+
+  private static boolean isUsable( PoolingManagedDataSource dataSource, String configHash ) {
+    return dataSource != null && !dataSource.isExpired() && dataSource.hasSameConfig( configHash );
+  }
+
+  private static void close( String name, PoolingManagedDataSource dataSource ) {
+    if ( dataSource == null ) {
+      return;
+    }
+    // tells holders of the data source, such as Kettle, to ask for a new one
+    dataSource.expire();
+    try {
+      dataSource.close();
+    } catch ( Exception e ) {
+      logger.warn( "Failed to close the connection pool of datasource " + name + ": " + e.getMessage(), e );
+    }
+  }
+
+  private static class Registration {
+    private volatile PoolingManagedDataSource dataSource;
+    private volatile boolean released;
+    private boolean removed;
+  }
+
+  /**
+   * A snapshot of the state of one connection pool.
+   */
+  public static class PoolStatistics {
+    private final int active;
+    private final int idle;
+    private final int waiters;
+    private final int maxTotal;
+    private final long borrowed;
+    private final long created;
+    private final long destroyed;
+    private final long meanBorrowWaitTimeMillis;
+    private final long maxBorrowWaitTimeMillis;
+
+    PoolStatistics( GenericObjectPool<?> pool ) {
+      active = pool.getNumActive();
+      idle = pool.getNumIdle();
+      waiters = pool.getNumWaiters();
+      maxTotal = pool.getMaxTotal();
+      borrowed = pool.getBorrowedCount();
+      created = pool.getCreatedCount();
+      destroyed = pool.getDestroyedCount();
+      meanBorrowWaitTimeMillis = pool.getMeanBorrowWaitTimeMillis();
+      maxBorrowWaitTimeMillis = pool.getMaxBorrowWaitTimeMillis();
+    }
+
+    /**
+     * @return the number of connections currently borrowed from the pool
+     */
+    public int getActive() {
+      return active;
+    }
+
+    /**
+     * @return the number of connections currently idle in the pool
+     */
+    public int getIdle() {
+      return idle;
+    }
+
+    /**
+     * @return the number of threads currently waiting for a connection
+     */
+    public int getWaiters() {
+      return waiters;
+    }
+
+    public int getMaxTotal() {
+      return maxTotal;
+    }
+
+    /**
+     * @return the number of connections borrowed since the pool was built
+     */
+    public long getBorrowed() {
+      return borrowed;
+    }
+
+    /**
+     * @return the number of connections opened since the pool was built
+     */
+    public long getCreated() {
+      return created;
+    }
+
+    /**
+     * @return the number of connections closed since the pool was built
+     */
+    public long getDestroyed() {
+      return destroyed;
+    }
+
+    /**
+     * @return the mean time recently spent waiting for a connection
+     */
+    public long getMeanBorrowWaitTimeMillis() {
+      return meanBorrowWaitTimeMillis;
+    }
+
+    /**
+     * @return the longest time spent waiting for a connection
+     */
+    public long getMaxBorrowWaitTimeMillis() {
+      return maxBorrowWaitTimeMillis;
+    }
+
+    @Override
+    public String toString() {
+      return "active=" + active + ", idle=" + idle + ", waiters=" + waiters + ", maxTotal=" + maxTotal + ", borrowed="
+        + borrowed + ", created=" + created + ", destroyed=" + destroyed + ", meanBorrowWaitTimeMillis="
+        + meanBorrowWaitTimeMillis + ", maxBorrowWaitTimeMillis=" + maxBorrowWaitTimeMillis;
+    }
+  }
+}
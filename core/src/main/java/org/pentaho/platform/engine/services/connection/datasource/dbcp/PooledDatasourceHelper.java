@@ -32,7 +32,6 @@ import org.pentaho.database.model.IDatabaseConnection;
 import org.pentaho.database.service.IDatabaseDialectService;
 import org.pentaho.platform.api.data.DBDatasourceServiceException;
 import org.pentaho.platform.api.data.IDBDatasourceService;
-import org.pentaho.platform.api.engine.ICacheManager;
 import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
 import org.pentaho.platform.engine.services.messages.Messages;
@@ -65,21 +64,25 @@ public class PooledDatasourceHelper {
       if ( databaseConnection.getAccessType().equals( DatabaseAccessType.JNDI ) ) {
         throwDBDatasourceServiceException( databaseConnection.getName(), "PooledDatasourceHelper.ERROR_0008_UNABLE_TO_POOL_DATASOURCE_IT_IS_JNDI" );
       }
-      IDatabaseDialect dialect = getDatabaseDialect( databaseConnection );
-      String driverClass = getDriverClass( databaseConnection, dialect );
-      loadDriverClass( databaseConnection, dialect, driverClass );
-
-      PoolingManagedDataSource poolingDataSource = new PoolingManagedDataSource( databaseConnection, dialect );
       if ( useCache ) {
-        ICacheManager cacheManager = PentahoSystem.getCacheManager( null );
-        cacheManager.putInRegionCache( IDBDatasourceService.JDBC_DATASOURCE, databaseConnection.getName(), poolingDataSource );
+        // pinned in the registry rather than the cache, so that the pool is not rebuilt after an eviction
+        return PooledDataSourceRegistry.getInstance().getOrCreate( databaseConnection.getName(),
+          databaseConnection.calculateHash(), () -> createPooledDataSource( databaseConnection ) );
       }
-      return poolingDataSource;
+      return createPooledDataSource( databaseConnection );
     } catch ( Exception e ) {
       throw new DBDatasourceServiceException( e );
     }
   }
 
+  private static PoolingManagedDataSource createPooledDataSource( IDatabaseConnection databaseConnection )
+    throws Exception {
+    IDatabaseDialect dialect = getDatabaseDialect( databaseConnection );
+    String driverClass = getDriverClass( databaseConnection, dialect );
+    loadDriverClass( databaseConnection, dialect, driverClass );
+    return new PoolingManagedDataSource( databaseConnection, dialect );
+  }
+
   private static void loadDriverClass( IDatabaseConnection databaseConnection, IDatabaseDialect dialect, String driverClass ) throws ClassNotFoundException {
     if ( dialect instanceof IDriverLocator ) {
       if ( !( (IDriverLocator) dialect ).initialize( driverClass ) ) {
@@ -87,6 +87,7 @@ public class PooledDatasourceSystemListener extends NonPooledDatasourceSystemLis
 
     cacheManager.removeRegionCache( IDBDatasourceService.JDBC_POOL );
     cacheManager.removeRegionCache( IDBDatasourceService.JDBC_DATASOURCE );
+    PooledDataSourceRegistry.getInstance().clear();
 
     Logger.debug( this, "DatasourceSystemListener: Completed shutdown." ); //$NON-NLS-1$
   }
@@ -15,38 +15,19 @@ package org.pentaho.platform.engine.services.connection.datasource.dbcp;
 
 import org.pentaho.database.model.IDatabaseConnection;
 import org.pentaho.platform.api.data.DBDatasourceServiceException;
-import org.pentaho.platform.api.data.IDBDatasourceService;
-import org.pentaho.platform.api.engine.ICacheManager;
-import org.pentaho.platform.engine.core.system.PentahoSystem;
-import org.pentaho.platform.plugin.action.kettle.PoolingManagedDataSource;
 
 import javax.sql.DataSource;
 
 public class PooledOrJndiDatasourceService extends NonPooledOrJndiDatasourceService {
 
+    /**
+     * Returns the pool registered for the connection if its configuration is unchanged, or replaces it otherwise. See
+     * {@link PooledDataSourceRegistry#getOrCreate(String, String, PooledDataSourceRegistry.PoolFactory)}.
+     */
     @Override
     public DataSource resolveDatabaseConnection( IDatabaseConnection databaseConnection )
             throws DBDatasourceServiceException {
-        synchronized (this) {
-            ICacheManager cacheManager = PentahoSystem.getCacheManager( null );
-            Object fromCache = cacheManager.getFromRegionCache( IDBDatasourceService.JDBC_DATASOURCE, databaseConnection.getName() );
-            if ( !( fromCache instanceof PoolingManagedDataSource ) ) {
-                cacheManager.removeFromRegionCache( IDBDatasourceService.JDBC_DATASOURCE, databaseConnection.getName() );
-            } else {
-                PoolingManagedDataSource cachedDataSource = (PoolingManagedDataSource) fromCache;
-                if ( !cachedDataSource.isExpired() ) {
-                    // Check expired
-                    if ( cachedDataSource.hasSameConfig( databaseConnection.calculateHash() ) ) {
-                        return cachedDataSource;
-                    }
-                    if ( cachedDataSource.isInUse() ) {
-                        cachedDataSource.expire();
-                    }
-                    cacheManager.removeFromRegionCache( IDBDatasourceService.JDBC_DATASOURCE, databaseConnection.getName() );
-                }
-            }
-            return PooledDatasourceHelper.setupPooledDataSource( databaseConnection );
-        }
+        return PooledDatasourceHelper.setupPooledDataSource( databaseConnection );
     }
 
 }
@@ -0,0 +1,215 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.platform.engine.services.runtime;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.pentaho.platform.api.engine.ActionExecutionException;
+import org.pentaho.platform.api.engine.ActionSequenceException;
+import org.pentaho.platform.api.engine.IPentahoSession;
+import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.pentaho.platform.engine.services.messages.Messages;
+import org.pentaho.platform.util.messages.LocaleHelper;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tracks the iterations of one parallel loop while they run on the pool that all parallel loops share.
+ * <p>
+ * No more than the requested number of iterations, or of pool threads, are outstanding at a time. {@link #next()}
+ * hands finished iterations back in the order they were submitted if the loop is ordered, otherwise in the order
+ * they finish. The pool size, which also caps the concurrency of every loop, is the
+ * <code>action-sequence-loop/max-concurrency</code> system setting; it defaults to the number of processors, between
+ * 2 and 8.
+ */
+class ParallelLoop {
+
+  private static final Log logger = LogFactory.getLog( ParallelLoop.class );
+
+  private static final String MAX_CONCURRENCY_SETTING = "action-sequence-loop/max-concurrency"; //$NON-NLS-1$
+
+  private static final AtomicInteger threadCount = new AtomicInteger();
+
+  private static ThreadPoolExecutor executor;
+
+  private static final ThreadLocal<Boolean> iterationThread = new ThreadLocal<Boolean>();
+
+  private final int concurrency;
+
+  private final boolean ordered;
+
+  private final Deque<Future<RuntimeContext>> pending = new ArrayDeque<Future<RuntimeContext>>();
+
+  private final CompletionService<RuntimeContext> completed;
+
+  ParallelLoop( final int concurrency, final boolean ordered ) {
+    ThreadPoolExecutor pool = ParallelLoop.getExecutor();
+    this.concurrency = Math.min( concurrency, pool.getMaximumPoolSize() );
+    this.ordered = ordered;
+    this.completed = ordered ? null : new ExecutorCompletionService<RuntimeContext>( pool );
+  }
+
+  private static synchronized ThreadPoolExecutor getExecutor() {
+    if ( executor == null ) {
+      int threads = ParallelLoop.getMaxConcurrency();
+      executor =
+          new ThreadPoolExecutor( threads, threads, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+              runnable -> {
+                Thread thread = new Thread( runnable, "ActionSequenceLoop-" + threadCount.incrementAndGet() ); //$NON-NLS-1$
+                thread.setDaemon( true );
+                return thread;
+              } );
+      executor.allowCoreThreadTimeOut( true );
+    }
+    return executor;
+  }
+
+  private static int getMaxConcurrency() {
+    int defaultValue = Math.max( 2, Math.min( 8, Runtime.getRuntime().availableProcessors() ) );
+    String value = PentahoSystem.getSystemSetting( MAX_CONCURRENCY_SETTING, null );
+    if ( value == null || value.trim().length() == 0 ) {
+      return defaultValue;
+    }
+    try {
+      return Math.max( 1, Integer.parseInt( value.trim() ) );
+    } catch ( NumberFormatException e ) {
+      logger.warn( "Invalid value for " + MAX_CONCURRENCY_SETTING + ": " + value //$NON-NLS-1$ //$NON-NLS-2$
+          + ", using " + defaultValue ); //$NON-NLS-1$
+      return defaultValue;
+    }
+  }
+
+  /**
+   * @return whether the calling thread runs an iteration of a parallel loop, whatever runtime context it is in
+   */
+  static boolean isIterationThread() {
+    return iterationThread.get() != null;
+  }
+
+  boolean isFull() {
+    return pending.size() >= concurrency;
+  }
+
+  boolean isEmpty() {
+    return pending.isEmpty();
+  }
+
+  /**
+   * Submits an iteration, which runs in the calling thread's session, security context and locale.
+   */
+  void submit( final Callable<RuntimeContext> iteration ) {
+    Callable<RuntimeContext> task = ParallelLoop.inCallerContext( iteration );
+    pending.add( ordered ? ParallelLoop.getExecutor().submit( task ) : completed.submit( task ) );
+  }
+
+  /**
+   * Waits for the next finished iteration.
+   * 
+   * @return the runtime context the iteration ran in
+   * @throws ActionSequenceException
+   *           if the iteration failed
+   */
+  RuntimeContext next() throws ActionSequenceException {
+    try {
+      Future<RuntimeContext> iteration = ordered ? pending.peekFirst() : completed.take();
+      pending.remove( iteration );
+      return iteration.get();
+    } catch ( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+      throw new ActionExecutionException( Messages.getInstance().getErrorString(
+          "RuntimeContext.ERROR_0036_LOOP_INTERRUPTED" ), e ); //$NON-NLS-1$
+    } catch ( ExecutionException e ) {
+      Throwable cause = e.getCause();
+      if ( cause instanceof ActionSequenceException ) {
+        throw (ActionSequenceException) cause;
+      }
+      if ( cause instanceof RuntimeException ) {
+        throw (RuntimeException) cause;
+      }
+      if ( cause instanceof Error ) {
+        throw (Error) cause;
+      }
+      throw new ActionExecutionException( cause );
+    }
+  }
+
+  /**
+   * Cancels the iterations that have not started and waits for the running ones, whose outcome is ignored.
+   * 
+   * @return the runtime contexts of the iterations that finished
+   */
+  List<RuntimeContext> cancel() {
+    for ( Future<RuntimeContext> iteration : pending ) {
+      iteration.cancel( false );
+    }
+    List<RuntimeContext> finished = new ArrayList<RuntimeContext>();
+    boolean interrupted = false;
+    for ( Future<RuntimeContext> iteration : pending ) {
+      while ( !iteration.isCancelled() ) {
+        try {
+          finished.add( iteration.get() );
+          break;
+        } catch ( InterruptedException e ) {
+          interrupted = true;
+        } catch ( ExecutionException e ) {
+          break;
+        }
+      }
+    }
+    pending.clear();
+    if ( interrupted ) {
+      Thread.currentThread().interrupt();
+    }
+    return finished;
+  }
+
+  private static Callable<RuntimeContext> inCallerContext( final Callable<RuntimeContext> iteration ) {
+    final IPentahoSession pentahoSession = PentahoSessionHolder.getSession();
+    final SecurityContext securityContext = SecurityContextHolder.getContext();
+    final Locale localeBase = LocaleHelper.getThreadLocaleBase();
+    final Locale localeOverride = LocaleHelper.getThreadLocaleOverride();
+    return () -> {
+      PentahoSessionHolder.setSession( pentahoSession );
+      SecurityContextHolder.setContext( securityContext );
+      LocaleHelper.setThreadLocaleBase( localeBase );
+      LocaleHelper.setThreadLocaleOverride( localeOverride );
+      iterationThread.set( Boolean.TRUE );
+      try {
+        return iteration.call();
+      } finally {
+        iterationThread.remove();
+        LocaleHelper.setThreadLocaleOverride( null );
+        LocaleHelper.setThreadLocaleBase( null );
+        SecurityContextHolder.clearContext();
+        PentahoSessionHolder.removeSession();
+      }
+    };
+  }
+}
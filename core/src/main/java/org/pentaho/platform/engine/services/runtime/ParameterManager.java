@@ -84,6 +84,47 @@ public class ParameterManager implements IParameterManager {
     sequenceOutputDefs.putAll( actionSequence.getOutputDefinitions() );
   }
 
+  /**
+   * Creates the parameter scope of one iteration of a parallel loop. The iteration starts out with copies of the
+   * parameters of this scope, so values it sets are not seen here or by other iterations, and the copies leave the
+   * values they were created with to this scope to dispose of.
+   */
+  @SuppressWarnings( { "all" } )
+  ParameterManager createChildScope() {
+    ParameterManager child = new ParameterManager();
+    for ( Iterator it = allParams.entrySet().iterator(); it.hasNext(); ) {
+      Map.Entry entry = (Map.Entry) it.next();
+      ActionParameter param = (ActionParameter) entry.getValue();
+      child.allParams.put( entry.getKey(), ( param == null ) ? null : param.copy() );
+    }
+    child.allResources.putAll( allResources );
+    child.sequenceInputNames = sequenceInputNames;
+    child.sequenceResourceNames = sequenceResourceNames;
+    child.sequenceOutputDefs.putAll( sequenceOutputDefs );
+    return child;
+  }
+
+  /**
+   * Creates the scope the copied actions of one iteration of a parallel loop are validated against. It holds the
+   * parameters of this scope without copying them, except for the outputs of the actions: validation sets those to
+   * the actions' output definitions, which belong to the copied actions.
+   */
+  @SuppressWarnings( { "all" } )
+  ParameterManager createValidationScope( final Set outputNames ) {
+    ParameterManager validation = new ParameterManager();
+    for ( Iterator it = allParams.entrySet().iterator(); it.hasNext(); ) {
+      Map.Entry entry = (Map.Entry) it.next();
+      if ( !outputNames.contains( entry.getKey() ) ) {
+        validation.allParams.put( entry.getKey(), entry.getValue() );
+      }
+    }
+    validation.allResources.putAll( allResources );
+    validation.sequenceInputNames = sequenceInputNames;
+    validation.sequenceResourceNames = sequenceResourceNames;
+    validation.sequenceOutputDefs.putAll( sequenceOutputDefs );
+    return validation;
+  }
+
   public Map getAllParameters() {
     return ( allParams );
   }
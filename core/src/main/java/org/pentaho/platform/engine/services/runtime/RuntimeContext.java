@@ -20,12 +20,14 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.math.BigDecimal;
+import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -90,8 +92,10 @@ import org.pentaho.platform.engine.services.PentahoMessenger;
 import org.pentaho.platform.engine.services.SolutionURIResolver;
 import org.pentaho.platform.engine.services.actionsequence.ActionParameter;
 import org.pentaho.platform.engine.services.actionsequence.ActionParameterSource;
+import org.pentaho.platform.engine.services.actionsequence.ActionSequence;
 import org.pentaho.platform.engine.services.actionsequence.ActionSequenceParameterMgr;
 import org.pentaho.platform.engine.services.actionsequence.ActionSequenceResourceWrapper;
+import org.pentaho.platform.engine.services.actionsequence.CompiledActionSequence;
 import org.pentaho.platform.engine.services.messages.Messages;
 import org.pentaho.platform.engine.services.solution.ActionDelegate;
 import org.pentaho.platform.engine.services.solution.PojoComponent;
@@ -188,6 +192,12 @@ public class RuntimeContext extends PentahoMessenger implements IRuntimeContext
    */
   private List<IContentItem> generatedContentItems;
 
+  /**
+   * The outputs a parallel iteration set, in the order it set them. The runtime data is shared with the loop, which
+   * saves them when it merges the iteration.
+   */
+  private List<Map.Entry<String, Object>> runtimeOutputs;
+
   static {
     RuntimeContext.getComponentClassMap();
   }
@@ -250,6 +260,41 @@ public class RuntimeContext extends PentahoMessenger implements IRuntimeContext
     generatedContentItems = new ArrayList<IContentItem>();
   }
 
+  /**
+   * Creates the context an iteration of a parallel loop runs in. It shares the configuration of the loop's context
+   * and starts out with a copy of its parameters, but collects its own messages, content items, feedback and runtime
+   * data outputs. It is created on the loop's thread, which the copy of the parameters needs.
+   */
+  private RuntimeContext( final RuntimeContext parent ) {
+    this.createFeedbackParameterCallback = parent.createFeedbackParameterCallback;
+    this.instanceId = parent.instanceId;
+    this.solutionEngine = parent.solutionEngine;
+    this.session = parent.session;
+    this.outputHandler = parent.outputHandler;
+    this.processId = parent.processId;
+    this.urlFactory = parent.urlFactory;
+    this.parameterProviders = parent.parameterProviders;
+    this.runtimeData = parent.runtimeData;
+    this.handle = parent.handle;
+    this.logId = parent.logId;
+    this.parameterXsl = parent.parameterXsl;
+    this.parameterTemplate = parent.parameterTemplate;
+    this.parameterTarget = parent.parameterTarget;
+    this.pluginManager = parent.pluginManager;
+    this.audit = parent.audit;
+    this.loggingLevel = parent.loggingLevel;
+    this.actionSequence = parent.actionSequence;
+    setMessages( new ArrayList() );
+    xformHeader = new StringBuffer();
+    xformBody = new StringBuffer();
+    xformFields = new HashMap<String, String>();
+    this.currentComponent = ""; //$NON-NLS-1$
+    status = IRuntimeContext.RUNTIME_STATUS_RUNNING;
+    paramManager = ( (ParameterManager) parent.paramManager ).createChildScope();
+    generatedContentItems = new ArrayList<IContentItem>();
+    runtimeOutputs = new ArrayList<Map.Entry<String, Object>>();
+  }
+
   private IRuntimeElement createChild( boolean persisted ) {
     IRuntimeElement childRuntimeData = null;
     IRuntimeRepository runtimeRepository = PentahoSystem.get( IRuntimeRepository.class, session );
@@ -828,12 +873,207 @@ public class RuntimeContext extends PentahoMessenger implements IRuntimeContext
       }
     }
     if ( loopList instanceof List ) {
-      executeLoop( loopParm, (List) loopList, sequence, doneListener, execListener, async );
+      if ( isParallelLoop( loopParm, sequence, false ) ) {
+        executeParallelLoop( loopParm, ( (List) loopList ).iterator(), null, sequence, doneListener, execListener,
+            async );
+      } else {
+        executeLoop( loopParm, (List) loopList, sequence, doneListener, execListener, async );
+      }
       if ( loopParm != null ) {
         addInputParameter( loopParm.getName(), loopParm ); // replace the loop param in case the last loop muggled it
       }
     } else if ( loopList instanceof IPentahoResultSet ) {
-      executeLoop( loopParm, (IPentahoResultSet) loopList, sequence, doneListener, execListener, async, peekOnly );
+      if ( isParallelLoop( loopParm, sequence, peekOnly ) ) {
+        executeParallelLoop( loopParm, null, (IPentahoResultSet) loopList, sequence, doneListener, execListener,
+            async );
+      } else {
+        executeLoop( loopParm, (IPentahoResultSet) loopList, sequence, doneListener, execListener, async, peekOnly );
+      }
+    }
+  }
+
+  /**
+   * A loop runs its iterations in parallel when the action sequence declares it so, unless it only peeks at its
+   * result set or is nested in an iteration of another parallel loop, also one of a sub action sequence run from
+   * that iteration. Those run one iteration after another, as waiting for the pool from a pool thread could deadlock.
+   */
+  private boolean isParallelLoop( final IActionParameter loopParm, final IActionSequence sequence,
+      final boolean peekOnly ) {
+    return ( loopParm != null ) && ( sequence.getLoopConcurrency() > 1 ) && !peekOnly && !ParallelLoop.isIterationThread()
+        && ( sequence instanceof ActionSequence ) && ( paramManager instanceof ParameterManager );
+  }
+
+  /**
+   * Runs the iterations of a loop on the pool of {@link ParallelLoop}. Each iteration runs in a context of its own
+   * ({@link #RuntimeContext(RuntimeContext)}) on a copy of the loop's actions and parameters. The outputs of the
+   * iterations are merged into this context once the loop is done: each output keeps the value of the last
+   * iteration that set it, in iteration order if the loop is ordered, otherwise in completion order. Messages,
+   * content items, feedback and runtime data outputs are collected in the same order. The iterations share the
+   * output handler, so the actions of a parallel loop must not write response or feedback content.
+   */
+  private void executeParallelLoop( final IActionParameter loopParm, final Iterator loopList,
+      final IPentahoResultSet loopSet, final IActionSequence sequence, final IActionCompleteListener doneListener,
+      final IExecutionListener execListener, final boolean async ) throws ActionSequenceException {
+    final IterationListener listener = new IterationListener( doneListener, execListener );
+    final Object[] headers;
+    if ( loopSet != null ) {
+      if ( loopSet.isScrollable() ) {
+        loopSet.beforeFirst();
+      }
+      // TODO handle OLAP result sets
+      headers = loopSet.getMetaData().getColumnHeaders()[0];
+    } else {
+      headers = null;
+    }
+    final Set<String> outputNames = new HashSet<String>();
+    RuntimeContext.collectOutputNames( sequence, outputNames );
+    if ( headers != null ) {
+      for ( Object header : headers ) {
+        outputNames.add( header.toString() );
+      }
+    }
+    Map<String, IActionParameter> merged = new HashMap<String, IActionParameter>();
+    ParallelLoop loop = new ParallelLoop( sequence.getLoopConcurrency(), sequence.getLoopOrdered() );
+    int loopCount = -1;
+    boolean more = true;
+    try {
+      while ( more || !loop.isEmpty() ) {
+        while ( more && !loop.isFull() ) {
+          Object loopVar = null;
+          if ( headers != null ) {
+            loopVar = loopSet.next();
+            more = loopVar != null;
+          } else {
+            more = loopList.hasNext();
+            if ( more ) {
+              loopVar = loopList.next();
+            }
+          }
+          if ( more ) {
+            loopCount++;
+            if ( RuntimeContext.debug ) {
+              debug( Messages.getInstance().getString(
+                  "RuntimeContext.DEBUG_EXECUTING_ACTION", Integer.toString( loopCount ) ) ); //$NON-NLS-1$
+            }
+            if ( execListener != null ) {
+              execListener.loop( this, loopCount );
+            }
+            final int index = loopCount;
+            final Object item = loopVar;
+            final IActionSequence group = CompiledActionSequence.copyOf( sequence );
+            final RuntimeContext iteration = new RuntimeContext( this );
+            loop.submit( () -> iteration.executeIteration( group, outputNames, loopParm, headers, item, index,
+                listener, async ) );
+          }
+        }
+        if ( !loop.isEmpty() ) {
+          mergeIteration( loop.next(), outputNames, merged );
+          if ( promptStatus == IRuntimeContext.PROMPT_NOW ) {
+            return;
+          }
+        }
+      }
+    } catch ( ActionSequenceException e ) {
+      currentComponent = ""; //$NON-NLS-1$
+      status = IRuntimeContext.RUNTIME_STATUS_FAILURE;
+      throw e;
+    } finally {
+      for ( RuntimeContext iteration : loop.cancel() ) {
+        iteration.paramManager.dispose();
+      }
+      for ( Map.Entry<String, IActionParameter> entry : merged.entrySet() ) {
+        IActionParameter param = paramManager.getInput( entry.getKey() );
+        if ( param == null ) {
+          addInputParameter( entry.getKey(), entry.getValue() );
+        } else {
+          param.dispose();
+          param.setValue( entry.getValue().getValue() );
+        }
+      }
+    }
+    status = IRuntimeContext.RUNTIME_STATUS_SUCCESS;
+  }
+
+  /**
+   * Runs one iteration of a parallel loop in this context, which was created for it.
+   */
+  private RuntimeContext executeIteration( final IActionSequence group, final Set<String> outputNames,
+      final IActionParameter loopParm, final Object[] headers, final Object loopVar, final int loopCount,
+      final IterationListener listener, final boolean async ) throws ActionSequenceException {
+    try {
+      // the components of the copied actions are validated against a scratch scope, as the loop's were before the
+      // sequence ran
+      IParameterManager scope = paramManager;
+      paramManager = ( (ParameterManager) scope ).createValidationScope( outputNames );
+      try {
+        validateComponents( group, null );
+      } finally {
+        paramManager = scope;
+      }
+      if ( headers != null ) {
+        setLoopRow( headers, (Object[]) loopVar );
+      } else {
+        setLoopItem( loopParm, loopVar );
+      }
+      performActions( group, listener, listener, async );
+    } catch ( ActionSequenceException e ) {
+      e.setLoopIndex( loopCount );
+      paramManager.dispose();
+      throw e;
+    }
+    return this;
+  }
+
+  /**
+   * Takes the outputs, messages, content items and feedback of a finished iteration. Outputs the iteration left as
+   * they were are skipped, so that it does not undo what an earlier iteration set; an output that a later iteration
+   * sets again is disposed of as it would be by a sequential loop.
+   */
+  private void mergeIteration( final RuntimeContext iteration, final Set<String> outputNames,
+      final Map<String, IActionParameter> merged ) {
+    for ( String name : outputNames ) {
+      IActionParameter param = iteration.paramManager.getInput( name );
+      IActionParameter current = paramManager.getInput( name );
+      if ( ( param == null ) || ( ( current != null ) && ( current.getValue() == param.getValue() ) ) ) {
+        continue;
+      }
+      IActionParameter replaced = merged.put( name, param );
+      if ( ( replaced != null ) && ( replaced.getValue() != param.getValue() ) ) {
+        replaced.dispose();
+      }
+    }
+    List<Object> mergedValues = new ArrayList<Object>();
+    for ( IActionParameter param : merged.values() ) {
+      mergedValues.add( param.getValue() );
+    }
+    iteration.paramManager.dispose( mergedValues );
+
+    if ( ( getMessages() != null ) && ( iteration.getMessages() != null ) ) {
+      getMessages().addAll( iteration.getMessages() );
+    }
+    generatedContentItems.addAll( iteration.generatedContentItems );
+    xformHeader.append( iteration.xformHeader );
+    xformBody.append( iteration.xformBody );
+    xformFields.putAll( iteration.xformFields );
+    promptStatus = Math.max( promptStatus, iteration.promptStatus );
+    // other iterations may still be reading the runtime data
+    synchronized ( runtimeData ) {
+      for ( Map.Entry<String, Object> output : iteration.runtimeOutputs ) {
+        saveOutputValue( output.getKey(), output.getValue() );
+      }
+    }
+  }
+
+  private static void collectOutputNames( final IActionSequence sequence, final Set<String> outputNames ) {
+    for ( Object listItem : sequence.getActionDefinitionsAndSequences() ) {
+      if ( listItem instanceof IActionSequence ) {
+        RuntimeContext.collectOutputNames( (IActionSequence) listItem, outputNames );
+      } else if ( listItem instanceof ISolutionActionDefinition ) {
+        ISolutionActionDefinition actionDef = (ISolutionActionDefinition) listItem;
+        for ( Object name : actionDef.getActionOutputDefinitions().keySet() ) {
+          outputNames.add( actionDef.getMappedOutputName( (String) name ) );
+        }
+      }
     }
   }
 
@@ -870,38 +1110,7 @@ public class RuntimeContext extends PentahoMessenger implements IRuntimeContext
         execListener.loop( this, loopCount );
       }
       if ( loopParm != null ) {
-        IActionParameter ap;
-        for ( int columnNo = 0; columnNo < headers.length; columnNo++ ) {
-          String name = headers[columnNo].toString();
-          Object value = row[columnNo];
-          String type = null;
-          if ( value instanceof String ) {
-            type = IActionParameter.TYPE_STRING;
-          } else if ( value instanceof Date ) {
-            type = IActionParameter.TYPE_DATE;
-          } else if ( ( value instanceof Long ) || ( value instanceof Integer ) ) {
-            type = IActionParameter.TYPE_INTEGER;
-          } else if ( ( value instanceof BigDecimal ) || ( value instanceof Double ) || ( value instanceof Float ) ) {
-            type = IActionParameter.TYPE_DECIMAL;
-          } else if ( value instanceof String[] ) {
-            type = IActionParameter.TYPE_STRING;
-          } else if ( value == null ) {
-            warn( Messages.getInstance().getString( "RuntimeContext.WARN_VARIABLE_IN_LOOP_IS_NULL", name ) ); //$NON-NLS-1$
-          } else {
-            type = IActionParameter.TYPE_OBJECT;
-            warn( Messages.getInstance().getString(
-                "RuntimeContext.WARN_VARIABLE_IN_LOOP_NOT_RECOGNIZED", name, value.getClass().toString() ) ); //$NON-NLS-1$
-          }
-          // TODO make sure any previous loop values are removed
-          ap = paramManager.getInput( name );
-          if ( ap == null ) {
-            ap = new ActionParameter( name, type, value, null, null );
-            addInputParameter( name, ap );
-          } else {
-            ap.dispose();
-            ap.setValue( value );
-          }
-        }
+        setLoopRow( headers, row );
       }
       try {
         performActions( sequence, doneListener, execListener, async );
@@ -930,13 +1139,7 @@ public class RuntimeContext extends PentahoMessenger implements IRuntimeContext
       }
       Object loopVar = it.next();
       if ( loopParm != null ) {
-        IActionParameter ap;
-        if ( loopVar instanceof Map ) {
-          ap = new ActionParameter( loopParm.getName(), "property-map", loopVar, null, null ); //$NON-NLS-1$
-        } else {
-          ap = new ActionParameter( loopParm.getName(), "string", loopVar, null, null ); //$NON-NLS-1$
-        }
-        addInputParameter( loopParm.getName(), ap );
+        setLoopItem( loopParm, loopVar );
       }
       try {
         performActions( sequence, doneListener, execListener, async );
@@ -951,6 +1154,51 @@ public class RuntimeContext extends PentahoMessenger implements IRuntimeContext
     status = IRuntimeContext.RUNTIME_STATUS_SUCCESS;
   }
 
+  private void setLoopRow( final Object[] headers, final Object[] row ) {
+    IActionParameter ap;
+    for ( int columnNo = 0; columnNo < headers.length; columnNo++ ) {
+      String name = headers[columnNo].toString();
+      Object value = row[columnNo];
+      String type = null;
+      if ( value instanceof String ) {
+        type = IActionParameter.TYPE_STRING;
+      } else if ( value instanceof Date ) {
+        type = IActionParameter.TYPE_DATE;
+      } else if ( ( value instanceof Long ) || ( value instanceof Integer ) ) {
+        type = IActionParameter.TYPE_INTEGER;
+      } else if ( ( value instanceof BigDecimal ) || ( value instanceof Double ) || ( value instanceof Float ) ) {
+        type = IActionParameter.TYPE_DECIMAL;
+      } else if ( value instanceof String[] ) {
+        type = IActionParameter.TYPE_STRING;
+      } else if ( value == null ) {
+        warn( Messages.getInstance().getString( "RuntimeContext.WARN_VARIABLE_IN_LOOP_IS_NULL", name ) ); //$NON-NLS-1$
+      } else {
+        type = IActionParameter.TYPE_OBJECT;
+        warn( Messages.getInstance().getString(
+            "RuntimeContext.WARN_VARIABLE_IN_LOOP_NOT_RECOGNIZED", name, value.getClass().toString() ) ); //$NON-NLS-1$
+      }
+      // TODO make sure any previous loop values are removed
+      ap = paramManager.getInput( name );
+      if ( ap == null ) {
+        ap = new ActionParameter( name, type, value, null, null );
+        addInputParameter( name, ap );
+      } else {
+        ap.dispose();
+        ap.setValue( value );
+      }
+    }
+  }
+
+  private void setLoopItem( final IActionParameter loopParm, final Object loopVar ) {
+    IActionParameter ap;
+    if ( loopVar instanceof Map ) {
+      ap = new ActionParameter( loopParm.getName(), "property-map", loopVar, null, null ); //$NON-NLS-1$
+    } else {
+      ap = new ActionParameter( loopParm.getName(), "string", loopVar, null, null ); //$NON-NLS-1$
+    }
+    addInputParameter( loopParm.getName(), ap );
+  }
+
   private void performActions( final IActionSequence sequence, final IActionCompleteListener doneListener,
       final IExecutionListener execListener, final boolean async ) throws ActionSequenceException {
     IConditionalExecution conditional = sequence.getConditionalExecution();
@@ -1188,7 +1436,9 @@ public class RuntimeContext extends PentahoMessenger implements IRuntimeContext
           variableValue = getStringParameter( sourceValue, null );
           if ( variableValue == null ) {
             // now check the runtime data
-            variableValue = runtimeData.getStringProperty( sourceValue, null );
+            synchronized ( runtimeData ) {
+              variableValue = runtimeData.getStringProperty( sourceValue, null );
+            }
           }
           if ( variableValue != null ) {
             break;
@@ -1334,6 +1584,14 @@ public class RuntimeContext extends PentahoMessenger implements IRuntimeContext
     }
     actionParameter.setValue( output );
 
+    if ( runtimeOutputs != null ) {
+      runtimeOutputs.add( new AbstractMap.SimpleEntry<String, Object>( name, output ) );
+    } else {
+      saveOutputValue( name, output );
+    }
+  }
+
+  private void saveOutputValue( final String name, final Object output ) {
     if ( output instanceof String ) {
       runtimeData.setStringProperty( name, (String) output );
     } else if ( output instanceof Date ) {
@@ -1960,4 +2218,49 @@ public class RuntimeContext extends PentahoMessenger implements IRuntimeContext
   private void addOutputContentItem( IContentItem contentItem ) {
     generatedContentItems.add( contentItem );
   }
+
+  /**
+   * Passes what the iterations of a parallel loop report on to the loop's listeners, one at a time.
+   */
+  private static class IterationListener implements IActionCompleteListener, IExecutionListener {
+
+    private final IActionCompleteListener doneListener;
+
+    private final IExecutionListener execListener;
+
+    IterationListener( final IActionCompleteListener doneListener, final IExecutionListener execListener ) {
+      this.doneListener = doneListener;
+      this.execListener = execListener;
+    }
+
+    public synchronized void actionComplete( final IRuntimeContext runtime ) {
+      if ( doneListener != null ) {
+        doneListener.actionComplete( runtime );
+      }
+    }
+
+    public synchronized void loaded( final IRuntimeContext runtime ) {
+      if ( execListener != null ) {
+        execListener.loaded( runtime );
+      }
+    }
+
+    public synchronized void validated( final IRuntimeContext runtime ) {
+      if ( execListener != null ) {
+        execListener.validated( runtime );
+      }
+    }
+
+    public synchronized void action( final IRuntimeContext runtime, final ISolutionActionDefinition action ) {
+      if ( execListener != null ) {
+        execListener.action( runtime, action );
+      }
+    }
+
+    public synchronized void loop( final IRuntimeContext runtime, final long count ) {
+      if ( execListener != null ) {
+        execListener.loop( runtime, count );
+      }
+    }
+  }
 }
@@ -0,0 +1,218 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.platform.engine.services.solution;
+
+import org.apache.commons.logging.Log;
+import org.pentaho.platform.api.engine.IPentahoSession;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The methods {@link PojoComponent} calls on a pojo class. They are looked up once per class and bound as
+ * {@link MethodHandle}s, so executing a pojo neither scans its class nor goes through {@link Method#invoke} with a
+ * new argument array for every value.
+ * <p>
+ * Methods that cannot be bound, such as static methods or methods of classes that are not public, are still called
+ * reflectively. Either way, exceptions thrown by the pojo reach the caller unwrapped.
+ */
+class PojoBinder {
+
+  private static final ClassValue<PojoBinder> BINDERS = new ClassValue<PojoBinder>() {
+    @Override
+    protected PojoBinder computeValue( final Class<?> type ) {
+      return new PojoBinder( type );
+    }
+  };
+
+  private final Map<String, Method> getMethods = new HashMap<String, Method>();
+
+  private final Map<String, List<Method>> setMethods = new HashMap<String, List<Method>>();
+
+  private final Map<Method, MethodHandle> handles = new HashMap<Method, MethodHandle>();
+
+  private Method executeMethod;
+
+  private Method validateMethod;
+
+  private Method doneMethod;
+
+  private Method resourcesMethod;
+
+  private Method runtimeInputsMethod;
+
+  private Method runtimeOutputsMethod;
+
+  private Method loggerMethod;
+
+  private Method sessionMethod;
+
+  private Method configureMethod;
+
+  private boolean hasSetClass;
+
+  static PojoBinder forClass( final Class<?> type ) {
+    return BINDERS.get( type );
+  }
+
+  private PojoBinder( final Class<?> type ) {
+    for ( Method method : type.getMethods() ) {
+      String name = method.getName();
+      Class<?>[] paramTypes = method.getParameterTypes();
+      if ( name.equals( "getOutputs" ) ) { //$NON-NLS-1$
+        runtimeOutputsMethod = method;
+      } else if ( name.equals( "setInputs" ) ) { //$NON-NLS-1$
+        runtimeInputsMethod = method;
+      } else if ( name.equals( "setResources" ) ) { //$NON-NLS-1$
+        resourcesMethod = method;
+      } else if ( name.equals( "setLogger" ) ) { //$NON-NLS-1$
+        if ( paramTypes.length == 1 && paramTypes[0] == Log.class ) {
+          loggerMethod = method;
+        }
+      } else if ( name.equals( "setSession" ) ) { //$NON-NLS-1$
+        if ( paramTypes.length == 1 && paramTypes[0] == IPentahoSession.class ) {
+          sessionMethod = method;
+        }
+      } else if ( name.equalsIgnoreCase( "configure" ) ) { //$NON-NLS-1$
+        configureMethod = method;
+      } else if ( name.startsWith( "set" ) ) { //$NON-NLS-1$
+        name = name.substring( 3 ).toUpperCase();
+        if ( name.equals( "CLASS" ) ) { //$NON-NLS-1$
+          hasSetClass = true;
+          continue;
+        }
+        if ( !setMethods.containsKey( name ) ) {
+          setMethods.put( name, new ArrayList<Method>() );
+        }
+        setMethods.get( name ).add( method );
+      } else if ( name.startsWith( "get" ) ) { //$NON-NLS-1$
+        getMethods.put( name.substring( 3 ).toUpperCase(), method );
+      } else if ( name.equalsIgnoreCase( "execute" ) ) { //$NON-NLS-1$
+        executeMethod = method;
+      } else if ( name.equalsIgnoreCase( "validate" ) ) { //$NON-NLS-1$
+        validateMethod = method;
+      } else if ( name.equalsIgnoreCase( "done" ) ) { //$NON-NLS-1$
+        doneMethod = method;
+      } else {
+        continue;
+      }
+      bind( method );
+    }
+    for ( Map.Entry<String, List<Method>> entry : setMethods.entrySet() ) {
+      entry.setValue( Collections.unmodifiableList( entry.getValue() ) );
+    }
+  }
+
+  /**
+   * Binds an instance method taking at most one argument to a handle of the generic type (Object[, Object])Object,
+   * so that it can be invoked exactly with whatever value the component has.
+   */
+  private void bind( final Method method ) {
+    int arguments = method.getParameterTypes().length;
+    if ( Modifier.isStatic( method.getModifiers() ) || arguments > 1 ) {
+      return;
+    }
+    try {
+      MethodHandle handle = MethodHandles.publicLookup().unreflect( method );
+      handles.put( method, handle.asType( MethodType.genericMethodType( arguments + 1 ) ) );
+    } catch ( IllegalAccessException e ) {
+      // the declaring class is not public, the method will be called reflectively
+    }
+  }
+
+  Object invoke( final Method method, final Object pojo ) throws Throwable {
+    MethodHandle handle = handles.get( method );
+    if ( ( handle != null ) && ( handle.type().parameterCount() == 1 ) ) {
+      return handle.invokeExact( pojo );
+    }
+    return PojoBinder.invokeReflectively( method, pojo );
+  }
+
+  Object invoke( final Method method, final Object pojo, final Object value ) throws Throwable {
+    MethodHandle handle = handles.get( method );
+    if ( ( handle != null ) && ( handle.type().parameterCount() == 2 ) ) {
+      return handle.invokeExact( pojo, value );
+    }
+    return PojoBinder.invokeReflectively( method, pojo, value );
+  }
+
+  private static Object invokeReflectively( final Method method, final Object pojo, final Object... args )
+    throws Throwable {
+    try {
+      return method.invoke( pojo, args );
+    } catch ( InvocationTargetException e ) {
+      throw e.getCause();
+    }
+  }
+
+  Map<String, Method> getGetMethods() {
+    return Collections.unmodifiableMap( getMethods );
+  }
+
+  Map<String, List<Method>> getSetMethods() {
+    return Collections.unmodifiableMap( setMethods );
+  }
+
+  Method getExecuteMethod() {
+    return executeMethod;
+  }
+
+  Method getValidateMethod() {
+    return validateMethod;
+  }
+
+  Method getDoneMethod() {
+    return doneMethod;
+  }
+
+  Method getResourcesMethod() {
+    return resourcesMethod;
+  }
+
+  Method getRuntimeInputsMethod() {
+    return runtimeInputsMethod;
+  }
+
+  Method getRuntimeOutputsMethod() {
+    return runtimeOutputsMethod;
+  }
+
+  Method getLoggerMethod() {
+    return loggerMethod;
+  }
+
+  Method getSessionMethod() {
+    return sessionMethod;
+  }
+
+  Method getConfigureMethod() {
+    return configureMethod;
+  }
+
+  /**
+   * @return true if the class has a setClass method, which cannot be used as the class input names the pojo class
+   */
+  boolean hasSetClass() {
+    return hasSetClass;
+  }
+}
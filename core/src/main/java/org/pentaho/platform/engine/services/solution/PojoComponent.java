@@ -36,8 +36,8 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.lang.reflect.GenericSignatureFormatError;
 import java.lang.reflect.Method;
+import java.lang.reflect.UndeclaredThrowableException;
 import java.math.BigDecimal;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
@@ -84,6 +84,8 @@ public class PojoComponent extends ComponentBase {
   Method sessionMethod = null;
   Method configureMethod = null;
 
+  private PojoBinder binder;
+
   public Log getLogger() {
     return LogFactory.getLog( PojoComponent.class );
   }
@@ -92,9 +94,14 @@ public class PojoComponent extends ComponentBase {
   public void done() {
     if ( doneMethod != null && pojo != null ) {
       try {
-        doneMethod.invoke( pojo, (Object[]) null );
+        invoke( doneMethod );
       } catch ( Exception e ) {
-        e.printStackTrace();
+        error( "Could not call the done method of the pojo", e ); //$NON-NLS-1$
+      } catch ( Error e ) {
+        throw e;
+      } catch ( Throwable t ) {
+        // the bound method handle declares Throwable, though a pojo method can only throw exceptions and errors
+        throw new UndeclaredThrowableException( t );
       }
     }
   }
@@ -122,60 +129,60 @@ public class PojoComponent extends ComponentBase {
       // do some type safety. this would be the point to do automatic type conversions
       if ( value instanceof IPentahoResultSet && paramclass.equals( IPentahoResultSet.class ) ) {
         done = true;
-        method.invoke( pojo, new Object[] { (IPentahoResultSet) value } );
+        invoke( method, (IPentahoResultSet) value );
         break;
       } else if ( value instanceof java.lang.Boolean
           && ( paramclass.equals( Boolean.class ) || paramclass.equals( boolean.class ) ) ) {
         done = true;
-        method.invoke( pojo, new Object[] { value } );
+        invoke( method, value );
         break;
       } else if ( value instanceof java.lang.Integer
           && ( paramclass.equals( Integer.class ) || paramclass.equals( int.class ) ) ) {
         done = true;
-        method.invoke( pojo, new Object[] { value } );
+        invoke( method, value );
         break;
       } else if ( value instanceof java.lang.Long
           && ( paramclass.equals( Long.class ) || paramclass.equals( long.class ) ) ) {
         done = true;
-        method.invoke( pojo, new Object[] { value } );
+        invoke( method, value );
         break;
       } else if ( value instanceof java.lang.Double
           && ( paramclass.equals( Double.class ) || paramclass.equals( double.class ) ) ) {
         done = true;
-        method.invoke( pojo, new Object[] { value } );
+        invoke( method, value );
         break;
       } else if ( value instanceof java.lang.Float
           && ( paramclass.equals( Float.class ) || paramclass.equals( float.class ) ) ) {
         done = true;
-        method.invoke( pojo, new Object[] { value } );
+        invoke( method, value );
         break;
       } else if ( value instanceof IPentahoStreamSource && paramclass.equals( IPentahoStreamSource.class ) ) {
         done = true;
-        method.invoke( pojo, new Object[] { value } );
+        invoke( method, value );
         break;
       } else if ( value instanceof Date && paramclass.equals( Date.class ) ) {
         done = true;
-        method.invoke( pojo, new Object[] { value } );
+        invoke( method, value );
         break;
       } else if ( value instanceof BigDecimal && paramclass.equals( BigDecimal.class ) ) {
         done = true;
-        method.invoke( pojo, new Object[] { value } );
+        invoke( method, value );
         break;
       } else if ( value instanceof IContentItem && paramclass.equals( IContentItem.class ) ) {
         done = true;
-        method.invoke( pojo, new Object[] { value } );
+        invoke( method, value );
         break;
       } else if ( value instanceof IContentItem && paramclass.equals( String.class ) ) {
         done = true;
-        method.invoke( pojo, new Object[] { value.toString() } );
+        invoke( method, value.toString() );
         break;
       } else if ( paramclass.equals( IPentahoSession.class ) ) {
         done = true;
-        method.invoke( pojo, new Object[] { (IPentahoSession) value } );
+        invoke( method, (IPentahoSession) value );
         break;
       } else if ( paramclass.equals( Log.class ) ) {
         done = true;
-        method.invoke( pojo, new Object[] { (Log) value } );
+        invoke( method, (Log) value );
         break;
       }
     }
@@ -183,7 +190,7 @@ public class PojoComponent extends ComponentBase {
     if ( !done ) {
       // Try invoking the first instance with what we have
       try {
-        methods.get( 0 ).invoke( pojo, new Object[] { value } );
+        invoke( methods.get( 0 ), value );
       } catch ( Exception ex ) {
         throw new IllegalArgumentException(
             "No implementation of method \"" + Method.class.getName() + "\" takes a " + value.getClass() ); //$NON-NLS-1$ //$NON-NLS-2$
@@ -208,7 +215,7 @@ public class PojoComponent extends ComponentBase {
       Class<?> paramclass = paramClasses[0];
       if ( paramclass.equals( String.class ) ) {
         done = true;
-        method.invoke( pojo, new Object[] { value } );
+        invoke( method, value );
         break;
       }
     }
@@ -224,27 +231,27 @@ public class PojoComponent extends ComponentBase {
         Class<?> paramclass = paramClasses[0];
         if ( paramclass.equals( Boolean.class ) || paramclass.equals( boolean.class ) ) {
           done = true;
-          method.invoke( pojo, new Object[] { new Boolean( value ) } );
+          invoke( method, new Boolean( value ) );
           break;
         } else if ( paramclass.equals( Integer.class ) || paramclass.equals( int.class ) ) {
           done = true;
-          method.invoke( pojo, new Object[] { new Integer( value ) } );
+          invoke( method, new Integer( value ) );
           break;
         } else if ( paramclass.equals( Long.class ) || paramclass.equals( long.class ) ) {
           done = true;
-          method.invoke( pojo, new Object[] { new Long( value ) } );
+          invoke( method, new Long( value ) );
           break;
         } else if ( paramclass.equals( Double.class ) || paramclass.equals( double.class ) ) {
           done = true;
-          method.invoke( pojo, new Object[] { new Double( value ) } );
+          invoke( method, new Double( value ) );
           break;
         } else if ( paramclass.equals( Float.class ) || paramclass.equals( float.class ) ) {
           done = true;
-          method.invoke( pojo, new Object[] { new Float( value ) } );
+          invoke( method, new Float( value ) );
           break;
         } else if ( paramclass.equals( BigDecimal.class ) ) {
           done = true;
-          method.invoke( pojo, new Object[] { new BigDecimal( value ) } );
+          invoke( method, new BigDecimal( value ) );
           break;
         }
       }
@@ -254,6 +261,21 @@ public class PojoComponent extends ComponentBase {
     }
   }
 
+  private PojoBinder getBinder() {
+    if ( binder == null ) {
+      binder = PojoBinder.forClass( pojo.getClass() );
+    }
+    return binder;
+  }
+
+  private Object invoke( Method method ) throws Throwable {
+    return getBinder().invoke( method, pojo );
+  }
+
+  private Object invoke( Method method, Object value ) throws Throwable {
+    return getBinder().invoke( method, pojo, value );
+  }
+
   @SuppressWarnings( { "unchecked" } )
   @Override
   protected boolean executeAction() throws Throwable {
@@ -266,7 +288,7 @@ public class PojoComponent extends ComponentBase {
     if ( getMethods.containsKey( "CONFIGSETTINGSPATHS" ) && configureMethod != null ) { //$NON-NLS-1$
 
       Method method = getMethods.get( "CONFIGSETTINGSPATHS" ); //$NON-NLS-1$
-      Set<String> settingsPaths = (Set<String>) method.invoke( pojo, new Object[] {} );
+      Set<String> settingsPaths = (Set<String>) invoke( method );
       Iterator<String> keys = settingsPaths.iterator();
       Map<String, String> settings = new HashMap<String, String>();
       SystemSettingsParameterProvider params = new SystemSettingsParameterProvider();
@@ -277,7 +299,7 @@ public class PojoComponent extends ComponentBase {
           settings.put( path, value );
         }
       }
-      configureMethod.invoke( pojo, new Object[] { settings } );
+      invoke( configureMethod, settings );
     }
 
     // set the PentahoSession
@@ -375,12 +397,12 @@ public class PojoComponent extends ComponentBase {
 
     if ( resourceMap.size() > 0 && resourcesMethod != null ) {
       // call the resources setter
-      resourcesMethod.invoke( pojo, new Object[] { resourceMap } );
+      invoke( resourcesMethod, resourceMap );
     }
 
     if ( inputMap.size() > 0 && runtimeInputsMethod != null ) {
       // call the generic input setter
-      runtimeInputsMethod.invoke( pojo, new Object[] { inputMap } );
+      invoke( runtimeInputsMethod, inputMap );
     }
 
     if ( getOutputNames().contains( "outputstream" ) && setMethods.containsKey( "OUTPUTSTREAM" ) //$NON-NLS-1$ //$NON-NLS-2$
@@ -388,7 +410,7 @@ public class PojoComponent extends ComponentBase {
       // get the mime-type
       // Get the first method to match
       Method method = getMethods.get( "MIMETYPE" ); //$NON-NLS-1$
-      String mimeType = (String) method.invoke( pojo, new Object[] {} );
+      String mimeType = (String) invoke( method );
       String mappedOutputName = "outputstream"; //$NON-NLS-1$
       if ( ( getActionDefinition() != null ) && ( getActionDefinition().getOutput( "outputstream" ) != null ) ) { //$NON-NLS-1$
         mappedOutputName = getActionDefinition().getOutput( "outputstream" ).getPublicName(); //$NON-NLS-1$
@@ -405,11 +427,11 @@ public class PojoComponent extends ComponentBase {
       // set the output stream
       OutputStream out = contentItem.getOutputStream( getActionName() );
       method = setMethods.get( "OUTPUTSTREAM" ).get( 0 ); //$NON-NLS-1$
-      method.invoke( pojo, new Object[] { out } );
+      invoke( method, out );
     }
 
     if ( validateMethod != null ) {
-      Object obj = validateMethod.invoke( pojo, (Object[]) null );
+      Object obj = invoke( validateMethod );
       if ( obj instanceof Boolean ) {
         Boolean ok = (Boolean) obj;
         if ( !ok ) {
@@ -421,7 +443,7 @@ public class PojoComponent extends ComponentBase {
     // now execute the pojo
     Boolean result = Boolean.FALSE;
     if ( executeMethod != null ) {
-      result = (Boolean) executeMethod.invoke( pojo, new Object[] {} );
+      result = (Boolean) invoke( executeMethod );
     } else {
       // we can only assume we are ok so far
       result = Boolean.TRUE;
@@ -432,7 +454,7 @@ public class PojoComponent extends ComponentBase {
     // first get the runtime outputs
     Map<String, Object> outputMap = new HashMap<String, Object>();
     if ( runtimeOutputsMethod != null ) {
-      outputMap = (Map<String, Object>) runtimeOutputsMethod.invoke( pojo, new Object[] {} );
+      outputMap = (Map<String, Object>) invoke( runtimeOutputsMethod );
     }
     it = outputNames.iterator();
     while ( it.hasNext() ) {
@@ -444,7 +466,7 @@ public class PojoComponent extends ComponentBase {
         IActionParameter param = getOutputItem( name );
         Method method = getMethods.get( name.toUpperCase() );
         if ( method != null ) {
-          Object value = method.invoke( pojo, new Object[] {} );
+          Object value = invoke( method );
           param.setValue( value );
         } else {
           Object value = outputMap.get( name );
@@ -499,49 +521,21 @@ public class PojoComponent extends ComponentBase {
     if ( pojo != null ) {
       // By the time we get here, we've got our class
       try {
-        Method[] methods = pojo.getClass().getMethods();
-        // create a method map
-        for ( Method method : methods ) {
-          String name = method.getName();
-          Class<?>[] paramTypes = method.getParameterTypes();
-          if ( name.equals( "getOutputs" ) ) { //$NON-NLS-1$
-            runtimeOutputsMethod = method;
-          } else if ( name.equals( "setInputs" ) ) { //$NON-NLS-1$
-            runtimeInputsMethod = method;
-          } else if ( name.equals( "setResources" ) ) { //$NON-NLS-1$
-            resourcesMethod = method;
-          } else if ( name.equals( "setLogger" ) ) { //$NON-NLS-1$
-            if ( paramTypes.length == 1 && paramTypes[0] == Log.class ) {
-              loggerMethod = method;
-            }
-          } else if ( name.equals( "setSession" ) ) { //$NON-NLS-1$
-            if ( paramTypes.length == 1 && paramTypes[0] == IPentahoSession.class ) {
-              sessionMethod = method;
-            }
-          } else if ( name.equalsIgnoreCase( "configure" ) ) { //$NON-NLS-1$
-            configureMethod = method;
-          } else if ( name.startsWith( "set" ) ) { //$NON-NLS-1$
-            name = name.substring( 3 ).toUpperCase();
-            if ( name.equals( "CLASS" ) ) { //$NON-NLS-1$
-              warn( Messages.getInstance().getString( "PojoComponent.CANNOT_USE_SETCLASS" ) ); //$NON-NLS-1$
-            } else {
-              if ( !setMethods.containsKey( name ) ) {
-                setMethods.put( name, new ArrayList<Method>() );
-              }
-
-              setMethods.get( name ).add( method );
-            }
-          } else if ( name.startsWith( "get" ) ) { //$NON-NLS-1$
-            name = name.substring( 3 ).toUpperCase();
-
-            getMethods.put( name, method );
-          } else if ( name.equalsIgnoreCase( "execute" ) ) { //$NON-NLS-1$
-            executeMethod = method;
-          } else if ( name.equalsIgnoreCase( "validate" ) ) { //$NON-NLS-1$
-            validateMethod = method;
-          } else if ( name.equalsIgnoreCase( "done" ) ) { //$NON-NLS-1$
-            doneMethod = method;
-          }
+        // the methods are looked up once per class
+        binder = PojoBinder.forClass( pojo.getClass() );
+        getMethods = binder.getGetMethods();
+        setMethods = binder.getSetMethods();
+        executeMethod = binder.getExecuteMethod();
+        validateMethod = binder.getValidateMethod();
+        doneMethod = binder.getDoneMethod();
+        resourcesMethod = binder.getResourcesMethod();
+        runtimeInputsMethod = binder.getRuntimeInputsMethod();
+        runtimeOutputsMethod = binder.getRuntimeOutputsMethod();
+        loggerMethod = binder.getLoggerMethod();
+        sessionMethod = binder.getSessionMethod();
+        configureMethod = binder.getConfigureMethod();
+        if ( binder.hasSetClass() ) {
+          warn( Messages.getInstance().getString( "PojoComponent.CANNOT_USE_SETCLASS" ) ); //$NON-NLS-1$
         }
 
         ok = true;
@@ -561,6 +555,7 @@ public class PojoComponent extends ComponentBase {
 
   public void setPojo( Object pojo ) {
     this.pojo = pojo;
+    this.binder = null;
   }
 
 }
@@ -15,6 +15,8 @@ package org.pentaho.platform.plugin.action.kettle;
 
 
 import org.apache.commons.dbcp2.PoolingDataSource;
+import org.apache.commons.pool2.ObjectPool;
+import org.apache.commons.pool2.impl.GenericObjectPool;
 import org.pentaho.database.IDatabaseDialect;
 import org.pentaho.database.model.IDatabaseConnection;
 import org.pentaho.di.core.database.CachedManagedDataSourceInterface;
@@ -110,4 +112,12 @@ public class PoolingManagedDataSource extends PoolingDataSource implements Cache
     public void expire() {
         isExpired = true;
     }
+
+    /**
+     * @return the pool connections are borrowed from, or <code>null</code> if it is not a generic pool
+     */
+    public GenericObjectPool<?> getConnectionPool() {
+        ObjectPool<?> pool = getPool();
+        return pool instanceof GenericObjectPool ? (GenericObjectPool<?>) pool : null;
+    }
 }
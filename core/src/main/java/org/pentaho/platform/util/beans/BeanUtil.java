@@ -15,12 +15,14 @@ package org.pentaho.platform.util.beans;
 
 import org.apache.commons.beanutils.BeanUtilsBean;
 import org.apache.commons.beanutils.ConvertUtilsBean;
+import org.apache.commons.beanutils.DynaBean;
 import org.apache.commons.beanutils.PropertyUtilsBean;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.pentaho.platform.util.messages.Messages;
 
 import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.InvocationTargetException;
 import java.text.MessageFormat;
 import java.util.Map;
@@ -41,9 +43,20 @@ public class BeanUtil {
 
   private static final Log logger = LogFactory.getLog( BeanUtil.class );
 
-  private PropertyUtilsBean propUtil = new PropertyUtilsBean();
+  //
+  // Configure a bean util that throws exceptions during type conversion. The bean utils are shared so that the
+  // property descriptors they look up are cached across beans.
+  //
+  private static final ConvertUtilsBean convertUtil = new ConvertUtilsBean();
 
-  private BeanUtilsBean typeConvertingBeanUtil;
+  private static final PropertyUtilsBean propUtil = new PropertyUtilsBean();
+
+  private static final BeanUtilsBean typeConvertingBeanUtil;
+
+  static {
+    convertUtil.register( true, true, 0 );
+    typeConvertingBeanUtil = new BeanUtilsBean( convertUtil, propUtil );
+  }
 
   protected Object bean;
 
@@ -61,18 +74,35 @@ public class BeanUtil {
    */
   public BeanUtil( final Object targetBean ) {
     this.bean = targetBean;
-    //
-    // Configure a bean util that throws exceptions during type conversion
-    //
-    ConvertUtilsBean convertUtil = new ConvertUtilsBean();
-    convertUtil.register( true, true, 0 );
-
-    typeConvertingBeanUtil = new BeanUtilsBean( convertUtil );
     setDefaultCallback( new EagerFailingCallback() );
   }
 
+  /**
+   * @return the bound properties of the bean's class, or <code>null</code> if its properties are not plain Java
+   *         Bean properties
+   */
+  private PropertyBinder getBinder() {
+    return ( ( bean == null ) || ( bean instanceof DynaBean ) ) ? null : PropertyBinder.forClass( bean.getClass() );
+  }
+
+  /**
+   * A value can go straight to the bound setter when commons-beanutils would pass it on unchanged: it is exactly of
+   * the (boxed) property type, or it is assignable to a property type no converter is registered for.
+   */
+  private static boolean needsConversion( final Class<?> propertyType, final Object value ) {
+    if ( ( propertyType == null ) || ( value == null ) || propertyType.isArray() ) {
+      return true;
+    }
+    if ( propertyType.isPrimitive() ) {
+      return value.getClass() != MethodType.methodType( propertyType ).wrap().returnType();
+    }
+    return ( value.getClass() != propertyType )
+        && ( !propertyType.isInstance( value ) || ( convertUtil.lookup( propertyType ) != null ) );
+  }
+
   public boolean isReadable( String propertyName ) {
-    return propUtil.isReadable( bean, propertyName );
+    PropertyBinder binder = getBinder();
+    return ( ( binder != null ) && binder.isReadable( propertyName ) ) || propUtil.isReadable( bean, propertyName );
   }
 
   public Object getValue( String propertyName ) throws IllegalAccessException, InvocationTargetException,
@@ -80,6 +110,10 @@ public class BeanUtil {
     if ( logger.isTraceEnabled() ) {
       logger.trace( MessageFormat.format( "getting property \"{0}\" from bean \"{1}\"", propertyName, bean ) ); //$NON-NLS-1$
     }
+    PropertyBinder binder = getBinder();
+    if ( ( binder != null ) && binder.isReadable( propertyName ) ) {
+      return binder.getValue( bean, propertyName );
+    }
     return propUtil.getSimpleProperty( bean, propertyName );
   }
 
@@ -99,6 +133,10 @@ public class BeanUtil {
    * @return <code>true</code> if the bean property can be written to
    */
   public boolean isWriteable( String propertyName ) {
+    PropertyBinder binder = getBinder();
+    if ( ( binder != null ) && binder.isWriteable( propertyName ) ) {
+      return true;
+    }
     try {
       return propUtil.isWriteable( bean, propertyName )
           || ( propUtil.getResolver().isIndexed( propertyName ) && propUtil.isReadable( bean, propertyName ) );
@@ -247,8 +285,13 @@ public class BeanUtil {
         val = ( (ValueGenerator) value ).getValue( propertyName );
       }
       try {
-        // trying our best to set the input value to the type specified by the action bean
-        typeConvertingBeanUtil.copyProperty( bean, propertyName, val );
+        PropertyBinder binder = getBinder();
+        if ( ( binder != null ) && !needsConversion( binder.getWriteType( propertyName ), val ) ) {
+          binder.setValue( bean, propertyName, val );
+        } else {
+          // trying our best to set the input value to the type specified by the action bean
+          typeConvertingBeanUtil.copyProperty( bean, propertyName, val );
+        }
       } catch ( Exception e ) {
         String propertyType = ""; //$NON-NLS-1$
         try {
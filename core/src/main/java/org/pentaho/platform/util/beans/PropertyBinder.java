@@ -0,0 +1,139 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.platform.util.beans;
+
+import org.apache.commons.beanutils.MethodUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.beans.IndexedPropertyDescriptor;
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The simple properties of a bean class, with their read and write methods bound once per class as
+ * {@link MethodHandle}s. {@link BeanUtil} uses them to get and set values without looking the property up and
+ * invoking it reflectively every time.
+ * <p>
+ * Only properties whose accessors are reachable through public types are bound; indexed, mapped and nested
+ * properties are left to commons-beanutils.
+ */
+final class PropertyBinder {
+
+  private static final Log logger = LogFactory.getLog( PropertyBinder.class );
+
+  private static final MethodType READER_TYPE = MethodType.methodType( Object.class, Object.class );
+
+  private static final MethodType WRITER_TYPE = MethodType.methodType( void.class, Object.class, Object.class );
+
+  private static final ClassValue<PropertyBinder> BINDERS = new ClassValue<PropertyBinder>() {
+    @Override
+    protected PropertyBinder computeValue( final Class<?> type ) {
+      return new PropertyBinder( type );
+    }
+  };
+
+  private final Map<String, MethodHandle> readers = new HashMap<String, MethodHandle>();
+
+  private final Map<String, MethodHandle> writers = new HashMap<String, MethodHandle>();
+
+  private final Map<String, Class<?>> writeTypes = new HashMap<String, Class<?>>();
+
+  static PropertyBinder forClass( final Class<?> type ) {
+    return BINDERS.get( type );
+  }
+
+  private PropertyBinder( final Class<?> type ) {
+    PropertyDescriptor[] descriptors;
+    try {
+      descriptors = Introspector.getBeanInfo( type ).getPropertyDescriptors();
+    } catch ( IntrospectionException e ) {
+      logger.debug( "Could not introspect " + type.getName() + ", its properties will not be bound", e ); //$NON-NLS-1$ //$NON-NLS-2$
+      return;
+    }
+    MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+    for ( PropertyDescriptor descriptor : descriptors ) {
+      if ( descriptor instanceof IndexedPropertyDescriptor ) {
+        continue;
+      }
+      String name = descriptor.getName();
+      try {
+        Method reader = MethodUtils.getAccessibleMethod( type, descriptor.getReadMethod() );
+        if ( reader != null ) {
+          readers.put( name, lookup.unreflect( reader ).asType( READER_TYPE ) );
+        }
+        Method writer = MethodUtils.getAccessibleMethod( type, descriptor.getWriteMethod() );
+        if ( writer != null ) {
+          writers.put( name, lookup.unreflect( writer ).asType( WRITER_TYPE ) );
+          writeTypes.put( name, writer.getParameterTypes()[0] );
+        }
+      } catch ( IllegalAccessException e ) {
+        logger.debug( "Could not bind property \"" + name + "\" of " + type.getName(), e ); //$NON-NLS-1$ //$NON-NLS-2$
+      }
+    }
+  }
+
+  boolean isReadable( final String propertyName ) {
+    return readers.containsKey( propertyName );
+  }
+
+  boolean isWriteable( final String propertyName ) {
+    return writers.containsKey( propertyName );
+  }
+
+  /**
+   * @return the type the setter of a bound property takes, or <code>null</code> if the property is not bound
+   */
+  Class<?> getWriteType( final String propertyName ) {
+    return writeTypes.get( propertyName );
+  }
+
+  /**
+   * Reads a bound property.
+   * 
+   * @throws InvocationTargetException
+   *           wrapping whatever the getter threw
+   */
+  Object getValue( final Object bean, final String propertyName ) throws InvocationTargetException {
+    MethodHandle reader = readers.get( propertyName );
+    try {
+      return reader.invokeExact( bean );
+    } catch ( Throwable t ) {
+      throw new InvocationTargetException( t );
+    }
+  }
+
+  /**
+   * Writes a bound property. The value must be of the type the setter takes, there is no conversion.
+   * 
+   * @throws InvocationTargetException
+   *           wrapping whatever the setter threw
+   */
+  void setValue( final Object bean, final String propertyName, final Object value ) throws InvocationTargetException {
+    MethodHandle writer = writers.get( propertyName );
+    try {
+      writer.invokeExact( bean, value );
+    } catch ( Throwable t ) {
+      throw new InvocationTargetException( t );
+    }
+  }
+}
@@ -0,0 +1,95 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.platform.engine.services;
+
+import org.junit.Test;
+import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+import org.pentaho.platform.engine.services.actionsequence.CompiledActionSequence;
+
+import java.util.Date;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+
+public class ActionSequenceCacheTest {
+
+  private final CompiledActionSequence compiled = mock( CompiledActionSequence.class );
+
+  @Test
+  public void testHitWhileFileIsUnchanged() {
+    ActionSequenceCache cache = new ActionSequenceCache( 10, 0 );
+    cache.put( file( "1", "1.0", 1000L ), Locale.US, compiled ); //$NON-NLS-1$ //$NON-NLS-2$
+
+    assertSame( compiled, cache.get( file( "1", "1.0", 1000L ), Locale.US ) ); //$NON-NLS-1$ //$NON-NLS-2$
+    assertNull( cache.get( file( "1", "1.0", 1000L ), Locale.GERMANY ) ); //$NON-NLS-1$ //$NON-NLS-2$
+    assertNull( cache.get( file( "1", "1.1", 1000L ), Locale.US ) ); //$NON-NLS-1$ //$NON-NLS-2$
+  }
+
+  @Test
+  public void testModifiedFileIsEvicted() {
+    ActionSequenceCache cache = new ActionSequenceCache( 10, 0 );
+    cache.put( file( "1", null, 1000L ), Locale.US, compiled ); //$NON-NLS-1$
+
+    assertNull( cache.get( file( "1", null, 2000L ), Locale.US ) ); //$NON-NLS-1$
+    assertEquals( 0, cache.size() );
+  }
+
+  @Test
+  public void testEntriesExpire() throws Exception {
+    ActionSequenceCache cache = new ActionSequenceCache( 10, 1 );
+    cache.put( file( "1", "1.0", 1000L ), Locale.US, compiled ); //$NON-NLS-1$ //$NON-NLS-2$
+    Thread.sleep( 5 );
+
+    assertNull( cache.get( file( "1", "1.0", 1000L ), Locale.US ) ); //$NON-NLS-1$ //$NON-NLS-2$
+  }
+
+  @Test
+  public void testLeastRecentlyUsedEntriesAreDropped() {
+    ActionSequenceCache cache = new ActionSequenceCache( 2, 0 );
+    cache.put( file( "1", null, 1000L ), Locale.US, compiled ); //$NON-NLS-1$
+    cache.put( file( "2", null, 1000L ), Locale.US, compiled ); //$NON-NLS-1$
+    cache.get( file( "1", null, 1000L ), Locale.US ); //$NON-NLS-1$
+    cache.put( file( "3", null, 1000L ), Locale.US, compiled ); //$NON-NLS-1$
+
+    assertSame( compiled, cache.get( file( "1", null, 1000L ), Locale.US ) ); //$NON-NLS-1$
+    assertNull( cache.get( file( "2", null, 1000L ), Locale.US ) ); //$NON-NLS-1$
+  }
+
+  @Test
+  public void testInvalidateRemovesAllVersionsAndLocales() {
+    ActionSequenceCache cache = new ActionSequenceCache( 10, 0 );
+    cache.put( file( "1", "1.0", 1000L ), Locale.US, compiled ); //$NON-NLS-1$ //$NON-NLS-2$
+    cache.put( file( "1", "1.1", 1000L ), Locale.GERMANY, compiled ); //$NON-NLS-1$ //$NON-NLS-2$
+    cache.put( file( "2", "1.0", 1000L ), Locale.US, compiled ); //$NON-NLS-1$ //$NON-NLS-2$
+
+    cache.invalidate( "1" ); //$NON-NLS-1$
+    assertEquals( 1, cache.size() );
+  }
+
+  @Test
+  public void testDisabled() {
+    ActionSequenceCache cache = new ActionSequenceCache( 0, 0 );
+    cache.put( file( "1", null, 1000L ), Locale.US, compiled ); //$NON-NLS-1$
+
+    assertNull( cache.get( file( "1", null, 1000L ), Locale.US ) ); //$NON-NLS-1$
+  }
+
+  private static RepositoryFile file( final String id, final String versionId, final long lastModified ) {
+    return new RepositoryFile.Builder( id, "test.xaction" ).versionId( versionId ) //$NON-NLS-1$
+        .lastModificationDate( new Date( lastModified ) ).build();
+  }
+}
@@ -0,0 +1,216 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.platform.engine.services;
+
+import org.junit.Test;
+import org.pentaho.platform.api.engine.AuditException;
+import org.pentaho.platform.api.engine.IAuditEntry;
+import org.pentaho.platform.engine.services.audit.AsyncAuditEntry;
+import org.pentaho.platform.engine.services.audit.AuditRecord;
+import org.pentaho.platform.engine.services.audit.IBatchAuditEntry;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@SuppressWarnings( "nls" )
+public class AsyncAuditEntryTest {
+
+  @Test
+  public void testWritesAllEntriesInOrder() throws Exception {
+    RecordingBatchEntry batchEntry = new RecordingBatchEntry();
+    AsyncAuditEntry auditEntry = new AsyncAuditEntry( batchEntry );
+    auditEntry.setBatchSize( 16 );
+    auditEntry.setFlushInterval( 10 );
+
+    for ( int i = 0; i < 100; i++ ) {
+      audit( auditEntry, i );
+    }
+    auditEntry.shutdown();
+
+    assertEquals( 100, batchEntry.records.size() );
+    for ( int i = 0; i < 100; i++ ) {
+      assertEquals( String.valueOf( i ), batchEntry.records.get( i ).getJobId() );
+    }
+    assertEquals( 100, auditEntry.getQueuedCount() );
+    assertEquals( 100, auditEntry.getWrittenCount() );
+    assertEquals( 0, auditEntry.getPendingCount() );
+    assertTrue( auditEntry.getBatchCount() <= 100 );
+    assertTrue( batchEntry.closed );
+  }
+
+  @Test
+  public void testDropsEntriesWhenFull() throws Exception {
+    RecordingBatchEntry batchEntry = new RecordingBatchEntry();
+    batchEntry.release = new CountDownLatch( 1 );
+    AsyncAuditEntry auditEntry = new AsyncAuditEntry( batchEntry );
+    auditEntry.setCapacity( 4 );
+    auditEntry.setBatchSize( 1 );
+    auditEntry.setBackPressurePolicy( AsyncAuditEntry.BackPressurePolicy.DROP );
+
+    audit( auditEntry, 0 );
+    // the writer is now stuck on the first entry
+    assertTrue( batchEntry.writing.await( 5, TimeUnit.SECONDS ) );
+    for ( int i = 1; i < 20; i++ ) {
+      audit( auditEntry, i );
+    }
+    batchEntry.release.countDown();
+    auditEntry.shutdown();
+
+    assertEquals( 15, auditEntry.getDroppedCount() );
+    assertEquals( 5, auditEntry.getWrittenCount() );
+    assertEquals( 5, batchEntry.records.size() );
+  }
+
+  @Test
+  public void testCallerRunsWhenFull() throws Exception {
+    RecordingBatchEntry batchEntry = new RecordingBatchEntry();
+    batchEntry.release = new CountDownLatch( 1 );
+    AsyncAuditEntry auditEntry = new AsyncAuditEntry( batchEntry );
+    auditEntry.setCapacity( 4 );
+    auditEntry.setBatchSize( 1 );
+    auditEntry.setBackPressurePolicy( AsyncAuditEntry.BackPressurePolicy.CALLER_RUNS );
+
+    audit( auditEntry, 0 );
+    assertTrue( batchEntry.writing.await( 5, TimeUnit.SECONDS ) );
+    for ( int i = 1; i < 20; i++ ) {
+      audit( auditEntry, i );
+    }
+    assertEquals( 15, auditEntry.getCallerRunsCount() );
+    batchEntry.release.countDown();
+    auditEntry.shutdown();
+
+    assertEquals( 0, auditEntry.getDroppedCount() );
+    assertEquals( 20, auditEntry.getWrittenCount() );
+    assertEquals( 20, batchEntry.records.size() );
+  }
+
+  @Test
+  public void testCallsPlainEntryOncePerEntry() throws Exception {
+    IAuditEntry plainEntry = mock( IAuditEntry.class );
+    AsyncAuditEntry auditEntry = new AsyncAuditEntry( plainEntry );
+
+    audit( auditEntry, 1 );
+    audit( auditEntry, 2 );
+    auditEntry.shutdown();
+
+    verify( plainEntry, times( 1 ) ).auditAll( eq( "1" ), any(), any(), any(), any(), any(), any(), any(), any(),
+        anyDouble() );
+    verify( plainEntry, times( 1 ) ).auditAll( eq( "2" ), any(), any(), any(), any(), any(), any(), any(), any(),
+        anyDouble() );
+    assertEquals( 2, auditEntry.getWrittenCount() );
+  }
+
+  @Test
+  public void testKeepsWritingAfterFailure() throws Exception {
+    RecordingBatchEntry batchEntry = new RecordingBatchEntry();
+    batchEntry.failures = 1;
+    AsyncAuditEntry auditEntry = new AsyncAuditEntry( batchEntry );
+    auditEntry.setBatchSize( 1 );
+
+    audit( auditEntry, 0 );
+    for ( int i = 0; i < 500 && auditEntry.getFailedCount() == 0; i++ ) {
+      Thread.sleep( 10 );
+    }
+    audit( auditEntry, 1 );
+    auditEntry.shutdown();
+
+    assertEquals( 1, auditEntry.getFailedCount() );
+    assertEquals( 1, auditEntry.getWrittenCount() );
+    assertEquals( Collections.singletonList( "1" ), batchEntry.getJobIds() );
+  }
+
+  @Test
+  public void testWritesFromCallerAfterShutdown() throws Exception {
+    RecordingBatchEntry batchEntry = new RecordingBatchEntry();
+    AsyncAuditEntry auditEntry = new AsyncAuditEntry( batchEntry );
+
+    audit( auditEntry, 0 );
+    auditEntry.shutdown();
+    audit( auditEntry, 1 );
+
+    assertEquals( 2, batchEntry.records.size() );
+    assertEquals( 2, auditEntry.getWrittenCount() );
+  }
+
+  private static void audit( final AsyncAuditEntry auditEntry, final int jobId ) {
+    auditEntry.auditAll( String.valueOf( jobId ), "instId", "objId", "objType", "actor", "messageType", "messageName",
+        "messageTxtValue", BigDecimal.ONE, 1 );
+  }
+
+  private static class RecordingBatchEntry implements IBatchAuditEntry {
+
+    private final List<AuditRecord> records = Collections.synchronizedList( new ArrayList<>() );
+
+    private final CountDownLatch writing = new CountDownLatch( 1 );
+
+    private CountDownLatch release;
+
+    private int failures;
+
+    private volatile boolean closed;
+
+    @Override
+    public void auditAll( final String jobId, final String instId, final String objId, final String objType,
+        final String actor, final String messageType, final String messageName, final String messageTxtValue,
+        final BigDecimal messageNumValue, final double duration ) throws AuditException {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void auditBatch( final List<AuditRecord> batch ) throws AuditException {
+      writing.countDown();
+      // only hold up the writer, not callers writing for themselves
+      if ( release != null && "pentaho-audit-writer".equals( Thread.currentThread().getName() ) ) {
+        try {
+          release.await( 5, TimeUnit.SECONDS );
+        } catch ( InterruptedException e ) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      synchronized ( this ) {
+        if ( failures > 0 ) {
+          failures--;
+          throw new AuditException( "failed" );
+        }
+      }
+      records.addAll( batch );
+    }
+
+    @Override
+    public void close() {
+      closed = true;
+    }
+
+    private List<String> getJobIds() {
+      List<String> jobIds = new ArrayList<>();
+      for ( AuditRecord record : records ) {
+        jobIds.add( record.getJobId() );
+      }
+      return jobIds;
+    }
+  }
+}
@@ -0,0 +1,175 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.platform.engine.services.actionsequence;
+
+import org.dom4j.Document;
+import org.dom4j.DocumentHelper;
+import org.dom4j.Element;
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.platform.api.engine.IActionParameter;
+import org.pentaho.platform.api.engine.IActionSequence;
+import org.pentaho.platform.api.engine.ILogger;
+import org.pentaho.platform.api.engine.ISolutionActionDefinition;
+import org.pentaho.platform.engine.core.system.StandaloneSession;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CompiledActionSequenceTest {
+
+  private static final String XACTION = "<action-sequence>" //$NON-NLS-1$
+      + "<title>Test</title>" //$NON-NLS-1$
+      + "<inputs><region type=\"string\"><default-value>East</default-value>" //$NON-NLS-1$
+      + "<sources><request>region</request></sources></region>" //$NON-NLS-1$
+      + "<regions type=\"string-list\"><default-value><list-item>East</list-item><list-item>West</list-item>" //$NON-NLS-1$
+      + "</default-value></regions></inputs>" //$NON-NLS-1$
+      + "<outputs><result type=\"string\"/></outputs>" //$NON-NLS-1$
+      + "<actions>" //$NON-NLS-1$
+      + "<action-definition><component-name>First</component-name>" //$NON-NLS-1$
+      + "<action-inputs><region type=\"string\"/></action-inputs>" //$NON-NLS-1$
+      + "<component-definition><query>select {region}</query></component-definition></action-definition>" //$NON-NLS-1$
+      + "<actions loop-on=\"regions\">" //$NON-NLS-1$
+      + "<action-definition><component-name>Second</component-name></action-definition>" //$NON-NLS-1$
+      + "</actions>" //$NON-NLS-1$
+      + "</actions></action-sequence>"; //$NON-NLS-1$
+
+  private CompiledActionSequence compiled;
+
+  @Before
+  public void setUp() throws Exception {
+    Document document = DocumentHelper.parseText( XACTION );
+    compiled = CompiledActionSequence.compile( document, "/public/test.xaction", //$NON-NLS-1$
+        new StandaloneSession( "test" ), null ); //$NON-NLS-1$
+    assertNotNull( compiled );
+  }
+
+  @Test
+  public void testNotAnActionSequence() throws Exception {
+    assertNull( CompiledActionSequence.compile( DocumentHelper.parseText( "<report/>" ), "/public/test.xaction", //$NON-NLS-1$ //$NON-NLS-2$
+        new StandaloneSession( "test" ), null ) ); //$NON-NLS-1$
+  }
+
+  @Test
+  public void testInstancesHaveTheCompiledStructure() {
+    IActionSequence sequence = compiled.newInstance( ILogger.DEBUG );
+
+    assertEquals( "Test", sequence.getTitle() ); //$NON-NLS-1$
+    assertEquals( "test.xaction", sequence.getSequenceName() ); //$NON-NLS-1$
+    assertEquals( 2, sequence.getInputDefinitions().size() );
+    assertEquals( 1, sequence.getOutputDefinitions().size() );
+
+    List actions = sequence.getActionDefinitions();
+    assertEquals( 2, actions.size() );
+    ISolutionActionDefinition first = (ISolutionActionDefinition) actions.get( 0 );
+    assertEquals( "First", first.getComponentName() ); //$NON-NLS-1$
+    assertEquals( ILogger.DEBUG, first.getLoggingLevel() );
+    assertEquals( "select {region}", first.getComponentSection().valueOf( "query" ) ); //$NON-NLS-1$ //$NON-NLS-2$
+    assertTrue( first.getActionInputDefinitions().containsKey( "region" ) ); //$NON-NLS-1$
+    assertEquals( "region", first.getMappedInputName( "region" ) ); //$NON-NLS-1$ //$NON-NLS-2$
+
+    IActionSequence loop = (IActionSequence) actions.get( 1 );
+    assertEquals( "regions", loop.getLoopParameter() ); //$NON-NLS-1$
+    assertEquals( 1, loop.getActionDefinitions().size() );
+    assertEquals( "Second", ( (ISolutionActionDefinition) loop.getActionDefinitions().get( 0 ) ) //$NON-NLS-1$
+        .getComponentName() );
+    assertTrue( loop.getInputDefinitions() == sequence.getInputDefinitions() );
+  }
+
+  @Test
+  public void testInstancesDoNotShareExecutionState() {
+    IActionSequence one = compiled.newInstance( ILogger.DEBUG );
+    IActionSequence two = compiled.newInstance( ILogger.ERROR );
+
+    IActionParameter regionOne = (IActionParameter) one.getInputDefinitions().get( "region" ); //$NON-NLS-1$
+    IActionParameter regionTwo = (IActionParameter) two.getInputDefinitions().get( "region" ); //$NON-NLS-1$
+    assertNotSame( regionOne, regionTwo );
+    regionOne.setValue( "West" ); //$NON-NLS-1$
+    assertEquals( "West", regionOne.getStringValue() ); //$NON-NLS-1$
+    assertEquals( "East", regionTwo.getStringValue() ); //$NON-NLS-1$
+    assertFalse( regionTwo.hasValue() );
+
+    List regionsOne = ( (IActionParameter) one.getInputDefinitions().get( "regions" ) ).getValueAsList(); //$NON-NLS-1$
+    regionsOne.add( "North" ); //$NON-NLS-1$
+    assertEquals( 2, ( (IActionParameter) two.getInputDefinitions().get( "regions" ) ).getValueAsList().size() ); //$NON-NLS-1$
+
+    ISolutionActionDefinition firstOne = (ISolutionActionDefinition) one.getActionDefinitions().get( 0 );
+    ISolutionActionDefinition firstTwo = (ISolutionActionDefinition) two.getActionDefinitions().get( 0 );
+    assertEquals( ILogger.ERROR, firstTwo.getLoggingLevel() );
+    assertNotSame( firstOne.getActionInputDefinitions().get( "region" ), //$NON-NLS-1$
+        firstTwo.getActionInputDefinitions().get( "region" ) ); //$NON-NLS-1$
+
+    // components rewrite their definitions in place
+    ( (Element) firstOne.getComponentSection().selectSingleNode( "query" ) ).setText( "select West" ); //$NON-NLS-1$ //$NON-NLS-2$
+    assertEquals( "select {region}", firstTwo.getComponentSection().valueOf( "query" ) ); //$NON-NLS-1$ //$NON-NLS-2$
+    ISolutionActionDefinition firstThree =
+        (ISolutionActionDefinition) compiled.newInstance( ILogger.ERROR ).getActionDefinitions().get( 0 );
+    assertEquals( "select {region}", firstThree.getComponentSection().valueOf( "query" ) ); //$NON-NLS-1$ //$NON-NLS-2$
+    assertTrue( firstOne.getNode().getDocument() != firstTwo.getNode().getDocument() );
+    assertTrue( firstOne.getComponentSection().getParent() == firstOne.getNode() );
+  }
+
+  @Test
+  public void testLoopsAreSequentialUnlessDeclaredParallel() {
+    IActionSequence loop = (IActionSequence) compiled.newInstance( ILogger.DEBUG ).getActionDefinitions().get( 1 );
+    assertEquals( 1, loop.getLoopConcurrency() );
+    assertTrue( loop.getLoopOrdered() );
+  }
+
+  @Test
+  public void testParallelLoop() throws Exception {
+    IActionSequence loop = compileLoop( "parallel=\"true\" max-concurrency=\"4\" ordered=\"false\"" ); //$NON-NLS-1$
+    assertEquals( 4, loop.getLoopConcurrency() );
+    assertFalse( loop.getLoopOrdered() );
+
+    loop = compileLoop( "parallel=\"true\"" ); //$NON-NLS-1$
+    assertEquals( Integer.MAX_VALUE, loop.getLoopConcurrency() );
+    assertTrue( loop.getLoopOrdered() );
+
+    loop = compileLoop( "parallel=\"true\" max-concurrency=\"many\"" ); //$NON-NLS-1$
+    assertEquals( Integer.MAX_VALUE, loop.getLoopConcurrency() );
+
+    loop = compileLoop( "parallel=\"false\" max-concurrency=\"4\"" ); //$NON-NLS-1$
+    assertEquals( 1, loop.getLoopConcurrency() );
+  }
+
+  @Test
+  public void testCopyOfLoopGroup() throws Exception {
+    IActionSequence loop = compileLoop( "parallel=\"true\" max-concurrency=\"2\"" ); //$NON-NLS-1$
+    IActionSequence copy = CompiledActionSequence.copyOf( loop );
+
+    assertEquals( 2, copy.getLoopConcurrency() );
+    assertEquals( "regions", copy.getLoopParameter() ); //$NON-NLS-1$
+    assertTrue( copy.getInputDefinitions() == loop.getInputDefinitions() );
+    ISolutionActionDefinition original = (ISolutionActionDefinition) loop.getActionDefinitions().get( 0 );
+    ISolutionActionDefinition copied = (ISolutionActionDefinition) copy.getActionDefinitions().get( 0 );
+    assertEquals( "Second", copied.getComponentName() ); //$NON-NLS-1$
+    assertTrue( original.getNode().getDocument() != copied.getNode().getDocument() );
+    assertTrue( copied.getComponentSection().getParent() == copied.getNode() );
+  }
+
+  private IActionSequence compileLoop( final String attributes ) throws Exception {
+    String xaction = XACTION.replace( "<actions loop-on=\"regions\">", //$NON-NLS-1$
+        "<actions loop-on=\"regions\" " + attributes + ">" ); //$NON-NLS-1$ //$NON-NLS-2$
+    CompiledActionSequence loopCompiled = CompiledActionSequence.compile( DocumentHelper.parseText( xaction ),
+        "/public/test.xaction", new StandaloneSession( "test" ), null ); //$NON-NLS-1$ //$NON-NLS-2$
+    return (IActionSequence) loopCompiled.newInstance( ILogger.DEBUG ).getActionDefinitions().get( 1 );
+  }
+}
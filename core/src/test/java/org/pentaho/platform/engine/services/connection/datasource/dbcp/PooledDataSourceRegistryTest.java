@@ -0,0 +1,146 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.platform.engine.services.connection.datasource.dbcp;
+
+import org.junit.After;
+import org.junit.Test;
+import org.pentaho.platform.plugin.action.kettle.PoolingManagedDataSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class PooledDataSourceRegistryTest {
+
+  private final PooledDataSourceRegistry registry = new PooledDataSourceRegistry();
+
+  @After
+  public void tearDown() {
+    registry.clear();
+  }
+
+  @Test
+  public void testPoolIsBuiltOnceForConcurrentCallers() throws Exception {
+    final PoolingManagedDataSource dataSource = dataSource( "hash" );
+    final AtomicInteger builds = new AtomicInteger();
+    final CountDownLatch start = new CountDownLatch( 1 );
+    ExecutorService executor = Executors.newFixedThreadPool( 8 );
+    try {
+      List<Future<PoolingManagedDataSource>> results = new ArrayList<>();
+      for ( int i = 0; i < 8; i++ ) {
+        results.add( executor.submit( () -> {
+          start.await();
+          return registry.getOrCreate( "ds", "hash", () -> {
+            builds.incrementAndGet();
+            Thread.sleep( 50 );
+            return dataSource;
+          } );
+        } ) );
+      }
+      start.countDown();
+      for ( Future<PoolingManagedDataSource> result : results ) {
+        assertSame( dataSource, result.get( 10, TimeUnit.SECONDS ) );
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    assertEquals( 1, builds.get() );
+    assertSame( dataSource, registry.get( "ds" ) );
+  }
+
+  @Test
+  public void testChangedConfigurationReplacesAndClosesPool() throws Exception {
+    PoolingManagedDataSource first = dataSource( "first" );
+    PoolingManagedDataSource second = dataSource( "second" );
+    registry.getOrCreate( "ds", "first", () -> first );
+
+    assertSame( first, registry.getOrCreate( "ds", "first", () -> second ) );
+    verify( first, never() ).close();
+
+    assertSame( second, registry.getOrCreate( "ds", "second", () -> second ) );
+    verify( first ).expire();
+    verify( first ).close();
+    assertSame( second, registry.get( "ds" ) );
+  }
+
+  @Test
+  public void testExpiredPoolIsReplaced() throws Exception {
+    PoolingManagedDataSource first = dataSource( "hash" );
+    PoolingManagedDataSource second = dataSource( "hash" );
+    registry.getOrCreate( "ds", "hash", () -> first );
+    when( first.isExpired() ).thenReturn( true );
+
+    assertNull( registry.get( "ds" ) );
+    assertSame( second, registry.getOrCreate( "ds", "hash", () -> second ) );
+    verify( first ).close();
+  }
+
+  @Test
+  public void testRemoveClosesPool() throws Exception {
+    PoolingManagedDataSource dataSource = dataSource( "hash" );
+    registry.getOrCreate( "ds", "hash", () -> dataSource );
+
+    registry.remove( "ds" );
+
+    assertNull( registry.get( "ds" ) );
+    verify( dataSource ).close();
+  }
+
+  @Test
+  public void testReleasedPoolIsKeptOpenAndReusedIfUnchanged() throws Exception {
+    PoolingManagedDataSource first = dataSource( "hash" );
+    PoolingManagedDataSource second = dataSource( "hash" );
+    registry.getOrCreate( "ds", "hash", () -> first );
+
+    registry.release( "ds" );
+
+    assertNull( registry.get( "ds" ) );
+    verify( first, never() ).expire();
+    verify( first, never() ).close();
+    assertSame( first, registry.getOrCreate( "ds", "hash", () -> second ) );
+    assertSame( first, registry.get( "ds" ) );
+  }
+
+  @Test
+  public void testReleasedPoolIsReplacedIfChanged() throws Exception {
+    PoolingManagedDataSource first = dataSource( "first" );
+    PoolingManagedDataSource second = dataSource( "second" );
+    registry.getOrCreate( "ds", "first", () -> first );
+    registry.releaseAll();
+    verify( first, never() ).close();
+
+    assertSame( second, registry.getOrCreate( "ds", "second", () -> second ) );
+    verify( first ).close();
+    assertSame( second, registry.get( "ds" ) );
+  }
+
+  private static PoolingManagedDataSource dataSource( String hash ) {
+    PoolingManagedDataSource dataSource = mock( PoolingManagedDataSource.class );
+    when( dataSource.hasSameConfig( hash ) ).thenReturn( true );
+    return dataSource;
+  }
+}
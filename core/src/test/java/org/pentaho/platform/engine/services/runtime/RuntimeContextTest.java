@@ -13,12 +13,18 @@
 
 package org.pentaho.platform.engine.services.runtime;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.dom4j.DocumentHelper;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.MockedStatic;
 import org.mockito.Mockito;
 import org.mockito.stubbing.Answer;
 import org.pentaho.di.core.util.Assert;
+import org.pentaho.platform.api.engine.ActionSequenceException;
+import org.pentaho.platform.api.engine.ILogger;
 import org.pentaho.platform.api.engine.IParameterProvider;
 import org.pentaho.platform.api.engine.IPentahoSession;
 import org.pentaho.platform.api.engine.IPentahoUrlFactory;
@@ -31,17 +37,29 @@ import org.pentaho.platform.engine.core.system.StandaloneApplicationContext;
 import org.pentaho.platform.engine.core.system.StandaloneSession;
 import org.pentaho.platform.engine.core.system.objfac.AggregateObjectFactory;
 import org.pentaho.platform.engine.security.SecurityParameterProvider;
+import org.pentaho.platform.engine.services.actionsequence.CompiledActionSequence;
+import org.pentaho.platform.engine.services.solution.ComponentBase;
 import org.pentaho.platform.util.JVMParameterProvider;
 import org.pentaho.platform.util.UUIDUtil;
 import org.pentaho.platform.util.web.SimpleUrlFactory;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
@@ -62,12 +80,34 @@ public class RuntimeContextTest {
 
   private IRuntimeContext runtimeCtx;
 
+  private static final String LOOP_ACTION = "<action-definition>" //$NON-NLS-1$
+      + "<component-name>" + LoopComponent.class.getName() + "</component-name>" //$NON-NLS-1$ //$NON-NLS-2$
+      + "<action-inputs><items type=\"string\"/></action-inputs>" //$NON-NLS-1$
+      + "<action-outputs><last type=\"string\"/></action-outputs>" //$NON-NLS-1$
+      + "<component-definition/></action-definition>"; //$NON-NLS-1$
+
+  private static final String SUB_ACTION = "<action-definition>" //$NON-NLS-1$
+      + "<component-name>" + SubActionComponent.class.getName() + "</component-name>" //$NON-NLS-1$ //$NON-NLS-2$
+      + "<action-inputs><items type=\"string\"/></action-inputs>" //$NON-NLS-1$
+      + "<component-definition/></action-definition>"; //$NON-NLS-1$
+
+  private final List<String> messages = new ArrayList<>();
+
+  private IRuntimeElement loopRuntimeData;
+
   @Before
   public void before() {
     mockedRuntimeRepository = mock( IRuntimeRepository.class );
     mockedSolutionEngine = mock( ISolutionEngine.class );
     applicationContext = new StandaloneApplicationContext( ".", "" );
     aggregateObjectFactory = new AggregateObjectFactory();
+    LoopComponent.reset();
+  }
+
+  @After
+  public void after() {
+    PentahoSystem.setApplicationContext( null );
+    SubActionComponent.subAction = null;
   }
 
   /**
@@ -83,7 +123,7 @@ public class RuntimeContextTest {
       pentahoSystem.when( PentahoSystem::getObjectFactory ).thenReturn( aggregateObjectFactory );
 
       runtimeCtx = new RuntimeContext( "id", mockedSolutionEngine, "solutionName",
-        makeRuntimeData( session ), session, null, "processId", urlFactory,
+        runtimeData, session, null, "processId", urlFactory,
         makeParameterProviders( session ), new ArrayList<String>(), null );
 
       when( mockedRuntimeRepository.newRuntimeElement( anyString(), anyString(), anyBoolean() ) ).thenAnswer(
@@ -127,7 +167,7 @@ public class RuntimeContextTest {
       pentahoSystem.when( PentahoSystem::getObjectFactory ).thenReturn( aggregateObjectFactory );
 
       runtimeCtx = new RuntimeContext( "id", mockedSolutionEngine, "solutionName",
-        makeRuntimeData( session ), session, null, "processId", urlFactory,
+        runtimeData, session, null, "processId", urlFactory,
         makeParameterProviders( session ), new ArrayList<String>(), null );
 
       final IRuntimeElement elem = new SimpleRuntimeElement( UUIDUtil.getUUIDAsString(), "parentId", "parentType", "sol1" );
@@ -171,7 +211,7 @@ public class RuntimeContextTest {
   public void testErrorLevel() {
 
     runtimeCtx = new RuntimeContext( "id", mockedSolutionEngine, "solutionName",
-      makeRuntimeData( session ), session, null, "processId", urlFactory,
+      runtimeData, session, null, "processId", urlFactory,
       makeParameterProviders( session ), new ArrayList<String>(), null );
 
     final RuntimeContext rctx = (RuntimeContext) runtimeCtx;
@@ -182,7 +222,7 @@ public class RuntimeContextTest {
   public void testPromptNow() {
 
     runtimeCtx = new RuntimeContext( "id", mockedSolutionEngine, "solutionName",
-      makeRuntimeData( session ), session, null, "processId", urlFactory,
+      runtimeData, session, null, "processId", urlFactory,
       makeParameterProviders( session ), new ArrayList<String>(), null );
 
     runtimeCtx.setPromptStatus( IRuntimeContext.PROMPT_NO );
@@ -195,7 +235,7 @@ public class RuntimeContextTest {
   @Test
   public void testPromptNeeded() {
     runtimeCtx = new RuntimeContext( "id", mockedSolutionEngine, "solutionName",
-      makeRuntimeData( session ), session, null, "processId", urlFactory,
+      runtimeData, session, null, "processId", urlFactory,
       makeParameterProviders( session ), new ArrayList<String>(), null );
 
     runtimeCtx.setPromptStatus( IRuntimeContext.PROMPT_NO );
@@ -209,13 +249,264 @@ public class RuntimeContextTest {
   public void testGetUrlFactory() {
 
     runtimeCtx = new RuntimeContext( "id", mockedSolutionEngine, "solutionName",
-      makeRuntimeData( session ), session, null, "processId", urlFactory,
+      runtimeData, session, null, "processId", urlFactory,
       makeParameterProviders( session ), new ArrayList<String>(), null );
 
     Assert.assertNotNull( runtimeCtx.getUrlFactory() );
     Assert.assertTrue( runtimeCtx.getUrlFactory() == urlFactory );
   }
 
+  @Test
+  public void testParallelLoopMergesInIterationOrder() throws Exception {
+    RuntimeContext rctx = runLoop( "parallel=\"true\" max-concurrency=\"2\"", "slow", "b", "c" );
+
+    assertEquals( Arrays.asList( "done slow", "done b", "done c" ), loopMessages() );
+    assertEquals( "c", rctx.getParameterManager().getLoopParameter( "last" ).getStringValue() );
+    assertEquals( "c", loopRuntimeData.getStringProperty( "last" ) );
+    assertEquals( IRuntimeContext.RUNTIME_STATUS_SUCCESS, rctx.getStatus() );
+  }
+
+  @Test
+  public void testUnorderedParallelLoopMergesInCompletionOrder() throws Exception {
+    // the first iteration only finishes once the others have
+    LoopComponent.others = new CountDownLatch( 2 );
+    RuntimeContext rctx =
+        runLoop( "parallel=\"true\" max-concurrency=\"2\" ordered=\"false\"", "slow", "b", "c" );
+
+    List<String> messages = loopMessages();
+    assertEquals( 3, messages.size() );
+    assertTrue( messages.containsAll( Arrays.asList( "done b", "done c" ) ) );
+    assertEquals( "done slow", messages.get( 2 ) );
+    assertEquals( "slow", rctx.getParameterManager().getLoopParameter( "last" ).getStringValue() );
+    assertEquals( "slow", loopRuntimeData.getStringProperty( "last" ) );
+  }
+
+  @Test
+  public void testParallelLoopRunsNoMoreThanMaxConcurrencyIterations() throws Exception {
+    runLoop( "parallel=\"true\" max-concurrency=\"2\"", "a", "b", "c", "d", "e", "f" );
+
+    assertEquals( 6, LoopComponent.executed.get() );
+    assertTrue( LoopComponent.maxRunning.get() <= 2 );
+    assertEquals( 6, loopMessages().size() );
+  }
+
+  @Test
+  public void testFailedIterationCancelsTheLoop() throws Exception {
+    try {
+      runLoop( "parallel=\"true\" max-concurrency=\"2\"", "a", "fail", "c", "d", "e", "f", "g", "h" );
+      fail( "the failed iteration should fail the loop" );
+    } catch ( ActionSequenceException e ) {
+      assertEquals( Integer.valueOf( 1 ), e.getLoopIndex() );
+    }
+
+    assertEquals( IRuntimeContext.RUNTIME_STATUS_FAILURE, runtimeCtx.getStatus() );
+    assertTrue( LoopComponent.executed.get() < 8 );
+    assertFalse( loopMessages().contains( "done h" ) );
+  }
+
+  @Test
+  public void testPromptNowStopsTheLoop() throws Exception {
+    RuntimeContext rctx =
+        runLoop( "parallel=\"true\" max-concurrency=\"2\"", "a", "prompt", "c", "d", "e", "f", "g", "h" );
+
+    assertTrue( rctx.isPromptPending() );
+    assertTrue( LoopComponent.executed.get() < 8 );
+    List<String> messages = loopMessages();
+    assertTrue( messages.containsAll( Arrays.asList( "done a", "done prompt" ) ) );
+    assertFalse( messages.contains( "done h" ) );
+  }
+
+  @Test
+  public void testLoopInParallelIterationRunsSequentially() throws Exception {
+    String inner = "<actions loop-on=\"inner\" parallel=\"true\">" + LOOP_ACTION + "</actions>"; //$NON-NLS-1$ //$NON-NLS-2$
+    runLoop( "parallel=\"true\" max-concurrency=\"2\"", inner, "a", "b", "c", "d" );
+
+    assertEquals( 12, LoopComponent.executed.get() );
+    assertTrue( LoopComponent.maxRunning.get() <= 2 );
+    for ( String item : Arrays.asList( "a", "b", "c", "d" ) ) {
+      assertEquals( 1, LoopComponent.threads.get( item ).size() );
+    }
+  }
+
+  @Test
+  public void testLoopInSubActionOfParallelIterationRunsSequentially() throws Exception {
+    // like SubActionComponent, runs another action sequence in a runtime context of its own
+    SubActionComponent.subAction = item -> {
+      RuntimeContext sub = newLoop( "parallel=\"true\" max-concurrency=\"2\"", LOOP_ACTION, //$NON-NLS-1$
+          makeRuntimeData( session ), new ArrayList<>(), item + "1", item + "2", item + "3" ); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+      sub.executeSequence( null, null, false );
+      assertEquals( IRuntimeContext.RUNTIME_STATUS_SUCCESS, sub.getStatus() );
+    };
+    RuntimeContext rctx = runLoop( "parallel=\"true\" max-concurrency=\"2\"", SUB_ACTION, "a", "b", "c", "d" );
+
+    assertEquals( IRuntimeContext.RUNTIME_STATUS_SUCCESS, rctx.getStatus() );
+    assertEquals( 12, LoopComponent.executed.get() );
+    for ( String item : Arrays.asList( "a", "b", "c", "d" ) ) {
+      Set<String> thread = LoopComponent.threads.get( "sub " + item ); //$NON-NLS-1$
+      assertEquals( 1, thread.size() );
+      for ( int i = 1; i <= 3; i++ ) {
+        assertEquals( thread, LoopComponent.threads.get( item + i ) );
+      }
+    }
+  }
+
+  private RuntimeContext runLoop( final String attributes, final String... items ) throws Exception {
+    return runLoop( attributes, LOOP_ACTION, items );
+  }
+
+  private RuntimeContext runLoop( final String attributes, final String actions, final String... items )
+    throws Exception {
+    loopRuntimeData = makeRuntimeData( session );
+    RuntimeContext rctx = newLoop( attributes, actions, loopRuntimeData, messages, items );
+    runtimeCtx = rctx;
+    rctx.executeSequence( null, null, false );
+    return rctx;
+  }
+
+  private RuntimeContext newLoop( final String attributes, final String actions, final IRuntimeElement runtimeData,
+      final List<String> messages, final String... items ) throws Exception {
+    StringBuilder list = new StringBuilder();
+    for ( String item : items ) {
+      list.append( "<list-item>" ).append( item ).append( "</list-item>" ); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+    String xaction = "<action-sequence><title>Loop</title><logging-level>ERROR</logging-level>" //$NON-NLS-1$
+        + "<inputs><items type=\"string-list\"><default-value>" + list + "</default-value></items>" //$NON-NLS-1$ //$NON-NLS-2$
+        + "<inner type=\"string-list\"><default-value><list-item>x</list-item><list-item>y</list-item>" //$NON-NLS-1$
+        + "<list-item>z</list-item></default-value></inner></inputs>" //$NON-NLS-1$
+        + "<actions><actions loop-on=\"items\" " + attributes + ">" + actions + "</actions></actions>" //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        + "</action-sequence>"; //$NON-NLS-1$
+    PentahoSystem.setApplicationContext( applicationContext );
+    CompiledActionSequence compiled = CompiledActionSequence.compile( DocumentHelper.parseText( xaction ),
+        "/public/loop.xaction", session, null ); //$NON-NLS-1$
+
+    RuntimeContext rctx = new RuntimeContext( "id", mockedSolutionEngine, "solutionName",
+      runtimeData, session, null, "processId", urlFactory,
+      makeParameterProviders( session ), messages, null );
+    rctx.setActionSequence( compiled.newInstance( ILogger.ERROR ) );
+    rctx.validateSequence( "loop.xaction", null ); //$NON-NLS-1$
+    return rctx;
+  }
+
+  private List<String> loopMessages() {
+    List<String> res = new ArrayList<>();
+    for ( Object message : messages ) {
+      if ( String.valueOf( message ).startsWith( "done " ) ) { //$NON-NLS-1$
+        res.add( String.valueOf( message ) );
+      }
+    }
+    return res;
+  }
+
+  /**
+   * Records how the iterations of a loop run. The item "slow" finishes late, "fail" fails and "prompt" asks for the
+   * parameter page right away.
+   */
+  public static class LoopComponent extends ComponentBase {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Log logger = LogFactory.getLog( LoopComponent.class );
+
+    static final AtomicInteger running = new AtomicInteger();
+
+    static final AtomicInteger maxRunning = new AtomicInteger();
+
+    static final AtomicInteger executed = new AtomicInteger();
+
+    static final Map<String, Set<String>> threads = new ConcurrentHashMap<>();
+
+    static volatile CountDownLatch others;
+
+    static void reset() {
+      running.set( 0 );
+      maxRunning.set( 0 );
+      executed.set( 0 );
+      threads.clear();
+      others = null;
+    }
+
+    @Override
+    public Log getLogger() {
+      return logger;
+    }
+
+    @Override
+    protected boolean validateAction() {
+      return true;
+    }
+
+    @Override
+    protected boolean validateSystemSettings() {
+      return true;
+    }
+
+    @Override
+    public boolean init() {
+      return true;
+    }
+
+    @Override
+    public void done() {
+    }
+
+    @Override
+    @SuppressWarnings( "unchecked" )
+    protected boolean executeAction() throws Throwable {
+      String item = getInputStringValue( "items" ); //$NON-NLS-1$
+      maxRunning.accumulateAndGet( running.incrementAndGet(), Math::max );
+      try {
+        executed.incrementAndGet();
+        threads.computeIfAbsent( item, key -> ConcurrentHashMap.newKeySet() ).add( Thread.currentThread().getName() );
+        CountDownLatch latch = others;
+        if ( "slow".equals( item ) ) { //$NON-NLS-1$
+          if ( latch != null ) {
+            latch.await( 10, TimeUnit.SECONDS );
+          }
+          Thread.sleep( 200 );
+        } else {
+          Thread.sleep( 20 );
+          if ( latch != null ) {
+            latch.countDown();
+          }
+        }
+        if ( "fail".equals( item ) ) { //$NON-NLS-1$
+          return false;
+        }
+        if ( "prompt".equals( item ) ) { //$NON-NLS-1$
+          promptNow();
+        }
+        getMessages().add( "done " + item ); //$NON-NLS-1$
+        setOutputValue( "last", item ); //$NON-NLS-1$
+        return true;
+      } finally {
+        running.decrementAndGet();
+      }
+    }
+  }
+
+  /**
+   * Runs {@link #subAction} with its item, in the thread of the iteration.
+   */
+  public static class SubActionComponent extends LoopComponent {
+
+    private static final long serialVersionUID = 1L;
+
+    static volatile SubAction subAction;
+
+    interface SubAction {
+      void run( String item ) throws Exception;
+    }
+
+    @Override
+    protected boolean executeAction() throws Throwable {
+      String item = getInputStringValue( "items" ); //$NON-NLS-1$
+      threads.computeIfAbsent( "sub " + item, key -> ConcurrentHashMap.newKeySet() ) //$NON-NLS-1$
+          .add( Thread.currentThread().getName() );
+      subAction.run( item );
+      return true;
+    }
+  }
+
   private Map<String, IParameterProvider> makeParameterProviders( final IPentahoSession session ) {
     final Map<String, IParameterProvider> res = new HashMap<>();
 
@@ -0,0 +1,63 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.platform.engine.services.solution;
+
+import org.junit.Test;
+import org.pentaho.platform.api.engine.ILogger;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PojoComponentDoneTest {
+
+  @Test
+  public void testExceptionFromDoneIsLogged() throws Exception {
+    List<String> messages = new ArrayList<>();
+    PojoComponent component = component( new FailingPojo() );
+    component.setMessages( messages );
+
+    component.done();
+
+    assertEquals( 1, messages.size() );
+    assertTrue( messages.get( 0 ).contains( "done failed" ) ); //$NON-NLS-1$
+  }
+
+  @Test( expected = LinkageError.class )
+  public void testErrorFromDonePropagates() throws Exception {
+    component( new BrokenPojo() ).done();
+  }
+
+  private static PojoComponent component( final Object pojo ) throws NoSuchMethodException {
+    PojoComponent component = new PojoComponent();
+    component.setLoggingLevel( ILogger.ERROR );
+    component.setPojo( pojo );
+    component.doneMethod = pojo.getClass().getMethod( "done" ); //$NON-NLS-1$
+    return component;
+  }
+
+  public static class FailingPojo {
+    public void done() {
+      throw new IllegalStateException( "done failed" ); //$NON-NLS-1$
+    }
+  }
+
+  public static class BrokenPojo {
+    public void done() {
+      throw new LinkageError( "broken" ); //$NON-NLS-1$
+    }
+  }
+}
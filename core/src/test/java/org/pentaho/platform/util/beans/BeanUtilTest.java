@@ -16,6 +16,13 @@ package org.pentaho.platform.util.beans;
 import org.junit.Test;
 import org.pentaho.di.core.util.Assert;
 
+import java.lang.reflect.InvocationTargetException;
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
 public class BeanUtilTest {
 
   private BeanUtil beanUtil;
@@ -31,4 +38,68 @@ public class BeanUtilTest {
     Assert.assertFalse( beanUtil.isWriteable( "[~!@#$%^&*(){}|.,]-=_+|;'\"?<>~`:" ) );
   }
 
+  @Test
+  public void testBoundProperties() throws Exception {
+    TestBean testBean = new TestBean();
+    BeanUtil testBeanUtil = new BeanUtil( testBean );
+    assertTrue( testBeanUtil.isWriteable( "name" ) );
+    assertTrue( testBeanUtil.isReadable( "count" ) );
+
+    Date date = new Date();
+    testBeanUtil.setValue( "name", "test" );
+    testBeanUtil.setValue( "count", 3 );
+    testBeanUtil.setValue( "date", date );
+    assertEquals( "test", testBeanUtil.getValue( "name" ) );
+    assertEquals( 3, testBeanUtil.getValue( "count" ) );
+    assertSame( date, testBean.getDate() );
+  }
+
+  @Test
+  public void testConvertedProperties() throws Exception {
+    TestBean testBean = new TestBean();
+    BeanUtil testBeanUtil = new BeanUtil( testBean );
+    testBeanUtil.setValue( "count", "42" );
+    testBeanUtil.setValue( "name", 7L );
+    assertEquals( 42, testBean.getCount() );
+    assertEquals( "7", testBean.getName() );
+  }
+
+  @Test( expected = InvocationTargetException.class )
+  public void testSetterFailure() throws Exception {
+    new BeanUtil( new TestBean() ).setValue( "failing", "value" );
+  }
+
+  public static class TestBean {
+    private String name;
+    private int count;
+    private Date date;
+
+    public String getName() {
+      return name;
+    }
+
+    public void setName( String name ) {
+      this.name = name;
+    }
+
+    public int getCount() {
+      return count;
+    }
+
+    public void setCount( int count ) {
+      this.count = count;
+    }
+
+    public Date getDate() {
+      return date;
+    }
+
+    public void setDate( Date date ) {
+      this.date = date;
+    }
+
+    public void setFailing( String value ) {
+      throw new IllegalStateException( value );
+    }
+  }
 }
@@ -76,6 +76,7 @@ import java.security.InvalidParameterException;
 import java.text.Collator;
 import java.util.ArrayList;
 import java.util.EnumSet;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -1358,11 +1359,14 @@ public class FileServiceIT {
     List<RepositoryFile> children = new ArrayList<>();
     RepositoryFile mockedChild = mock( RepositoryFile.class );
     doReturn( false ).when( mockedChild ).isFolder();
+    doReturn( "childId" ).when( mockedChild ).getId();
     children.add( mockedChild );
 
     Map<String, Serializable> mockedFileMetadata = mock( Map.class );
     doReturn( pathId ).when( mockedFileMetadata ).get( PentahoJcrConstants.PHO_CONTENTCREATOR );
-    when( fileService.repository.getFileMetadata( mockedChild.getId() ) ).thenReturn( mockedFileMetadata );
+    Map<Serializable, Map<String, Serializable>> filesMetadata = new HashMap<>();
+    filesMetadata.put( "childId", mockedFileMetadata );
+    doReturn( filesMetadata ).when( fileService.repository ).getFilesMetadata( Collections.singletonList( "childId" ) );
 
     doReturn( pathId ).when( fileDetailsMock ).getId();
     doReturn( userFolder ).when( sessionResource ).doGetCurrentUserDir();
@@ -1411,11 +1415,14 @@ public class FileServiceIT {
     List<RepositoryFile> children = new ArrayList<>();
     RepositoryFile mockedChild = mock( RepositoryFile.class );
     doReturn( false ).when( mockedChild ).isFolder();
+    doReturn( "childId" ).when( mockedChild ).getId();
     children.add( mockedChild );
 
     Map<String, Serializable> mockedFileMetadata = mock( Map.class );
     doReturn( pathId ).when( mockedFileMetadata ).get( PentahoJcrConstants.PHO_CONTENTCREATOR );
-    when( fileService.repository.getFileMetadata( mockedChild.getId() ) ).thenReturn( mockedFileMetadata );
+    Map<Serializable, Map<String, Serializable>> filesMetadata = new HashMap<>();
+    filesMetadata.put( "childId", mockedFileMetadata );
+    doReturn( filesMetadata ).when( fileService.repository ).getFilesMetadata( Collections.singletonList( "childId" ) );
 
     doReturn( pathId ).when( fileDetailsMock ).getId();
     doReturn( userFolder ).when( sessionResource ).doGetUserDir( user );
@@ -126,6 +126,8 @@ public class CacheManagerIT extends BaseTest {
     // Make sure that User2 is still unaffected
     shouldBeThere = cacheManager.getFromSessionCache( userSession2, "StringObject" ); //$NON-NLS-1$
     Assert.assertNotNull( shouldBeThere );
+    shouldBeThere = cacheManager.getFromSessionCache( userSession2, "repoDoc" ); //$NON-NLS-1$
+    Assert.assertNotNull( shouldBeThere );
 
     // Test Global Caching
 
@@ -15,10 +15,14 @@ package org.pentaho.test.platform.plugin.services.metadata;
 
 import org.pentaho.metadata.model.Domain;
 import org.pentaho.metadata.model.LogicalModel;
+import org.pentaho.metadata.model.concept.Concept;
+import org.pentaho.metadata.model.concept.security.Security;
+import org.pentaho.metadata.model.concept.security.SecurityOwner;
 import org.pentaho.metadata.repository.DomainAlreadyExistsException;
 import org.pentaho.metadata.repository.DomainIdNullException;
 import org.pentaho.metadata.repository.DomainStorageException;
 import org.pentaho.platform.api.engine.ICacheManager;
+import org.pentaho.platform.api.engine.IPentahoAclEntry;
 import org.pentaho.platform.api.engine.IPentahoObjectFactory;
 import org.pentaho.platform.api.engine.IPentahoSession;
 import org.pentaho.platform.api.repository2.unified.IAclNodeHelper;
@@ -128,21 +132,21 @@ public class SessionCachingMetadataDomainRepositoryIT extends BaseTest {
     // Make sure the domain we got back has our session embedded in it (tests mock repository)
     assertEquals( SESSION_ID, d.getDescription( TEST_LOCALE ) );
     assertEquals( 1, mock.getInvocationCount( "getDomain" ) ); //$NON-NLS-1$
-    // Cache should contain a domain for this session
-    assertEquals( 1, PentahoSystem.getCacheManager( null ).getAllKeysFromRegionCache( CACHE_NAME ).size() );
+    // Cache should contain the shared domain and the secured one for this user
+    assertEquals( 2, PentahoSystem.getCacheManager( null ).getAllKeysFromRegionCache( CACHE_NAME ).size() );
 
     repo.getDomain( ID );
     // Make sure cache was hit and delegate was not called
     assertEquals( 1, mock.getInvocationCount( "getDomain" ) ); //$NON-NLS-1$
 
-    // Cache should contain a domain for this session
-    assertEquals( 1, PentahoSystem.getCacheManager( null ).getAllKeysFromRegionCache( CACHE_NAME ).size() );
+    // Cache should contain the shared domain and the secured one for this user
+    assertEquals( 2, PentahoSystem.getCacheManager( null ).getAllKeysFromRegionCache( CACHE_NAME ).size() );
 
     mock.storeDomain( getTestDomain( ID2 ), false );
     repo.getDomain( ID2 );
 
-    // Cache should contain tow domains for this session
-    assertEquals( 2, PentahoSystem.getCacheManager( null ).getAllKeysFromRegionCache( CACHE_NAME ).size() );
+    // Cache should contain two domains, each shared and secured
+    assertEquals( 4, PentahoSystem.getCacheManager( null ).getAllKeysFromRegionCache( CACHE_NAME ).size() );
 
     // Block access to domain ID2. Cache should be cleared for this domain
     when( aclNodeHelper.canAccess( any( RepositoryFile.class ), any( EnumSet.class ) ) ).thenReturn( false );
@@ -151,8 +155,8 @@ public class SessionCachingMetadataDomainRepositoryIT extends BaseTest {
 
     // Make sure cache was hit and delegate was not called
     assertEquals( 2, mock.getInvocationCount( "getDomain" ) ); //$NON-NLS-1$
-    // Cache should contain a domain for this session
-    assertEquals( 1, PentahoSystem.getCacheManager( null ).getAllKeysFromRegionCache( CACHE_NAME ).size() );
+    // Cache should only contain the first domain
+    assertEquals( 2, PentahoSystem.getCacheManager( null ).getAllKeysFromRegionCache( CACHE_NAME ).size() );
   }
 
   public void testGetDomain_null_session() throws Exception {
@@ -184,18 +188,25 @@ public class SessionCachingMetadataDomainRepositoryIT extends BaseTest {
     assertEquals( ID, d.getId() );
     assertEquals( SESSION_ID1, d.getDescription( TEST_LOCALE ) );
     assertEquals( 1, mock.getInvocationCount( "getDomain" ) ); //$NON-NLS-1$
-    // Cache should contain a domain for this session
-    assertEquals( 1, PentahoSystem.getCacheManager( null ).getAllKeysFromRegionCache( CACHE_NAME ).size() );
+    // Cache should contain the shared domain and the secured one for this user
+    assertEquals( 2, PentahoSystem.getCacheManager( null ).getAllKeysFromRegionCache( CACHE_NAME ).size() );
 
-    // Get the same domain from a different session
+    // Get the same domain from a different session of the same user
     PentahoSessionHolder.setSession( new StandaloneSession( "Standalone Session", SESSION_ID2 ) ); //$NON-NLS-1$
 
-    d = repo.getDomain( ID );
-    // Make sure we got a new, session-specific, domain
-    assertEquals( SESSION_ID2, d.getDescription( TEST_LOCALE ) );
-    // Make sure cache was missed and delegate was called
-    assertEquals( 2, mock.getInvocationCount( "getDomain" ) ); //$NON-NLS-1$
-    // We should now have two objects in the cache (1 domain per session)
+    Domain d2 = repo.getDomain( ID );
+    // Make sure both sessions share the secured domain
+    assertSame( d, d2 );
+    assertEquals( 1, mock.getInvocationCount( "getDomain" ) ); //$NON-NLS-1$
+    assertEquals( 2, PentahoSystem.getCacheManager( null ).getAllKeysFromRegionCache( CACHE_NAME ).size() );
+
+    // Get the same domain as a different user with the same roles
+    PentahoSessionHolder.setSession( new StandaloneSession( "Other Session", SESSION_ID2 ) ); //$NON-NLS-1$
+
+    d2 = repo.getDomain( ID );
+    // The domain's ACLs do not name users, so both users share the secured domain
+    assertSame( d, d2 );
+    assertEquals( 1, mock.getInvocationCount( "getDomain" ) ); //$NON-NLS-1$
     assertEquals( 2, PentahoSystem.getCacheManager( null ).getAllKeysFromRegionCache( CACHE_NAME ).size() );
 
     // Domains in current session
@@ -208,6 +219,31 @@ public class SessionCachingMetadataDomainRepositoryIT extends BaseTest {
     assertEquals( 1, repo.getDomainIds().size() );
   }
 
+  public void testGetDomain_userAcl() throws Exception {
+    final String ID = "1"; //$NON-NLS-1$
+    MockSessionAwareMetadataDomainRepository mock = new MockSessionAwareMetadataDomainRepository();
+    Domain domain = getTestDomain( ID );
+    Security security = new Security();
+    security.putOwnerRights( new SecurityOwner( SecurityOwner.OwnerType.USER, "Standalone Session" ), //$NON-NLS-1$
+        IPentahoAclEntry.PERM_EXECUTE );
+    domain.setProperty( Concept.SECURITY_PROPERTY, security );
+    mock.storeDomain( domain, false );
+
+    SessionCachingMetadataDomainRepository repo = new SessionCachingMetadataDomainRepository( mock );
+    PentahoSessionHolder.setSession( new StandaloneSession( "Standalone Session", "1234" ) ); //$NON-NLS-1$ //$NON-NLS-2$
+    Domain d = repo.getDomain( ID );
+    PentahoSessionHolder.setSession( new StandaloneSession( "Standalone Session", "5678" ) ); //$NON-NLS-1$ //$NON-NLS-2$
+    assertSame( d, repo.getDomain( ID ) );
+
+    // The domain's ACLs name a user, so another user with the same roles gets a secured domain of its own
+    PentahoSessionHolder.setSession( new StandaloneSession( "Other Session", "5678" ) ); //$NON-NLS-1$ //$NON-NLS-2$
+    Domain d2 = repo.getDomain( ID );
+    assertNotSame( d, d2 );
+    assertEquals( 1, mock.getInvocationCount( "getDomain" ) ); //$NON-NLS-1$
+    // the shared domain and 1 domain per user
+    assertEquals( 3, PentahoSystem.getCacheManager( null ).getAllKeysFromRegionCache( CACHE_NAME ).size() );
+  }
+
   /**
    * Getting the domain ids should always hit the delegate and not cache any objects
    */
@@ -290,11 +326,11 @@ public class SessionCachingMetadataDomainRepositoryIT extends BaseTest {
     repo.storeDomain( getTestDomain( ID ), false );
 
     repo.getDomain( ID );
-    assertEquals( 1, PentahoSystem.getCacheManager( null ).getAllKeysFromRegionCache( CACHE_NAME ).size() );
+    assertEquals( 2, PentahoSystem.getCacheManager( null ).getAllKeysFromRegionCache( CACHE_NAME ).size() );
 
-    PentahoSessionHolder.setSession( new StandaloneSession( "Standalone Session", "2" ) ); //$NON-NLS-1$ //$NON-NLS-2$
+    PentahoSessionHolder.setSession( new StandaloneSession( "Other Session", "2" ) ); //$NON-NLS-1$ //$NON-NLS-2$
     repo.getDomain( ID );
-    assertEquals( 2, PentahoSystem.getCacheManager( null ).getAllKeysFromRegionCache( CACHE_NAME ).size() );
+    assertEquals( 3, PentahoSystem.getCacheManager( null ).getAllKeysFromRegionCache( CACHE_NAME ).size() );
 
     assertEquals( 1, repo.getDomainIds().size() );
 
@@ -322,23 +358,23 @@ public class SessionCachingMetadataDomainRepositoryIT extends BaseTest {
     assertNotNull( domainFromSession1 );
     assertEquals( 1, mock.getInvocationCount( "getDomain" ) ); //$NON-NLS-1$
 
-    PentahoSessionHolder.setSession( new StandaloneSession( "Standalone Session", "2" ) ); //$NON-NLS-1$ //$NON-NLS-2$
+    PentahoSessionHolder.setSession( new StandaloneSession( "Other Session", "2" ) ); //$NON-NLS-1$ //$NON-NLS-2$
 
     Domain domainFromSession2 = repo.getDomain( ID1 );
     assertNotNull( domainFromSession2 );
-    assertEquals( 2, mock.getInvocationCount( "getDomain" ) ); //$NON-NLS-1$
+    assertEquals( 1, mock.getInvocationCount( "getDomain" ) ); //$NON-NLS-1$
 
-    assertEquals( 2, PentahoSystem.getCacheManager( null ).getAllKeysFromRegionCache( CACHE_NAME ).size() );
+    assertEquals( 3, PentahoSystem.getCacheManager( null ).getAllKeysFromRegionCache( CACHE_NAME ).size() );
 
     repo.removeDomain( ID1 );
     assertEquals( 0, PentahoSystem.getCacheManager( null ).getAllKeysFromRegionCache( CACHE_NAME ).size() );
 
     // Calling getDomain() now should increment the call count to the delegate
     repo.getDomain( ID2 );
-    assertEquals( 3, mock.getInvocationCount( "getDomain" ) ); //$NON-NLS-1$
+    assertEquals( 2, mock.getInvocationCount( "getDomain" ) ); //$NON-NLS-1$
 
-    // There should now only be one in the cache
-    assertEquals( 1, PentahoSystem.getCacheManager( null ).getAllKeysFromRegionCache( CACHE_NAME ).size() );
+    // There should now only be the shared and the secured domain in the cache
+    assertEquals( 2, PentahoSystem.getCacheManager( null ).getAllKeysFromRegionCache( CACHE_NAME ).size() );
   }
 
   public void testStoreDomain() throws Exception {
@@ -370,12 +406,12 @@ public class SessionCachingMetadataDomainRepositoryIT extends BaseTest {
 
     assertEquals( 1, repo.getDomainIds().size() );
     repo.getDomain( ID );
-    assertEquals( 2, PentahoSystem.getCacheManager( null ).getAllKeysFromRegionCache( CACHE_NAME ).size() );
+    assertEquals( 3, PentahoSystem.getCacheManager( null ).getAllKeysFromRegionCache( CACHE_NAME ).size() );
 
     // Storing a domain should only wipe out the cached domains with the same id
     repo.storeDomain( getTestDomain( "2" ), false ); //$NON-NLS-1$
     assertEquals( 2, repo.getDomainIds().size() );
-    assertEquals( 2, PentahoSystem.getCacheManager( null ).getAllKeysFromRegionCache( CACHE_NAME ).size() );
+    assertEquals( 3, PentahoSystem.getCacheManager( null ).getAllKeysFromRegionCache( CACHE_NAME ).size() );
   }
 
   public void testRemoveModel() throws Exception {
@@ -395,17 +431,17 @@ public class SessionCachingMetadataDomainRepositoryIT extends BaseTest {
     repo.storeDomain( getTestDomain( ID2 ), false );
 
     repo.getDomain( ID1 );
-    assertEquals( 1, PentahoSystem.getCacheManager( null ).getAllKeysFromRegionCache( CACHE_NAME ).size() );
-    repo.getDomain( ID2 );
     assertEquals( 2, PentahoSystem.getCacheManager( null ).getAllKeysFromRegionCache( CACHE_NAME ).size() );
+    repo.getDomain( ID2 );
+    assertEquals( 4, PentahoSystem.getCacheManager( null ).getAllKeysFromRegionCache( CACHE_NAME ).size() );
 
-    PentahoSessionHolder.setSession( new StandaloneSession( "Standalone Session", "2" ) ); //$NON-NLS-1$ //$NON-NLS-2$
+    PentahoSessionHolder.setSession( new StandaloneSession( "Other Session", "2" ) ); //$NON-NLS-1$ //$NON-NLS-2$
     repo.getDomain( ID1 );
-    assertEquals( 3, PentahoSystem.getCacheManager( null ).getAllKeysFromRegionCache( CACHE_NAME ).size() );
+    assertEquals( 5, PentahoSystem.getCacheManager( null ).getAllKeysFromRegionCache( CACHE_NAME ).size() );
 
     repo.removeModel( ID1, "test" ); //$NON-NLS-1$
     // Removing a model should remove all domains with that same id, leaving others intact
-    assertEquals( 1, PentahoSystem.getCacheManager( null ).getAllKeysFromRegionCache( CACHE_NAME ).size() );
+    assertEquals( 2, PentahoSystem.getCacheManager( null ).getAllKeysFromRegionCache( CACHE_NAME ).size() );
     assertEquals( 1, mock.getInvocationCount( "removeModel" ) ); //$NON-NLS-1$
   }
 
@@ -436,18 +472,62 @@ public class SessionCachingMetadataDomainRepositoryIT extends BaseTest {
     repo.storeDomain( getTestDomain( ID1 ), false );
     repo.storeDomain( getTestDomain( ID2 ), false );
 
-    PentahoSessionHolder.setSession( new StandaloneSession( "Standalone Session", "1" ) ); //$NON-NLS-1$ //$NON-NLS-2$
+    IPentahoSession session1 = new StandaloneSession( "Standalone Session", "1" ); //$NON-NLS-1$ //$NON-NLS-2$
+    PentahoSessionHolder.setSession( session1 );
     repo.getDomain( ID1 );
 
-    IPentahoSession session2 = new StandaloneSession( "Standalone Session", "2" ); //$NON-NLS-1$ //$NON-NLS-2$
+    IPentahoSession session2 = new StandaloneSession( "Other Session", "2" ); //$NON-NLS-1$ //$NON-NLS-2$
     PentahoSessionHolder.setSession( session2 );
     repo.getDomain( ID2 );
 
-    assertEquals( 2, PentahoSystem.getCacheManager( null ).getAllKeysFromRegionCache( CACHE_NAME ).size() );
+    assertEquals( 2, getSecuredDomainCount() );
 
-    // Logging out session 2 should only remove cached domains from session 2
+    // Both sessions have the same roles, so the domains stay cached while session 1 is using their profile
     repo.onLogout( session2 );
-    assertEquals( 1, PentahoSystem.getCacheManager( null ).getAllKeysFromRegionCache( CACHE_NAME ).size() );
+    assertEquals( 2, getSecuredDomainCount() );
+
+    repo.onLogout( session1 );
+    assertEquals( 0, getSecuredDomainCount() );
+  }
+
+  public void testOnLogout_shared_profile() throws Exception {
+    final String ID = "1"; //$NON-NLS-1$
+    MockSessionAwareMetadataDomainRepository mock = new MockSessionAwareMetadataDomainRepository();
+
+    SessionCachingMetadataDomainRepository repo = new SessionCachingMetadataDomainRepository( mock );
+    repo.storeDomain( getTestDomain( ID ), false );
+
+    IPentahoSession session1 = new StandaloneSession( "Standalone Session", "1" ); //$NON-NLS-1$ //$NON-NLS-2$
+    PentahoSessionHolder.setSession( session1 );
+    repo.getDomain( ID );
+    IPentahoSession session2 = new StandaloneSession( "Standalone Session", "2" ); //$NON-NLS-1$ //$NON-NLS-2$
+    PentahoSessionHolder.setSession( session2 );
+    repo.getDomain( ID );
+
+    assertEquals( 1, getSecuredDomainCount() );
+
+    // The domain stays cached while another session with the same roles is using it
+    repo.onLogout( session2 );
+    assertEquals( 1, getSecuredDomainCount() );
+
+    // and is removed once the last one logs out
+    repo.onLogout( session1 );
+    assertEquals( 0, getSecuredDomainCount() );
+  }
+
+  /**
+   * Counts the domains cached for a security profile, leaving out the domains as loaded from the delegate
+   */
+  private int getSecuredDomainCount() {
+    int count = 0;
+    for ( Object key : PentahoSystem.getCacheManager( null ).getAllKeysFromRegionCache( CACHE_NAME ) ) {
+      if ( key instanceof SessionCachingMetadataDomainRepository.ProfileCacheKey
+          && !SessionCachingMetadataDomainRepository.ProfileCacheKey.SHARED_PROFILE.equals(
+            ( (SessionCachingMetadataDomainRepository.ProfileCacheKey) key ).profile ) ) {
+        count++;
+      }
+    }
+    return count;
   }
 
   private static class MockAclAwareMetadataDomainRepository extends MockSessionAwareMetadataDomainRepository implements
@@ -13,9 +13,9 @@
 
 package org.pentaho.platform.monitoring;
 
-import com.google.common.eventbus.AsyncEventBus;
 import com.google.common.eventbus.EventBus;
 import org.pentaho.platform.api.monitoring.IMonitoringEvent;
+import org.pentaho.platform.api.monitoring.IMonitoringEventMetrics;
 import org.pentaho.platform.api.monitoring.IMonitoringService;
 import org.pentaho.platform.api.monitoring.IMonitoringSubscriber;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
@@ -25,43 +25,101 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
- * Wrapper for the AsyncEventBus class.
+ * Asynchronous event bus of the platform.
  * <p/>
- * The methods of AsyncEventBus use internal synchronization, so this singleton is thread-safe
+ * Posting an event only counts it and queues it for a bounded pool of dispatcher threads, which hand it to its
+ * subscribers; publishers never wait on a lock of this service. The pool has a fixed number of threads and a queue of
+ * fixed capacity, so bursts of events can't make it spawn threads without limit; what happens to events posted while
+ * the queue is full is decided by the {@link OverflowPolicy}. Registering and unregistering subscribers goes straight
+ * to guava's event bus, which synchronizes internally.
+ * <p/>
+ * Events posted directly to the {@link EventBus} this service registers in PentahoSystem take the same route.
  */
 public class MonitoringService implements IMonitoringService {
 
+  /**
+   * What to do with an event posted while the dispatch queue is full.
+   */
+  public enum OverflowPolicy {
+    /**
+     * discard the event
+     */
+    DROP,
+    /**
+     * dispatch the event in the posting thread
+     */
+    CALLER_RUNS,
+    /**
+     * wait for room in the queue
+     */
+    BLOCK
+  }
+
+  public static final int DEFAULT_THREADS = Math.max( 2, Runtime.getRuntime().availableProcessors() );
+
+  public static final int DEFAULT_QUEUE_CAPACITY = 10000;
+
+  private static final String THREAD_NAME = "MonitoringService pool-"; //$NON-NLS-1$
+
   private Logger logger = LoggerFactory.getLogger( MonitoringService.class );
 
-  private AsyncEventBus asyncEventBus; // asynchronous dispatching of events
+  private final DispatchingEventBus eventBus; // asynchronous dispatching of events
+
+  private final ThreadPoolExecutor executor;
+
+  private final OverflowPolicy overflowPolicy;
+
+  private final ConcurrentMap<Class<?>, EventMetrics> eventMetrics = new ConcurrentHashMap<>();
 
 
   public MonitoringService() {
+    this( DEFAULT_THREADS, DEFAULT_QUEUE_CAPACITY, OverflowPolicy.CALLER_RUNS, false );
+  }
 
-    asyncEventBus = new AsyncEventBus( Executors.newCachedThreadPool(
-        new ThreadFactory() {
-          @Override
-          public Thread newThread( Runnable r ) {
-            Thread thread = Executors.defaultThreadFactory().newThread( r );
-            thread.setDaemon( true );
-            thread.setName( "MonitoringService pool" );
-            return thread;
-          }
-        }
-    ) );
+  /**
+   * @param threads           maximum number of dispatcher threads
+   * @param queueCapacity     maximum number of events waiting to be dispatched
+   * @param overflowPolicy    what to do with events posted while the queue is full
+   * @param useVirtualThreads dispatch in virtual threads, if the JVM supports them
+   */
+  public MonitoringService( int threads, int queueCapacity, OverflowPolicy overflowPolicy,
+                            boolean useVirtualThreads ) {
+    if ( threads < 1 || queueCapacity < 1 || overflowPolicy == null ) {
+      throw new IllegalArgumentException( "threads and queueCapacity must be positive, overflowPolicy is required" );
+    }
+    this.overflowPolicy = overflowPolicy;
+
+    executor = new ThreadPoolExecutor( threads, threads, 60, TimeUnit.SECONDS,
+      new LinkedBlockingQueue<Runnable>( queueCapacity ), createThreadFactory( useVirtualThreads ),
+      new OverflowHandler() );
+    executor.allowCoreThreadTimeOut( true );
+
+    eventBus = new DispatchingEventBus();
 
     // register the bus with PentahoSystem
     PentahoSystem.registerReference(
-      new SingletonPentahoObjectReference.Builder<EventBus>( EventBus.class ).object( asyncEventBus ).attributes(
+      new SingletonPentahoObjectReference.Builder<EventBus>( EventBus.class ).object( eventBus ).attributes(
         Collections.<String, Object>singletonMap( "id", "monitoring" ) ).build(), EventBus.class );
 
     // guava's elegant Catch-All-That-Fell-Thru-Cracks ( a.k.a 'DeadEvents' )
     MonitoringDeadEventSubscriber deadEventSubscriber = new MonitoringDeadEventSubscriber();
-    getAsyncEventBus().register( deadEventSubscriber );
+    eventBus.register( deadEventSubscriber );
 
     //register this service in PentahoSystem
     registerMyself();
@@ -73,9 +131,9 @@ public class MonitoringService implements IMonitoringService {
    * @param subscriber IMonitoringSubscriber event handler
    */
   @Override
-  public synchronized <T extends IMonitoringSubscriber> void register( T subscriber ) {
+  public <T extends IMonitoringSubscriber> void register( T subscriber ) {
     logger.debug( "registering subscriber " + ( subscriber != null ? subscriber.getSubscriberId() : "null" ) );
-    getAsyncEventBus().register( subscriber );
+    eventBus.register( subscriber );
   }
 
   /**
@@ -84,9 +142,9 @@ public class MonitoringService implements IMonitoringService {
    * @param subscriber IMonitoringSubscriber event handler
    */
   @Override
-  public synchronized <T extends IMonitoringSubscriber> void unregister( T subscriber ) {
+  public <T extends IMonitoringSubscriber> void unregister( T subscriber ) {
     logger.debug( "unregistering subscriber " + ( subscriber != null ? subscriber.getSubscriberId() : "null" ) );
-    getAsyncEventBus().unregister( subscriber );
+    eventBus.unregister( subscriber );
   }
 
   /**
@@ -95,13 +153,37 @@ public class MonitoringService implements IMonitoringService {
    * @param event IMonitoringEvent event object
    */
   @Override
-  public synchronized <T extends IMonitoringEvent> void post( T event ) {
-    logger.debug( "posting event " + ( event != null ? event.getId() : "null" ) );
-    getAsyncEventBus().post( event );
+  public <T extends IMonitoringEvent> void post( T event ) {
+    if ( logger.isDebugEnabled() ) {
+      logger.debug( "posting event " + ( event != null ? event.getId() : "null" ) );
+    }
+    eventBus.post( event );
+  }
+
+  @Override
+  public Map<String, IMonitoringEventMetrics> getEventMetrics() {
+    Map<String, IMonitoringEventMetrics> snapshot = new TreeMap<>();
+    for ( EventMetrics metrics : eventMetrics.values() ) {
+      snapshot.put( metrics.eventType, metrics.snapshot() );
+    }
+    return snapshot;
   }
 
-  private AsyncEventBus getAsyncEventBus() {
-    return asyncEventBus;
+  @Override
+  public long getQueueDepth() {
+    return executor.getQueue().size();
+  }
+
+  public OverflowPolicy getOverflowPolicy() {
+    return overflowPolicy;
+  }
+
+  /**
+   * Stops dispatching. Events already queued are still handed to their subscribers, events posted from now on are
+   * dropped.
+   */
+  public void shutdown() {
+    executor.shutdown();
   }
 
   private void registerMyself() {
@@ -115,4 +197,222 @@ public class MonitoringService implements IMonitoringService {
     }
   }
 
+  private EventMetrics getMetrics( Object event ) {
+    Class<?> eventType = event.getClass();
+    EventMetrics metrics = eventMetrics.get( eventType );
+    return metrics != null ? metrics : eventMetrics.computeIfAbsent( eventType, EventMetrics::new );
+  }
+
+  private ThreadFactory createThreadFactory( boolean useVirtualThreads ) {
+    if ( useVirtualThreads ) {
+      try {
+        // Thread.ofVirtual().name( THREAD_NAME, 0 ).factory(), on JVMs that have it
+        Object builder = Thread.class.getMethod( "ofVirtual" ).invoke( null );
+        Class<?> builderType = Class.forName( "java.lang.Thread$Builder" );
+        builder = builderType.getMethod( "name", String.class, long.class ).invoke( builder, THREAD_NAME, 0L );
+        return (ThreadFactory) builderType.getMethod( "factory" ).invoke( builder );
+      } catch ( ReflectiveOperationException e ) {
+        logger.warn( "virtual threads are not supported by this JVM, dispatching in platform threads" );
+      }
+    }
+    final AtomicInteger threadNumber = new AtomicInteger();
+    return new ThreadFactory() {
+      @Override
+      public Thread newThread( Runnable r ) {
+        Thread thread = Executors.defaultThreadFactory().newThread( r );
+        thread.setDaemon( true );
+        thread.setName( THREAD_NAME + threadNumber.getAndIncrement() );
+        return thread;
+      }
+    };
+  }
+
+  /**
+   * Guava event bus that dispatches synchronously to the subscribers, but is only ever called by the dispatcher
+   * threads: {@link #post(Object)} queues the event for them.
+   */
+  private class DispatchingEventBus extends EventBus {
+
+    DispatchingEventBus() {
+      super( "monitoring" ); //$NON-NLS-1$
+    }
+
+    @Override
+    public void post( Object event ) {
+      if ( event == null ) {
+        return;
+      }
+      EventMetrics metrics = getMetrics( event );
+      metrics.posted.increment();
+      metrics.queued.increment();
+      try {
+        executor.execute( new Dispatch( event, metrics ) );
+      } catch ( RejectedExecutionException e ) {
+        // rejected by the overflow handler, which has accounted for it
+      }
+    }
+
+    void dispatch( Object event ) {
+      super.post( event );
+    }
+  }
+
+  private class Dispatch implements Runnable {
+
+    private final Object event;
+
+    private final EventMetrics metrics;
+
+    Dispatch( Object event, EventMetrics metrics ) {
+      this.event = event;
+      this.metrics = metrics;
+    }
+
+    @Override
+    public void run() {
+      metrics.queued.decrement();
+      long start = System.nanoTime();
+      try {
+        eventBus.dispatch( event );
+      } finally {
+        metrics.dispatchNanos.add( System.nanoTime() - start );
+        metrics.dispatched.increment();
+      }
+    }
+
+    void drop() {
+      metrics.queued.decrement();
+      metrics.dropped.increment();
+    }
+  }
+
+  private class OverflowHandler implements RejectedExecutionHandler {
+
+    @Override
+    public void rejectedExecution( Runnable r, ThreadPoolExecutor pool ) {
+      Dispatch dispatch = (Dispatch) r;
+      if ( !pool.isShutdown() ) {
+        switch ( overflowPolicy ) {
+          case CALLER_RUNS:
+            dispatch.run();
+            return;
+          case BLOCK:
+            if ( enqueue( pool.getQueue(), dispatch ) ) {
+              return;
+            }
+            break;
+          default:
+            break;
+        }
+      }
+      dispatch.drop();
+      if ( logger.isDebugEnabled() ) {
+        logger.debug( "dropped event of type " + dispatch.event.getClass().getName() );
+      }
+    }
+
+    private boolean enqueue( BlockingQueue<Runnable> queue, Dispatch dispatch ) {
+      try {
+        queue.put( dispatch );
+      } catch ( InterruptedException e ) {
+        Thread.currentThread().interrupt();
+        return false;
+      }
+      if ( executor.isShutdown() && queue.remove( dispatch ) ) {
+        // shut down while waiting for room
+        return false;
+      }
+      if ( executor.getPoolSize() == 0 ) {
+        // all threads timed out while we were waiting
+        executor.prestartCoreThread();
+      }
+      return true;
+    }
+  }
+
+  private static class EventMetrics {
+
+    private final String eventType;
+
+    private final LongAdder posted = new LongAdder();
+
+    private final LongAdder dispatched = new LongAdder();
+
+    private final LongAdder dropped = new LongAdder();
+
+    private final LongAdder queued = new LongAdder();
+
+    private final LongAdder dispatchNanos = new LongAdder();
+
+    EventMetrics( Class<?> eventType ) {
+      this.eventType = eventType.getName();
+    }
+
+    IMonitoringEventMetrics snapshot() {
+      return new EventMetricsSnapshot( eventType, posted.sum(), dispatched.sum(), dropped.sum(),
+        Math.max( 0, queued.sum() ), dispatchNanos.sum() / 1000000L );
+    }
+  }
+
+  private static class EventMetricsSnapshot implements IMonitoringEventMetrics {
+
+    private final String eventType;
+
+    private final long postedCount;
+
+    private final long dispatchedCount;
+
+    private final long droppedCount;
+
+    private final long queueDepth;
+
+    private final long dispatchMillis;
+
+    EventMetricsSnapshot( String eventType, long postedCount, long dispatchedCount, long droppedCount,
+                          long queueDepth, long dispatchMillis ) {
+      this.eventType = eventType;
+      this.postedCount = postedCount;
+      this.dispatchedCount = dispatchedCount;
+      this.droppedCount = droppedCount;
+      this.queueDepth = queueDepth;
+      this.dispatchMillis = dispatchMillis;
+    }
+
+    @Override
+    public String getEventType() {
+      return eventType;
+    }
+
+    @Override
+    public long getPostedCount() {
+      return postedCount;
+    }
+
+    @Override
+    public long getDispatchedCount() {
+      return dispatchedCount;
+    }
+
+    @Override
+    public long getDroppedCount() {
+      return droppedCount;
+    }
+
+    @Override
+    public long getQueueDepth() {
+      return queueDepth;
+    }
+
+    @Override
+    public long getDispatchMillis() {
+      return dispatchMillis;
+    }
+
+    @Override
+    public String toString() {
+      return eventType + ": posted=" + postedCount + ", dispatched=" + dispatchedCount + ", dropped=" + droppedCount
+        + ", queued=" + queueDepth + ", dispatch ms=" + dispatchMillis;
+    }
+  }
+
 }
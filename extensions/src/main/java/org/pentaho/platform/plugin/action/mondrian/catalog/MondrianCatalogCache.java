@@ -14,18 +14,20 @@ package org.pentaho.platform.plugin.action.mondrian.catalog;
 
 import java.io.Serializable;
 import java.time.Instant;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
 /**
  * represents the entire regional cache structure for caching Mondrian Catalogs.  The cache is optimized so it can be
  * built incrementally, one catalog at a time, or fully depending upon demands.  The {@Link MondrianCatalogCacheState}
- * tracks whether and and when the cache was fully loaded.
+ * tracks whether and and when the cache was fully loaded. Catalogs may be put while the cache is being read, so the
+ * catalog map is synchronized; iterating it requires holding its lock.
  */
 public class MondrianCatalogCache implements Serializable {
 
   private MondrianCatalogCacheState mondrianCatalogCacheState = new MondrianCatalogCacheState();
-  private Map<String, MondrianCatalog> catalogs = new HashMap<>();
+  private Map<String, MondrianCatalog> catalogs = Collections.synchronizedMap( new HashMap<>() );
 
   public MondrianCatalogCacheState getMondrianCatalogCacheState() {
     return mondrianCatalogCacheState;
@@ -73,6 +73,8 @@ import org.pentaho.platform.util.logging.Logger;
 import org.pentaho.platform.util.messages.LocaleHelper;
 import org.pentaho.platform.util.xml.XMLParserFactoryProducer;
 import org.pentaho.platform.util.xml.dom4j.XmlDom4JHelper;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 import org.xml.sax.SAXException;
@@ -100,6 +102,16 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.pentaho.platform.plugin.services.importexport.legacy.MondrianCatalogRepositoryHelper.ANNOTATED_SCHEMA_FILE;
 import static org.pentaho.platform.plugin.services.importexport.legacy.MondrianCatalogRepositoryHelper.ANNOTATIONS_FILE;
@@ -150,7 +162,7 @@ public class MondrianCatalogHelper implements IAclAwareMondrianCatalogService {
 
   // ~ Instance fields =================================================================================================
 
-  private String dataSourcesConfig;
+  private volatile String dataSourcesConfig;
 
   /**
    * true to use schema name from catalog definition (aka schema file) as catalog name.
@@ -177,6 +189,31 @@ public class MondrianCatalogHelper implements IAclAwareMondrianCatalogService {
   private final IUnifiedRepository unifiedRepository;
   private final IOlapService olapService;
 
+  private static final AtomicInteger catalogLoaderThreadCount = new AtomicInteger();
+
+  /**
+   * Loads the catalogs of a locale in parallel when its cache is fully loaded. Idle threads are let go, so the pool
+   * costs nothing between loads.
+   */
+  private static final ThreadPoolExecutor catalogLoader = createCatalogLoader();
+
+  /**
+   * Catalog loads in progress, by locale and catalog, so that concurrent requests for a catalog share one load.
+   */
+  private final ConcurrentMap<String, FutureTask<Void>> catalogLoads = new ConcurrentHashMap<>();
+
+  /**
+   * Full loads in progress, by locale.
+   */
+  private final ConcurrentMap<String, FutureTask<Void>> fullLoads = new ConcurrentHashMap<>();
+
+  /**
+   * Serializes adding or replacing a catalog, by catalog name.
+   */
+  private final ConcurrentMap<String, Object> catalogLocks = new ConcurrentHashMap<>();
+
+  private final Object cacheRegionLock = new Object();
+
   // ~ Constructors ====================================================================================================
 
   public MondrianCatalogHelper( boolean useLegacyDbName ) {
@@ -276,7 +313,10 @@ public class MondrianCatalogHelper implements IAclAwareMondrianCatalogService {
 
     List<MondrianCatalog> catalogs = new ArrayList<>();
     if ( mondrianCatalogCache != null ) {
-      catalogs.addAll( mondrianCatalogCache.getCatalogs().values() );
+      Map<String, MondrianCatalog> cachedCatalogs = mondrianCatalogCache.getCatalogs();
+      synchronized ( cachedCatalogs ) {
+        catalogs.addAll( cachedCatalogs.values() );
+      }
     }
     // Sort
     Collections.sort( catalogs, ( o1, o2 ) -> o1.getName().compareTo( o2.getName() ) );
@@ -372,27 +412,42 @@ public class MondrianCatalogHelper implements IAclAwareMondrianCatalogService {
   /**
    * This method will conditionally load the catalogs into the cache, depending on the internal flag to check if it
    * is fully loaded,
-   * It is synchronized to prevent multiple threads from trying to load the catalogs
+   * Threads that need the catalogs of a locale while they are being loaded wait for that load instead of starting
+   * another one.
    *
    * @param pentahoSession the pentaho session where the cache is stored
    */
-  synchronized void initIfNotFullyLoaded( final IPentahoSession pentahoSession ) {
+  void initIfNotFullyLoaded( final IPentahoSession pentahoSession ) {
     // First check if the catalogs are initialized and fully loaded for the current locale
     MondrianCatalogCache mondrianCatalogCache = getCacheForRegion( pentahoSession );
-    if ( mondrianCatalogCache.getMondrianCatalogCacheState().isFullyLoaded() ) {
-      return;
-    }
-
-    if ( MondrianCatalogHelper.logger.isDebugEnabled() ) {
-      MondrianCatalogHelper.logger.debug( "init" ); //$NON-NLS-1$
+    while ( !mondrianCatalogCache.getMondrianCatalogCacheState().isFullyLoaded() ) {
+      String locale = getLocale().toString();
+      FutureTask<Void> load = new FutureTask<>( () -> {
+        if ( MondrianCatalogHelper.logger.isDebugEnabled() ) {
+          MondrianCatalogHelper.logger.debug( "init" ); //$NON-NLS-1$
+        }
+        // By default, we will use the system to load all schemas into the cache.
+        // access to these schemas is controlled later via the hasAccess() method
+        loadCatalogsIntoCache( makeDataSources(), PentahoSessionHolder.getSession() );
+      }, null );
+      FutureTask<Void> existing = fullLoads.putIfAbsent( locale, load );
+      if ( existing == null ) {
+        try {
+          load.run();
+        } finally {
+          fullLoads.remove( locale, load );
+        }
+        waitFor( load );
+        return;
+      }
+      waitFor( existing );
+      // the cache may have been reset while we were waiting
+      mondrianCatalogCache = getCacheForRegion( pentahoSession );
     }
-    // By default, we will use the system to load all schemas into the cache.
-    // access to these schemas is controlled later via the hasAccess() method
-    loadCatalogsIntoCache( makeDataSources(), PentahoSessionHolder.getSession() );
   }
 
   @Override
-  public synchronized void reInit( final IPentahoSession pentahoSession ) {
+  public void reInit( final IPentahoSession pentahoSession ) {
     final ICacheManager cacheMgr = PentahoSystem.getCacheManager( pentahoSession );
     if ( cacheMgr.cacheEnabled( MONDRIAN_CATALOG_CACHE_REGION ) ) {
       cacheMgr.clearRegionCache( MONDRIAN_CATALOG_CACHE_REGION );
@@ -670,8 +725,8 @@ public class MondrianCatalogHelper implements IAclAwareMondrianCatalogService {
    * use the in memory session value of input stream (used by test harness)
    */
   @Override
-  public synchronized void addCatalog( final MondrianCatalog catalog, final boolean overwrite,
-                                       final IPentahoSession pentahoSession ) throws MondrianCatalogServiceException {
+  public void addCatalog( final MondrianCatalog catalog, final boolean overwrite,
+                          final IPentahoSession pentahoSession ) throws MondrianCatalogServiceException {
     String mondrianSchema = (String) pentahoSession.getAttribute( "MONDRIAN_SCHEMA_XML_CONTENT" ); //$NON-NLS-1$
     InputStream schemaInputStream = IOUtils.toInputStream( mondrianSchema );
     addCatalog( schemaInputStream, catalog, overwrite, pentahoSession );
@@ -697,9 +752,9 @@ public class MondrianCatalogHelper implements IAclAwareMondrianCatalogService {
    * @throws MondrianCatalogServiceException
    */
   @Override
-  public synchronized void addCatalog( InputStream schemaInputStream, final MondrianCatalog catalog,
-                                       final boolean overwrite, RepositoryFileAcl acl,
-                                       final IPentahoSession pentahoSession )
+  public void addCatalog( InputStream schemaInputStream, final MondrianCatalog catalog,
+                          final boolean overwrite, RepositoryFileAcl acl,
+                          final IPentahoSession pentahoSession )
     throws MondrianCatalogServiceException {
     if ( MondrianCatalogHelper.logger.isDebugEnabled() ) {
       MondrianCatalogHelper.logger.debug( "addCatalog" ); //$NON-NLS-1$
@@ -708,6 +763,15 @@ public class MondrianCatalogHelper implements IAclAwareMondrianCatalogService {
     // if cache was not initialized, do so now
     initIfNotFullyLoaded( pentahoSession );
 
+    // only adding or replacing the same catalog has to wait
+    synchronized ( getCatalogLock( catalog.getName() ) ) {
+      addCatalogToRepositoryAndCache( schemaInputStream, catalog, overwrite, acl, pentahoSession );
+    }
+  }
+
+  private void addCatalogToRepositoryAndCache( InputStream schemaInputStream, final MondrianCatalog catalog,
+                                               final boolean overwrite, RepositoryFileAcl acl,
+                                               final IPentahoSession pentahoSession ) {
     // check for existing dataSourceInfo+catalog
     final boolean catalogExistsWithSameDatasource = catalogExists( catalog, pentahoSession );
     if ( catalogExistsWithSameDatasource && !overwrite ) {
@@ -936,9 +1000,35 @@ public class MondrianCatalogHelper implements IAclAwareMondrianCatalogService {
       return;
     }
 
+    List<DataSourcesConfig.Catalog> catalogs = new ArrayList<>();
     for ( DataSourcesConfig.DataSource dataSource : dataSources.dataSources ) {
-      for ( DataSourcesConfig.Catalog catalog : dataSource.catalogs.catalogs ) {
-        cacheCatalog( catalog, mondrianCatalogCache );
+      Collections.addAll( catalogs, dataSource.catalogs.catalogs );
+    }
+
+    String locale = getLocale().toString();
+    if ( catalogs.size() < 2 ) {
+      for ( DataSourcesConfig.Catalog catalog : catalogs ) {
+        loadCatalog( locale, getCatalogKey( catalog ), false, () -> cacheCatalog( catalog, mondrianCatalogCache ) );
+      }
+    } else {
+      // each catalog is parsed on a loader thread; a catalog that is already being loaded on request is waited for
+      List<Future<Void>> loads = new ArrayList<>( catalogs.size() );
+      for ( DataSourcesConfig.Catalog catalog : catalogs ) {
+        loads.add( catalogLoader.submit( inCallerContext( () -> loadCatalog( locale, getCatalogKey( catalog ), false,
+          () -> cacheCatalog( catalog, mondrianCatalogCache ) ) ) ) );
+      }
+      RuntimeException failure = null;
+      for ( Future<Void> load : loads ) {
+        try {
+          waitFor( load );
+        } catch ( RuntimeException e ) {
+          if ( failure == null ) {
+            failure = e;
+          }
+        }
+      }
+      if ( failure != null ) {
+        throw failure;
       }
     }
 
@@ -946,6 +1036,110 @@ public class MondrianCatalogHelper implements IAclAwareMondrianCatalogService {
     mondrianCatalogCache.getMondrianCatalogCacheState().setFullyLoaded();
   }
 
+  private static String getCatalogKey( DataSourcesConfig.Catalog catalog ) {
+    return catalog.name != null ? catalog.name : catalog.definition;
+  }
+
+  /**
+   * Runs a catalog load unless the same catalog is already being loaded for the locale, in which case that load is
+   * waited for. A load with <code>overwrite</code> set always runs, but not before the one in progress is done, so it
+   * reads what that load might have missed.
+   *
+   * @param locale      the locale of the cache the catalog is loaded into
+   * @param catalogName the catalog name or definition, <code>null</code> if unknown
+   * @param overwrite   whether the catalog is being replaced
+   * @param loader      loads the catalog into the cache
+   */
+  private void loadCatalog( final String locale, final String catalogName, final boolean overwrite,
+                            final Runnable loader ) {
+    if ( catalogName == null ) {
+      loader.run();
+      return;
+    }
+    String key = locale + ":" + catalogName; //$NON-NLS-1$
+    FutureTask<Void> load = new FutureTask<>( loader, null );
+    FutureTask<Void> existing;
+    while ( ( existing = catalogLoads.putIfAbsent( key, load ) ) != null ) {
+      try {
+        waitFor( existing );
+      } catch ( RuntimeException e ) {
+        if ( !overwrite || Thread.currentThread().isInterrupted() ) {
+          throw e;
+        }
+      }
+      if ( !overwrite ) {
+        return;
+      }
+    }
+    try {
+      load.run();
+    } finally {
+      catalogLoads.remove( key, load );
+    }
+    waitFor( load );
+  }
+
+  private static void waitFor( final Future<Void> load ) {
+    try {
+      load.get();
+    } catch ( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+      throw new MondrianCatalogServiceException( e );
+    } catch ( ExecutionException e ) {
+      Throwable cause = e.getCause();
+      if ( cause instanceof RuntimeException ) {
+        throw (RuntimeException) cause;
+      }
+      if ( cause instanceof Error ) {
+        throw (Error) cause;
+      }
+      throw new MondrianCatalogServiceException( cause );
+    }
+  }
+
+  private Object getCatalogLock( final String catalogName ) {
+    return catalogLocks.computeIfAbsent( catalogName, name -> new Object() );
+  }
+
+  /**
+   * Runs a catalog load on a loader thread with the session, security context and locale of the calling thread, which
+   * the repository and the schema processors depend on.
+   */
+  private static Callable<Void> inCallerContext( final Runnable load ) {
+    final IPentahoSession pentahoSession = PentahoSessionHolder.getSession();
+    final SecurityContext securityContext = SecurityContextHolder.getContext();
+    final Locale localeBase = LocaleHelper.getThreadLocaleBase();
+    final Locale localeOverride = LocaleHelper.getThreadLocaleOverride();
+    return () -> {
+      PentahoSessionHolder.setSession( pentahoSession );
+      SecurityContextHolder.setContext( securityContext );
+      LocaleHelper.setThreadLocaleBase( localeBase );
+      LocaleHelper.setThreadLocaleOverride( localeOverride );
+      try {
+        load.run();
+        return null;
+      } finally {
+        LocaleHelper.setThreadLocaleOverride( null );
+        LocaleHelper.setThreadLocaleBase( null );
+        SecurityContextHolder.clearContext();
+        PentahoSessionHolder.removeSession();
+      }
+    };
+  }
+
+  private static ThreadPoolExecutor createCatalogLoader() {
+    int threads = Math.max( 2, Math.min( 8, Runtime.getRuntime().availableProcessors() ) );
+    ThreadPoolExecutor executor = new ThreadPoolExecutor( threads, threads, 60L, TimeUnit.SECONDS,
+      new LinkedBlockingQueue<>(), runnable -> {
+        Thread thread = new Thread( runnable, "MondrianCatalogLoader-" //$NON-NLS-1$
+          + catalogLoaderThreadCount.incrementAndGet() );
+        thread.setDaemon( true );
+        return thread;
+      } );
+    executor.allowCoreThreadTimeOut( true );
+    return executor;
+  }
+
   @Override
   public InputStream getCatalogSchemaAsStream( String catalogName, boolean applyAnnotations ) {
 
@@ -1284,16 +1478,22 @@ public class MondrianCatalogHelper implements IAclAwareMondrianCatalogService {
    * @param pentahoSession the pentaho session where the cache is stored
    * @param overwrite      flag to indicate if the catalog should be overwritten
    */
-  private synchronized void loadCatalogIntoCache( String catalogName, final IPentahoSession pentahoSession,
-                                                  boolean overwrite ) {
+  private void loadCatalogIntoCache( String catalogName, final IPentahoSession pentahoSession,
+                                    boolean overwrite ) {
     ICacheManager cacheMgr = PentahoSystem.getCacheManager( pentahoSession );
     MondrianCatalogCache mondrianCatalogCache = getCacheForRegion( cacheMgr );
     if ( mondrianCatalogCache.getCatalog( catalogName ) != null && !overwrite ) {
       return;  //We already have it
     }
 
-    findDatasourceWithCatalog( catalogName, mondrianCatalogCache );
-    cacheMgr.putInRegionCache( MONDRIAN_CATALOG_CACHE_REGION, getLocale().toString(), mondrianCatalogCache );
+    String locale = getLocale().toString();
+    loadCatalog( locale, catalogName, overwrite, () -> {
+      if ( mondrianCatalogCache.getCatalog( catalogName ) != null && !overwrite ) {
+        return;  //Loaded while we were getting here
+      }
+      findDatasourceWithCatalog( catalogName, mondrianCatalogCache );
+      cacheMgr.putInRegionCache( MONDRIAN_CATALOG_CACHE_REGION, locale, mondrianCatalogCache );
+    } );
 
     if ( mondrianCatalogCache.getCatalog( catalogName ) == null && !mondrianCatalogCache.getMondrianCatalogCacheState()
       .isFullyLoaded() && isCatalogDefinitionString( catalogName ) ) {
@@ -1318,8 +1518,16 @@ public class MondrianCatalogHelper implements IAclAwareMondrianCatalogService {
       (MondrianCatalogCache) cacheMgr.getFromRegionCache( MONDRIAN_CATALOG_CACHE_REGION,
         getLocale().toString() );
     if ( mondrianCatalogCache == null ) {
-      mondrianCatalogCache = new MondrianCatalogCache();
-      cacheMgr.putInRegionCache( MONDRIAN_CATALOG_CACHE_REGION, getLocale().toString(), mondrianCatalogCache );
+      // two threads must not each start filling a cache of their own
+      synchronized ( cacheRegionLock ) {
+        mondrianCatalogCache =
+          (MondrianCatalogCache) cacheMgr.getFromRegionCache( MONDRIAN_CATALOG_CACHE_REGION,
+            getLocale().toString() );
+        if ( mondrianCatalogCache == null ) {
+          mondrianCatalogCache = new MondrianCatalogCache();
+          cacheMgr.putInRegionCache( MONDRIAN_CATALOG_CACHE_REGION, getLocale().toString(), mondrianCatalogCache );
+        }
+      }
     }
 
     return mondrianCatalogCache;
@@ -67,7 +67,12 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Properties;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -82,8 +87,9 @@ import java.util.stream.Collectors;
  * <p>It will also check for the presence of a {@link IConnectionUserRoleMapper}
  * and change the roles accordingly before creating a connection.
  * <p/>
- * <p>This implementation is thread safe. It will use a {@link ReadWriteLock}
- * to manage the access to its metadata.
+ * <p>This implementation is thread safe. The catalogs are cached per locale
+ * as immutable lists, which are read without locking. The {@link ReadWriteLock}
+ * only serializes flushes with the caching of newly loaded catalogs.
  */
 public class OlapServiceImpl implements IOlapService {
 
@@ -91,6 +97,13 @@ public class OlapServiceImpl implements IOlapService {
 
   final ReadWriteLock cacheLock = new ReentrantReadWriteLock();
 
+  // cache sub-region key -> the load of the catalogs in progress for it
+  private final ConcurrentMap<Object, FutureTask<List<IOlapService.Catalog>>> catalogLoads =
+    new ConcurrentHashMap<>();
+
+  // incremented whenever the cached catalogs become stale, so that loads started before are not cached
+  private final AtomicLong cacheGeneration = new AtomicLong();
+
   /**
    * This is the default name of an XMLA data source on the server.
    * Mondrian XMLA servers only support a single data source.
@@ -104,8 +117,8 @@ public class OlapServiceImpl implements IOlapService {
    * getRepository and getHelper because we can't init them before spring is
    * done initializing the sub modules.
    */
-  private IUnifiedRepository repository;
-  private MondrianCatalogRepositoryHelper helper;
+  private volatile IUnifiedRepository repository;
+  private volatile MondrianCatalogRepositoryHelper helper;
 
   private MondrianServer server;
   private final List<IOlapConnectionFilter> filters;
@@ -160,18 +173,26 @@ public class OlapServiceImpl implements IOlapService {
     return isSec;
   }
 
-  synchronized IUnifiedRepository getRepository() {
+  IUnifiedRepository getRepository() {
     if ( repository == null ) {
-      repository = PentahoSystem.get( IUnifiedRepository.class );
+      synchronized ( this ) {
+        if ( repository == null ) {
+          repository = PentahoSystem.get( IUnifiedRepository.class );
+        }
+      }
     }
     return repository;
   }
 
-  synchronized MondrianCatalogRepositoryHelper getHelper() {
+  MondrianCatalogRepositoryHelper getHelper() {
     if ( helper == null ) {
-      helper =
-        new MondrianCatalogRepositoryHelper(
-          getRepository() );
+      synchronized ( this ) {
+        if ( helper == null ) {
+          helper =
+            new MondrianCatalogRepositoryHelper(
+              getRepository() );
+        }
+      }
     }
     return helper;
   }
@@ -181,43 +202,92 @@ public class OlapServiceImpl implements IOlapService {
   }
 
   /**
-   * Returns a list of catalogs for the current session.
+   * Returns the catalogs for the locale of the current session, loading them
+   * if they are not cached yet.
    *
    * <p>The cache is stored in the platform's caches in the region
    * {@link #CATALOG_CACHE_REGION}. It is also segmented by
    * locale, but we only return the correct sub-region according to the
-   * session passed as a parameter.
+   * session passed as a parameter. Sub-regions hold immutable lists, which
+   * are replaced rather than modified, so reading them takes no lock.
+   * Concurrent callers that find no catalogs for their locale share a
+   * single load from the repository.
    */
-  @SuppressWarnings( "unchecked" )
-  protected synchronized List<IOlapService.Catalog> getCache( IPentahoSession session ) {
-    // Create the cache region if necessary.
-    final ICacheManager cacheMgr = PentahoSystem.getCacheManager( session );
+  protected List<IOlapService.Catalog> getCache( IPentahoSession session ) {
+    final ICacheManager cacheMgr = getCacheManager( session );
     final Object cacheKey = makeCacheSubRegionKey( getLocale() );
 
+    final List<IOlapService.Catalog> cached = getCachedCatalogs( cacheMgr, cacheKey );
+    if ( cached != null ) {
+      return cached;
+    }
+    return loadCache( cacheMgr, cacheKey );
+  }
 
-    final Lock writeLock = cacheLock.writeLock();
-    try {
+  private ICacheManager getCacheManager( IPentahoSession session ) {
+    final ICacheManager cacheMgr = PentahoSystem.getCacheManager( session );
+    if ( !cacheMgr.cacheEnabled( CATALOG_CACHE_REGION ) ) {
+      synchronized ( this ) {
+        if ( !cacheMgr.cacheEnabled( CATALOG_CACHE_REGION ) ) {
+          cacheMgr.addCacheRegion( CATALOG_CACHE_REGION );
+        }
+      }
+    }
+    return cacheMgr;
+  }
 
-      writeLock.lock();
+  @SuppressWarnings( "unchecked" )
+  private List<IOlapService.Catalog> getCachedCatalogs( ICacheManager cacheMgr, Object cacheKey ) {
+    final Object cached = cacheMgr.getFromRegionCache( CATALOG_CACHE_REGION, cacheKey );
+    return cached instanceof List ? (List<IOlapService.Catalog>) cached : null;
+  }
 
-      if ( !cacheMgr.cacheEnabled( CATALOG_CACHE_REGION ) ) {
-        // Create the region. This requires write access.
-        cacheMgr.addCacheRegion( CATALOG_CACHE_REGION );
+  /**
+   * Loads the catalogs of a sub-region and caches them, unless the cache was
+   * flushed in the meantime. Only one load per sub-region runs at a time; the
+   * other callers wait for its result.
+   */
+  private List<IOlapService.Catalog> loadCache( final ICacheManager cacheMgr, final Object cacheKey ) {
+    final FutureTask<List<IOlapService.Catalog>> load = new FutureTask<>( () -> {
+      final long generation = cacheGeneration.get();
+      // Another load may have completed since the caller looked.
+      final List<IOlapService.Catalog> cached = getCachedCatalogs( cacheMgr, cacheKey );
+      if ( cached != null ) {
+        return cached;
       }
-
-      if ( cacheMgr.getFromRegionCache( CATALOG_CACHE_REGION, cacheKey ) == null ) {
-        // Create the sub-region. This requires write access.
-        cacheMgr.putInRegionCache(
-          CATALOG_CACHE_REGION,
-          cacheKey,
-          new ArrayList<IOlapService.Catalog>() );
+      final List<IOlapService.Catalog> catalogs = loadCatalogs();
+      final Lock readLock = cacheLock.readLock();
+      readLock.lock();
+      try {
+        if ( cacheGeneration.get() == generation ) {
+          cacheMgr.putInRegionCache( CATALOG_CACHE_REGION, cacheKey, catalogs );
+        }
+      } finally {
+        readLock.unlock();
       }
+      return catalogs;
+    } );
 
-      return (List<IOlapService.Catalog>)
-        cacheMgr.getFromRegionCache( CATALOG_CACHE_REGION, cacheKey );
-
-    } finally {
-      writeLock.unlock();
+    FutureTask<List<IOlapService.Catalog>> inProgress = catalogLoads.putIfAbsent( cacheKey, load );
+    if ( inProgress == null ) {
+      try {
+        load.run();
+      } finally {
+        catalogLoads.remove( cacheKey, load );
+      }
+      inProgress = load;
+    }
+    try {
+      return inProgress.get();
+    } catch ( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+      throw new IOlapServiceException( e );
+    } catch ( ExecutionException e ) {
+      final Throwable cause = e.getCause();
+      if ( cause instanceof IOlapServiceException ) {
+        throw (IOlapServiceException) cause;
+      }
+      throw new IOlapServiceException( cause );
     }
   }
 
@@ -228,6 +298,7 @@ public class OlapServiceImpl implements IOlapService {
     final Lock writeLock = cacheLock.writeLock();
     try {
       writeLock.lock();
+      cacheGeneration.incrementAndGet();
       final ICacheManager cacheMgr = PentahoSystem.getCacheManager( session );
       cacheMgr.clearRegionCache( CATALOG_CACHE_REGION );
     } finally {
@@ -244,93 +315,76 @@ public class OlapServiceImpl implements IOlapService {
    * will be populated.
    */
   protected void initCache( IPentahoSession session ) {
+    getCache( session );
+  }
 
-    final List<Catalog> cache = getCache( session );
-
-    final boolean needUpdate;
-    final Lock readLock = cacheLock.readLock();
-
+  /**
+   * Loads all catalogs from the repository, as the system user.
+   *
+   * @return the catalogs, sorted by name
+   */
+  private List<IOlapService.Catalog> loadCatalogs() {
+    final List<IOlapService.Catalog> catalogs = new ArrayList<>();
     try {
-      readLock.lock();
-      // Check if the cache is empty.
-      needUpdate = cache.isEmpty();
-    } finally {
-      readLock.unlock();
-    }
-
-    if ( needUpdate ) {
-      final Lock writeLock = cacheLock.writeLock();
-      try {
-        writeLock.lock();
-
-        // First clear the cache
-        cache.clear();
-
-        final Callable<Void> call = new Callable<>() {
-          public Void call() throws Exception {
-            // Now build the cache. Use the system session in the holder.
-            for ( String name : getHelper().getHostedCatalogs() ) {
-              try {
-                addCatalogToCache( PentahoSessionHolder.getSession(), name );
-              } catch ( Throwable t ) {
-                LOG.error(
-                  "Failed to initialize the cache for OLAP connection "
-                  + name,
-                  t );
-              }
-            }
-            for ( String name : getHelper().getOlap4jServers() ) {
-              try {
-                addCatalogToCache( PentahoSessionHolder.getSession(), name );
-              } catch ( Throwable t ) {
-                LOG.error(
-                  "Failed to initialize the cache for OLAP connection "
-                  + name,
-                  t );
-              }
-            }
-            return null;
+      final Callable<Void> call = new Callable<>() {
+        public Void call() throws Exception {
+          // Now build the cache. Use the system session in the holder.
+          for ( String name : getHelper().getHostedCatalogs() ) {
+            addCatalog( catalogs, name );
           }
-        };
-
-        if ( isSecurityEnabled() ) {
-          SecurityHelper.getInstance().runAsSystem( call );
-        } else {
-          call.call();
+          for ( String name : getHelper().getOlap4jServers() ) {
+            addCatalog( catalogs, name );
+          }
+          return null;
         }
+      };
 
-        // Sort it all.
-        Collections.sort(
-          cache,
-          new Comparator<IOlapService.Catalog>() {
-            public int compare( Catalog o1, Catalog o2 ) {
-              return o1.name.compareTo( o2.name );
-            }
-          } );
+      if ( isSecurityEnabled() ) {
+        SecurityHelper.getInstance().runAsSystem( call );
+      } else {
+        call.call();
+      }
+    } catch ( Throwable t ) {
 
-      } catch ( Throwable t ) {
+      LOG.error(
+        "Failed to initialize the connection cache",
+        t );
 
-        LOG.error(
-          "Failed to initialize the connection cache",
-          t );
+      throw new IOlapServiceException( t );
+    }
 
-        throw new IOlapServiceException( t );
+    // Sort it all.
+    Collections.sort(
+      catalogs,
+      new Comparator<IOlapService.Catalog>() {
+        public int compare( Catalog o1, Catalog o2 ) {
+          return o1.name.compareTo( o2.name );
+        }
+      } );
+    return Collections.unmodifiableList( catalogs );
+  }
 
-      } finally {
-        writeLock.unlock();
+  private void addCatalog( List<IOlapService.Catalog> catalogs, String name ) {
+    try {
+      final IOlapService.Catalog catalog = loadCatalog( PentahoSessionHolder.getSession(), name );
+      if ( catalog != null ) {
+        catalogs.add( catalog );
       }
+    } catch ( Throwable t ) {
+      LOG.error(
+        "Failed to initialize the cache for OLAP connection "
+        + name,
+        t );
     }
   }
 
   /**
-   * Adds a catalog and its children to the cache.
-   * Do not use directly. This must be called with a write lock
-   * on the cache.
+   * Loads a catalog and its children.
    *
-   * @param catalogName The name of the catalog to load in cache.
+   * @param catalogName The name of the catalog to load.
+   * @return the catalog, or <code>null</code> if its metadata could not be read
    */
-  private void addCatalogToCache( IPentahoSession session, String catalogName ) {
-
+  private IOlapService.Catalog loadCatalog( IPentahoSession session, String catalogName ) {
     final IOlapService.Catalog catalog =
       new Catalog( catalogName, new ArrayList<>() );
 
@@ -361,7 +415,7 @@ public class OlapServiceImpl implements IOlapService {
       }
 
       // We're done.
-      getCache( session ).add( catalog );
+      return catalog;
 
     } catch ( OlapException e ) {
 
@@ -382,6 +436,7 @@ public class OlapServiceImpl implements IOlapService {
           e );
       }
     }
+    return null;
   }
 
   public void addHostedCatalog(
@@ -415,6 +470,7 @@ public class OlapServiceImpl implements IOlapService {
         e,
         IOlapServiceException.Reason.convert( e ) );
     }
+    resetCache( session );
   }
 
   protected boolean hasAccess(
@@ -451,6 +507,7 @@ public class OlapServiceImpl implements IOlapService {
         IOlapServiceException.Reason.ALREADY_EXISTS );
     }
     getHelper().addOlap4jServer( name, className, URL, user, password, props );
+    resetCache( session );
   }
 
   public void removeCatalog( String name, IPentahoSession session ) {
@@ -473,6 +530,7 @@ public class OlapServiceImpl implements IOlapService {
 
     // This could be a remote connection
     getHelper().deleteCatalog( name );
+    resetCache( session );
   }
 
   /**
@@ -592,21 +650,12 @@ public class OlapServiceImpl implements IOlapService {
 
   public List<IOlapService.Catalog> getCatalogs( IPentahoSession session ) throws IOlapServiceException {
 
-    // Make sure the cache is initialized.
-    initCache( session );
+    // Loads the cache if needed.
     final List<Catalog> cache = getCache( session );
 
-    final Lock readLock = cacheLock.readLock();
-    try {
-      readLock.lock();
-
-      return cache.stream()
-        .filter( catalog -> hasAccess( catalog.name, EnumSet.of( RepositoryFilePermission.READ ), session ) )
-        .collect( Collectors.toList() );
-
-    } finally {
-      readLock.unlock();
-    }
+    return cache.stream()
+      .filter( catalog -> hasAccess( catalog.name, EnumSet.of( RepositoryFilePermission.READ ), session ) )
+      .collect( Collectors.toList() );
   }
 
   public List<IOlapService.Schema> getSchemas(
@@ -44,6 +44,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.stream.Collectors;
 
 /**
@@ -84,6 +87,12 @@ import java.util.stream.Collectors;
  * No information is actually stored in the user session object. For an example of this, see <code><br>
  * putInSessionCache(IPentahoSession session, String key, Object value)</code>
  * <p>
+ * The keys of each session's entries are indexed as they are put in the session region, so killing the cache of a
+ * session (as happens on logout) only evicts that session's entries instead of scanning the whole region. Only the
+ * entries written through this cache manager are indexed. When the session region already holds entries as it is
+ * set up, killing the cache of a session scans the region for the rest of that session's entries, until the region
+ * is cleared.
+ * <p>
  * Data that is server-wide (i.e. global) uses different methods for storage/retrieval/management. For an example of
  * this, see <code><br> 
  * getFromGlobalCache(Object key)</code>
@@ -132,6 +141,13 @@ public class CacheManager implements ICacheManager {
 
   private ICacheExpirationRegistry cacheExpirationRegistry;
 
+  // session id -> keys of the entries of that session in the SESSION region
+  private final ConcurrentMap<String, Set<String>> sessionKeys = new ConcurrentHashMap<>();
+
+  // false while the SESSION region may hold entries that were not put through this cache manager, and so are not in
+  // sessionKeys
+  private volatile boolean sessionKeysComplete = true;
+
   // ~ Constructors =========================================================
 
   /**
@@ -168,6 +184,18 @@ public class CacheManager implements ICacheManager {
     PentahoSystem.addLogoutListener( this );
   }
 
+  /**
+   * Builds a cache manager on the given regions, without a region factory.
+   */
+  CacheManager( Map<String, Cache> regionCache ) {
+    this.regionCache = regionCache;
+    this.cacheEnabled = true;
+    Cache sessionCache = regionCache.get( SESSION );
+    if ( sessionCache != null ) {
+      checkSessionKeysComplete( sessionCache );
+    }
+  }
+
   protected void setupRegionProvider( Properties cacheProperties ) {
     Object obj = PentahoSystem.createObject( regionFactoryClassname );  //Should be an HvCacheRegionFactory
     cacheExpirationRegistry = PentahoSystem.get( ICacheExpirationRegistry.class );
@@ -188,6 +216,7 @@ public class CacheManager implements ICacheManager {
               .error( Messages.getInstance().getString( "CacheManager.ERROR_0005_UNABLE_TO_BUILD_CACHE" ) ); //$NON-NLS-1$
         } else {
           regionCache.put( SESSION, cache );
+          checkSessionKeysComplete( cache );
         }
         cache = buildCache( GLOBAL, HibernateUtil.getSessionFactory(), cacheProperties );
         if ( cache == null ) {
@@ -294,6 +323,9 @@ public class CacheManager implements ICacheManager {
     if ( checkCacheEnabled() ) {
       if ( !cacheEnabled( region ) ) {
         regionCache.put( region, cache );
+        if ( SESSION.equals( region ) ) {
+          checkSessionKeysComplete( cache );
+        }
       } else {
         CacheManager.logger.warn( Messages.getInstance().getString(
           "CacheManager.WARN_0002_REGION_ALREADY_EXIST", region ) );
@@ -312,6 +344,10 @@ public class CacheManager implements ICacheManager {
           try ( SessionImpl session = ( SessionImpl ) cache.getSessionFactory().openSession() ) {
             cache.getStorageAccess().clearCache( session );
           }
+          if ( SESSION.equals( region ) ) {
+            sessionKeys.clear();
+            sessionKeysComplete = true;
+          }
         } catch ( CacheException e ) {
           CacheManager.logger.error( Messages.getInstance().getString(
             "CacheManager.ERROR_0006_CACHE_EXCEPTION", e.getLocalizedMessage() ) ); //$NON-NLS-1$
@@ -336,6 +372,9 @@ public class CacheManager implements ICacheManager {
       }
       HvCache hvcache = ( HvCache ) regionCache.get( region );  //This is our LastModifiedCache or CarteStatusCache
       hvcache.getDirectAccessRegion().putIntoCache( key, value, null );
+      if ( SESSION.equals( region ) ) {
+        indexSessionKey( key );
+      }
     }
   }
 
@@ -380,6 +419,9 @@ public class CacheManager implements ICacheManager {
     if ( checkRegionEnabled( region ) ) {
       HvCache hvcache = (HvCache) regionCache.get( region );
       hvcache.getStorageAccess().evictData( key );
+      if ( SESSION.equals( region ) ) {
+        unindexSessionKey( key );
+      }
     } else {
       CacheManager.logger.warn( Messages.getInstance().getString(
         "CacheManager.WARN_0003_REGION_DOES_NOT_EXIST", region ) ); //$NON-NLS-1$
@@ -414,22 +456,46 @@ public class CacheManager implements ICacheManager {
   public void killSessionCache( IPentahoSession session ) {
     if ( cacheEnabled ) {
       HvCache hvcache = (HvCache) regionCache.get( SESSION );
-      if ( hvcache != null ) {
-        javax.cache.Cache<Object, Object> cache = ( ( JCacheAccessImpl ) hvcache.getStorageAccess() ).getUnderlyingCache();
-        if ( cache != null ) {
-          Iterator<javax.cache.Cache.Entry<Object, Object>> cacheIterator = cache.iterator();
-          while ( cacheIterator.hasNext() ) {
-            javax.cache.Cache.Entry<Object, Object> entry = cacheIterator.next();
-            String key = ( String ) entry.getKey();
-            if ( key.contains( session.getId() ) ) {
-              hvcache.getStorageAccess().evictData( key );
-            }
+      Set<String> keys = session.getId() != null ? sessionKeys.remove( session.getId() ) : null;
+      if ( hvcache != null && keys != null ) {
+        for ( String key : keys ) {
+          hvcache.getStorageAccess().evictData( key );
+        }
+      }
+      if ( hvcache != null && !sessionKeysComplete && session.getId() != null ) {
+        // the entries the region held when it was set up are not indexed
+        for ( Object key : hvcache.getAllKeys() ) {
+          if ( session.getId().equals( getSessionId( key ) ) ) {
+            hvcache.getStorageAccess().evictData( key );
           }
         }
       }
     }
   }
 
+  /**
+   * Returns the number of entries the given session has put in the session cache. Entries the cache has expired on
+   * its own are counted until the session's cache is killed.
+   */
+  public int getSessionCacheEntryCount( IPentahoSession session ) {
+    Set<String> keys = session.getId() != null ? sessionKeys.get( session.getId() ) : null;
+    return keys != null ? keys.size() : 0;
+  }
+
+  /**
+   * Returns the number of entries in the session cache by session id, as counted by
+   * {@link #getSessionCacheEntryCount(IPentahoSession)}.
+   */
+  public Map<String, Integer> getSessionCacheEntryCounts() {
+    Map<String, Integer> counts = new TreeMap<>();
+    for ( Map.Entry<String, Set<String>> entry : sessionKeys.entrySet() ) {
+      if ( !entry.getValue().isEmpty() ) {
+        counts.put( entry.getKey(), entry.getValue().size() );
+      }
+    }
+    return counts;
+  }
+
   public void killSessionCaches() {
     removeRegionCache( SESSION );
   }
@@ -459,6 +525,51 @@ public class CacheManager implements ICacheManager {
     }
   }
 
+  private void checkSessionKeysComplete( Cache sessionCache ) {
+    if ( sessionCache instanceof HvCache ) {
+      Set keys = ( (HvCache) sessionCache ).getAllKeys();
+      sessionKeysComplete = keys == null || keys.isEmpty();
+    } else {
+      sessionKeysComplete = false;
+    }
+  }
+
+  private void indexSessionKey( Object key ) {
+    String sessionId = getSessionId( key );
+    if ( sessionId != null ) {
+      // compute, so a set emptied and dropped concurrently is not added to
+      sessionKeys.compute( sessionId, ( id, keys ) -> {
+        Set<String> sessionKeySet = keys != null ? keys : ConcurrentHashMap.<String>newKeySet();
+        sessionKeySet.add( (String) key );
+        return sessionKeySet;
+      } );
+    }
+  }
+
+  private void unindexSessionKey( Object key ) {
+    String sessionId = getSessionId( key );
+    if ( sessionId != null ) {
+      sessionKeys.computeIfPresent( sessionId, ( id, keys ) -> {
+        keys.remove( key );
+        return keys.isEmpty() ? null : keys;
+      } );
+    }
+  }
+
+  /**
+   * @return the id of the session a key of the session region belongs to, as prefixed by
+   * {@link #getCorrectedKey(IPentahoSession, String)}; <code>null</code> for other keys
+   */
+  private static String getSessionId( Object key ) {
+    if ( key instanceof String ) {
+      int separator = ( (String) key ).indexOf( '\t' );
+      if ( separator >= 0 ) {
+        return ( (String) key ).substring( 0, separator );
+      }
+    }
+    return null;
+  }
+
   private LastModifiedCache buildCache( String key, SessionFactory sessionFactory, Properties cacheProperties ) {
     if ( getRegionFactory() != null ) {
       TimestampsRegion timestampsRegion = getRegionFactory().buildTimestampsRegion( key, ( SessionFactoryImplementor ) sessionFactory );
@@ -0,0 +1,328 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.platform.plugin.services.importer;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.pentaho.platform.api.engine.IPentahoSession;
+import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
+import org.pentaho.platform.plugin.services.importexport.ImportSession;
+import org.pentaho.platform.plugin.services.messages.Messages;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Imports the files and folders of a system restore concurrently.
+ * <p>
+ * The files are partitioned by the folder {@link #PARTITION_DEPTH} levels below the root of the archive they belong
+ * to, which makes every home folder a partition of its own, rather than all of them one partition for
+ * <code>/home</code>. The folders above the partitions are imported first, by the calling thread; the partitions are
+ * then imported by worker threads on behalf of the calling user, each with a repository session of its own. Within a
+ * partition files keep their order in the archive, and consecutive files are imported in one repository transaction,
+ * so that their changes are saved together. A transaction that fails is rolled back and its files are imported again
+ * one at a time, so that a file that cannot be imported only costs its own import, as it does sequentially.
+ * <p>
+ * Workers do not write to the import log, which belongs to the calling thread: failures and progress are logged by the
+ * calling thread as the partitions complete.
+ */
+class BulkRestoreImporter {
+
+  static final int PARTITION_DEPTH = 2;
+
+  private static final Log logger = LogFactory.getLog( BulkRestoreImporter.class );
+
+  private static final long PROGRESS_INTERVAL_MILLIS = 10000;
+
+  private static final AtomicInteger threadCount = new AtomicInteger();
+
+  private final ImportSession importSession;
+
+  private final TransactionTemplate transactionTemplate;
+
+  private final int threads;
+
+  private final int batchSize;
+
+  private final Log log;
+
+  private final List<PendingImport> pendingImports = new ArrayList<>();
+
+  private final AtomicLong importedFiles = new AtomicLong();
+
+  private final AtomicLong importedBytes = new AtomicLong();
+
+  private long startTime;
+
+  private long lastProgressTime;
+
+  /**
+   * @param importSession       the import session of the calling thread
+   * @param transactionTemplate the template to run batches of files in, or <code>null</code> to import every file on
+   *                            its own
+   * @param threads             the number of worker threads
+   * @param batchSize           the number of files imported in one transaction
+   * @param log                 the log of the calling thread
+   */
+  BulkRestoreImporter( ImportSession importSession, TransactionTemplate transactionTemplate, int threads, int batchSize,
+                       Log log ) {
+    this.importSession = importSession;
+    this.transactionTemplate = batchSize > 1 ? transactionTemplate : null;
+    this.threads = Math.max( 1, threads );
+    this.batchSize = Math.max( 1, batchSize );
+    this.log = log;
+  }
+
+  void add( PendingImport pendingImport ) {
+    pendingImports.add( pendingImport );
+  }
+
+  /**
+   * Imports all files and folders added so far, logging failures and progress.
+   *
+   * @return the number of files and folders imported
+   */
+  long importAll( PendingImport.Importer importer ) throws IOException {
+    List<PendingImport> leading = new ArrayList<>();
+    Map<String, List<PendingImport>> partitions = new LinkedHashMap<>();
+    for ( PendingImport pendingImport : pendingImports ) {
+      String partition = pendingImport.getPartition( PARTITION_DEPTH );
+      if ( partition == null ) {
+        leading.add( pendingImport );
+      } else {
+        partitions.computeIfAbsent( partition, key -> new ArrayList<>() ).add( pendingImport );
+      }
+    }
+    int poolSize = Math.max( 1, Math.min( threads, partitions.size() ) );
+    log.info( Messages.getInstance().getString( "SolutionImportHandler.INFO_START_BULK_IMPORT", pendingImports.size(),
+      partitions.size(), poolSize, batchSize ) );
+
+    startTime = System.currentTimeMillis();
+    lastProgressTime = startTime;
+    // the folders the partitions are in must exist before partitions are imported side by side
+    for ( PendingImport pendingImport : leading ) {
+      try {
+        importer.importFile( pendingImport );
+        imported( pendingImport );
+      } catch ( PlatformImportException e ) {
+        logFailure( pendingImport, e );
+      }
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool( poolSize, runnable -> {
+      Thread thread = new Thread( runnable, "BulkRestoreImporter-" + threadCount.incrementAndGet() );
+      thread.setDaemon( true );
+      return thread;
+    } );
+    try {
+      CompletionService<PartitionResult> completionService = new ExecutorCompletionService<>( executor );
+      for ( List<PendingImport> partition : partitions.values() ) {
+        completionService.submit( new PartitionImport( partition, importer, importSession.newWorkerSession() ) );
+      }
+      for ( int remaining = partitions.size(); remaining > 0; ) {
+        Future<PartitionResult> completed = completionService.poll( PROGRESS_INTERVAL_MILLIS, TimeUnit.MILLISECONDS );
+        if ( completed != null ) {
+          remaining--;
+          PartitionResult result = waitFor( completed );
+          importSession.merge( result.session );
+          for ( Map.Entry<PendingImport, PlatformImportException> failure : result.failures.entrySet() ) {
+            logFailure( failure.getKey(), failure.getValue() );
+          }
+        }
+        if ( System.currentTimeMillis() - lastProgressTime >= PROGRESS_INTERVAL_MILLIS ) {
+          logProgress();
+        }
+      }
+    } catch ( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException( e.getMessage() );
+    } finally {
+      executor.shutdownNow();
+    }
+    logProgress();
+    return importedFiles.get();
+  }
+
+  long getImportedFiles() {
+    return importedFiles.get();
+  }
+
+  long getImportedBytes() {
+    return importedBytes.get();
+  }
+
+  private void imported( PendingImport pendingImport ) {
+    importedFiles.incrementAndGet();
+    importedBytes.addAndGet( pendingImport.getSize() );
+  }
+
+  private void logFailure( PendingImport pendingImport, PlatformImportException e ) {
+    log.error( Messages.getInstance().getString( "SolutionImportHandler.ERROR_IMPORTING_REPOSITORY_OBJECT",
+      pendingImport.getRepositoryFilePath(), e.getLocalizedMessage() ) );
+  }
+
+  private void logProgress() {
+    long now = System.currentTimeMillis();
+    lastProgressTime = now;
+    long seconds = Math.max( 1, TimeUnit.MILLISECONDS.toSeconds( now - startTime ) );
+    long files = importedFiles.get();
+    long bytes = importedBytes.get();
+    log.info( Messages.getInstance().getString( "SolutionImportHandler.INFO_BULK_IMPORT_PROGRESS", files,
+      pendingImports.size(), seconds, files / seconds, bytes / 1024 / seconds ) );
+  }
+
+  private static PartitionResult waitFor( Future<PartitionResult> completed ) throws IOException {
+    try {
+      return completed.get();
+    } catch ( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException( e.getMessage() );
+    } catch ( ExecutionException e ) {
+      Throwable cause = e.getCause();
+      if ( cause instanceof IOException ) {
+        throw (IOException) cause;
+      }
+      if ( cause instanceof RuntimeException ) {
+        throw (RuntimeException) cause;
+      }
+      if ( cause instanceof Error ) {
+        throw (Error) cause;
+      }
+      throw new IOException( cause );
+    }
+  }
+
+  private static class PartitionResult {
+    private final ImportSession session;
+    private final Map<PendingImport, PlatformImportException> failures = new LinkedHashMap<>();
+
+    PartitionResult( ImportSession session ) {
+      this.session = session;
+    }
+  }
+
+  /**
+   * Imports the files of one partition on the calling user's behalf, in batches.
+   */
+  private class PartitionImport implements Callable<PartitionResult> {
+
+    private final List<PendingImport> files;
+
+    private final PendingImport.Importer importer;
+
+    private final ImportSession partitionSession;
+
+    private final IPentahoSession pentahoSession = PentahoSessionHolder.getSession();
+
+    private final SecurityContext securityContext = SecurityContextHolder.getContext();
+
+    PartitionImport( List<PendingImport> files, PendingImport.Importer importer, ImportSession partitionSession ) {
+      this.files = files;
+      this.importer = importer;
+      this.partitionSession = partitionSession;
+    }
+
+    @Override
+    public PartitionResult call() throws IOException {
+      // the holders may be shared with the calling thread, depending on their strategy, so they are restored rather
+      // than cleared
+      IPentahoSession previousSession = PentahoSessionHolder.getSession();
+      SecurityContext previousContext = SecurityContextHolder.getContext();
+      PentahoSessionHolder.setSession( pentahoSession );
+      SecurityContextHolder.setContext( securityContext );
+      ImportSession.setSession( partitionSession );
+      PartitionResult result = new PartitionResult( partitionSession );
+      try {
+        for ( int from = 0; from < files.size(); from += batchSize ) {
+          List<PendingImport> batch = files.subList( from, Math.min( files.size(), from + batchSize ) );
+          if ( batch.size() > 1 && transactionTemplate != null && importBatch( batch ) ) {
+            continue;
+          }
+          for ( PendingImport pendingImport : batch ) {
+            try {
+              importer.importFile( pendingImport );
+              imported( pendingImport );
+            } catch ( PlatformImportException e ) {
+              result.failures.put( pendingImport, e );
+            }
+          }
+        }
+        return result;
+      } finally {
+        ImportSession.clearSession();
+        SecurityContextHolder.setContext( previousContext );
+        if ( previousSession != null ) {
+          PentahoSessionHolder.setSession( previousSession );
+        } else {
+          PentahoSessionHolder.removeSession();
+        }
+      }
+    }
+
+    /**
+     * Imports a batch of files in one transaction. What the import session learns meanwhile, such as the folders
+     * created implicitly, is only kept if the transaction commits.
+     *
+     * @return <code>true</code> if all files were imported and committed, <code>false</code> if the transaction was
+     * rolled back
+     */
+    private boolean importBatch( List<PendingImport> batch ) throws IOException {
+      ImportSession batchSession = partitionSession.newWorkerSession();
+      ImportSession.setSession( batchSession );
+      try {
+        Boolean committed = transactionTemplate.execute( status -> {
+          try {
+            for ( PendingImport pendingImport : batch ) {
+              importer.importFile( pendingImport );
+            }
+            return Boolean.TRUE;
+          } catch ( PlatformImportException | IOException e ) {
+            status.setRollbackOnly();
+            return Boolean.FALSE;
+          }
+        } );
+        if ( Boolean.TRUE.equals( committed ) ) {
+          partitionSession.merge( batchSession );
+          for ( PendingImport pendingImport : batch ) {
+            imported( pendingImport );
+          }
+          return true;
+        }
+      } catch ( RuntimeException e ) {
+        // the commit failed; the files are imported one at a time instead
+        logger.debug( e.getMessage(), e );
+      } finally {
+        ImportSession.setSession( partitionSession );
+      }
+      return false;
+    }
+  }
+}
@@ -66,6 +66,22 @@ public class LocaleFilesProcessor {
     localeFiles = new ArrayList<LocaleFileDescriptor>();
   }
 
+  /**
+   * Tells from its name alone whether a file may be a locale file, that is, whether
+   * {@link #isLocaleFile(IRepositoryFileBundle, String, byte[])} can return <code>true</code> for it. Other files need
+   * not be read to find out.
+   *
+   * @param file
+   * @return false - means the file is not a locale file
+   */
+  public boolean isLocaleFileCandidate( IRepositoryFileBundle file ) {
+    String fileName = file.getFile().getName();
+    if ( ImportSession.getSession().getManifest() != null && ImportSession.getSession().getManifest().getManifestInformation().getManifestVersion() != null ) {
+      fileName = ExportFileNameEncoder.decodeZipFileName( fileName );
+    }
+    return fileName.endsWith( PROPERTIES_EXT ) || fileName.endsWith( LOCALE_EXT ) || fileName.equals( XML_LOCALE );
+  }
+
   /**
    * @param file
    * @param parentPath
@@ -0,0 +1,127 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.platform.plugin.services.importer;
+
+import org.apache.commons.lang.StringUtils;
+import org.pentaho.platform.plugin.services.importexport.ImportSource.IRepositoryFileBundle;
+import org.pentaho.platform.plugin.services.importexport.SpooledRepositoryFileBundle;
+import org.pentaho.platform.repository.RepositoryFilenameUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A file or folder of an archive that is ready to be imported. Everything about it has been worked out from the
+ * archive and its manifest, except for the content, which is only read when {@link #openInput()} is called; this keeps
+ * the content of the files waiting to be imported out of memory and allows an import to be tried again.
+ */
+class PendingImport {
+
+  /**
+   * Imports a pending file or folder.
+   */
+  interface Importer {
+    void importFile( PendingImport pendingImport ) throws PlatformImportException, IOException;
+  }
+
+  private final IRepositoryFileBundle fileBundle;
+
+  private final RepositoryFileImportBundle.Builder bundleBuilder;
+
+  private final byte[] content;
+
+  private final String sourcePath;
+
+  private final String repositoryFilePath;
+
+  /**
+   * @param fileBundle         the archive entry
+   * @param bundleBuilder      the import bundle, complete except for its input
+   * @param content            the content of the entry if it has been read already, or <code>null</code>
+   * @param sourcePath         the key of the entry in the manifest
+   * @param repositoryFilePath the path the entry is imported to, for logging
+   */
+  PendingImport( IRepositoryFileBundle fileBundle, RepositoryFileImportBundle.Builder bundleBuilder, byte[] content,
+                 String sourcePath, String repositoryFilePath ) {
+    this.fileBundle = fileBundle;
+    this.bundleBuilder = bundleBuilder;
+    this.content = content;
+    this.sourcePath = sourcePath;
+    this.repositoryFilePath = repositoryFilePath;
+  }
+
+  RepositoryFileImportBundle.Builder getBundleBuilder() {
+    return bundleBuilder;
+  }
+
+  String getSourcePath() {
+    return sourcePath;
+  }
+
+  String getRepositoryFilePath() {
+    return repositoryFilePath;
+  }
+
+  boolean isFolder() {
+    return fileBundle.getFile().isFolder();
+  }
+
+  /**
+   * @return a new stream over the content of the file, or <code>null</code> for folders
+   */
+  InputStream openInput() throws IOException {
+    if ( isFolder() ) {
+      return null;
+    }
+    return content != null ? new ByteArrayInputStream( content ) : fileBundle.getInputStream();
+  }
+
+  /**
+   * @return the size of the content in bytes, or 0 for folders and if it is not known without reading it
+   */
+  long getSize() {
+    if ( isFolder() ) {
+      return 0;
+    }
+    if ( content != null ) {
+      return content.length;
+    }
+    return fileBundle instanceof SpooledRepositoryFileBundle ? ( (SpooledRepositoryFileBundle) fileBundle ).getSize()
+      : 0;
+  }
+
+  /**
+   * Returns the folder, <code>depth</code> levels below the root of the archive, that this file or folder belongs to.
+   * Files closer to the root belong to the folder they are in.
+   *
+   * @return the path of the folder in the manifest, or <code>null</code> for folders less than <code>depth</code>
+   * levels below the root
+   */
+  String getPartition( int depth ) {
+    String path = RepositoryFilenameUtils.separatorsToRepository( sourcePath );
+    path = StringUtils.strip( path, "/" );
+    if ( !isFolder() ) {
+      path = RepositoryFilenameUtils.getFullPathNoEndSeparator( path );
+    }
+    int end = -1;
+    for ( int level = 0; level < depth; level++ ) {
+      end = path.indexOf( '/', end + 1 );
+      if ( end < 0 ) {
+        return isFolder() && level < depth - 1 ? null : path;
+      }
+    }
+    return path.substring( 0, end );
+  }
+}
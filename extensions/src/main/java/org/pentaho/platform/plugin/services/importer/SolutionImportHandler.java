@@ -15,6 +15,7 @@ package org.pentaho.platform.plugin.services.importer;
 
 import com.google.common.annotations.VisibleForTesting;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.pentaho.database.model.IDatabaseConnection;
 import org.pentaho.metadata.repository.DomainAlreadyExistsException;
@@ -37,6 +38,7 @@ import org.pentaho.platform.api.usersettings.IAnyUserSettingService;
 import org.pentaho.platform.api.usersettings.IUserSettingService;
 import org.pentaho.platform.api.usersettings.pojo.IUserSetting;
 import org.pentaho.platform.core.mt.Tenant;
+import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
 import org.pentaho.platform.engine.core.system.TenantUtils;
 import org.pentaho.platform.plugin.services.importexport.DatabaseConnectionConverter;
@@ -49,6 +51,7 @@ import org.pentaho.platform.plugin.services.importexport.ImportSource.IRepositor
 import org.pentaho.platform.plugin.services.importexport.Log4JRepositoryImportLogger;
 import org.pentaho.platform.plugin.services.importexport.RepositoryFileBundle;
 import org.pentaho.platform.plugin.services.importexport.RoleExport;
+import org.pentaho.platform.plugin.services.importexport.SpooledRepositoryFileBundle;
 import org.pentaho.platform.plugin.services.importexport.UserExport;
 import org.pentaho.platform.plugin.services.importexport.exportManifest.ExportManifest;
 import org.pentaho.platform.plugin.services.importexport.exportManifest.Parameters;
@@ -60,8 +63,11 @@ import org.pentaho.platform.plugin.services.messages.Messages;
 import org.pentaho.platform.repository.RepositoryFilenameUtils;
 import org.pentaho.platform.security.policy.rolebased.IRoleAuthorizationPolicyRoleBindingDao;
 import org.pentaho.platform.web.http.api.resources.services.FileService;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
@@ -84,6 +90,32 @@ public class SolutionImportHandler implements IPlatformImportHandler {
   private static final String DOMAIN_ID = "domain-id";
   private static final String UTF_8 = StandardCharsets.UTF_8.name();
 
+  /**
+   * Archive entries up to this many bytes are kept in memory until they are imported; larger ones are moved to
+   * temporary files.
+   */
+  static final int DEFAULT_SPOOL_THRESHOLD = 256 * 1024;
+
+  /**
+   * Upper bound on the archive content kept in memory at once; once reached, all further entries go to temporary
+   * files.
+   */
+  static final long DEFAULT_SPOOL_MEMORY_LIMIT = 64L * 1024 * 1024;
+
+  /**
+   * Files larger than this are never taken for locale files, so they are not read to find out.
+   */
+  static final int LOCALE_FILE_SIZE_LIMIT = 1024 * 1024;
+
+  /**
+   * System settings for the number of threads a restore imports files and folders with, and for the number of them
+   * imported in one repository transaction.
+   */
+  static final String RESTORE_IMPORT_THREADS_SETTING = "restore-import-threads";
+  static final String RESTORE_IMPORT_BATCH_SIZE_SETTING = "restore-import-batch-size";
+  static final int DEFAULT_RESTORE_IMPORT_THREADS = 4;
+  static final int DEFAULT_RESTORE_IMPORT_BATCH_SIZE = 50;
+
   IRepositoryImportLogger logger = new Log4JRepositoryImportLogger();
   private IUnifiedRepository repository; // TODO inject via Spring
   protected Map<String, RepositoryFileImportBundle.Builder> cachedImports;
@@ -97,6 +129,10 @@ public class SolutionImportHandler implements IPlatformImportHandler {
 
   private List<IImportHelper> importHelpers = new ArrayList<>();
 
+  private boolean streamingImport = true;
+  private int spoolThreshold = DEFAULT_SPOOL_THRESHOLD;
+  private long spoolMemoryLimit = DEFAULT_SPOOL_MEMORY_LIMIT;
+
   public SolutionImportHandler( List<IMimeType> mimeTypes ) {
     this.mimeTypes = mimeTypes;
     this.solutionHelper = new SolutionFileImportHelper();
@@ -199,124 +235,156 @@ public class SolutionImportHandler implements IPlatformImportHandler {
 
     LocaleFilesProcessor localeFilesProcessor = new LocaleFilesProcessor();
     IPlatformImporter importer = PentahoSystem.get( IPlatformImporter.class );
+    BulkRestoreImporter bulkImporter = getBulkRestoreImporter();
 
-    for ( IRepositoryFileBundle fileBundle : files ) {
-      String fileName = fileBundle.getFile().getName();
-      String actualFilePath = fileBundle.getPath();
-      if ( manifestVersion != null ) {
-        fileName = ExportFileNameEncoder.decodeZipFileName( fileName );
-        actualFilePath = ExportFileNameEncoder.decodeZipFileName( actualFilePath );
-      }
-      String repositoryFilePath =
-          RepositoryFilenameUtils.concat( PentahoPlatformImporter.computeBundlePath( actualFilePath ), fileName );
-
-      if ( cachedImports.containsKey( repositoryFilePath ) ) {
-        getLogger().debug( "Repository object with path [ " + repositoryFilePath + " ] found in the cache" );
-        byte[] bytes = IOUtils.toByteArray( fileBundle.getInputStream() );
-        RepositoryFileImportBundle.Builder builder = cachedImports.get( repositoryFilePath );
-        builder.input( new ByteArrayInputStream( bytes ) );
-
+    try {
+      for ( IRepositoryFileBundle fileBundle : files ) {
         try {
-          importer.importFile( build( builder ) );
-          if ( isPerformingRestore ) {
-            getLogger().debug( "Successfully restored repository object with path [ " + repositoryFilePath + " ] from the cache" );
+          String fileName = fileBundle.getFile().getName();
+          String actualFilePath = fileBundle.getPath();
+          if ( manifestVersion != null ) {
+            fileName = ExportFileNameEncoder.decodeZipFileName( fileName );
+            actualFilePath = ExportFileNameEncoder.decodeZipFileName( actualFilePath );
           }
-          successfulFilesImportCount++;
-          continue;
-        } catch ( PlatformImportException e ) {
-          if ( isPerformingRestore ) {
-            getLogger().error( Messages.getInstance().getString( "SolutionImportHandler.ERROR_IMPORTING_REPOSITORY_OBJECT", repositoryFilePath, e.getLocalizedMessage() ) );
+          String repositoryFilePath =
+              RepositoryFilenameUtils.concat( PentahoPlatformImporter.computeBundlePath( actualFilePath ), fileName );
+
+          if ( cachedImports.containsKey( repositoryFilePath ) ) {
+            getLogger().debug( "Repository object with path [ " + repositoryFilePath + " ] found in the cache" );
+            InputStream cachedInputStream;
+            if ( streamingImport ) {
+              cachedInputStream = fileBundle.getInputStream();
+            } else {
+              byte[] bytes = IOUtils.toByteArray( fileBundle.getInputStream() );
+              cachedInputStream = new ByteArrayInputStream( bytes );
+            }
+            RepositoryFileImportBundle.Builder builder = cachedImports.get( repositoryFilePath );
+            builder.input( cachedInputStream );
+
+            try {
+              importer.importFile( build( builder ) );
+              if ( isPerformingRestore ) {
+                getLogger().debug( "Successfully restored repository object with path [ " + repositoryFilePath + " ] from the cache" );
+              }
+              successfulFilesImportCount++;
+              continue;
+            } catch ( PlatformImportException e ) {
+              if ( isPerformingRestore ) {
+                getLogger().error( Messages.getInstance().getString( "SolutionImportHandler.ERROR_IMPORTING_REPOSITORY_OBJECT", repositoryFilePath, e.getLocalizedMessage() ) );
+              }
+            } finally {
+              cachedInputStream.close();
+            }
           }
-        }
-      }
 
-      RepositoryFileImportBundle.Builder bundleBuilder = new RepositoryFileImportBundle.Builder();
-      InputStream bundleInputStream = null;
+          RepositoryFileImportBundle.Builder bundleBuilder = new RepositoryFileImportBundle.Builder();
+          byte[] content = null;
 
-      String decodedFilePath = fileBundle.getPath();
-      RepositoryFile decodedFile = fileBundle.getFile();
-      if ( manifestVersion != null ) {
-        decodedFile = new RepositoryFile.Builder( decodedFile ).path( decodedFilePath ).name( fileName ).title( fileName ).build();
-        decodedFilePath = ExportFileNameEncoder.decodeZipFileName( fileBundle.getPath() );
-      }
+          String decodedFilePath = fileBundle.getPath();
+          RepositoryFile decodedFile = fileBundle.getFile();
+          if ( manifestVersion != null ) {
+            decodedFile = new RepositoryFile.Builder( decodedFile ).path( decodedFilePath ).name( fileName ).title( fileName ).build();
+            decodedFilePath = ExportFileNameEncoder.decodeZipFileName( fileBundle.getPath() );
+          }
 
-      if ( fileBundle.getFile().isFolder() ) {
-        bundleBuilder.mime( "text/directory" );
-        bundleBuilder.file( decodedFile );
-        fileName = repositoryFilePath;
-        repositoryFilePath = importBundle.getPath();
-      } else {
-        byte[] bytes = IOUtils.toByteArray( fileBundle.getInputStream() );
-        bundleInputStream = new ByteArrayInputStream( bytes );
-        // If is locale file store it for later processing.
-        if ( localeFilesProcessor.isLocaleFile( fileBundle, importBundle.getPath(), bytes ) ) {
-          getLogger().trace( Messages.getInstance()
-              .getString( "SolutionImportHandler.SkipLocaleFile", repositoryFilePath ) );
-          continue;
-        }
-        bundleBuilder.input( bundleInputStream );
-        bundleBuilder.mime( solutionHelper.getMime( fileName ) );
+          if ( fileBundle.getFile().isFolder() ) {
+            bundleBuilder.mime( "text/directory" );
+            bundleBuilder.file( decodedFile );
+            fileName = repositoryFilePath;
+            repositoryFilePath = importBundle.getPath();
+          } else {
+            byte[] bytes = null;
+            if ( !streamingImport ) {
+              bytes = IOUtils.toByteArray( fileBundle.getInputStream() );
+              content = bytes;
+            } else if ( localeFilesProcessor.isLocaleFileCandidate( fileBundle ) ) {
+              // only files named like locale files are read up front, and only if they are small enough to be one
+              bytes = readLocaleFileCandidate( fileBundle );
+            }
+            // If is locale file store it for later processing.
+            if ( bytes != null && localeFilesProcessor.isLocaleFile( fileBundle, importBundle.getPath(), bytes ) ) {
+              getLogger().trace( Messages.getInstance()
+                  .getString( "SolutionImportHandler.SkipLocaleFile", repositoryFilePath ) );
+              continue;
+            }
+            // in streaming mode the importer reads the content straight from the spooled archive entry
+            bundleBuilder.mime( solutionHelper.getMime( fileName ) );
 
-        String filePath =
-            ( decodedFilePath.equals( "/" ) || decodedFilePath.equals( "\\" ) ) ? "" : decodedFilePath;
-        repositoryFilePath = RepositoryFilenameUtils.concat( importBundle.getPath(), filePath );
-      }
+            String filePath =
+                ( decodedFilePath.equals( "/" ) || decodedFilePath.equals( "\\" ) ) ? "" : decodedFilePath;
+            repositoryFilePath = RepositoryFilenameUtils.concat( importBundle.getPath(), filePath );
+          }
 
-      bundleBuilder.name( fileName );
-      bundleBuilder.path( repositoryFilePath );
+          bundleBuilder.name( fileName );
+          bundleBuilder.path( repositoryFilePath );
 
-      String sourcePath;
-      if ( fileBundle.getFile().isFolder() ) {
-        sourcePath = fileName;
-      } else {
-        sourcePath =
-            RepositoryFilenameUtils.concat( PentahoPlatformImporter.computeBundlePath( actualFilePath ), fileName );
-      }
+          String sourcePath;
+          if ( fileBundle.getFile().isFolder() ) {
+            sourcePath = fileName;
+          } else {
+            sourcePath =
+                RepositoryFilenameUtils.concat( PentahoPlatformImporter.computeBundlePath( actualFilePath ), fileName );
+          }
 
-      //This clause was added for processing ivb files so that it would not try process acls on folders that the user
-      //may not have rights to such as /home or /public
-      if ( manifest != null && manifest.getExportManifestEntity( sourcePath ) == null && fileBundle.getFile()
-          .isFolder() ) {
-        continue;
-      }
+          //This clause was added for processing ivb files so that it would not try process acls on folders that the user
+          //may not have rights to such as /home or /public
+          if ( manifest != null && manifest.getExportManifestEntity( sourcePath ) == null && fileBundle.getFile()
+              .isFolder() ) {
+            continue;
+          }
 
-      getImportSession().setCurrentManifestKey( sourcePath );
+          getImportSession().setCurrentManifestKey( sourcePath );
 
-      bundleBuilder.charSet( bundle.getCharSet() );
-      bundleBuilder.overwriteFile( bundle.overwriteInRepository() );
-      bundleBuilder.applyAclSettings( bundle.isApplyAclSettings() );
-      bundleBuilder.retainOwnership( bundle.isRetainOwnership() );
-      bundleBuilder.overwriteAclSettings( bundle.isOverwriteAclSettings() );
-      bundleBuilder.acl( getImportSession().processAclForFile( sourcePath ) );
-      bundleBuilder.extraMetaData( getImportSession().processExtraMetaDataForFile( sourcePath ) );
+          bundleBuilder.charSet( bundle.getCharSet() );
+          bundleBuilder.overwriteFile( bundle.overwriteInRepository() );
+          bundleBuilder.applyAclSettings( bundle.isApplyAclSettings() );
+          bundleBuilder.retainOwnership( bundle.isRetainOwnership() );
+          bundleBuilder.overwriteAclSettings( bundle.isOverwriteAclSettings() );
+          bundleBuilder.acl( getImportSession().processAclForFile( sourcePath ) );
+          bundleBuilder.extraMetaData( getImportSession().processExtraMetaDataForFile( sourcePath ) );
 
-      RepositoryFile file = getFile( importBundle, fileBundle );
-      ManifestFile manifestFile = getImportSession().getManifestFile( sourcePath, file != null );
+          RepositoryFile file = getFile( importBundle, fileBundle );
+          ManifestFile manifestFile = getImportSession().getManifestFile( sourcePath, file != null );
 
-      bundleBuilder.hidden( isFileHidden( file, manifestFile, sourcePath ) );
-      boolean isSchedulable = isSchedulable( file, manifestFile );
+          bundleBuilder.hidden( isFileHidden( file, manifestFile, sourcePath ) );
+          boolean isSchedulable = isSchedulable( file, manifestFile );
 
-      if ( isSchedulable ) {
-        bundleBuilder.schedulable( isSchedulable );
-      } else {
-        bundleBuilder.schedulable( fileIsScheduleInputSource( manifest, sourcePath ) );
-      }
+          if ( isSchedulable ) {
+            bundleBuilder.schedulable( isSchedulable );
+          } else {
+            bundleBuilder.schedulable( fileIsScheduleInputSource( manifest, sourcePath ) );
+          }
 
-      IPlatformImportBundle platformImportBundle = build( bundleBuilder );
-      try {
-        importer.importFile( platformImportBundle );
-        successfulFilesImportCount++;
-        if ( isPerformingRestore ) {
-          getLogger().debug( "Successfully restored repository object with path [ " + repositoryFilePath + " ]" );
-        }
-      } catch ( PlatformImportException e ) {
-        if ( isPerformingRestore ) {
-          getLogger().error( Messages.getInstance().getString( "SolutionImportHandler.ERROR_IMPORTING_REPOSITORY_OBJECT", repositoryFilePath, e.getLocalizedMessage() ) );
+          PendingImport pendingImport =
+              new PendingImport( fileBundle, bundleBuilder, content, sourcePath, repositoryFilePath );
+          if ( bulkImporter != null ) {
+            bulkImporter.add( pendingImport );
+            continue;
+          }
+          try {
+            importPendingFile( importer, pendingImport );
+            successfulFilesImportCount++;
+            if ( isPerformingRestore ) {
+              getLogger().debug( "Successfully restored repository object with path [ " + repositoryFilePath + " ]" );
+            }
+          } catch ( PlatformImportException e ) {
+            if ( isPerformingRestore ) {
+              getLogger().error( Messages.getInstance().getString( "SolutionImportHandler.ERROR_IMPORTING_REPOSITORY_OBJECT", repositoryFilePath, e.getLocalizedMessage() ) );
+            }
+          }
+        } finally {
+          if ( bulkImporter == null ) {
+            disposeSpooledContent( fileBundle );
+          }
         }
       }
-
-      if ( bundleInputStream != null ) {
-        bundleInputStream.close();
+      if ( bulkImporter != null ) {
+        successfulFilesImportCount += bulkImporter.importAll( pendingImport -> importPendingFile( importer, pendingImport ) );
+      }
+    } finally {
+      // also covers the files not imported because of an error, and all of them after a bulk import
+      for ( IRepositoryFileBundle fileBundle : files ) {
+        disposeSpooledContent( fileBundle );
       }
     }
 
@@ -343,6 +411,91 @@ public class SolutionImportHandler implements IPlatformImportHandler {
     }
   }
 
+  /**
+   * Deletes the temporary file a spooled archive entry keeps its content in, once the entry has been imported.
+   */
+  private void disposeSpooledContent( IRepositoryFileBundle fileBundle ) {
+    if ( fileBundle instanceof SpooledRepositoryFileBundle ) {
+      try {
+        ( (SpooledRepositoryFileBundle) fileBundle ).dispose();
+      } catch ( IOException e ) {
+        getLogger().debug( "Could not delete the spooled content of [ " + fileBundle.getPath() + " ]: "
+          + e.getLocalizedMessage() );
+      }
+    }
+  }
+
+  /**
+   * Imports a file or folder, reading its content only now.
+   */
+  void importPendingFile( IPlatformImporter importer, PendingImport pendingImport )
+    throws PlatformImportException, IOException {
+    getImportSession().setCurrentManifestKey( pendingImport.getSourcePath() );
+    InputStream input = pendingImport.openInput();
+    try {
+      if ( input != null ) {
+        pendingImport.getBundleBuilder().input( input );
+      }
+      importer.importFile( build( pendingImport.getBundleBuilder() ) );
+    } finally {
+      if ( input != null ) {
+        input.close();
+      }
+    }
+  }
+
+  /**
+   * Returns the importer that restores the files and folders of the archive concurrently and in batches, if
+   * configured. Only the content of archives spooled by the streaming import can be read by several threads and more
+   * than once, so other imports are always sequential.
+   *
+   * @return the importer, or <code>null</code> to import files one at a time on the calling thread
+   */
+  BulkRestoreImporter getBulkRestoreImporter() {
+    if ( !isPerformingRestore || !streamingImport ) {
+      return null;
+    }
+    int threads = getRestoreImportSetting( RESTORE_IMPORT_THREADS_SETTING, DEFAULT_RESTORE_IMPORT_THREADS );
+    int batchSize = getRestoreImportSetting( RESTORE_IMPORT_BATCH_SIZE_SETTING, DEFAULT_RESTORE_IMPORT_BATCH_SIZE );
+    if ( threads <= 1 && batchSize <= 1 ) {
+      return null;
+    }
+    TransactionTemplate transactionTemplate = null;
+    if ( batchSize > 1 ) {
+      TransactionTemplate jcrTransactionTemplate =
+          PentahoSystem.get( TransactionTemplate.class, "jcrTransactionTemplate", PentahoSessionHolder.getSession() );
+      if ( jcrTransactionTemplate != null ) {
+        // a template of our own, so that the propagation of the shared one is left alone
+        transactionTemplate = new TransactionTemplate( jcrTransactionTemplate.getTransactionManager() );
+        transactionTemplate.setPropagationBehavior( TransactionDefinition.PROPAGATION_REQUIRED );
+      }
+    }
+    return new BulkRestoreImporter( getImportSession(), transactionTemplate, threads, batchSize, getLogger() );
+  }
+
+  private int getRestoreImportSetting( String name, int defaultValue ) {
+    String value = PentahoSystem.getSystemSetting( name, null );
+    if ( StringUtils.isNotBlank( value ) ) {
+      try {
+        return Math.max( 1, Integer.parseInt( value.trim() ) );
+      } catch ( NumberFormatException e ) {
+        getLogger().warn( "Invalid " + name + " setting: " + value );
+      }
+    }
+    return defaultValue;
+  }
+
+  /**
+   * @return the content of a file, or <code>null</code> if it is larger than {@link #LOCALE_FILE_SIZE_LIMIT}
+   */
+  private byte[] readLocaleFileCandidate( IRepositoryFileBundle fileBundle ) throws IOException {
+    try ( InputStream is = fileBundle.getInputStream() ) {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      long length = IOUtils.copyLarge( is, bytes, 0, LOCALE_FILE_SIZE_LIMIT + 1L );
+      return length > LOCALE_FILE_SIZE_LIMIT ? null : bytes.toByteArray();
+    }
+  }
+
   protected void importJDBCDataSource( ExportManifest manifest ) {
     if ( isPerformingRestore ) {
       getLogger().info( Messages.getInstance().getString( "SolutionImportHandler.INFO_START_IMPORT_DATASOURCE" ) );
@@ -973,6 +1126,7 @@ public class SolutionImportHandler implements IPlatformImportHandler {
     if ( isPerformingRestore ) {
       getLogger().info( Messages.getInstance().getString( "SolutionImportHandler.INFO_START_IMPORT_REPOSITORY_OBJECT" ) );
     }
+    long spooledInMemory = 0;
     try ( ZipInputStream zipInputStream = new ZipInputStream( inputStream ) ) {
       FileService fileService = new FileService();
       ZipEntry entry = zipInputStream.getNextEntry();
@@ -997,10 +1151,12 @@ public class SolutionImportHandler implements IPlatformImportHandler {
                     entryName ), PlatformImportException.PUBLISH_PROHIBITED_SYMBOLS_ERROR );
           }
 
-          tempFile = File.createTempFile( "zip", null );
-          tempFile.deleteOnExit();
-          try ( FileOutputStream fos = new FileOutputStream( tempFile ) ) {
-            IOUtils.copy( zipInputStream, fos );
+          if ( !streamingImport ) {
+            tempFile = File.createTempFile( "zip", null );
+            tempFile.deleteOnExit();
+            try ( FileOutputStream fos = new FileOutputStream( tempFile ) ) {
+              IOUtils.copy( zipInputStream, fos );
+            }
           }
         } else {
           if ( !fileService.isValidFileName( decodedEntryName ) ) {
@@ -1016,8 +1172,19 @@ public class SolutionImportHandler implements IPlatformImportHandler {
         String parentDir =
             file.getParent() == null ? RepositoryFile.SEPARATOR : file.getParent()
                 + RepositoryFile.SEPARATOR;
-        IRepositoryFileBundle repoFileBundle =
-            new RepositoryFileBundle( repoFile, null, parentDir, tempFile, UTF_8, null );
+        IRepositoryFileBundle repoFileBundle;
+        if ( !isDir && streamingImport ) {
+          // entries are read again once the manifest, which comes last, is known, so they are kept until then
+          int threshold = (int) Math.min( spoolThreshold, Math.max( 0, spoolMemoryLimit - spooledInMemory ) );
+          SpooledRepositoryFileBundle spooledBundle =
+              SpooledRepositoryFileBundle.spool( repoFile, null, parentDir, zipInputStream, threshold, UTF_8, null );
+          if ( spooledBundle.isInMemory() ) {
+            spooledInMemory += spooledBundle.getSize();
+          }
+          repoFileBundle = spooledBundle;
+        } else {
+          repoFileBundle = new RepositoryFileBundle( repoFile, null, parentDir, tempFile, UTF_8, null );
+        }
 
         if ( EXPORT_MANIFEST_XML_FILE.equals( file.getName() ) ) {
           initializeAclManifest( repoFileBundle );
@@ -1086,4 +1253,38 @@ public class SolutionImportHandler implements IPlatformImportHandler {
   public boolean isPerformingRestore() {
     return isPerformingRestore;
   }
+
+  public boolean isStreamingImport() {
+    return streamingImport;
+  }
+
+  /**
+   * Sets whether the content of archive entries is passed to the importer as a stream over the spooled entry, rather
+   * than read into memory as a whole for every file first. Enabled by default.
+   */
+  public void setStreamingImport( boolean streamingImport ) {
+    this.streamingImport = streamingImport;
+  }
+
+  public int getSpoolThreshold() {
+    return spoolThreshold;
+  }
+
+  /**
+   * Sets the size in bytes up to which an archive entry is kept in memory when importing in streaming mode.
+   */
+  public void setSpoolThreshold( int spoolThreshold ) {
+    this.spoolThreshold = spoolThreshold;
+  }
+
+  public long getSpoolMemoryLimit() {
+    return spoolMemoryLimit;
+  }
+
+  /**
+   * Sets the total size in bytes of archive entries kept in memory at once when importing in streaming mode.
+   */
+  public void setSpoolMemoryLimit( long spoolMemoryLimit ) {
+    this.spoolMemoryLimit = spoolMemoryLimit;
+  }
 }
@@ -62,6 +62,44 @@ public class ImportSession {
     return session;
   }
 
+  /**
+   * Makes the given session the current thread's import session, typically one created by
+   * {@link #newWorkerSession()}.
+   */
+  public static void setSession( ImportSession session ) {
+    sessions.set( session );
+  }
+
+  /**
+   * Creates a session for a thread that imports some of the files of this session's import. It shares this session's
+   * manifest and settings and knows the folders created implicitly so far, but collects everything else on its own
+   * until it is handed to {@link #merge(ImportSession)}. Messages are logged to the log of the current class rather
+   * than to the import log, which only ever belongs to the thread that started the import.
+   */
+  public ImportSession newWorkerSession() {
+    // resolves whether an import job is running on this thread
+    getLogger();
+    ImportSession worker = new ImportSession();
+    worker.log = LogFactory.getLog( RepositoryFileImportFileHandler.class );
+    worker.isNotRunningImport = isNotRunningImport;
+    worker.manifest = manifest;
+    worker.applyAclSettings = applyAclSettings;
+    worker.retainOwnership = retainOwnership;
+    worker.overwriteAclSettings = overwriteAclSettings;
+    worker.foldersCreatedImplicitly.addAll( foldersCreatedImplicitly );
+    return worker;
+  }
+
+  /**
+   * Adds what a session created by {@link #newWorkerSession()} has collected to this session.
+   */
+  public void merge( ImportSession worker ) {
+    skippedFiles.addAll( worker.skippedFiles );
+    foldersCreatedImplicitly.addAll( worker.foldersCreatedImplicitly );
+    importedRepositoryFiles.addAll( worker.importedRepositoryFiles );
+    importedScheduleJobIds.addAll( worker.importedScheduleJobIds );
+  }
+
   /**
    * Clear out any collections, most likely before starting a new import
    */
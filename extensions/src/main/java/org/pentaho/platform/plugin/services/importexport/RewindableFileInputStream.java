@@ -0,0 +1,99 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.platform.plugin.services.importexport;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A buffered stream over a file that supports {@link #mark(int)} and {@link #reset()} without a read limit, by moving
+ * back in the file instead of keeping what was read since the mark.
+ */
+class RewindableFileInputStream extends InputStream {
+
+  private final FileChannel channel;
+
+  private InputStream in;
+
+  private long position;
+
+  private long mark;
+
+  RewindableFileInputStream( final File file ) throws IOException {
+    channel = FileChannel.open( file.toPath(), StandardOpenOption.READ );
+    in = newBuffer();
+  }
+
+  @Override
+  public int read() throws IOException {
+    int b = in.read();
+    if ( b >= 0 ) {
+      position++;
+    }
+    return b;
+  }
+
+  @Override
+  public int read( final byte[] b, final int off, final int len ) throws IOException {
+    int n = in.read( b, off, len );
+    if ( n > 0 ) {
+      position += n;
+    }
+    return n;
+  }
+
+  @Override
+  public long skip( final long n ) throws IOException {
+    long skipped = in.skip( n );
+    position += skipped;
+    return skipped;
+  }
+
+  @Override
+  public int available() throws IOException {
+    return in.available();
+  }
+
+  @Override
+  public boolean markSupported() {
+    return true;
+  }
+
+  @Override
+  public synchronized void mark( final int readlimit ) {
+    mark = position;
+  }
+
+  @Override
+  public synchronized void reset() throws IOException {
+    channel.position( mark );
+    position = mark;
+    // drop whatever was buffered past the mark
+    in = newBuffer();
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  private InputStream newBuffer() {
+    return new BufferedInputStream( Channels.newInputStream( channel ) );
+  }
+}
@@ -0,0 +1,113 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.platform.plugin.services.importexport;
+
+import org.apache.commons.io.IOUtils;
+import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+import org.pentaho.platform.api.repository2.unified.RepositoryFileAcl;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+
+/**
+ * A {@link RepositoryFileBundle} whose content is kept in memory when it is small, and in a temporary file otherwise.
+ * The content can be read any number of times, and the streams returned by {@link #getInputStream()} support
+ * {@link InputStream#mark(int)} and {@link InputStream#reset()} without a read limit in either case.
+ */
+public class SpooledRepositoryFileBundle extends RepositoryFileBundle {
+
+  private static final long serialVersionUID = -2278466432914706391L;
+
+  private static final String TEMP_FILE_PREFIX = "zip";
+
+  private final byte[] content;
+
+  private final File tmpFile;
+
+  private final long size;
+
+  private SpooledRepositoryFileBundle( final RepositoryFile file, final RepositoryFileAcl acl, final String path,
+                                       final byte[] content, final File tmpFile, final long size,
+                                       final String charset, final String mimeType ) {
+    super( file, acl, path, tmpFile, charset, mimeType );
+    this.content = content;
+    this.tmpFile = tmpFile;
+    this.size = size;
+  }
+
+  /**
+   * Reads the given content to its end, keeping it in memory if it is no larger than <code>threshold</code> bytes and
+   * moving it to a temporary file otherwise. The stream is not closed.
+   */
+  public static SpooledRepositoryFileBundle spool( final RepositoryFile file, final RepositoryFileAcl acl,
+                                                   final String path, final InputStream input, final int threshold,
+                                                   final String charset, final String mimeType ) throws IOException {
+    long limit = Math.max( 0, threshold );
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    // one byte more than the threshold tells whether there is more
+    long length = IOUtils.copyLarge( input, buffer, 0, limit + 1 );
+    if ( length <= limit ) {
+      return new SpooledRepositoryFileBundle( file, acl, path, buffer.toByteArray(), null, length, charset, mimeType );
+    }
+
+    File tmpFile = File.createTempFile( TEMP_FILE_PREFIX, null );
+    tmpFile.deleteOnExit();
+    long size;
+    try ( OutputStream output = new BufferedOutputStream( Files.newOutputStream( tmpFile.toPath() ) ) ) {
+      buffer.writeTo( output );
+      size = length + IOUtils.copyLarge( input, output );
+    } catch ( IOException | RuntimeException e ) {
+      Files.deleteIfExists( tmpFile.toPath() );
+      throw e;
+    }
+    return new SpooledRepositoryFileBundle( file, acl, path, null, tmpFile, size, charset, mimeType );
+  }
+
+  @Override
+  public InputStream getInputStream() throws IOException {
+    if ( content != null ) {
+      return new ByteArrayInputStream( content );
+    }
+    return new RewindableFileInputStream( tmpFile );
+  }
+
+  /**
+   * @return the size of the content in bytes
+   */
+  public long getSize() {
+    return size;
+  }
+
+  /**
+   * @return <code>true</code> if the content is held in memory rather than in a temporary file
+   */
+  public boolean isInMemory() {
+    return content != null;
+  }
+
+  /**
+   * Deletes the temporary file holding the content, if any. The content can no longer be read afterwards.
+   */
+  public void dispose() throws IOException {
+    if ( tmpFile != null ) {
+      Files.deleteIfExists( tmpFile.toPath() );
+    }
+  }
+}
@@ -0,0 +1,42 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.platform.plugin.services.importexport;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.pentaho.platform.api.engine.IPentahoSession;
+import org.pentaho.platform.api.engine.IPentahoSystemListener;
+
+/**
+ * System listener that stops the threads shared by zip exports to read file content ahead of their writers when the
+ * Pentaho system is shutting down.
+ *
+ * @see ZipExportProcessor#shutdownPrefetchExecutor()
+ */
+public class ZipExportPrefetchSystemListener implements IPentahoSystemListener {
+  private static final Log logger = LogFactory.getLog( ZipExportPrefetchSystemListener.class );
+
+  @Override
+  public boolean startup( IPentahoSession session ) {
+    return true;
+  }
+
+  @Override
+  public void shutdown() {
+    if ( logger.isTraceEnabled() ) {
+      logger.trace( "Shutting down zip export prefetch threads..." );
+    }
+
+    ZipExportProcessor.shutdownPrefetchExecutor();
+  }
+}
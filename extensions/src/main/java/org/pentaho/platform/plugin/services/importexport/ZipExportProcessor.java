@@ -31,20 +31,36 @@ import org.pentaho.platform.plugin.services.importexport.exportManifest.ExportMa
 import org.pentaho.platform.repository2.ClientRepositoryPaths;
 import org.pentaho.platform.api.repository2.unified.webservices.LocaleMapDto;
 
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.io.Serializable;
 import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipException;
 import java.util.zip.ZipOutputStream;
@@ -62,8 +78,49 @@ public class ZipExportProcessor extends BaseExportProcessor {
 
   private static final int SAFETY_TMP_FILE_SIZE = 50;
 
+  /**
+   * System setting with the number of threads shared by all downloads to read file content ahead of the zip writers.
+   */
+  public static final String PREFETCH_THREADS_SETTING = "download-prefetch-threads";
+
+  public static final int DEFAULT_PREFETCH_THREADS = 4;
+
+  /**
+   * Number of files whose content is read ahead of the zip writer, per prefetch thread.
+   */
+  private static final int PREFETCH_WINDOW_PER_THREAD = 2;
+
+  /**
+   * Number of reads waiting for a shared prefetch thread, per thread. Past that, writers read the files themselves.
+   */
+  private static final int PREFETCH_QUEUE_PER_THREAD = 8;
+
+  private static final long PREFETCH_KEEP_ALIVE_SECONDS = 60;
+
+  private static final AtomicInteger PREFETCH_THREAD_COUNT = new AtomicInteger();
+
+  private static final ThreadFactory PREFETCH_THREAD_FACTORY = new ThreadFactory() {
+    @Override
+    public Thread newThread( Runnable runnable ) {
+      Thread thread = new Thread( runnable, "ZipExportProcessor prefetch-" + PREFETCH_THREAD_COUNT.incrementAndGet() );
+      thread.setDaemon( true );
+      return thread;
+    }
+  };
+
+  private static ExecutorService sharedPrefetchExecutor;
+
   private Log logger;
 
+  private int prefetchThreads;
+
+  private ExecutorService prefetchExecutor;
+
+  /**
+   * Files of this export read ahead and not written yet, over all the folders being written.
+   */
+  private int prefetchesInFlight;
+
 
   /**
    * Encapsulates the logic of registering import handlers, generating the manifest, and performing the export
@@ -111,13 +168,28 @@ public class ZipExportProcessor extends BaseExportProcessor {
    * @throws ExportException indicates an error in import processing
    */
   public File performExport( RepositoryFile exportRepositoryFile ) throws ExportException, IOException {
-    logger = getRepositoryExportLogger();
-    File exportFile = null;
-
     // create temp file
-    exportFile = File.createTempFile( EXPORT_TEMP_FILENAME_PREFIX, EXPORT_TEMP_FILENAME_EXT );
+    File exportFile = File.createTempFile( EXPORT_TEMP_FILENAME_PREFIX, EXPORT_TEMP_FILENAME_EXT );
     exportFile.deleteOnExit();
 
+    try ( OutputStream output = new FileOutputStream( exportFile ) ) {
+      performExport( exportRepositoryFile, output );
+    }
+    return exportFile;
+  }
+
+  /**
+   * Performs the export process, writing the zip straight to the given stream as it goes. When prefetching is
+   * enabled, the content of the files in a folder is read on the shared prefetch threads ahead of the zip writer. The
+   * manifest is written last. The stream is not closed.
+   *
+   * @throws ExportException indicates an error in import processing
+   * @see #setPrefetchThreads(int)
+   */
+  public void performExport( RepositoryFile exportRepositoryFile, OutputStream output )
+    throws ExportException, IOException {
+    logger = getRepositoryExportLogger();
+
     // get the file path
     String filePath = new File( this.path ).getParent();
     if ( filePath == null ) {
@@ -130,7 +202,12 @@ public class ZipExportProcessor extends BaseExportProcessor {
       throw new FileNotFoundException( "JCR file not found: " + this.path );
     }
 
-    try ( ZipOutputStream zos = new ZipOutputStream( new FileOutputStream( exportFile ) ) ) {
+    if ( prefetchThreads > 0 ) {
+      prefetchExecutor = getPrefetchExecutor();
+      prefetchesInFlight = 0;
+    }
+    try {
+      ZipOutputStream zos = new ZipOutputStream( output );
       if ( exportRepositoryFile.isFolder() ) { // Handle recursive export
         exportManifest.getManifestInformation().setRootFolder( path.substring( 0, path.lastIndexOf( "/" ) + 1 ) );
 
@@ -160,12 +237,15 @@ public class ZipExportProcessor extends BaseExportProcessor {
 
         zos.closeEntry();
       }
+      zos.finish();
+      zos.flush();
+    } finally {
+      // the content read ahead and not written was discarded with the prefetcher of its folder
+      prefetchExecutor = null;
     }
 
     // clean up
     exportManifest = null;
-
-    return exportFile;
   }
 
   /**
@@ -176,13 +256,21 @@ public class ZipExportProcessor extends BaseExportProcessor {
    */
   public void exportFile( RepositoryFile repositoryFile, OutputStream outputStream, String filePath ) throws
       ExportException, IOException {
+    exportFile( repositoryFile, outputStream, filePath, exportContent( repositoryFile, filePath ) );
+  }
+
+  /**
+   * Adds a file whose content was already exported by the export handlers, see
+   * {@link #exportContent(RepositoryFile, String)}. The content streams are closed.
+   */
+  protected void exportFile( RepositoryFile repositoryFile, OutputStream outputStream, String filePath,
+                             List<InputStream> content ) throws ExportException, IOException {
 
     // we need a zip
     ZipOutputStream zos = (ZipOutputStream) outputStream;
 
-    // iterate through handlers to perform export
-    for ( ExportHandler exportHandler : exportHandlerList ) {
-      try ( InputStream is = exportHandler.doExport( repositoryFile, filePath ) ) {
+    try {
+      for ( InputStream is : content ) {
         // if we don't get a valid input stream back, skip it
         if ( is != null ) {
           if ( logger != null ) {
@@ -209,6 +297,36 @@ public class ZipExportProcessor extends BaseExportProcessor {
           }
         }
       }
+    } finally {
+      closeQuietly( content );
+    }
+  }
+
+  /**
+   * Runs every export handler on the file, in order.
+   *
+   * @return the content returned by each handler, <code>null</code> for those that skipped the file
+   */
+  protected List<InputStream> exportContent( RepositoryFile repositoryFile, String filePath )
+    throws ExportException, IOException {
+    List<InputStream> content = new ArrayList<>( exportHandlerList.size() );
+    boolean done = false;
+    try {
+      for ( ExportHandler exportHandler : exportHandlerList ) {
+        content.add( exportHandler.doExport( repositoryFile, filePath ) );
+      }
+      done = true;
+    } finally {
+      if ( !done ) {
+        closeQuietly( content );
+      }
+    }
+    return content;
+  }
+
+  private static void closeQuietly( List<InputStream> content ) {
+    for ( InputStream is : content ) {
+      IOUtils.closeQuietly( is );
     }
   }
 
@@ -246,6 +364,20 @@ public class ZipExportProcessor extends BaseExportProcessor {
     if ( logger != null ) {
       logger.debug( "Found  [ " + children.size() + " ] children in folder [ " + repositoryDir.getName() + " ]" );
     }
+    try ( ContentPrefetcher prefetcher = prefetchExecutor != null ? new ContentPrefetcher( children, filePath ) : null ) {
+      exportChildren( children, outputStream, filePath, prefetcher );
+    }
+    if ( logger != null ) {
+      logger.trace( "Starting to create locale entry for repository object [ " + repositoryDir.getName() + " ] " );
+    }
+    createLocales( repositoryDir, filePath, repositoryDir.isFolder(), outputStream );
+    if ( logger != null ) {
+      logger.trace( "Finished creating locale entry for repository object [ " + repositoryDir.getName() + " ] " );
+    }
+  }
+
+  private void exportChildren( List<RepositoryFile> children, OutputStream outputStream, String filePath,
+                               ContentPrefetcher prefetcher ) throws ExportException, IOException {
     for ( RepositoryFile repositoryFile : children ) {
       // exclude 'etc' folder - datasources and etc.
       if ( isExportCandidate( repositoryFile.getPath() ) ) {
@@ -271,7 +403,11 @@ public class ZipExportProcessor extends BaseExportProcessor {
             if ( logger != null ) {
               logger.debug( "Repository Object [ " + repositoryFile.getName() + " ] is a file. Adding it to the bundle" );
             }
-            exportFile( repositoryFile, outputStream, filePath );
+            if ( prefetcher != null ) {
+              exportFile( repositoryFile, outputStream, filePath, prefetcher.next( repositoryFile ) );
+            } else {
+              exportFile( repositoryFile, outputStream, filePath );
+            }
           } catch ( ZipException e ) {
             // possible duplicate entry, log it and continue on with the other files in the directory
             log.debug( e.getMessage(), e );
@@ -283,13 +419,6 @@ public class ZipExportProcessor extends BaseExportProcessor {
         }
       }
     }
-    if ( logger != null ) {
-      logger.trace( "Starting to create locale entry for repository object [ " + repositoryDir.getName() + " ] " );
-    }
-    createLocales( repositoryDir, filePath, repositoryDir.isFolder(), outputStream );
-    if ( logger != null ) {
-      logger.trace( "Finished creating locale entry for repository object [ " + repositoryDir.getName() + " ] " );
-    }
   }
 
   protected boolean isExportCandidate( String path ) {
@@ -476,6 +605,70 @@ public class ZipExportProcessor extends BaseExportProcessor {
     this.localeExportList = localeExportList;
   }
 
+  public int getPrefetchThreads() {
+    return prefetchThreads;
+  }
+
+  /**
+   * Sets how many of the shared prefetch threads this export may keep busy during
+   * {@link #performExport(RepositoryFile, OutputStream)}; at most twice that many files are read ahead of the zip
+   * writer at any time. With <code>0</code>, the default, files are read one at a time by the writer itself.
+   *
+   * @see #getPrefetchExecutor()
+   */
+  public void setPrefetchThreads( int prefetchThreads ) {
+    this.prefetchThreads = prefetchThreads;
+  }
+
+  /**
+   * Reads the {@value #PREFETCH_THREADS_SETTING} system setting.
+   *
+   * @return the number of prefetch threads, {@value #DEFAULT_PREFETCH_THREADS} if the setting is missing or invalid
+   */
+  public static int getConfiguredPrefetchThreads() {
+    String threads = PentahoSystem.getSystemSetting( PREFETCH_THREADS_SETTING, null );
+    if ( StringUtils.isNotBlank( threads ) ) {
+      try {
+        return Math.max( 0, Integer.parseInt( threads.trim() ) );
+      } catch ( NumberFormatException e ) {
+        log.warn( "Invalid " + PREFETCH_THREADS_SETTING + " setting: " + threads );
+      }
+    }
+    return DEFAULT_PREFETCH_THREADS;
+  }
+
+  /**
+   * Returns the daemon threads that read file content ahead of the zip writers, shared by all exports and sized from
+   * the {@value #PREFETCH_THREADS_SETTING} system setting when first used. Reads that find the threads and their
+   * queue busy are run by the writer that asked for them.
+   */
+  static synchronized ExecutorService getPrefetchExecutor() {
+    if ( sharedPrefetchExecutor == null ) {
+      int threads = Math.max( 1, getConfiguredPrefetchThreads() );
+      ThreadPoolExecutor executor = new ThreadPoolExecutor( threads, threads, PREFETCH_KEEP_ALIVE_SECONDS,
+          TimeUnit.SECONDS, new LinkedBlockingQueue<>( threads * PREFETCH_QUEUE_PER_THREAD ), PREFETCH_THREAD_FACTORY,
+          ( runnable, pool ) -> runnable.run() );
+      executor.allowCoreThreadTimeOut( true );
+      sharedPrefetchExecutor = executor;
+    }
+    return sharedPrefetchExecutor;
+  }
+
+  /**
+   * Stops the shared prefetch threads. Reads still waiting for a thread are cancelled, which fails the exports that
+   * needed them. Exports started afterwards get new threads.
+   */
+  public static synchronized void shutdownPrefetchExecutor() {
+    if ( sharedPrefetchExecutor != null ) {
+      for ( Runnable waiting : sharedPrefetchExecutor.shutdownNow() ) {
+        if ( waiting instanceof Future ) {
+          ( (Future<?>) waiting ).cancel( false );
+        }
+      }
+      sharedPrefetchExecutor = null;
+    }
+  }
+
   public ExportManifest getExportManifest() {
     return exportManifest;
   }
@@ -483,4 +676,141 @@ public class ZipExportProcessor extends BaseExportProcessor {
   public void setExportManifest( ExportManifest exportManifest ) {
     this.exportManifest = exportManifest;
   }
+
+  /**
+   * Reads the content of the files of one folder on the shared prefetch threads, a few files ahead of the zip writer,
+   * which takes them in the order they are listed in. The folders being written share the read-ahead allowance of the
+   * export. Reads run on behalf of the user of the export.
+   */
+  private class ContentPrefetcher implements Closeable {
+
+    private final Iterator<RepositoryFile> files;
+
+    private final String filePath;
+
+    private final Deque<PrefetchedContent> pending = new ArrayDeque<>();
+
+    private final IPentahoSession session = PentahoSessionHolder.getSession();
+
+    private final SecurityContext securityContext = SecurityContextHolder.getContext();
+
+    ContentPrefetcher( List<RepositoryFile> children, String filePath ) {
+      List<RepositoryFile> files = new ArrayList<>();
+      for ( RepositoryFile child : children ) {
+        if ( !child.isFolder() && isExportCandidate( child.getPath() ) ) {
+          files.add( child );
+        }
+      }
+      this.files = files.iterator();
+      this.filePath = filePath;
+    }
+
+    /**
+     * Takes the content of the next file, waiting for it to be read if needed. Reading ahead starts with the first
+     * file, so the subfolders written before it can use the whole allowance of the export.
+     */
+    List<InputStream> next( RepositoryFile repositoryFile ) throws ExportException, IOException {
+      fill();
+      PrefetchedContent next = pending.poll();
+      if ( next == null ) {
+        // the allowance is taken by the folders being written around this one; read the file now
+        if ( files.hasNext() ) {
+          files.next();
+        }
+        return exportContent( repositoryFile, filePath );
+      }
+      prefetchesInFlight--;
+      fill();
+      if ( next.repositoryFile != repositoryFile ) {
+        // not the file that was read ahead; should not happen, but reading it now is always correct
+        next.discard();
+        return exportContent( repositoryFile, filePath );
+      }
+      return next.get();
+    }
+
+    private void fill() {
+      while ( prefetchesInFlight < prefetchThreads * PREFETCH_WINDOW_PER_THREAD && files.hasNext() ) {
+        RepositoryFile repositoryFile = files.next();
+        pending.add( new PrefetchedContent( repositoryFile, prefetchExecutor.submit( () -> load( repositoryFile ) ) ) );
+        prefetchesInFlight++;
+      }
+    }
+
+    private List<InputStream> load( RepositoryFile repositoryFile ) throws ExportException, IOException {
+      // the holders may be shared with the writer, depending on their strategy, so they are restored rather than cleared
+      IPentahoSession previousSession = PentahoSessionHolder.getSession();
+      SecurityContext previousSecurityContext = SecurityContextHolder.getContext();
+      PentahoSessionHolder.setSession( session );
+      SecurityContextHolder.setContext( securityContext );
+      try {
+        return exportContent( repositoryFile, filePath );
+      } finally {
+        SecurityContextHolder.setContext( previousSecurityContext );
+        if ( previousSession != null ) {
+          PentahoSessionHolder.setSession( previousSession );
+        } else {
+          PentahoSessionHolder.removeSession();
+        }
+      }
+    }
+
+    @Override
+    public void close() {
+      for ( PrefetchedContent content : pending ) {
+        content.discard();
+      }
+      prefetchesInFlight -= pending.size();
+      pending.clear();
+    }
+  }
+
+  private static class PrefetchedContent {
+
+    private final RepositoryFile repositoryFile;
+
+    private final Future<List<InputStream>> content;
+
+    PrefetchedContent( RepositoryFile repositoryFile, Future<List<InputStream>> content ) {
+      this.repositoryFile = repositoryFile;
+      this.content = content;
+    }
+
+    List<InputStream> get() throws ExportException, IOException {
+      try {
+        return content.get();
+      } catch ( InterruptedException e ) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException( "Interrupted while reading " + repositoryFile.getPath() );
+      } catch ( ExecutionException e ) {
+        Throwable cause = e.getCause();
+        if ( cause instanceof ExportException ) {
+          throw (ExportException) cause;
+        }
+        if ( cause instanceof IOException ) {
+          throw (IOException) cause;
+        }
+        if ( cause instanceof RuntimeException ) {
+          throw (RuntimeException) cause;
+        }
+        if ( cause instanceof Error ) {
+          throw (Error) cause;
+        }
+        throw new ExportException( cause );
+      }
+    }
+
+    /**
+     * Drops content that will not be written, closing its streams if it was read already.
+     */
+    void discard() {
+      if ( !content.cancel( false ) ) {
+        try {
+          closeQuietly( get() );
+        } catch ( ExportException | IOException | RuntimeException e ) {
+          log.debug( e.getMessage(), e );
+        }
+      }
+    }
+  }
 }
@@ -18,8 +18,13 @@ import org.apache.commons.lang3.math.NumberUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.pentaho.metadata.model.Domain;
+import org.pentaho.metadata.model.Category;
 import org.pentaho.metadata.model.LogicalModel;
+import org.pentaho.metadata.model.LogicalTable;
+import org.pentaho.metadata.model.concept.Concept;
 import org.pentaho.metadata.model.concept.IConcept;
+import org.pentaho.metadata.model.concept.security.Security;
+import org.pentaho.metadata.model.concept.security.SecurityOwner;
 import org.pentaho.metadata.repository.DomainAlreadyExistsException;
 import org.pentaho.metadata.repository.DomainIdNullException;
 import org.pentaho.metadata.repository.DomainStorageException;
@@ -32,16 +37,23 @@ import org.pentaho.platform.api.engine.ISystemConfig;
 import org.pentaho.platform.api.repository2.unified.RepositoryFileAcl;
 import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
 
 import java.io.InputStream;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -52,8 +64,14 @@ import java.util.stream.Collectors;
 import static java.util.Optional.ofNullable;
 
 /**
- * This is the platform implementation which provides session-based caching for an existing {@link
- * IMetadataDomainRepository}.
+ * This is the platform implementation which provides caching for an existing {@link IMetadataDomainRepository}.
+ * <p>
+ * Domains are cached in two layers: the domain as loaded from the delegate is kept once per domain id and shared by
+ * every session, and the secured copy built from it by {@link SecurityHelper#createSecureDomain} is kept once per
+ * security profile (see {@link #getSecurityProfile(IPentahoSession, boolean)}). Sessions granted the same roles share a
+ * single copy, unless the ACLs of the domain name individual users, in which case the copy is also kept per user. The
+ * secured copies of a profile are dropped when the last session using it logs out. Row level security constraints are
+ * not part of the cached domain; they are generated from the current session on every query.
  *
  * @author Jordan Ganoff (jganoff@pentaho.com)
  */
@@ -80,6 +98,14 @@ public class SessionCachingMetadataDomainRepository implements IMetadataDomainRe
   private final IMetadataDomainRepository delegate;
   private static final String DOMAIN_CACHE_KEY_PREDICATE = "domain-id-cache-for-session:";
 
+  // ids of the sessions using each security profile, the profiles each session uses, and the keys cached for each
+  private final Map<String, Set<String>> profileSessions = new ConcurrentHashMap<>();
+  private final Map<String, Set<String>> sessionProfiles = new ConcurrentHashMap<>();
+  private final Map<String, Set<CacheKey>> profileKeys = new ConcurrentHashMap<>();
+
+  // whether the ACLs of each domain name individual users, by domain id
+  private final Map<String, Boolean> userSecuredDomains = new ConcurrentHashMap<>();
+
   /**
    * this as a public class so that if necessary someone can get access to a session key and clear the cache in their
    * own way via javascript rule / etc
@@ -131,6 +157,48 @@ public class SessionCachingMetadataDomainRepository implements IMetadataDomainRe
     }
   }
 
+  /**
+   * Key of a domain cached for a security profile rather than for a single session. Domains loaded from the delegate
+   * are cached under {@link #SHARED_PROFILE}.
+   */
+  public static class ProfileCacheKey extends CacheKey {
+    private static final long serialVersionUID = -4279526236415938064L;
+
+    /**
+     * Profile of the unsecured domain loaded from the delegate, shared by all profiles
+     */
+    public static final String SHARED_PROFILE = "*"; //$NON-NLS-1$
+
+    public String profile;
+
+    protected ProfileCacheKey() {
+    }
+
+    public ProfileCacheKey( String profile, String domainId ) {
+      super( null, domainId );
+      this.profile = profile;
+    }
+
+    @Override
+    public boolean equals( final Object o ) {
+      if ( !super.equals( o ) ) {
+        return false;
+      }
+      ProfileCacheKey cacheKey = (ProfileCacheKey) o;
+      return profile != null ? profile.equals( cacheKey.profile ) : cacheKey.profile == null;
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * super.hashCode() + ( profile != null ? profile.hashCode() : 0 );
+    }
+
+    @Override
+    public String toString() {
+      return "(" + profile + "," + domainId + ")"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+    }
+  }
+
   /**
    * Wraps the provided domain repository to provide session-based caching of domains.
    */
@@ -240,7 +308,8 @@ public class SessionCachingMetadataDomainRepository implements IMetadataDomainRe
   }
 
   /**
-   * Calls the callback for every key in the cache region whose session id matches the provided session's id.
+   * Calls the callback for every key in the cache region whose session id matches the provided session's id. Keys of
+   * domains cached per security profile are skipped, as other sessions may still be using them.
    *
    * @param session  Session to use for matching keys
    * @param callback {@see CacheCallback}
@@ -249,6 +318,9 @@ public class SessionCachingMetadataDomainRepository implements IMetadataDomainRe
     forAllKeys( new CacheIteratorCallback() {
       @Override
       public Boolean call( final ICacheManager cacheManager, final CacheKey key ) {
+        if ( key instanceof ProfileCacheKey ) {
+          return true; // continue
+        }
         if ( session.getId() == null ? key.sessionId == null : session.getId().equals( key.sessionId ) ) {
           if ( Boolean.FALSE.equals( callback.call( cacheManager, key ) ) ) {
             return false; // break
@@ -262,7 +334,22 @@ public class SessionCachingMetadataDomainRepository implements IMetadataDomainRe
   @Override
   public Domain getDomain( final String id ) {
     final IPentahoSession session = PentahoSessionHolder.getSession();
-    final CacheKey key = new CacheKey( session.getId(), id );
+    Domain sharedDomain = null;
+    Boolean userSecured = userSecuredDomains.get( id );
+    if ( userSecured == null ) {
+      sharedDomain = getSharedDomain( id );
+      if ( sharedDomain == null ) {
+        return null;
+      }
+      userSecured = isUserSecured( sharedDomain );
+      userSecuredDomains.put( id, userSecured );
+    }
+    final String profile = getSecurityProfile( session, userSecured );
+    final CacheKey key = new ProfileCacheKey( profile, id );
+    if ( session != null && session.getId() != null ) {
+      // before anything is cached for the profile, so that a logout cannot miss it
+      useProfile( session, profile );
+    }
     Domain domain = (Domain) cacheManager.getFromRegionCache( CACHE_REGION, key );
     if ( domain != null ) {
       if ( logger.isDebugEnabled() ) {
@@ -271,29 +358,187 @@ public class SessionCachingMetadataDomainRepository implements IMetadataDomainRe
       if ( delegate instanceof IAclAwarePentahoMetadataDomainRepositoryImporter && !( (IAclAwarePentahoMetadataDomainRepositoryImporter) delegate ).hasAccessFor( id ) ) {
 
         if ( logger.isDebugEnabled() ) {
-          logger.debug( "User no longer has access to Domain, purging from session cache: " + key );
+          logger.debug( "User no longer has access to Domain, purging from cache: " + key );
         }
         purgeDomain( domain.getId() );
         domain = null;
       }
       return domain;
     }
+    if ( sharedDomain == null ) {
+      sharedDomain = getSharedDomain( id );
+    }
+    if ( sharedDomain != null ) {
+      // createSecureDomain works on a clone, the shared domain is left untouched
+      SecurityHelper helper = new SecurityHelper();
+      domain = helper.createSecureDomain( this, sharedDomain );
+      // cache domain with the key we used to look it up, not whatever new id it might have now
+      if ( logger.isDebugEnabled() ) {
+        logger.debug( "Caching domain by security profile: " + key ); //$NON-NLS-1$
+      }
+      cacheManager.putInRegionCache( CACHE_REGION, key, domain );
+      profileKeys.computeIfAbsent( profile, p -> ConcurrentHashMap.newKeySet() ).add( key );
+    }
+    return domain;
+  }
+
+  /**
+   * Returns the domain as loaded from the delegate, reading it only if no other profile has done so yet. The shared
+   * copy skips the access check the delegate performs when loading a domain, so it is only handed out to users that
+   * have access to the domain; anybody else goes to the delegate.
+   *
+   * @param id domain id
+   * @return unsecured domain, or <code>null</code> if the delegate does not have it
+   */
+  private Domain getSharedDomain( final String id ) {
+    final CacheKey sharedKey = new ProfileCacheKey( ProfileCacheKey.SHARED_PROFILE, id );
+    Domain domain = hasAccessFor( id ) ? (Domain) cacheManager.getFromRegionCache( CACHE_REGION, sharedKey ) : null;
+    if ( domain != null ) {
+      return domain;
+    }
     domain = delegate.getDomain( id );
     if ( domain != null ) {
 
       if ( logger.isDebugEnabled() ) {
-        logger.debug( "Requested Domain wasn't in Session Cache, but was found in the delegating repository: " + id );
+        logger.debug( "Requested Domain wasn't in cache, but was found in the delegating repository: " + id );
       }
+      cacheManager.putInRegionCache( CACHE_REGION, sharedKey, domain );
+    }
+    return domain;
+  }
 
-      SecurityHelper helper = new SecurityHelper();
-      domain = helper.createSecureDomain( this, domain );
-      // cache domain with the key we used to look it up, not whatever new id it might have now
-      if ( logger.isDebugEnabled() ) {
-        logger.debug( "Caching domain by session: " + key ); //$NON-NLS-1$
+  /**
+   * Identifies the view of the domains the given session gets: {@link #hasAccess(int, IConcept)} decides on the
+   * granted roles, and on the user name for domains whose ACLs name individual users, so sessions that agree on those
+   * share their secured domains. Subclasses whose delegate takes anything else from the session into account must add
+   * it here.
+   *
+   * @param session     current session
+   * @param includeUser whether the domain's ACLs name individual users
+   * @return security profile of the session
+   */
+  protected String getSecurityProfile( final IPentahoSession session, final boolean includeUser ) {
+    Set<String> roles = new TreeSet<>();
+    Authentication authentication =
+      org.pentaho.platform.engine.security.SecurityHelper.getInstance().getAuthentication();
+    if ( authentication != null && authentication.getAuthorities() != null ) {
+      for ( GrantedAuthority authority : authentication.getAuthorities() ) {
+        roles.add( authority.getAuthority() );
+      }
+    }
+    String user = includeUser ? String.valueOf( session != null ? session.getName() : null ) : ""; //$NON-NLS-1$
+    return user + "|" + String.join( ",", roles ); //$NON-NLS-1$ //$NON-NLS-2$
+  }
+
+  /**
+   * @return whether an ACL of the domain, or of a model, category, table or column of it, names an individual user
+   */
+  static boolean isUserSecured( final Domain domain ) {
+    if ( namesUser( domain ) ) {
+      return true;
+    }
+    if ( domain.getLogicalModels() != null ) {
+      for ( LogicalModel model : domain.getLogicalModels() ) {
+        if ( namesUser( model ) || anyNamesUser( model.getCategories() ) ) {
+          return true;
+        }
+        if ( model.getCategories() != null ) {
+          for ( Category category : model.getCategories() ) {
+            if ( anyNamesUser( category.getLogicalColumns() ) ) {
+              return true;
+            }
+          }
+        }
+        if ( anyNamesUser( model.getLogicalTables() ) ) {
+          return true;
+        }
+        if ( model.getLogicalTables() != null ) {
+          for ( LogicalTable table : model.getLogicalTables() ) {
+            if ( anyNamesUser( table.getLogicalColumns() ) ) {
+              return true;
+            }
+          }
+        }
+      }
+    }
+    return false;
+  }
+
+  private static boolean anyNamesUser( final List<? extends IConcept> concepts ) {
+    if ( concepts != null ) {
+      for ( IConcept concept : concepts ) {
+        if ( namesUser( concept ) ) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  // the same ACL PentahoMetadataAclHolder hands to hasAccess
+  private static boolean namesUser( final IConcept concept ) {
+    Object security = concept.getProperty( Concept.SECURITY_PROPERTY );
+    if ( security instanceof Security && ( (Security) security ).getOwnerAclMap() != null ) {
+      for ( SecurityOwner owner : ( (Security) security ).getOwnerAclMap().keySet() ) {
+        if ( owner.getOwnerType() == SecurityOwner.OwnerType.USER ) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Records that the session uses the given profile. A session whose roles changed stops using the profiles it used
+   * with its previous roles.
+   */
+  private void useProfile( final IPentahoSession session, final String profile ) {
+    final String sessionId = session.getId();
+    final Set<String> current =
+      new HashSet<>( Arrays.asList( getSecurityProfile( session, false ), getSecurityProfile( session, true ) ) );
+    final List<String> previous = new ArrayList<>();
+    sessionProfiles.compute( sessionId, ( id, profiles ) -> {
+      Set<String> used = profiles != null ? profiles : new HashSet<>();
+      for ( Iterator<String> it = used.iterator(); it.hasNext(); ) {
+        String p = it.next();
+        if ( !current.contains( p ) ) {
+          previous.add( p );
+          it.remove();
+        }
+      }
+      used.add( profile );
+      return used;
+    } );
+    for ( String p : previous ) {
+      releaseProfile( sessionId, p );
+    }
+    profileSessions.compute( profile, ( p, sessionIds ) -> {
+      Set<String> ids = sessionIds != null ? sessionIds : new HashSet<>();
+      ids.add( sessionId );
+      return ids;
+    } );
+  }
+
+  /**
+   * Records that the session no longer uses the given profile, and removes the domains cached for the profile if no
+   * other session uses it.
+   */
+  private void releaseProfile( final String sessionId, final String profile ) {
+    final boolean[] unused = new boolean[ 1 ];
+    profileSessions.computeIfPresent( profile, ( p, sessionIds ) -> {
+      sessionIds.remove( sessionId );
+      unused[ 0 ] = sessionIds.isEmpty();
+      return unused[ 0 ] ? null : sessionIds;
+    } );
+    Set<CacheKey> keys = unused[ 0 ] ? profileKeys.remove( profile ) : null;
+    if ( keys != null ) {
+      for ( CacheKey key : keys ) {
+        if ( logger.isDebugEnabled() ) {
+          logger.debug( "Removing domain of an unused security profile from cache: " + key ); //$NON-NLS-1$
+        }
+        cacheManager.removeFromRegionCache( CACHE_REGION, key );
       }
-      cacheManager.putInRegionCache( CACHE_REGION, key, domain );
     }
-    return domain;
   }
 
   /**
@@ -311,12 +556,14 @@ public class SessionCachingMetadataDomainRepository implements IMetadataDomainRe
         return true; // continue
       }
     } );
+    userSecuredDomains.remove( domainId );
     removeDomainFromIDCache( domainId );
   }
 
   @Override
   public void reloadDomains() {
     forAllKeys( REMOVE_ALL_CALLBACK );
+    userSecuredDomains.clear();
     clearDomainIdsFromCache();
     delegate.reloadDomains();
   }
@@ -324,6 +571,7 @@ public class SessionCachingMetadataDomainRepository implements IMetadataDomainRe
   @Override
   public void flushDomains() {
     forAllKeys( REMOVE_ALL_CALLBACK );
+    userSecuredDomains.clear();
     clearDomainIdsFromCache();
     delegate.flushDomains();
   }
@@ -569,6 +817,12 @@ public class SessionCachingMetadataDomainRepository implements IMetadataDomainRe
   @Override
   public void onLogout( final IPentahoSession session ) {
     flushDomains( session );
+    Set<String> profiles = session.getId() != null ? sessionProfiles.remove( session.getId() ) : null;
+    if ( profiles != null ) {
+      for ( String profile : profiles ) {
+        releaseProfile( session.getId(), profile );
+      }
+    }
   }
 
   public Map<String, InputStream> getDomainFilesData( final String domainId ) {
@@ -367,6 +367,12 @@ public class PentahoSystemPluginManager implements IPluginManager {
       org.pentaho.platform.util.logging.Logger.error( getClass().toString(), msg, t );
       PluginMessageLogger.add( msg );
     }
+
+    if ( loader instanceof PluginClassLoader ) {
+      org.pentaho.platform.util.logging.Logger
+        .debug( this,
+          "class loading for plugin " + plugin.getId() + ": " + ( (PluginClassLoader) loader ).getStatistics() );
+    }
   }
 
   /**
@@ -20,12 +20,23 @@ import org.pentaho.platform.engine.services.messages.Messages;
 
 import java.io.File;
 import java.io.FilenameFilter;
+import java.io.IOException;
 import java.net.MalformedURLException;
+import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.text.MessageFormat;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
 
 /**
  * A custom implementation of {@link URLClassLoader} for Pentaho Platform Plugins. It is used to load plugin jars and
@@ -34,15 +45,51 @@ import java.util.List;
  * Note: {@link PluginClassLoader} will search for jar files in a 'lib' subdirectory under the pluginDir provided in the
  * constructor. Class and other resources will be visible to this classloader in either the root directory of the plugin
  * or in the lib folder.
+ * <p>
+ * The loader is parallel capable: classes are loaded under a lock per class name, so threads loading different classes
+ * of the same plugin don't wait for each other. When the loader is created, the packages of every jar on its classpath
+ * are indexed, which lets it tell right away that it does not have a class, without searching the jars one by one.
+ * {@link #getStatistics()} reports what loading classes has cost so far.
  * 
  * @author aphillips
  */
 public class PluginClassLoader extends URLClassLoader {
   private static Log log = LogFactory.getLog( PluginClassLoader.class );
 
+  private static final String CLASS_SUFFIX = ".class"; //$NON-NLS-1$
+
+  private static final String VERSIONS_DIR = "META-INF/versions/"; //$NON-NLS-1$
+
+  static {
+    ClassLoader.registerAsParallelCapable();
+  }
+
   private File pluginDir;
 
-  private boolean overrideLoad = false;
+  private volatile boolean overrideLoad = false;
+
+  /**
+   * package name -> jars on the classpath holding classes of that package, or <code>null</code> if some jar could not
+   * be indexed and every lookup has to search the classpath
+   */
+  private final Map<String, List<URL>> packageIndex;
+
+  /**
+   * directories on the classpath, which are not indexed
+   */
+  private final List<File> classDirs = new ArrayList<File>();
+
+  private final LongAdder cachedLoads = new LongAdder();
+
+  private final LongAdder localLoads = new LongAdder();
+
+  private final LongAdder parentLoads = new LongAdder();
+
+  private final LongAdder localLookups = new LongAdder();
+
+  private final LongAdder skippedLookups = new LongAdder();
+
+  private final LongAdder localLookupNanos = new LongAdder();
 
   /**
    * Creates a class loader for loading plugin classes and discovering resources. Jars must be located in
@@ -62,6 +109,7 @@ public class PluginClassLoader extends URLClassLoader {
         log.debug( url );
       }
     }
+    this.packageIndex = buildPackageIndex();
   }
 
   /**
@@ -133,13 +181,133 @@ public class PluginClassLoader extends URLClassLoader {
     }
   }
 
+  /**
+   * Indexes the packages of the jars on the classpath and collects its directories.
+   * 
+   * @return the index, or <code>null</code> if a jar could not be read or refers to further jars in its manifest
+   */
+  private Map<String, List<URL>> buildPackageIndex() {
+    Map<String, List<URL>> index = new HashMap<String, List<URL>>();
+    boolean complete = true;
+    for ( URL url : getURLs() ) {
+      File file;
+      try {
+        file = new File( url.toURI() );
+      } catch ( URISyntaxException | IllegalArgumentException e ) {
+        complete = false;
+        continue;
+      }
+      if ( file.isDirectory() ) {
+        classDirs.add( file );
+      } else if ( file.isFile() ) {
+        complete &= indexJar( index, url, file );
+      }
+    }
+    if ( log.isDebugEnabled() ) {
+      log.debug( complete ? MessageFormat.format( "indexed {0} packages for {1}", index.size(), this ) //$NON-NLS-1$
+          : MessageFormat.format( "classpath of {0} could not be indexed, classes will be searched for", this ) ); //$NON-NLS-1$
+    }
+    return complete ? index : null;
+  }
+
+  private static boolean indexJar( Map<String, List<URL>> index, URL url, File file ) {
+    try ( JarFile jar = new JarFile( file ) ) {
+      Manifest manifest = jar.getManifest();
+      if ( manifest != null && manifest.getMainAttributes().getValue( Attributes.Name.CLASS_PATH ) != null ) {
+        // URLClassLoader follows Class-Path entries on its own, so the index would miss their classes
+        return false;
+      }
+      Enumeration<JarEntry> entries = jar.entries();
+      while ( entries.hasMoreElements() ) {
+        String entryName = entries.nextElement().getName();
+        if ( entryName.endsWith( CLASS_SUFFIX ) ) {
+          if ( entryName.startsWith( VERSIONS_DIR ) ) {
+            int versionEnd = entryName.indexOf( '/', VERSIONS_DIR.length() );
+            entryName = versionEnd < 0 ? "" : entryName.substring( versionEnd + 1 ); //$NON-NLS-1$
+          }
+          int packageEnd = entryName.lastIndexOf( '/' );
+          String packageName = packageEnd < 0 ? "" : entryName.substring( 0, packageEnd ).replace( '/', '.' ); //$NON-NLS-1$
+          List<URL> jars = index.computeIfAbsent( packageName, k -> new ArrayList<URL>( 1 ) );
+          if ( jars.isEmpty() || jars.get( jars.size() - 1 ) != url ) {
+            jars.add( url );
+          }
+        }
+      }
+      return true;
+    } catch ( IOException e ) {
+      log.debug( MessageFormat.format( "could not index jar {0}", file.getAbsolutePath() ), e ); //$NON-NLS-1$
+      return false;
+    }
+  }
+
+  /**
+   * Tells whether the class may be found on this loader's own classpath. Answers <code>true</code> whenever the
+   * classpath could not be indexed.
+   */
+  private boolean mayHaveClass( String name ) {
+    if ( packageIndex == null ) {
+      return true;
+    }
+    int packageEnd = name.lastIndexOf( '.' );
+    if ( packageIndex.containsKey( packageEnd < 0 ? "" : name.substring( 0, packageEnd ) ) ) { //$NON-NLS-1$
+      return true;
+    }
+    String classFile = name.replace( '.', '/' ) + CLASS_SUFFIX;
+    for ( File classDir : classDirs ) {
+      if ( new File( classDir, classFile ).isFile() ) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns the jars on the classpath that hold classes of the given package, as indexed when the loader was created.
+   * 
+   * @param packageName
+   *          name of the package, empty for the default package
+   * @return the jars, in classpath order; empty if none does or the classpath could not be indexed
+   */
+  public List<URL> getJarsForPackage( String packageName ) {
+    List<URL> jars = packageIndex != null ? packageIndex.get( packageName ) : null;
+    return jars != null ? Collections.unmodifiableList( jars ) : Collections.<URL>emptyList();
+  }
+
+  /**
+   * Searches this loader's own classpath, skipping the search when the package index rules the class out.
+   */
+  @Override
+  protected Class<?> findClass( String name ) throws ClassNotFoundException {
+    if ( !mayHaveClass( name ) ) {
+      skippedLookups.increment();
+      throw new ClassNotFoundException( name );
+    }
+    long start = System.nanoTime();
+    try {
+      Class<?> t = super.findClass( name );
+      localLoads.increment();
+      return t;
+    } finally {
+      localLookups.increment();
+      localLookupNanos.add( System.nanoTime() - start );
+    }
+  }
+
+  /**
+   * @return what loading classes has cost this loader so far
+   */
+  public Statistics getStatistics() {
+    return new Statistics( cachedLoads.sum(), localLoads.sum(), parentLoads.sum(), localLookups.sum(), skippedLookups
+        .sum(), localLookupNanos.sum() / 1000000L );
+  }
+
   public File getPluginDir() {
     return pluginDir;
   }
 
   @Override
   public Class<?> loadClass( String name, boolean resolve ) throws ClassNotFoundException {
-    synchronized ( this ) {
+    synchronized ( getClassLoadingLock( name ) ) {
       if ( log.isDebugEnabled() ) {
         log.debug( "loadClass(" + name + ")... " ); //$NON-NLS-1$ //$NON-NLS-2$
       }
@@ -151,6 +319,7 @@ public class PluginClassLoader extends URLClassLoader {
        */
       t = findLoadedClass( name );
       if ( t != null ) {
+        cachedLoads.increment();
         if ( log.isDebugEnabled() ) {
           log.debug( MessageFormat.format( "{0} loaded by {1}", name, t.getClassLoader() ) ); //$NON-NLS-1$
         }
@@ -187,6 +356,9 @@ public class PluginClassLoader extends URLClassLoader {
        * parent.
        */
       t = super.loadClass( name, resolve );
+      if ( t.getClassLoader() != this ) {
+        parentLoads.increment();
+      }
       if ( log.isDebugEnabled() ) {
         log.debug( MessageFormat.format( "{0} loaded by {1}", name, t.getClassLoader() ) ); //$NON-NLS-1$
       }
@@ -198,4 +370,80 @@ public class PluginClassLoader extends URLClassLoader {
   public String toString() {
     return super.toString() + ( ( pluginDir != null ) ? " at " + pluginDir.getAbsolutePath() : "" ); //$NON-NLS-1$ //$NON-NLS-2$
   }
+
+  /**
+   * Class loading counters of a {@link PluginClassLoader}, as of the time they were taken.
+   */
+  public static class Statistics {
+    private final long cachedLoads;
+
+    private final long localLoads;
+
+    private final long parentLoads;
+
+    private final long localLookups;
+
+    private final long skippedLookups;
+
+    private final long localLookupMillis;
+
+    Statistics( long cachedLoads, long localLoads, long parentLoads, long localLookups, long skippedLookups,
+        long localLookupMillis ) {
+      this.cachedLoads = cachedLoads;
+      this.localLoads = localLoads;
+      this.parentLoads = parentLoads;
+      this.localLookups = localLookups;
+      this.skippedLookups = skippedLookups;
+      this.localLookupMillis = localLookupMillis;
+    }
+
+    /**
+     * @return number of requests answered with a class this loader had loaded before
+     */
+    public long getCachedLoads() {
+      return cachedLoads;
+    }
+
+    /**
+     * @return number of classes this loader defined from its own classpath
+     */
+    public long getLocalLoads() {
+      return localLoads;
+    }
+
+    /**
+     * @return number of requests answered by the parent loader, because this loader did not have the class or was not
+     *         asked for it first
+     */
+    public long getParentLoads() {
+      return parentLoads;
+    }
+
+    /**
+     * @return number of searches of this loader's own classpath, found or not
+     */
+    public long getLocalLookups() {
+      return localLookups;
+    }
+
+    /**
+     * @return number of searches of this loader's own classpath avoided by the package index
+     */
+    public long getSkippedLookups() {
+      return skippedLookups;
+    }
+
+    /**
+     * @return milliseconds spent searching this loader's own classpath and defining classes from it
+     */
+    public long getLocalLookupMillis() {
+      return localLookupMillis;
+    }
+
+    @Override
+    public String toString() {
+      return MessageFormat.format( "cached={0}, local={1}, parent={2}, lookups={3} ({4} ms), skipped lookups={5}", //$NON-NLS-1$
+          cachedLoads, localLoads, parentLoads, localLookups, localLookupMillis, skippedLookups );
+    }
+  }
 }
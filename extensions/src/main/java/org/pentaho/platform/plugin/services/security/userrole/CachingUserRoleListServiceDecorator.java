@@ -13,21 +13,45 @@
 
 package org.pentaho.platform.plugin.services.security.userrole;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.pentaho.platform.api.engine.ICacheManager;
+import org.pentaho.platform.api.engine.IPentahoSession;
 import org.pentaho.platform.api.engine.IUserRoleListService;
 import org.pentaho.platform.api.mt.ITenant;
+import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Caching Decorator for an IUserRoleListService. It will use the configured ICacheManager in the PentahoSystem to cache
  * all calls being made to the decorated instance.
  * <p/>
+ * Concurrent calls that miss the cache for the same entry share one call to the decorated instance. Entries older than
+ * the refresh interval are still returned, while one call per entry reloads them in the background. The lists returned
+ * are shared and cannot be modified.
+ * <p/>
  * Created by nbaker on 5/20/14.
  */
 public class CachingUserRoleListServiceDecorator implements IUserRoleListService {
+  private static final Log logger = LogFactory.getLog( CachingUserRoleListServiceDecorator.class );
   private IUserRoleListService delegate;
   private ICacheManager cacheManager = PentahoSystem.getCacheManager( null );
   private static final String REGION = "userRoleListCache";
@@ -36,6 +60,29 @@ public class CachingUserRoleListServiceDecorator implements IUserRoleListService
   private static final String SYSTEM_ROLES = "system roles";
   private static final String ROLES_BY_USER = "roles by user";
 
+  static final long DEFAULT_REFRESH_AFTER_SECONDS = 300;
+
+  private static final AtomicInteger refreshThreadCount = new AtomicInteger();
+
+  // one thread is plenty: refreshes are rare, and the callers never wait for them
+  private static final ExecutorService refreshExecutor = Executors.newSingleThreadExecutor( runnable -> {
+    Thread thread = new Thread( runnable, "CachingUserRoleListServiceDecorator-refresh-"
+      + refreshThreadCount.incrementAndGet() );
+    thread.setDaemon( true );
+    return thread;
+  } );
+
+  private long refreshAfterMillis = TimeUnit.SECONDS.toMillis( DEFAULT_REFRESH_AFTER_SECONDS );
+
+  // cache entry -> the call to the decorated instance in progress for it
+  private final ConcurrentMap<String, FutureTask<List<String>>> loads = new ConcurrentHashMap<>();
+
+  // cache entries being refreshed in the background
+  private final Set<String> refreshes = ConcurrentHashMap.newKeySet();
+
+  // operation name -> statistics
+  private final ConcurrentMap<String, OperationStatistics> statistics = new ConcurrentHashMap<>();
+
   private static interface DelegateOperation {
     List<String> perform();
   }
@@ -57,6 +104,70 @@ public class CachingUserRoleListServiceDecorator implements IUserRoleListService
     }
   };
 
+  /**
+   * A cached result, with the time it was loaded at.
+   */
+  private static class CachedResult {
+    private final List<String> results;
+    private final long loadedAt;
+
+    CachedResult( List<String> results, long loadedAt ) {
+      this.results = results;
+      this.loadedAt = loadedAt;
+    }
+  }
+
+  /**
+   * Cache statistics of one operation of the decorated instance.
+   */
+  public static class OperationStatistics {
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong loadTimeMillis = new AtomicLong();
+    private final AtomicLong refreshes = new AtomicLong();
+
+    /**
+     * @return the number of calls answered from the cache, including those answered with an entry due for a refresh
+     */
+    public long getHits() {
+      return hits.get();
+    }
+
+    /**
+     * @return the number of calls that had to wait for a load, either their own or one already in progress
+     */
+    public long getMisses() {
+      return misses.get();
+    }
+
+    /**
+     * @return the number of calls made to the decorated instance, refreshes included
+     */
+    public long getLoads() {
+      return loads.get();
+    }
+
+    /**
+     * @return the total time spent in calls to the decorated instance
+     */
+    public long getLoadTimeMillis() {
+      return loadTimeMillis.get();
+    }
+
+    /**
+     * @return the number of background refreshes started
+     */
+    public long getRefreshes() {
+      return refreshes.get();
+    }
+
+    @Override
+    public String toString() {
+      return "hits=" + getHits() + ", misses=" + getMisses() + ", loads=" + getLoads() + ", loadTimeMillis="
+        + getLoadTimeMillis() + ", refreshes=" + getRefreshes();
+    }
+  }
 
   public CachingUserRoleListServiceDecorator( IUserRoleListService delegate ) {
     if ( delegate == null ) {
@@ -68,33 +179,162 @@ public class CachingUserRoleListServiceDecorator implements IUserRoleListService
     }
   }
 
+  /**
+   * Sets the age after which a cached entry is reloaded in the background, while the cached entry is still returned.
+   * 0 or less never reloads entries that are still cached.
+   */
+  public void setRefreshAfterSeconds( long refreshAfterSeconds ) {
+    this.refreshAfterMillis = TimeUnit.SECONDS.toMillis( refreshAfterSeconds );
+  }
+
+  public long getRefreshAfterSeconds() {
+    return TimeUnit.MILLISECONDS.toSeconds( refreshAfterMillis );
+  }
+
+  /**
+   * @return the cache statistics of each operation called so far, by operation name
+   */
+  public Map<String, OperationStatistics> getStatistics() {
+    return Collections.unmodifiableMap( statistics );
+  }
+
+  private List<String> performOperation( String operationName, String cacheEntry, DelegateOperation operation ) {
+    OperationStatistics operationStatistics = statistics.computeIfAbsent( operationName,
+      name -> new OperationStatistics() );
+    CachedResult cached = getCachedResult( cacheEntry );
+    if ( cached != null ) {
+      operationStatistics.hits.incrementAndGet();
+      if ( refreshAfterMillis > 0 && System.currentTimeMillis() - cached.loadedAt >= refreshAfterMillis ) {
+        refresh( cacheEntry, operation, operationStatistics, cached );
+      }
+      return cached.results;
+    }
+    operationStatistics.misses.incrementAndGet();
+    return load( cacheEntry, operation, operationStatistics );
+  }
+
   @SuppressWarnings( "unchecked" )
-  private List<String> performOperation( String cacheEntry, DelegateOperation operation ) {
-    List<String> results = null;
+  private CachedResult getCachedResult( String cacheEntry ) {
     Object fromRegionCache = cacheManager.getFromRegionCache( REGION, cacheEntry );
+    if ( fromRegionCache instanceof CachedResult ) {
+      return (CachedResult) fromRegionCache;
+    }
     if ( fromRegionCache instanceof List ) {
-      results = (List<String>) fromRegionCache;
-    } else {
-      results = operation.perform();
-      cacheManager.putInRegionCache( REGION, cacheEntry, results );
+      // put there by someone else; taken as it is, and due for a refresh
+      return new CachedResult( Collections.unmodifiableList( new ArrayList<String>(
+        (List<String>) fromRegionCache ) ), 0 );
+    }
+    return null;
+  }
+
+  /**
+   * Loads an entry that is not cached, sharing the call to the decorated instance with concurrent callers.
+   */
+  private List<String> load( final String cacheEntry, final DelegateOperation operation,
+                             final OperationStatistics operationStatistics ) {
+    FutureTask<List<String>> load = new FutureTask<>( () -> {
+      // the entry may have been loaded between the miss and the start of this load
+      CachedResult cached = getCachedResult( cacheEntry );
+      return cached != null ? cached.results : loadAndCache( cacheEntry, operation, operationStatistics );
+    } );
+    FutureTask<List<String>> inProgress = loads.putIfAbsent( cacheEntry, load );
+    if ( inProgress == null ) {
+      try {
+        load.run();
+      } finally {
+        loads.remove( cacheEntry, load );
+      }
+      inProgress = load;
+    }
+    try {
+      return inProgress.get();
+    } catch ( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+      // not worth failing the call for; it is made without waiting instead
+      return Collections.unmodifiableList( new ArrayList<String>( operation.perform() ) );
+    } catch ( ExecutionException e ) {
+      Throwable cause = e.getCause();
+      if ( cause instanceof RuntimeException ) {
+        throw (RuntimeException) cause;
+      }
+      if ( cause instanceof Error ) {
+        throw (Error) cause;
+      }
+      throw new IllegalStateException( cause );
     }
-    return new ArrayList<String>( results );
   }
 
+  private List<String> loadAndCache( String cacheEntry, DelegateOperation operation,
+                                     OperationStatistics operationStatistics ) {
+    long start = System.currentTimeMillis();
+    List<String> results;
+    try {
+      results = Collections.unmodifiableList( new ArrayList<String>( operation.perform() ) );
+    } finally {
+      long end = System.currentTimeMillis();
+      operationStatistics.loads.incrementAndGet();
+      operationStatistics.loadTimeMillis.addAndGet( end - start );
+      if ( logger.isDebugEnabled() ) {
+        logger.debug( "Loaded [" + cacheEntry + "] in " + ( end - start ) + " ms" );
+      }
+    }
+    cacheManager.putInRegionCache( REGION, cacheEntry, new CachedResult( results, start ) );
+    return results;
+  }
+
+  /**
+   * Reloads an entry in the background, unless that is already being done. If the reload fails, the cached entry is
+   * kept and only reloaded again after another refresh interval.
+   */
+  private void refresh( final String cacheEntry, final DelegateOperation operation,
+                        final OperationStatistics operationStatistics, final CachedResult cached ) {
+    if ( !refreshes.add( cacheEntry ) ) {
+      return;
+    }
+    final IPentahoSession pentahoSession = PentahoSessionHolder.getSession();
+    final SecurityContext securityContext = SecurityContextHolder.getContext();
+    try {
+      refreshExecutor.execute( () -> {
+        IPentahoSession previousSession = PentahoSessionHolder.getSession();
+        SecurityContext previousContext = SecurityContextHolder.getContext();
+        PentahoSessionHolder.setSession( pentahoSession );
+        SecurityContextHolder.setContext( securityContext );
+        try {
+          operationStatistics.refreshes.incrementAndGet();
+          loadAndCache( cacheEntry, operation, operationStatistics );
+        } catch ( RuntimeException e ) {
+          logger.warn( "Could not refresh [" + cacheEntry + "], keeping the cached entry: " + e.getMessage(), e );
+          cacheManager.putInRegionCache( REGION, cacheEntry,
+            new CachedResult( cached.results, System.currentTimeMillis() ) );
+        } finally {
+          refreshes.remove( cacheEntry );
+          // the holders may be shared with other threads, depending on their strategy, so they are restored
+          SecurityContextHolder.setContext( previousContext );
+          if ( previousSession != null ) {
+            PentahoSessionHolder.setSession( previousSession );
+          } else {
+            PentahoSessionHolder.removeSession();
+          }
+        }
+      } );
+    } catch ( RejectedExecutionException e ) {
+      refreshes.remove( cacheEntry );
+    }
+  }
 
   @Override
   public List<String> getAllRoles() {
-    return performOperation( ALL_ROLES, ALL_ROLES_OPERATION );
+    return performOperation( "getAllRoles", ALL_ROLES, ALL_ROLES_OPERATION );
   }
 
   @Override
   public List<String> getSystemRoles() {
-    return performOperation( SYSTEM_ROLES, SYSTEM_ROLES_OPERATION );
+    return performOperation( "getSystemRoles", SYSTEM_ROLES, SYSTEM_ROLES_OPERATION );
   }
 
   @Override
   public List<String> getRolesForUser( final ITenant tenant, final String username ) {
-    return performOperation( ROLES_BY_USER + getTenantKey( tenant ) + username,
+    return performOperation( "getRolesForUser", ROLES_BY_USER + getTenantKey( tenant ) + username,
       new DelegateOperation() {
         @Override public List<String> perform() {
           return delegate.getRolesForUser( tenant, username );
@@ -109,7 +349,7 @@ public class CachingUserRoleListServiceDecorator implements IUserRoleListService
 
   @Override
   public List<String> getAllUsers( final ITenant tenant ) {
-    return performOperation( ALL_USERS + getTenantKey( tenant ), new DelegateOperation() {
+    return performOperation( "getAllUsers", ALL_USERS + getTenantKey( tenant ), new DelegateOperation() {
       @Override public List<String> perform() {
         return delegate.getAllUsers( tenant );
       }
@@ -118,7 +358,7 @@ public class CachingUserRoleListServiceDecorator implements IUserRoleListService
 
   @Override
   public List<String> getAllRoles( final ITenant tenant ) {
-    return performOperation( ALL_ROLES + getTenantKey( tenant ), new DelegateOperation() {
+    return performOperation( "getAllRoles", ALL_ROLES + getTenantKey( tenant ), new DelegateOperation() {
       @Override public List<String> perform() {
         return delegate.getAllRoles( tenant );
       }
@@ -127,7 +367,7 @@ public class CachingUserRoleListServiceDecorator implements IUserRoleListService
 
   @Override
   public List<String> getUsersInRole( final ITenant tenant, final String role ) {
-    return performOperation( ALL_USERS + getTenantKey( tenant ) + role, new DelegateOperation() {
+    return performOperation( "getUsersInRole", ALL_USERS + getTenantKey( tenant ) + role, new DelegateOperation() {
       @Override public List<String> perform() {
         return delegate.getUsersInRole( tenant, role );
       }
@@ -137,6 +377,6 @@ public class CachingUserRoleListServiceDecorator implements IUserRoleListService
   @Override
   public List<String> getAllUsers() {
 
-    return performOperation( ALL_USERS, ALL_USERS_OPERATION );
+    return performOperation( "getAllUsers", ALL_USERS, ALL_USERS_OPERATION );
   }
 }
@@ -17,12 +17,20 @@ import org.apache.commons.collections.Transformer;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.springframework.beans.factory.InitializingBean;
+import org.springframework.ldap.UncategorizedLdapException;
 import org.springframework.ldap.core.ContextSource;
+import org.springframework.ldap.support.LdapUtils;
 import org.springframework.util.Assert;
 
 import javax.naming.NamingEnumeration;
 import javax.naming.NamingException;
+import javax.naming.directory.DirContext;
 import javax.naming.directory.SearchResult;
+import javax.naming.ldap.Control;
+import javax.naming.ldap.LdapContext;
+import javax.naming.ldap.PagedResultsControl;
+import javax.naming.ldap.PagedResultsResponseControl;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
@@ -63,6 +71,11 @@ public class GenericLdapSearch implements LdapSearch, InitializingBean {
 
   private ContextSource contextSource;
 
+  /**
+   * Number of entries to request per page, or 0 to search without paging.
+   */
+  private int pageSize;
+
   // ~ Constructors ==========================================================
 
   public GenericLdapSearch( final ContextSource contextSource, final LdapSearchParamsFactory paramsFactory ) {
@@ -86,46 +99,168 @@ public class GenericLdapSearch implements LdapSearch, InitializingBean {
   // ~ Methods ===============================================================
 
   public List search( final Object[] filterArgs ) {
+    // use a set internally to store intermediate results
+    final Set results = new HashSet();
+    search( filterArgs, result -> {
+      results.add( result );
+      return true;
+    } );
+    return new ArrayList( results );
+  }
+
+  /**
+   * Reads the results page by page when a page size is set, and hands each one to the handler as it is read. The
+   * directory context is closed once the handler ends the search or the results run out. A paged search that fails
+   * part way throws a Spring LDAP <code>NamingException</code> rather than ending quietly with part of the results.
+   */
+  @Override
+  public void search( final Object[] filterArgs, final LdapSearchResultHandler handler ) {
     Object[] transformedArgs = filterArgs;
     // transform the filterArgs
     if ( null != filterArgsTransformer ) {
       transformedArgs = (Object[]) filterArgsTransformer.transform( filterArgs );
     }
     LdapSearchParams params = paramsFactory.createParams( transformedArgs );
-    // use a set internally to store intermediate results
-    Set results = new HashSet();
-    NamingEnumeration matches = null;
+    DirContext context = contextSource.getReadOnlyContext();
+    try {
+      if ( ( pageSize > 0 ) && ( context instanceof LdapContext ) ) {
+        searchPaged( (LdapContext) context, params, handler );
+      } else {
+        searchUnpaged( context, params, handler );
+      }
+    } finally {
+      LdapUtils.closeContext( context );
+    }
+  }
+
+  private void searchUnpaged( final DirContext context, final LdapSearchParams params,
+      final LdapSearchResultHandler handler ) {
+    NamingEnumeration matches;
     try {
-      matches =
-          contextSource.getReadOnlyContext().search( params.getBase(), params.getFilter(), params.getFilterArgs(),
-              params.getSearchControls() );
+      matches = startSearch( context, params );
     } catch ( NamingException e1 ) {
       if ( GenericLdapSearch.logger.isErrorEnabled() ) {
         // TODO: Throw an exception here
         GenericLdapSearch.logger.error( "Directory search failed", e1 ); //$NON-NLS-1$
       }
-      return new ArrayList( results );
+      return;
+    }
+    try {
+      handleResults( matches, handler );
+    } catch ( NamingException e ) {
+      if ( GenericLdapSearch.logger.isErrorEnabled() ) {
+        // TODO: Throw an exception here
+        GenericLdapSearch.logger.error( "Enumerating directory search results failed", e ); //$NON-NLS-1$
+      }
+    }
+  }
+
+  private void searchPaged( final LdapContext context, final LdapSearchParams params,
+      final LdapSearchResultHandler handler ) {
+    byte[] cookie = null;
+    try {
+      do {
+        context.setRequestControls(
+            new Control[] { new PagedResultsControl( pageSize, cookie, Control.NONCRITICAL ) } );
+        boolean more = handleResults( startSearch( context, params ), handler );
+        byte[] nextCookie = GenericLdapSearch.getCookie( context.getResponseControls() );
+        if ( !more ) {
+          abandonPaging( context, params, ( ( nextCookie != null ) && ( nextCookie.length > 0 ) ) ? nextCookie
+              : cookie );
+          return;
+        }
+        cookie = nextCookie;
+      } while ( ( cookie != null ) && ( cookie.length > 0 ) );
+    } catch ( NamingException e ) {
+      throw LdapUtils.convertLdapException( e );
+    } catch ( IOException e ) {
+      throw new UncategorizedLdapException( "Could not encode the paged results control", e ); //$NON-NLS-1$
+    } finally {
+      try {
+        // pooled contexts must not keep the paging control
+        context.setRequestControls( null );
+      } catch ( NamingException e ) {
+        GenericLdapSearch.logger.debug( "Could not clear the paged results control", e ); //$NON-NLS-1$
+      }
+    }
+  }
+
+  /**
+   * Tells the server that no more pages will be read, so that it can let go of the rest of the results: a paged
+   * results control of size 0 with the last cookie (RFC 2696). Nothing is sent when no page has returned a cookie.
+   */
+  private void abandonPaging( final LdapContext context, final LdapSearchParams params, final byte[] cookie ) {
+    if ( ( cookie == null ) || ( cookie.length == 0 ) ) {
+      return;
     }
+    try {
+      context.setRequestControls( new Control[] { new PagedResultsControl( 0, cookie, Control.NONCRITICAL ) } );
+      startSearch( context, params ).close();
+    } catch ( NamingException | IOException e ) {
+      GenericLdapSearch.logger.debug( "Could not abandon the paged search", e ); //$NON-NLS-1$
+    }
+  }
+
+  private static byte[] getCookie( final Control[] controls ) {
+    if ( controls != null ) {
+      for ( Control control : controls ) {
+        if ( control instanceof PagedResultsResponseControl ) {
+          return ( (PagedResultsResponseControl) control ).getCookie();
+        }
+      }
+    }
+    return null;
+  }
+
+  private NamingEnumeration startSearch( final DirContext context, final LdapSearchParams params )
+    throws NamingException {
+    return context.search( params.getBase(), params.getFilter(), params.getFilterArgs(), params.getSearchControls() );
+  }
+
+  /**
+   * @return <code>true</code> if all results were handled, <code>false</code> if the handler ended the search
+   */
+  private boolean handleResults( final NamingEnumeration matches, final LdapSearchResultHandler handler )
+    throws NamingException {
     try {
       while ( matches.hasMore() ) {
         SearchResult result = (SearchResult) matches.next();
         if ( null != resultsTransformer ) {
-          results.addAll( (Collection) resultsTransformer.transform( result ) );
-        } else {
-          results.add( result );
+          for ( Object transformed : (Collection) resultsTransformer.transform( result ) ) {
+            if ( !handler.handleResult( transformed ) ) {
+              return false;
+            }
+          }
+        } else if ( !handler.handleResult( result ) ) {
+          return false;
         }
       }
-    } catch ( NamingException e ) {
-      if ( GenericLdapSearch.logger.isErrorEnabled() ) {
-        // TODO: Throw an exception here
-        GenericLdapSearch.logger.error( "Enumerating directory search results failed", e ); //$NON-NLS-1$
+      return true;
+    } finally {
+      try {
+        matches.close();
+      } catch ( NamingException e ) {
+        GenericLdapSearch.logger.debug( "Could not close directory search results", e ); //$NON-NLS-1$
       }
     }
-    return new ArrayList( results );
+  }
+
+  /**
+   * Sets the number of entries the directory returns at a time, using the paged results control (RFC 2696). Paging
+   * lets searches read more entries than the server's size limit allows in a single response. Defaults to 0, which
+   * reads all results in one response.
+   */
+  public void setPageSize( final int pageSize ) {
+    this.pageSize = pageSize;
+  }
+
+  public int getPageSize() {
+    return pageSize;
   }
 
   public void afterPropertiesSet() throws Exception {
     Assert.notNull( contextSource, "ContextSource must not be null" );
     Assert.notNull( paramsFactory, "LdapSearchParamsFactory must not be null" );
+    Assert.isTrue( pageSize >= 0, "Page size must not be negative" );
   }
 }
@@ -36,4 +36,26 @@ public interface LdapSearch {
    * @return the result set as a list
    */
   List search( Object[] filterArgs );
+
+  /**
+   * Executes a search against a directory context using the given filter arguments, handing each result to the
+   * handler instead of collecting them. The search ends once the handler returns <code>false</code>. Unlike
+   * {@link #search(Object[])}, results are not made unique, so a handler may see the same result more than once.
+   * <p>
+   * The default implementation walks the list {@link #search(Object[])} returns; implementations that can read the
+   * directory incrementally should override it.
+   * </p>
+   * 
+   * @param filterArgs
+   *          the filter arguments
+   * @param handler
+   *          receives the results
+   */
+  default void search( Object[] filterArgs, LdapSearchResultHandler handler ) {
+    for ( Object result : search( filterArgs ) ) {
+      if ( !handler.handleResult( result ) ) {
+        return;
+      }
+    }
+  }
 }
@@ -0,0 +1,31 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.platform.plugin.services.security.userrole.ldap.search;
+
+/**
+ * Receives the results of an {@link LdapSearch} one at a time, as they are read from the directory.
+ * 
+ * @see LdapSearch#search(Object[], LdapSearchResultHandler)
+ */
+public interface LdapSearchResultHandler {
+
+  /**
+   * Handles one search result.
+   * 
+   * @param result
+   *          the search result, after any transformation the search applies
+   * @return <code>true</code> to continue with the next result, <code>false</code> to end the search
+   */
+  boolean handleResult( Object result );
+}
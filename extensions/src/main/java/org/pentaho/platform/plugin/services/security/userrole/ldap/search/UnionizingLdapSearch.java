@@ -58,6 +58,22 @@ public class UnionizingLdapSearch implements LdapSearch, InitializingBean {
     return new ArrayList( results );
   }
 
+  /**
+   * Runs each search in turn, passing its results on as they arrive. Results found by more than one search are passed
+   * on more than once. Once <code>handler</code> asks to stop, the remaining searches are not run.
+   */
+  @Override
+  public void search( final Object[] filterArgs, final LdapSearchResultHandler handler ) {
+    boolean[] stopped = new boolean[ 1 ];
+    Iterator iter = searches.iterator();
+    while ( iter.hasNext() && !stopped[ 0 ] ) {
+      ( (LdapSearch) iter.next() ).search( filterArgs, result -> {
+        stopped[ 0 ] = !handler.handleResult( result );
+        return !stopped[ 0 ];
+      } );
+    }
+  }
+
   public void setSearches( final Set searches ) {
     this.searches = searches;
   }
@@ -1927,6 +1927,71 @@ public class FileResource extends AbstractJaxRSResource {
     return fileService.doGetTree( pathId, depth, filter, showHidden, includeAcls, includeSystemFolders );
   }
 
+  /**
+   * Retrieve the recursive list of children of the selected repository file as JSON, written to the response node by
+   * node instead of being serialized as a whole. Takes the same parameters and returns
+   * the same document as {@link #doGetTree(String, Integer, String, Boolean, Boolean, Boolean)}; use it for large
+   * trees.
+   *
+   * <p><b>Example Request:</b><br />
+   * GET pentaho/api/repo/files/:public/tree/stream?depth=-1&filter=*|FOLDERS
+   * </p>
+   *
+   * @param pathId      The path from the root folder to the root node of the tree to return using colon characters in place of /
+   *                    or \ characters. To clarify /path/to/file, the encoded pathId would be :path:to:file.
+   * @param depth       How many level should the search go.
+   * @param filter      Filter to be applied for search, see {@link #doGetTree(String, Integer, String, Boolean, Boolean, Boolean)}.
+   * @param showHidden  Include or exclude hidden files from the file list.
+   * @param includeAcls Include permission information about the file in the output.
+   * @return The tree rooted at the selected repository file.
+   */
+  @GET
+  @Path( "{pathId : .+}/tree/stream" )
+  @Produces( MediaType.APPLICATION_JSON )
+  @StatusCodes( {
+      @ResponseCode( code = 200, condition = "Successfully retrieved the tree." ),
+      @ResponseCode( code = 204, condition = "The root of the tree does not exist or is not readable." ),
+      @ResponseCode( code = 500, condition = "Server Error." )} )
+  public Response doGetTreeStreamAsJson( @PathParam( "pathId" ) String pathId, @QueryParam( "depth" ) Integer depth,
+                                         @QueryParam( "filter" ) String filter, @QueryParam( "showHidden" ) Boolean showHidden,
+                                         @DefaultValue( "false" ) @QueryParam( "includeAcls" ) Boolean includeAcls,
+                                         @DefaultValue( "false" ) @QueryParam( "includeSysDirs" ) Boolean includeSystemFolders ) {
+    return doGetTreeStream( pathId, depth, filter, showHidden, includeAcls, includeSystemFolders,
+      MediaType.APPLICATION_JSON_TYPE );
+  }
+
+  /**
+   * Retrieve the recursive list of children of the selected repository file as XML, written to the response node by
+   * node. See {@link #doGetTreeStreamAsJson(String, Integer, String, Boolean, Boolean, Boolean)}.
+   *
+   * @return The tree rooted at the selected repository file.
+   */
+  @GET
+  @Path( "{pathId : .+}/tree/stream" )
+  @Produces( MediaType.APPLICATION_XML )
+  @StatusCodes( {
+      @ResponseCode( code = 200, condition = "Successfully retrieved the tree." ),
+      @ResponseCode( code = 204, condition = "The root of the tree does not exist or is not readable." ),
+      @ResponseCode( code = 500, condition = "Server Error." )} )
+  public Response doGetTreeStreamAsXml( @PathParam( "pathId" ) String pathId, @QueryParam( "depth" ) Integer depth,
+                                        @QueryParam( "filter" ) String filter, @QueryParam( "showHidden" ) Boolean showHidden,
+                                        @DefaultValue( "false" ) @QueryParam( "includeAcls" ) Boolean includeAcls,
+                                        @DefaultValue( "false" ) @QueryParam( "includeSysDirs" ) Boolean includeSystemFolders ) {
+    return doGetTreeStream( pathId, depth, filter, showHidden, includeAcls, includeSystemFolders,
+      MediaType.APPLICATION_XML_TYPE );
+  }
+
+  protected Response doGetTreeStream( String pathId, Integer depth, String filter, Boolean showHidden,
+                                      Boolean includeAcls, Boolean includeSystemFolders, MediaType mediaType ) {
+    StreamingOutput streamingOutput =
+      fileService.doGetTreeStream( pathId, depth, filter, showHidden, includeAcls, includeSystemFolders, mediaType,
+        providers );
+    if ( streamingOutput == null ) {
+      return buildStatusResponse( Response.Status.NO_CONTENT );
+    }
+    return buildOkResponse( streamingOutput, mediaType.toString() );
+  }
+
   /**
    * Retrieve a list of child files from the selected repository path of the repository.
    *
@@ -30,6 +30,7 @@ import org.pentaho.platform.api.repository2.unified.IUnifiedRepository;
 import org.pentaho.platform.api.repository2.unified.RepositoryFile;
 import org.pentaho.platform.api.repository2.unified.RepositoryFileAcl;
 import org.pentaho.platform.api.repository2.unified.RepositoryFilePermission;
+import org.pentaho.platform.api.repository2.unified.RepositoryFileTree;
 import org.pentaho.platform.api.repository2.unified.RepositoryRequest;
 import org.pentaho.platform.api.repository2.unified.UnifiedRepositoryAccessDeniedException;
 import org.pentaho.platform.api.repository2.unified.UnifiedRepositoryException;
@@ -81,7 +82,9 @@ import org.pentaho.platform.web.http.api.resources.utils.SystemUtils;
 import org.pentaho.platform.web.http.messages.Messages;
 import org.pentaho.platform.web.servlet.HttpMimeTypeListener;
 
+import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.StreamingOutput;
+import jakarta.ws.rs.ext.Providers;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
@@ -1573,11 +1576,21 @@ public class FileService {
     for ( RepositoryFileTreeDto rft : tree.getChildren() ) {
       sortByLocaleTitle( collator, rft );
     }
+    final Comparator<RepositoryFileDto> titleOrder = getLocaleTitleComparator( collator );
     Collections.sort( tree.getChildren(), new Comparator<RepositoryFileTreeDto>() {
       @Override
       public int compare( RepositoryFileTreeDto repositoryFileTree, RepositoryFileTreeDto repositoryFileTree2 ) {
-        String title1 = repositoryFileTree.getFile().getTitle();
-        String title2 = repositoryFileTree2.getFile().getTitle();
+        return titleOrder.compare( repositoryFileTree.getFile(), repositoryFileTree2.getFile() );
+      }
+    } );
+  }
+
+  protected Comparator<RepositoryFileDto> getLocaleTitleComparator( final Collator collator ) {
+    return new Comparator<RepositoryFileDto>() {
+      @Override
+      public int compare( RepositoryFileDto repositoryFile, RepositoryFileDto repositoryFile2 ) {
+        String title1 = repositoryFile.getTitle();
+        String title2 = repositoryFile2.getTitle();
 
         if ( collator.compare( title1, title2 ) == 0 ) {
           return title1.compareTo( title2 ); // use lexical order if equals ignore case
@@ -1585,7 +1598,65 @@ public class FileService {
 
         return collator.compare( title1, title2 );
       }
-    } );
+    };
+  }
+
+  /**
+   * Streaming variant of {@link #doGetTree(String, Integer, String, Boolean, Boolean, Boolean)}, returning the same
+   * document. The tree read from the repository is written to the response node by node, instead of being converted
+   * to a {@link RepositoryFileTreeDto} and serialized as a whole.
+   *
+   * @param mediaType the media type to write, either JSON or XML
+   * @param providers the providers of the JAX-RS application, which serialize the files of the tree
+   * @return the tree writer, or <code>null</code> if the root of the tree does not exist or is not readable
+   */
+  public StreamingOutput doGetTreeStream( String pathId, Integer depth, String filter, Boolean showHidden,
+                                          Boolean includeAcls, Boolean includeSystemFolders,
+                                          final MediaType mediaType, final Providers providers ) {
+    String path = null;
+    if ( pathId == null || pathId.equals( FileUtils.PATH_SEPARATOR ) ) {
+      path = FileUtils.PATH_SEPARATOR;
+    } else if ( !pathId.startsWith( FileUtils.PATH_SEPARATOR ) ) {
+      path = idToPath( pathId );
+    }
+
+    RepositoryRequest repositoryRequest = getRepositoryRequest( path, showHidden, depth, filter );
+    repositoryRequest.setIncludeAcls( includeAcls );
+    // system folders are only ever returned to administrators, see DefaultUnifiedRepositoryWebService
+    repositoryRequest.setIncludeSystemFolders( BooleanUtils.isTrue( includeSystemFolders )
+        && getPolicy().isAllowed( AdministerSecurityAction.NAME ) );
+
+    Comparator<RepositoryFileDto> titleOrder = null;
+    if ( isShowingTitle( repositoryRequest ) ) {
+      Collator collator = getCollatorInstance();
+      collator.setStrength( Collator.PRIMARY ); // ignore case
+      titleOrder = getLocaleTitleComparator( collator );
+    }
+
+    final RepositoryFileTreeStreamer streamer =
+        new RepositoryFileTreeStreamer( getRepository(), repositoryRequest, titleOrder );
+    final RepositoryFileTree tree;
+    try {
+      tree = streamer.getTree();
+    } catch ( UnifiedRepositoryException e ) {
+      var cause = e.getCause();
+      if ( cause != null && cause.getCause() instanceof PathNotFoundException ) {
+        logger.debug( Messages.getInstance().getString( "FileResource.FILE_NOT_FOUND", path ) );
+      } else {
+        logger.error( cause );
+      }
+      return null;
+    }
+    if ( tree == null ) {
+      return null;
+    }
+
+    return new StreamingOutput() {
+      @Override
+      public void write( OutputStream output ) throws IOException {
+        streamer.stream( tree, RepositoryFileTreeStreamWriter.create( mediaType, output, providers ) );
+      }
+    };
   }
 
   /**
@@ -1650,12 +1721,22 @@ public class FileService {
     RepositoryFile workspaceFolder = getRepository().getFile( userDir );
     if ( workspaceFolder != null ) {
       List<RepositoryFile> children = getRepository().getChildren( workspaceFolder.getId() );
+      List<RepositoryFile> files = new ArrayList<RepositoryFile>();
+      List<Serializable> fileIds = new ArrayList<Serializable>();
       for ( RepositoryFile child : children ) {
         if ( !child.isFolder() ) {
-          Map<String, Serializable> fileMetadata = getRepository().getFileMetadata( child.getId() );
-          String creatorId = (String) fileMetadata.get( metadataConstant );
+          files.add( child );
+          fileIds.add( child.getId() );
+        }
+      }
+      if ( !fileIds.isEmpty() ) {
+        // read the metadata of all files in one pass instead of one repository round trip per file
+        Map<Serializable, Map<String, Serializable>> filesMetadata = getRepository().getFilesMetadata( fileIds );
+        for ( RepositoryFile file : files ) {
+          Map<String, Serializable> fileMetadata = filesMetadata.get( file.getId() );
+          String creatorId = fileMetadata != null ? (String) fileMetadata.get( metadataConstant ) : null;
           if ( creatorId != null && creatorId.equals( targetComparator ) ) {
-            content.add( toFileDto( child, null, false ) );
+            content.add( toFileDto( file, null, false ) );
           }
         }
       }
@@ -1950,6 +2031,9 @@ public class FileService {
 
   protected StreamingOutput getDownloadStream( RepositoryFile repositoryFile, BaseExportProcessor exportProcessor )
       throws ExportException, IOException {
+    if ( exportProcessor instanceof ZipExportProcessor ) {
+      return getZipDownloadStream( repositoryFile, (ZipExportProcessor) exportProcessor );
+    }
     File zipFile = exportProcessor.performExport( repositoryFile );
     // copy streaming output
     return new StreamingOutput() {
@@ -1970,6 +2054,32 @@ public class FileService {
     };
   }
 
+  /**
+   * Writes the zip straight to the response while it is being built, instead of building it in a temporary file
+   * first. The first bytes go out as soon as the first file is read, and no temporary space is needed. An error during
+   * the export can no longer change the response status; it aborts the response instead.
+   */
+  protected StreamingOutput getZipDownloadStream( RepositoryFile repositoryFile,
+                                                  ZipExportProcessor exportProcessor ) {
+    exportProcessor.setPrefetchThreads( getDownloadPrefetchThreads() );
+    return new StreamingOutput() {
+      @Override
+      public void write( OutputStream output ) throws IOException {
+        try {
+          exportProcessor.performExport( repositoryFile, output );
+        } catch ( ExportException | IOException | RuntimeException e ) {
+          logger.error( Messages.getInstance().getString( "FileResource.EXPORT_FAILED",
+              repositoryFile.getPath() + " " + e.getMessage() ), e );
+          throw e instanceof IOException ? (IOException) e : new IOException( e );
+        }
+      }
+    };
+  }
+
+  protected int getDownloadPrefetchThreads() {
+    return ZipExportProcessor.getConfiguredPrefetchThreads();
+  }
+
   protected RepositoryRequest getRepositoryRequest( String path, Boolean showHidden, Integer depth, String filter ) {
     return new RepositoryRequest( path, showHidden, depth, filter );
   }
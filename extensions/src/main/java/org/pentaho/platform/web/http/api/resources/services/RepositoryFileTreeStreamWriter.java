@@ -0,0 +1,209 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.platform.web.http.api.resources.services;
+
+import org.pentaho.platform.api.repository2.unified.webservices.RepositoryFileDto;
+
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.MultivaluedHashMap;
+import jakarta.ws.rs.ext.ContextResolver;
+import jakarta.ws.rs.ext.MessageBodyWriter;
+import jakarta.ws.rs.ext.Providers;
+import jakarta.xml.bind.JAXBContext;
+import jakarta.xml.bind.JAXBElement;
+import jakarta.xml.bind.JAXBException;
+import jakarta.xml.bind.Marshaller;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes a repository file tree to a stream one node at a time, producing the same document that serializing a
+ * {@link org.pentaho.platform.api.repository2.unified.webservices.RepositoryFileTreeDto} would produce. Nodes must be
+ * written depth first: {@link #startNode(RepositoryFileDto, boolean)} opens a node, which stays open (and receives
+ * every node started after it as a child) until {@link #endNode(boolean)} is called.
+ */
+public abstract class RepositoryFileTreeStreamWriter {
+
+  /**
+   * Creates a writer for the given media type; anything other than JSON is written as XML. Files are serialized with
+   * the JSON provider, or the JAXB context, that the JAX-RS application is configured with.
+   *
+   * @param providers the providers of the JAX-RS application
+   */
+  public static RepositoryFileTreeStreamWriter create( final MediaType mediaType, final OutputStream output,
+                                                       final Providers providers ) throws IOException {
+    if ( MediaType.APPLICATION_JSON_TYPE.isCompatible( mediaType ) ) {
+      MessageBodyWriter<RepositoryFileDto> fileWriter = providers == null ? null
+          : providers.getMessageBodyWriter( RepositoryFileDto.class, RepositoryFileDto.class, new Annotation[0],
+          MediaType.APPLICATION_JSON_TYPE );
+      if ( fileWriter == null ) {
+        throw new IOException( "No JSON provider for " + RepositoryFileDto.class.getName() ); //$NON-NLS-1$
+      }
+      return new Json( output, fileWriter );
+    }
+    return new Xml( output, providers );
+  }
+
+  /**
+   * Opens a tree node for the given file.
+   *
+   * @param file        the file of the node
+   * @param hasChildren whether the node has a children list; nodes at the depth limit of the request do not
+   */
+  public abstract void startNode( RepositoryFileDto file, boolean hasChildren ) throws IOException;
+
+  /**
+   * Closes the most recently opened node.
+   *
+   * @param hasChildren the value passed to the matching {@link #startNode(RepositoryFileDto, boolean)}
+   */
+  public abstract void endNode( boolean hasChildren ) throws IOException;
+
+  /**
+   * Finishes the document and flushes it, without closing the underlying stream.
+   */
+  public abstract void finish() throws IOException;
+
+  /**
+   * Writes the structure of the tree itself and hands every file to the JSON provider.
+   */
+  static class Json extends RepositoryFileTreeStreamWriter {
+
+    private static final byte[] START_NODE = "{\"file\":".getBytes( StandardCharsets.UTF_8 ); //$NON-NLS-1$
+
+    private static final byte[] START_CHILDREN = ",\"children\":[".getBytes( StandardCharsets.UTF_8 ); //$NON-NLS-1$
+
+    private final OutputStream output;
+
+    private final MessageBodyWriter<RepositoryFileDto> fileWriter;
+
+    // whether the next node follows a sibling
+    private boolean separate;
+
+    Json( final OutputStream output, final MessageBodyWriter<RepositoryFileDto> fileWriter ) {
+      this.output = output;
+      this.fileWriter = fileWriter;
+    }
+
+    @Override
+    public void startNode( final RepositoryFileDto file, final boolean hasChildren ) throws IOException {
+      if ( separate ) {
+        output.write( ',' );
+      }
+      output.write( START_NODE );
+      fileWriter.writeTo( file, RepositoryFileDto.class, RepositoryFileDto.class, new Annotation[0],
+          MediaType.APPLICATION_JSON_TYPE, new MultivaluedHashMap<>(), output );
+      if ( hasChildren ) {
+        output.write( START_CHILDREN );
+      }
+      separate = false;
+    }
+
+    @Override
+    public void endNode( final boolean hasChildren ) throws IOException {
+      if ( hasChildren ) {
+        output.write( ']' );
+      }
+      output.write( '}' );
+      separate = true;
+    }
+
+    @Override
+    public void finish() throws IOException {
+      output.flush();
+    }
+  }
+
+  static class Xml extends RepositoryFileTreeStreamWriter {
+
+    private static final String ROOT_ELEMENT = "repositoryFileTreeDto"; //$NON-NLS-1$
+
+    private static final String CHILD_ELEMENT = "children"; //$NON-NLS-1$
+
+    private static final QName FILE_ELEMENT = new QName( "file" ); //$NON-NLS-1$
+
+    private static JAXBContext jaxbContext;
+
+    private final XMLStreamWriter writer;
+
+    private final Marshaller marshaller;
+
+    private int depth;
+
+    Xml( final OutputStream output, final Providers providers ) throws IOException {
+      try {
+        writer = XMLOutputFactory.newInstance().createXMLStreamWriter( output, StandardCharsets.UTF_8.name() );
+        writer.writeStartDocument( StandardCharsets.UTF_8.name(), "1.0" ); //$NON-NLS-1$
+        marshaller = getJaxbContext( providers ).createMarshaller();
+        marshaller.setProperty( Marshaller.JAXB_FRAGMENT, Boolean.TRUE );
+      } catch ( XMLStreamException | JAXBException e ) {
+        throw new IOException( e );
+      }
+    }
+
+    // same as FileResource#getUnmarshaller
+    private static JAXBContext getJaxbContext( final Providers providers ) throws JAXBException {
+      ContextResolver<JAXBContext> jaxbResolver = null;
+      if ( providers != null ) {
+        jaxbResolver = providers.getContextResolver( JAXBContext.class, MediaType.APPLICATION_XML_TYPE );
+      }
+      JAXBContext context = jaxbResolver != null ? jaxbResolver.getContext( RepositoryFileDto.class ) : null;
+      return context != null ? context : getDefaultJaxbContext();
+    }
+
+    private static synchronized JAXBContext getDefaultJaxbContext() throws JAXBException {
+      if ( jaxbContext == null ) {
+        jaxbContext = JAXBContext.newInstance( RepositoryFileDto.class );
+      }
+      return jaxbContext;
+    }
+
+    @Override
+    public void startNode( final RepositoryFileDto file, final boolean hasChildren ) throws IOException {
+      try {
+        writer.writeStartElement( depth++ == 0 ? ROOT_ELEMENT : CHILD_ELEMENT );
+        marshaller.marshal( new JAXBElement<>( FILE_ELEMENT, RepositoryFileDto.class, file ), writer );
+      } catch ( XMLStreamException | JAXBException e ) {
+        throw new IOException( e );
+      }
+    }
+
+    @Override
+    public void endNode( final boolean hasChildren ) throws IOException {
+      try {
+        depth--;
+        writer.writeEndElement();
+      } catch ( XMLStreamException e ) {
+        throw new IOException( e );
+      }
+    }
+
+    @Override
+    public void finish() throws IOException {
+      try {
+        writer.writeEndDocument();
+        writer.flush();
+        writer.close();
+      } catch ( XMLStreamException e ) {
+        throw new IOException( e );
+      }
+    }
+  }
+}
@@ -0,0 +1,149 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.platform.web.http.api.resources.services;
+
+import org.pentaho.platform.api.repository2.unified.IUnifiedRepository;
+import org.pentaho.platform.api.repository2.unified.RepositoryFileTree;
+import org.pentaho.platform.api.repository2.unified.RepositoryRequest;
+import org.pentaho.platform.api.repository2.unified.webservices.RepositoryFileDto;
+import org.pentaho.platform.repository2.ClientRepositoryPaths;
+import org.pentaho.platform.repository2.unified.webservices.RepositoryFileAdapter;
+import org.pentaho.platform.web.http.messages.Messages;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Writes a repository file tree node by node instead of converting it to a
+ * {@link org.pentaho.platform.api.repository2.unified.webservices.RepositoryFileTreeDto} and serializing that. The
+ * tree is read with the same single request {@link FileService#doGetTree} makes, and the document written is the one
+ * it returns: the children of a folder are converted and sorted right before they are written, so only the files on
+ * the path being written are held as DTOs, and the document is never buffered.
+ */
+public class RepositoryFileTreeStreamer {
+
+  private final IUnifiedRepository repository;
+
+  private final RepositoryRequest repositoryRequest;
+
+  private final Comparator<RepositoryFileDto> titleOrder;
+
+  private final Set<String> memberSet;
+
+  private final boolean exclude;
+
+  /**
+   * @param repository        the repository to read from
+   * @param repositoryRequest the tree request, as parsed for {@link FileService#doGetTree}
+   * @param titleOrder        order to sort each folder's children in, or <code>null</code> to keep the repository order
+   */
+  public RepositoryFileTreeStreamer( final IUnifiedRepository repository, final RepositoryRequest repositoryRequest,
+                                     final Comparator<RepositoryFileDto> titleOrder ) {
+    this.repository = repository;
+    this.repositoryRequest = repositoryRequest;
+    this.titleOrder = titleOrder;
+    if ( repositoryRequest.getExcludeMemberSet() != null && !repositoryRequest.getExcludeMemberSet().isEmpty() ) {
+      this.exclude = true;
+      this.memberSet = repositoryRequest.getExcludeMemberSet();
+    } else {
+      this.exclude = false;
+      this.memberSet = repositoryRequest.getIncludeMemberSet();
+    }
+  }
+
+  /**
+   * Reads the tree.
+   *
+   * @return the tree, or <code>null</code> if its root does not exist or is not readable
+   */
+  public RepositoryFileTree getTree() {
+    RepositoryFileTree tree = repository.getTree( repositoryRequest );
+    return tree != null && toFileDto( tree ) != null ? tree : null;
+  }
+
+  /**
+   * Writes the given tree, as returned by {@link #getTree()}.
+   */
+  public void stream( final RepositoryFileTree tree, final RepositoryFileTreeStreamWriter writer )
+    throws IOException {
+    write( tree, toFileDto( tree ), true, writer );
+    writer.finish();
+  }
+
+  private void write( final RepositoryFileTree tree, final RepositoryFileDto file, final boolean isRoot,
+                      final RepositoryFileTreeStreamWriter writer ) throws IOException {
+    boolean hasChildren = tree.getChildren() != null;
+    writer.startNode( file, hasChildren );
+    if ( hasChildren ) {
+      for ( ChildNode child : getChildren( tree, isRoot ) ) {
+        write( child.tree, child.file, false, writer );
+      }
+    }
+    writer.endNode( hasChildren );
+  }
+
+  /**
+   * Converts the children of a folder and sorts them the way {@link FileService#doGetTree} does. Children that do not
+   * convert are left out, with their subtree, as {@link
+   * org.pentaho.platform.repository2.unified.webservices.RepositoryFileTreeAdapter} leaves them out.
+   */
+  private List<ChildNode> getChildren( final RepositoryFileTree tree, final boolean isRoot ) {
+    List<ChildNode> children = new ArrayList<>( tree.getChildren().size() );
+    for ( RepositoryFileTree child : tree.getChildren() ) {
+      RepositoryFileDto file = toFileDto( child );
+      if ( file != null ) {
+        if ( isRoot ) {
+          translateTitle( file );
+        }
+        children.add( new ChildNode( child, file ) );
+      }
+    }
+    if ( titleOrder != null ) {
+      Collections.sort( children, ( a, b ) -> titleOrder.compare( a.file, b.file ) );
+    }
+    return children;
+  }
+
+  private RepositoryFileDto toFileDto( final RepositoryFileTree tree ) {
+    return RepositoryFileAdapter.toFileDto( tree, memberSet, exclude, repositoryRequest.isIncludeAcls() );
+  }
+
+  // same as FileService#doGetTree
+  private static void translateTitle( final RepositoryFileDto dto ) {
+    if ( dto.getName() == null || dto.getPath() == null ) {
+      return;
+    }
+    if ( dto.getName().equals( ClientRepositoryPaths.getHomeFolderName() ) && dto.getPath().equals(
+        ClientRepositoryPaths.getHomeFolderPath() ) ) {
+      dto.setTitle( Messages.getInstance().getString( "FileResource.HOME_FOLDER_DISPLAY_TITLE" ) );
+    } else if ( dto.getName().equals( ClientRepositoryPaths.getPublicFolderName() ) && dto.getPath().equals(
+        ClientRepositoryPaths.getPublicFolderPath() ) ) {
+      dto.setTitle( Messages.getInstance().getString( "FileResource.PUBLIC_FOLDER_DISPLAY_TITLE" ) );
+    }
+  }
+
+  private static class ChildNode {
+    private final RepositoryFileTree tree;
+    private final RepositoryFileDto file;
+
+    ChildNode( final RepositoryFileTree tree, final RepositoryFileDto file ) {
+      this.tree = tree;
+      this.file = file;
+    }
+  }
+}
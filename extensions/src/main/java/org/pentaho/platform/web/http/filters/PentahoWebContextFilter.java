@@ -13,6 +13,7 @@
 
 package org.pentaho.platform.web.http.filters;
 
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang.StringEscapeUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang3.concurrent.ConcurrentException;
@@ -44,17 +45,27 @@ import jakarta.servlet.ServletRequest;
 import jakarta.servlet.ServletResponse;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Dictionary;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * If the request is searching for a webcontext.js, it writes out the content of the webcontext.js
+ * <p>
+ * The document is compiled once per locale, theme, context, anonymous or not and set of request flags into a
+ * {@link WebContextTemplate}, and later requests only splice their session and request specific values into it.
+ * Templates are dropped when the plugin manager reloads, since plugins contribute resources to them. Responses carry
+ * an ETag, so browsers revalidating an unchanged webcontext.js get a 304.
  */
 public class PentahoWebContextFilter implements Filter {
 
@@ -87,6 +98,13 @@ public class PentahoWebContextFilter implements Filter {
   private static final String APPLICATION = "application";
   private static final String GLOBAL = "global";
   private static final String REQUIRE_JS = "requirejs";
+  private static final String QUERY_STRING = "queryString";
+
+  // values that differ between requests sharing a compiled webcontext.js
+  private static final List<String> TEMPLATE_SLOTS = Collections.unmodifiableList( Arrays.asList( "CONTEXT_PATH",
+    "FULL_QUALIFIED_URL", "SERVER_PROTOCOL", "application", "SESSION_NAME", "HOME_FOLDER", "DEFAULT_FOLDER",
+    PLATFORM_OSGI_BRIDGE_ID, SERVICES_CONTEXT_PROPERTY, QUERY_STRING, USE_FULL_URL_PARAM ) );
+  private static final int MAX_TEMPLATES = 256;
   private FileService fileService;
 
   private String ssoEnabled = null;
@@ -95,6 +113,10 @@ public class PentahoWebContextFilter implements Filter {
   private static final ThreadLocal<byte[]> THREAD_LOCAL_REQUIRE_SCRIPT = new ThreadLocal<>();
   protected static ICacheManager cache = PentahoSystem.getCacheManager( null );
 
+  private final Map<String, WebContextTemplate> templates = new ConcurrentHashMap<>();
+  private final AtomicLong pluginManagerVersion = new AtomicLong();
+  private volatile boolean listeningToPluginManager;
+
   private LazyInitializer<String> lazyServicesPath;
   private ConfigurationAdminNonOsgiProxy configurationAdminProxy;
 
@@ -139,99 +161,241 @@ public class PentahoWebContextFilter implements Filter {
       httpRequest.setAttribute( FILTER_APPLIED, Boolean.TRUE );
 
       try {
+        HashMap<String, String> webContextVariables = getWebContextVariables( httpRequest );
+        webContextVariables.put( QUERY_STRING, getQueryString( httpRequest ) );
+        webContextVariables.put( USE_FULL_URL_PARAM, httpRequest.getParameter( USE_FULL_URL_PARAM ) );
+
+        ByteArrayOutputStream body;
+        WebContextTemplate template = getTemplate( httpRequest, webContextVariables );
+        if ( template != null ) {
+          body = template.newBuffer();
+          template.render( body, webContextVariables );
+        } else {
+          body = new ByteArrayOutputStream();
+          printWebContext( body, httpRequest, webContextVariables );
+        }
+
+        // Any subclass can add more information to webcontext.js
+        addCustomInfo( body );
+
+        byte[] bytes = body.toByteArray();
+        String eTag = "\"" + DigestUtils.md5Hex( bytes ) + "\"";
+        // the document holds user specific values, so shared caches must not keep it
+        httpResponse.setHeader( "Cache-Control", "private, no-cache" );
+        httpResponse.setHeader( "ETag", eTag );
+        if ( matchesETag( httpRequest.getHeader( "If-None-Match" ), eTag ) ) {
+          httpResponse.setStatus( HttpServletResponse.SC_NOT_MODIFIED );
+          return;
+        }
+
         response.setContentType( "text/javascript" );
+        response.setContentLength( bytes.length );
         OutputStream out = response.getOutputStream();
-        HashMap<String, String> webContextVariables = getWebContextVariables( httpRequest );
+        out.write( bytes );
+        out.close();
+        return;
+      } finally {
+        httpRequest.removeAttribute( FILTER_APPLIED );
+      }
+    } else {
+      chain.doFilter( httpRequest, httpResponse );
+      return;
+    }
+  }
 
-        out.write( initialCommentBytes );
+  /**
+   * Writes webcontext.js, apart from the custom information of subclasses.
+   *
+   * @param webContextVariables the variables of {@link #getWebContextVariables(HttpServletRequest)}, plus the
+   *                            encoded request parameters and the useFullyQualifiedUrl parameter
+   */
+  private void printWebContext( OutputStream out, HttpServletRequest request,
+                                HashMap<String, String> webContextVariables ) throws IOException {
+    out.write( initialCommentBytes );
 
-        printWebContextVar( out, webContextVariables, "CONTEXT_PATH" );
+    printWebContextVar( out, webContextVariables, "CONTEXT_PATH" );
 
-        printWebContextVar( out, webContextVariables, "FULL_QUALIFIED_URL" );
+    printWebContextVar( out, webContextVariables, "FULL_QUALIFIED_URL" );
 
-        printWebContextVar( out, webContextVariables, "SERVER_PROTOCOL" );
+    printWebContextVar( out, webContextVariables, "SERVER_PROTOCOL" );
 
-        printWebContextVar( out, webContextVariables, "PENTAHO_CONTEXT_NAME" );
+    printWebContextVar( out, webContextVariables, "PENTAHO_CONTEXT_NAME" );
 
-        printWebContextVar( out, webContextVariables, "active_theme" );
+    printWebContextVar( out, webContextVariables, "active_theme" );
 
-        printWebContextVar( out, webContextVariables, "requireCfg", false, false );
+    printWebContextVar( out, webContextVariables, "requireCfg", false, false );
 
-        // This var will enable correct redirect in Session Expire Dialog for a SSO scenario
-        if ( getSsoEnabled() != null ) {
-          printWebContextVar( out, webContextVariables, "ssoEnabled", false, false );
-        }
+    // This var will enable correct redirect in Session Expire Dialog for a SSO scenario
+    if ( getSsoEnabled() != null ) {
+      printWebContextVar( out, webContextVariables, "ssoEnabled", false, false );
+    }
 
-        // config for 'pentaho/environment' amd module
-        printPentahoEnvironmentConfig( out, webContextVariables );
+    // config for 'pentaho/environment' amd module
+    printPentahoEnvironmentConfig( out, webContextVariables );
 
-        // Let all plugins contribute to the RequireJS config
-        printResourcesForContext( REQUIRE_JS, out, httpRequest, false );
+    String queryString = webContextVariables.get( QUERY_STRING );
 
-        byte[] requireScriptBytes = THREAD_LOCAL_REQUIRE_SCRIPT.get();
-        if ( requireScriptBytes == null ) {
-          printDocumentWrite( out, REQUIREJS_LOCATION );
-          printDocumentWrite( out, REQUIREJS_CONFIG_LOCATION );
-        } else {
-          out.write( requireScriptBytes );
-        }
+    // Let all plugins contribute to the RequireJS config
+    printResourcesForContext( REQUIRE_JS, out, queryString, false );
+
+    byte[] requireScriptBytes = THREAD_LOCAL_REQUIRE_SCRIPT.get();
+    if ( requireScriptBytes == null ) {
+      printDocumentWrite( out, REQUIREJS_LOCATION );
+      printDocumentWrite( out, REQUIREJS_CONFIG_LOCATION );
+    } else {
+      out.write( requireScriptBytes );
+    }
 
-        printWebContextVar( out, webContextVariables, "SESSION_NAME" );
+    printWebContextVar( out, webContextVariables, "SESSION_NAME" );
 
-        // Compute the effective locale and set it in the global scope. Also provide it as a module if the RequireJs
-        // system is available.
-        printWebContextVar( out, webContextVariables, "SESSION_LOCALE" );
-        printLocaleModule( out, webContextVariables );
+    // Compute the effective locale and set it in the global scope. Also provide it as a module if the RequireJs
+    // system is available.
+    printWebContextVar( out, webContextVariables, "SESSION_LOCALE" );
+    printLocaleModule( out, webContextVariables );
 
-        printWebContextVar( out, webContextVariables, "HOME_FOLDER" );
+    printWebContextVar( out, webContextVariables, "HOME_FOLDER" );
 
-        printWebContextVar( out, webContextVariables, "DEFAULT_FOLDER" );
+    printWebContextVar( out, webContextVariables, "DEFAULT_FOLDER" );
 
-        printWebContextVar( out, webContextVariables, "RESERVED_CHARS" );
+    printWebContextVar( out, webContextVariables, "RESERVED_CHARS" );
 
-        printWebContextVar( out, webContextVariables, "RESERVED_CHARS_DISPLAY" );
+    printWebContextVar( out, webContextVariables, "RESERVED_CHARS_DISPLAY" );
 
-        printWebContextVar( out, webContextVariables, "RESERVED_CHARS_REGEX_PATTERN", true, false );
+    printWebContextVar( out, webContextVariables, "RESERVED_CHARS_REGEX_PATTERN", true, false );
 
-        boolean noOsgiRequireConfig = "true".equals( request.getParameter( "noOsgiRequireConfig" ) );
-        if ( !noOsgiRequireConfig && !"anonymousUser".equals( getSession().getName() ) ) {
-          final String useFullyQualifiedUrlParameter = httpRequest.getParameter( USE_FULL_URL_PARAM );
+    boolean noOsgiRequireConfig = "true".equals( request.getParameter( "noOsgiRequireConfig" ) );
+    if ( !noOsgiRequireConfig && !isAnonymous() ) {
+      final String useFullyQualifiedUrlParameter = webContextVariables.get( USE_FULL_URL_PARAM );
 
-          String requireInitSrc = REQUIREJS_INIT_LOCATION + "?requirejs=false" + ( useFullyQualifiedUrlParameter != null
-                  ? "&" + USE_FULL_URL_PARAM + "=" + useFullyQualifiedUrlParameter
-                  : "" );
+      String requireInitSrc = REQUIREJS_INIT_LOCATION + "?requirejs=false" + ( useFullyQualifiedUrlParameter != null
+              ? "&" + USE_FULL_URL_PARAM + "=" + useFullyQualifiedUrlParameter
+              : "" );
 
-          printDocumentWrite( out, requireInitSrc );
-        }
+      printDocumentWrite( out, requireInitSrc );
+    }
+
+    boolean requireJsOnly = "true".equals( request.getParameter( "requireJsOnly" ) );
 
-        boolean requireJsOnly = "true".equals( request.getParameter( "requireJsOnly" ) );
+    if ( !requireJsOnly ) {
+      // print global resources defined in plugins
+      printResourcesForContext( GLOBAL, out, queryString, false );
 
-        if ( !requireJsOnly ) {
-          // print global resources defined in plugins
-          printResourcesForContext( GLOBAL, out, httpRequest, false );
+      // print out external-resources defined in plugins if a context has been passed in
+      boolean cssOnly = "true".equals( request.getParameter( "cssOnly" ) );
+
+      String contextName = getContextNameVar( request );
+      if ( StringUtils.isNotEmpty( contextName ) ) {
+        printResourcesForContext( contextName, out, queryString, cssOnly );
+      }
+    }
+  }
+
+  // region Compiled webcontext.js
+  /**
+   * Looks up the compiled webcontext.js for the request, compiling it if there is none yet. Templates are keyed by
+   * everything that shapes the document apart from the values of the {@link #TEMPLATE_SLOTS}, and dropped when the
+   * plugin manager reloads.
+   *
+   * @return the template, or <code>null</code> if templates can't be cached because plugin manager reloads can't be
+   * followed
+   */
+  private WebContextTemplate getTemplate( HttpServletRequest request, HashMap<String, String> webContextVariables )
+    throws IOException {
+    if ( !listenToPluginManager() ) {
+      return null;
+    }
+    for ( Map.Entry<String, String> variable : webContextVariables.entrySet() ) {
+      if ( variable.getValue() != null && variable.getValue().indexOf( '\u0001' ) >= 0
+        && !TEMPLATE_SLOTS.contains( variable.getKey() ) ) {
+        // would be taken for a placeholder
+        return null;
+      }
+    }
 
-          // print out external-resources defined in plugins if a context has been passed in
-          boolean cssOnly = "true".equals( request.getParameter( "cssOnly" ) );
+    StringBuilder key = new StringBuilder().append( pluginManagerVersion.get() );
+    appendKey( key, webContextVariables.get( "SESSION_LOCALE" ) );
+    appendKey( key, webContextVariables.get( "active_theme" ) );
+    appendKey( key, getContextNameVar( request ) );
+    appendKey( key, String.valueOf( isAnonymous() ) );
+    appendKey( key, request.getParameter( "noOsgiRequireConfig" ) );
+    appendKey( key, request.getParameter( "requireJsOnly" ) );
+    appendKey( key, request.getParameter( "cssOnly" ) );
+    for ( String slot : TEMPLATE_SLOTS ) {
+      String value = webContextVariables.get( slot );
+      // empty values are left in the template, they can change the shape of the document
+      key.append( value == null ? 'n' : value.isEmpty() ? 'e' : 's' );
+    }
+    String templateKey = key.toString();
+
+    WebContextTemplate template = templates.get( templateKey );
+    if ( template == null ) {
+      HashMap<String, String> placeholders = new HashMap<>( webContextVariables );
+      for ( int i = 0; i < TEMPLATE_SLOTS.size(); i++ ) {
+        if ( StringUtils.isNotEmpty( webContextVariables.get( TEMPLATE_SLOTS.get( i ) ) ) ) {
+          placeholders.put( TEMPLATE_SLOTS.get( i ), WebContextTemplate.placeholder( i ) );
+        }
+      }
+      ByteArrayOutputStream document = new ByteArrayOutputStream();
+      printWebContext( document, request, placeholders );
+      template = WebContextTemplate.compile( document.toString( "UTF-8" ), TEMPLATE_SLOTS );
 
-          String contextName = getContextNameVar( httpRequest );
-          if ( StringUtils.isNotEmpty( contextName ) ) {
-            printResourcesForContext( contextName, out, httpRequest, cssOnly );
+      if ( templates.size() >= MAX_TEMPLATES ) {
+        // request parameters are part of the key; don't let odd requests fill the memory
+        templates.clear();
+      }
+      templates.put( templateKey, template );
+    }
+    return template;
+  }
+
+  private static void appendKey( StringBuilder key, String value ) {
+    key.append( '\u0000' ).append( value == null ? "\u0001" : value );
+  }
+
+  /**
+   * Registers for plugin manager reloads, once there is a plugin manager.
+   *
+   * @return whether reloads are being followed
+   */
+  private boolean listenToPluginManager() {
+    if ( !listeningToPluginManager ) {
+      synchronized ( templates ) {
+        if ( !listeningToPluginManager ) {
+          IPluginManager pluginManager = getPluginManager();
+          if ( pluginManager != null ) {
+            pluginManager.addPluginManagerListener( this::onPluginManagerReload );
+            listeningToPluginManager = true;
           }
         }
+      }
+    }
+    return listeningToPluginManager;
+  }
 
-        // Any subclass can add more information to webcontext.js
-        addCustomInfo( out );
+  /**
+   * Drops the compiled webcontext.js documents, since plugins contribute to them.
+   */
+  void onPluginManagerReload() {
+    pluginManagerVersion.incrementAndGet();
+    templates.clear();
+  }
 
-        out.close();
-        return;
-      } finally {
-        httpRequest.removeAttribute( FILTER_APPLIED );
+  private static boolean matchesETag( String ifNoneMatch, String eTag ) {
+    if ( ifNoneMatch == null ) {
+      return false;
+    }
+    for ( String candidate : ifNoneMatch.split( "," ) ) {
+      candidate = candidate.trim();
+      if ( candidate.startsWith( "W/" ) ) {
+        candidate = candidate.substring( 2 );
+      }
+      if ( candidate.equals( eTag ) || candidate.equals( "*" ) ) {
+        return true;
       }
-    } else {
-      chain.doFilter( httpRequest, httpResponse );
-      return;
     }
+    return false;
   }
+  // endregion
 
   Integer getRequireWaitTime() {
     Integer waitTime = null;
@@ -447,18 +611,44 @@ public class PentahoWebContextFilter implements Filter {
   // endregion
 
   // region Print Methods
-  private void printResourcesForContext( String contextName, OutputStream out, HttpServletRequest request,
+  private void printResourcesForContext( String contextName, OutputStream out, String reqStr,
                                          boolean printCssOnly ) throws IOException {
 
     IPluginManager pluginManager = getPluginManager();
 
+    List<String> externalResources = pluginManager.getExternalResourcesForContext( contextName );
+    out.write( ( "\n<!-- Injecting web resources defined in by plugins as external-resources for: "
+      + Encode.forHtml( contextName ) + "-->" ).getBytes() );
+
+    if ( externalResources != null ) {
+      for ( String res : externalResources ) {
+        if ( res == null ) {
+          continue;
+        }
+
+        if ( res.endsWith( JS ) && !printCssOnly ) {
+          out.write( ( "\ndocument.write(\"<script language='javascript' type='text/javascript' src='\" + CONTEXT_PATH + \"" + res.trim() + reqStr + "'></scr\"+\"ipt>\");" //$NON-NLS-1$ //$NON-NLS-2$
+          ).getBytes() );
+        } else if ( res.endsWith( CSS ) ) {
+          out.write( ( "\ndocument.write(\"<link rel='stylesheet' type='text/css' href='\" + CONTEXT_PATH + \"" + res.trim() + reqStr + "'/>\");" //$NON-NLS-1$ //$NON-NLS-2$
+          ).getBytes() );
+        }
+      }
+    }
+
+  }
+
+  /**
+   * Encodes the request parameters for Javascript safety, to be appended to the URLs of plugin resources.
+   */
+  private String getQueryString( HttpServletRequest request ) {
     String reqStr = "";
     Map paramMap = request.getParameterMap();
 
     // Fix for BISERVER-7613, BISERVER-7614, BISERVER-7615
     // Make sure that parameters in the URL are encoded for Javascript safety since they'll be
     // added to Javascript fragments that get executed.
-    if ( paramMap.size() > 0 ) {
+    if ( paramMap != null && paramMap.size() > 0 ) {
       StringBuilder sb = new StringBuilder();
       Map.Entry<String, String[]> me;
       char sep = '?'; // first separator is '?'
@@ -477,27 +667,7 @@ public class PentahoWebContextFilter implements Filter {
       }
       reqStr = sb.toString(); // get the request string.
     }
-
-    List<String> externalResources = pluginManager.getExternalResourcesForContext( contextName );
-    out.write( ( "\n<!-- Injecting web resources defined in by plugins as external-resources for: "
-      + Encode.forHtml( contextName ) + "-->" ).getBytes() );
-
-    if ( externalResources != null ) {
-      for ( String res : externalResources ) {
-        if ( res == null ) {
-          continue;
-        }
-
-        if ( res.endsWith( JS ) && !printCssOnly ) {
-          out.write( ( "\ndocument.write(\"<script language='javascript' type='text/javascript' src='\" + CONTEXT_PATH + \"" + res.trim() + reqStr + "'></scr\"+\"ipt>\");" //$NON-NLS-1$ //$NON-NLS-2$
-          ).getBytes() );
-        } else if ( res.endsWith( CSS ) ) {
-          out.write( ( "\ndocument.write(\"<link rel='stylesheet' type='text/css' href='\" + CONTEXT_PATH + \"" + res.trim() + reqStr + "'/>\");" //$NON-NLS-1$ //$NON-NLS-2$
-          ).getBytes() );
-        }
-      }
-    }
-
+    return reqStr;
   }
 
   private void printWebContextVar( OutputStream out, HashMap<String, String> webContextVariables,
@@ -708,6 +878,10 @@ public class PentahoWebContextFilter implements Filter {
     return PentahoSessionHolder.getSession();
   }
 
+  boolean isAnonymous() {
+    return "anonymousUser".equals( getSession().getName() );
+  }
+
   IPluginManager getPluginManager() {
     return PentahoSystem.get( IPluginManager.class );
   }
@@ -0,0 +1,115 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.platform.web.http.filters;
+
+import org.apache.commons.lang.StringEscapeUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A webcontext.js compiled down to its invariant bytes. The document is rendered once with a placeholder in place of
+ * every per-request value; the placeholders are then cut out, leaving the byte segments between them. Rendering the
+ * template only writes those segments and splices the current values in between, escaped the same way the
+ * placeholder they replace was.
+ */
+class WebContextTemplate {
+
+  private static final Pattern PLACEHOLDER = Pattern.compile( "\u0001(\\d+)\u0002|\\\\u0001(\\d+)\\\\u0002" );
+
+  private final byte[][] segments;
+
+  private final String[] slots;
+
+  private final boolean[] escaped;
+
+  private final int size;
+
+  private WebContextTemplate( byte[][] segments, String[] slots, boolean[] escaped ) {
+    this.segments = segments;
+    this.slots = slots;
+    this.escaped = escaped;
+    int total = 0;
+    for ( byte[] segment : segments ) {
+      total += segment.length;
+    }
+    this.size = total;
+  }
+
+  /**
+   * @return the placeholder to render in place of the value of the given slot
+   */
+  static String placeholder( int slot ) {
+    return "\u0001" + slot + "\u0002";
+  }
+
+  /**
+   * Cuts the placeholders out of a rendered document. Placeholders may appear as they are or escaped for a JavaScript
+   * string literal.
+   *
+   * @param document the document, rendered with {@link #placeholder(int)} in place of every slot value
+   * @param slots    names of the slots, by slot number
+   */
+  static WebContextTemplate compile( String document, List<String> slots ) {
+    List<byte[]> segments = new ArrayList<>();
+    List<String> slotNames = new ArrayList<>();
+    List<Boolean> escaped = new ArrayList<>();
+    Matcher matcher = PLACEHOLDER.matcher( document );
+    int start = 0;
+    while ( matcher.find() ) {
+      segments.add( document.substring( start, matcher.start() ).getBytes( StandardCharsets.UTF_8 ) );
+      boolean isEscaped = matcher.group( 1 ) == null;
+      slotNames.add( slots.get( Integer.parseInt( isEscaped ? matcher.group( 2 ) : matcher.group( 1 ) ) ) );
+      escaped.add( isEscaped );
+      start = matcher.end();
+    }
+    segments.add( document.substring( start ).getBytes( StandardCharsets.UTF_8 ) );
+
+    boolean[] escapedSlots = new boolean[ escaped.size() ];
+    for ( int i = 0; i < escapedSlots.length; i++ ) {
+      escapedSlots[ i ] = escaped.get( i );
+    }
+    return new WebContextTemplate( segments.toArray( new byte[ segments.size() ][] ),
+      slotNames.toArray( new String[ slotNames.size() ] ), escapedSlots );
+  }
+
+  /**
+   * Writes the document with the given slot values spliced in.
+   */
+  void render( OutputStream out, Map<String, String> values ) throws IOException {
+    out.write( segments[ 0 ] );
+    for ( int i = 0; i < slots.length; i++ ) {
+      String value = values.get( slots[ i ] );
+      if ( value != null ) {
+        out.write( ( escaped[ i ] ? StringEscapeUtils.escapeJavaScript( value ) : value )
+          .getBytes( StandardCharsets.UTF_8 ) );
+      }
+      out.write( segments[ i + 1 ] );
+    }
+  }
+
+  /**
+   * @return a buffer large enough for most renderings of this template
+   */
+  ByteArrayOutputStream newBuffer() {
+    return new ByteArrayOutputStream( size + 64 * slots.length );
+  }
+}
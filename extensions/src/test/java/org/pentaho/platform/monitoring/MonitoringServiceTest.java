@@ -13,15 +13,22 @@
 
 package org.pentaho.platform.monitoring;
 
+import com.google.common.eventbus.AllowConcurrentEvents;
 import com.google.common.eventbus.Subscribe;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.pentaho.platform.api.monitoring.IMonitoringEvent;
+import org.pentaho.platform.api.monitoring.IMonitoringEventMetrics;
 import org.pentaho.platform.api.monitoring.IMonitoringService;
 import org.pentaho.platform.api.monitoring.IMonitoringSubscriber;
 
 import java.io.Serializable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 public class MonitoringServiceTest {
 
@@ -45,6 +52,81 @@ public class MonitoringServiceTest {
     service.post( new MockMonitoringEvent() );
   }
 
+  @Test
+  public void testEventsAreDispatchedAsynchronously() throws Exception {
+    BlockingSubscriber subscriber = new BlockingSubscriber( 2 );
+    service.register( subscriber );
+    subscriber.release.countDown();
+
+    service.post( new MockMonitoringEvent() );
+    service.post( new MockMonitoringEvent() );
+
+    assertTrue( subscriber.handled.await( 10, TimeUnit.SECONDS ) );
+    assertEquals( 0, subscriber.handledByPoster );
+    IMonitoringEventMetrics metrics = awaitDispatched( service, 2 );
+    assertEquals( 2, metrics.getPostedCount() );
+    assertEquals( 0, metrics.getDroppedCount() );
+    assertEquals( 0, metrics.getQueueDepth() );
+  }
+
+  @Test
+  public void testDropsEventsWhenQueueIsFull() throws Exception {
+    MonitoringService dropping = new MonitoringService( 1, 1, MonitoringService.OverflowPolicy.DROP, false );
+    BlockingSubscriber subscriber = new BlockingSubscriber( 2 );
+    dropping.register( subscriber );
+
+    // the first event occupies the only thread, the second one the only queue slot
+    dropping.post( new MockMonitoringEvent() );
+    dropping.post( new MockMonitoringEvent() );
+    dropping.post( new MockMonitoringEvent() );
+
+    IMonitoringEventMetrics metrics = dropping.getEventMetrics().get( MockMonitoringEvent.class.getName() );
+    assertEquals( 3, metrics.getPostedCount() );
+    assertEquals( 1, metrics.getDroppedCount() );
+    assertEquals( 1, dropping.getQueueDepth() );
+
+    subscriber.release.countDown();
+    assertTrue( subscriber.handled.await( 10, TimeUnit.SECONDS ) );
+    assertEquals( 1, awaitDispatched( dropping, 2 ).getDroppedCount() );
+    dropping.shutdown();
+  }
+
+  @Test
+  public void testRunsEventsInPostingThreadWhenQueueIsFull() throws Exception {
+    MonitoringService callerRuns =
+      new MonitoringService( 1, 1, MonitoringService.OverflowPolicy.CALLER_RUNS, false );
+    BlockingSubscriber subscriber = new BlockingSubscriber( 3 );
+    callerRuns.register( subscriber );
+
+    callerRuns.post( new MockMonitoringEvent() );
+    callerRuns.post( new MockMonitoringEvent() );
+    callerRuns.post( new MockMonitoringEvent() );
+    assertEquals( 1, subscriber.handledByPoster );
+
+    subscriber.release.countDown();
+    assertTrue( subscriber.handled.await( 10, TimeUnit.SECONDS ) );
+    assertEquals( 0, awaitDispatched( callerRuns, 3 ).getDroppedCount() );
+    callerRuns.shutdown();
+  }
+
+  @Test( expected = IllegalArgumentException.class )
+  public void testRejectsEmptyPool() {
+    new MonitoringService( 0, 1, MonitoringService.OverflowPolicy.BLOCK, false );
+  }
+
+  private static IMonitoringEventMetrics awaitDispatched( IMonitoringService service, long count )
+    throws InterruptedException {
+    // the counters are updated after the subscribers return
+    long deadline = System.currentTimeMillis() + 10000;
+    IMonitoringEventMetrics metrics = service.getEventMetrics().get( MockMonitoringEvent.class.getName() );
+    while ( metrics.getDispatchedCount() < count && System.currentTimeMillis() < deadline ) {
+      Thread.sleep( 10 );
+      metrics = service.getEventMetrics().get( MockMonitoringEvent.class.getName() );
+    }
+    assertEquals( count, metrics.getDispatchedCount() );
+    return metrics;
+  }
+
   @After
   public void teardown() {
     service = null;
@@ -61,7 +143,36 @@ public class MonitoringServiceTest {
     }
   }
 
-  private class MockMonitoringEvent implements IMonitoringEvent {
+  /**
+   * Holds up dispatcher threads until released; events dispatched in the posting thread go through right away.
+   */
+  public static class BlockingSubscriber implements IMonitoringSubscriber {
+
+    final CountDownLatch release = new CountDownLatch( 1 );
+
+    final CountDownLatch handled;
+
+    volatile int handledByPoster;
+
+    BlockingSubscriber( int events ) {
+      handled = new CountDownLatch( events );
+    }
+
+    @Override public String getSubscriberId() {
+      return getClass().getName();
+    }
+
+    @Subscribe @AllowConcurrentEvents public void handleEvent( MockMonitoringEvent o ) throws InterruptedException {
+      if ( Thread.currentThread().getName().startsWith( "MonitoringService pool-" ) ) {
+        release.await();
+      } else {
+        handledByPoster++;
+      }
+      handled.countDown();
+    }
+  }
+
+  private static class MockMonitoringEvent implements IMonitoringEvent {
 
     @Override public Serializable getId() {
       return getClass().getName();
@@ -55,6 +55,7 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
@@ -150,6 +151,47 @@ public class MondrianCatalogHelperTest {
     }
   }
 
+  @Test
+  public void testLoadCatalogsIntoCacheInParallel() throws Exception {
+    String[] schemaNames = { "schemaA", "schemaB", "schemaC" };
+    dsList = new DataSourcesConfig.DataSources();
+    dsList.dataSources = new DataSource[] { new DataSource() };
+    dsList.dataSources[ 0 ].catalogs = new Catalogs();
+    dsList.dataSources[ 0 ].catalogs.catalogs = new Catalog[ schemaNames.length ];
+    for ( int i = 0; i < schemaNames.length; i++ ) {
+      Catalog ct = new Catalog();
+      ct.name = schemaNames[ i ];
+      ct.definition = "mondrian:/" + schemaNames[ i ];
+      dsList.dataSources[ 0 ].catalogs.catalogs[ i ] = ct;
+    }
+    Set<String> loaderThreads = ConcurrentHashMap.newKeySet();
+    doAnswer( invocation -> {
+      loaderThreads.add( Thread.currentThread().getName() );
+      String definition = invocation.getArgument( 0 );
+      return String.format( "<schema name=\"%s\"><cube name=\"cube1\"/></schema>",
+        definition.substring( "mondrian:/".length() ) );
+    } ).when( mch ).docAtUrlToString( any() );
+    ICacheManager testCacheManager = new TestICacheManager();
+
+    try ( MockedStatic<PentahoSystem> pentahoSystem = mockStatic( PentahoSystem.class ) ) {
+      pentahoSystem.when( () -> PentahoSystem.getCacheManager( any() ) ).thenReturn( testCacheManager );
+
+      mch.loadCatalogsIntoCache( dsList, null );
+
+      MondrianCatalogCache cache = (MondrianCatalogCache)
+        testCacheManager.getFromRegionCache( MONDRIAN_CATALOG_CACHE_REGION, Locale.getDefault().toString() );
+      Assert.assertTrue( cache.getMondrianCatalogCacheState().isFullyLoaded() );
+      assertEquals( schemaNames.length * 2, cache.getCatalogs().size() );
+      for ( String schemaName : schemaNames ) {
+        assertEquals( schemaName, cache.getCatalog( schemaName ).getName() );
+        assertEquals( schemaName, cache.getCatalog( "mondrian:/" + schemaName ).getName() );
+      }
+      for ( String loaderThread : loaderThreads ) {
+        Assert.assertTrue( loaderThread.startsWith( "MondrianCatalogLoader-" ) );
+      }
+    }
+  }
+
   @Test( timeout = 2000, expected = SAXException.class )
   public void shouldNotFailAndReturnNullWhenMaliciousXmlIsGiven()
     throws IOException, ParserConfigurationException, SAXException {
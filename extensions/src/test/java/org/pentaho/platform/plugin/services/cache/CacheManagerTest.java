@@ -0,0 +1,117 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.platform.plugin.services.cache;
+
+import org.hibernate.Cache;
+import org.hibernate.cache.spi.DirectAccessRegion;
+import org.hibernate.cache.spi.support.StorageAccess;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.internal.SessionImpl;
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.platform.api.engine.ICacheManager;
+import org.pentaho.platform.api.engine.IPentahoSession;
+import org.pentaho.platform.engine.core.system.StandaloneSession;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class CacheManagerTest {
+
+  private final IPentahoSession session1 = new StandaloneSession( "user1", "1234-5678-90" ); //$NON-NLS-1$ //$NON-NLS-2$
+
+  private final IPentahoSession session2 = new StandaloneSession( "user2", "abc-def-ghi-jkl" ); //$NON-NLS-1$ //$NON-NLS-2$
+
+  private HvCache sessionCache;
+
+  private StorageAccess storageAccess;
+
+  @Before
+  public void setUp() {
+    sessionCache = mock( HvCache.class );
+    storageAccess = mock( StorageAccess.class );
+    when( sessionCache.getStorageAccess() ).thenReturn( storageAccess );
+    when( sessionCache.getDirectAccessRegion() ).thenReturn( mock( DirectAccessRegion.class ) );
+  }
+
+  @Test
+  public void testKillSessionCacheEvictsTheIndexedKeysOfTheSession() {
+    when( sessionCache.getAllKeys() ).thenReturn( Collections.emptySet() );
+    CacheManager cacheManager = newCacheManager();
+
+    cacheManager.putInSessionCache( session1, "StringObject", "value" ); //$NON-NLS-1$ //$NON-NLS-2$
+    cacheManager.putInSessionCache( session2, "StringObject", "value" ); //$NON-NLS-1$ //$NON-NLS-2$
+    cacheManager.putInSessionCache( session2, "repoDoc", "value" ); //$NON-NLS-1$ //$NON-NLS-2$
+    assertEquals( 1, cacheManager.getSessionCacheEntryCount( session1 ) );
+    assertEquals( 2, cacheManager.getSessionCacheEntryCount( session2 ) );
+
+    cacheManager.killSessionCache( session1 );
+
+    verify( storageAccess ).evictData( "1234-5678-90\tStringObject" ); //$NON-NLS-1$
+    verify( storageAccess, times( 1 ) ).evictData( any() );
+    assertEquals( 0, cacheManager.getSessionCacheEntryCount( session1 ) );
+    Map<String, Integer> counts = cacheManager.getSessionCacheEntryCounts();
+    assertEquals( Integer.valueOf( 2 ), counts.get( "abc-def-ghi-jkl" ) ); //$NON-NLS-1$
+    assertFalse( counts.containsKey( "1234-5678-90" ) ); //$NON-NLS-1$
+    // the region held nothing that was not put through the cache manager, so it is never scanned
+    verify( sessionCache, times( 1 ) ).getAllKeys();
+  }
+
+  @Test
+  public void testKillSessionCacheEvictsTheEntriesTheRegionHeldWhenItWasSetUp() {
+    when( sessionCache.getAllKeys() ).thenReturn( new HashSet<Object>( Arrays.asList(
+        "1234-5678-90\tearlier", "abc-def-ghi-jkl\tearlier" ) ) ); //$NON-NLS-1$ //$NON-NLS-2$
+    CacheManager cacheManager = newCacheManager();
+    cacheManager.putInSessionCache( session1, "StringObject", "value" ); //$NON-NLS-1$ //$NON-NLS-2$
+
+    cacheManager.killSessionCache( session1 );
+
+    verify( storageAccess ).evictData( "1234-5678-90\tStringObject" ); //$NON-NLS-1$
+    verify( storageAccess ).evictData( "1234-5678-90\tearlier" ); //$NON-NLS-1$
+    verify( storageAccess, never() ).evictData( "abc-def-ghi-jkl\tearlier" ); //$NON-NLS-1$
+  }
+
+  @Test
+  public void testClearingTheRegionStopsTheScans() {
+    when( sessionCache.getAllKeys() ).thenReturn( Collections.singleton( "1234-5678-90\tearlier" ) ); //$NON-NLS-1$
+    SessionFactoryImplementor sessionFactory = mock( SessionFactoryImplementor.class );
+    when( sessionFactory.openSession() ).thenReturn( mock( SessionImpl.class ) );
+    when( sessionCache.getSessionFactory() ).thenReturn( sessionFactory );
+    CacheManager cacheManager = newCacheManager();
+
+    cacheManager.killSessionCaches();
+    cacheManager.killSessionCache( session1 );
+
+    // only read when the region was set up
+    verify( sessionCache, times( 1 ) ).getAllKeys();
+  }
+
+  private CacheManager newCacheManager() {
+    Map<String, Cache> regionCache = new HashMap<>();
+    regionCache.put( ICacheManager.SESSION, sessionCache );
+    return new CacheManager( regionCache );
+  }
+}
@@ -0,0 +1,170 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.platform.plugin.services.importer;
+
+import org.apache.commons.logging.Log;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+import org.pentaho.platform.plugin.services.importexport.IRepositoryImportLogger;
+import org.pentaho.platform.plugin.services.importexport.ImportSession;
+import org.pentaho.platform.plugin.services.importexport.ImportSource.IRepositoryFileBundle;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class BulkRestoreImporterTest {
+
+  private final List<String> imported = Collections.synchronizedList( new ArrayList<>() );
+
+  private ImportSession importSession;
+
+  private Log log;
+
+  @Before
+  public void setUp() {
+    IPlatformImporter platformImporter = mock( IPlatformImporter.class );
+    when( platformImporter.getRepositoryImportLogger() ).thenReturn( mock( IRepositoryImportLogger.class ) );
+    ImportSession.iPlatformImporter = platformImporter;
+    importSession = new ImportSession();
+    log = mock( Log.class );
+  }
+
+  @After
+  public void tearDown() {
+    ImportSession.iPlatformImporter = null;
+  }
+
+  @Test
+  public void testPartitions() {
+    assertNull( folder( "home" ).getPartition( 2 ) );
+    assertEquals( "home/alice", folder( "home/alice" ).getPartition( 2 ) );
+    assertEquals( "home/alice", folder( "home/alice/reports" ).getPartition( 2 ) );
+    assertEquals( "home/alice", file( "home/alice/reports/sales.prpt" ).getPartition( 2 ) );
+    assertEquals( "public", file( "public/readme.txt" ).getPartition( 2 ) );
+    assertEquals( "", file( "readme.txt" ).getPartition( 2 ) );
+    assertEquals( "home", folder( "home" ).getPartition( 1 ) );
+  }
+
+  @Test
+  public void testImportsFoldersAbovePartitionsFirst() throws Exception {
+    BulkRestoreImporter bulkImporter = new BulkRestoreImporter( importSession, null, 2, 1, log );
+    List<PendingImport> pendingImports = Arrays.asList( folder( "home/alice" ), file( "home/alice/a.prpt" ),
+      folder( "home" ), folder( "home/bob" ), file( "home/bob/b.prpt" ), file( "readme.txt" ) );
+    pendingImports.forEach( bulkImporter::add );
+
+    long count = bulkImporter.importAll( pendingImport -> imported.add( pendingImport.getSourcePath() ) );
+
+    assertEquals( 6, count );
+    assertEquals( 6, imported.size() );
+    assertEquals( "home", imported.get( 0 ) );
+    assertTrue( imported.indexOf( "home/alice" ) < imported.indexOf( "home/alice/a.prpt" ) );
+    assertTrue( imported.indexOf( "home/bob" ) < imported.indexOf( "home/bob/b.prpt" ) );
+    assertEquals( 3 * 3, bulkImporter.getImportedBytes() );
+    verify( log, atLeastOnce() ).info( any() );
+  }
+
+  @Test
+  public void testBatchesAreImportedInOneTransaction() throws Exception {
+    TransactionTemplate transactionTemplate = transactionTemplate( mock( TransactionStatus.class ) );
+    BulkRestoreImporter bulkImporter = new BulkRestoreImporter( importSession, transactionTemplate, 1, 2, log );
+    Arrays.asList( file( "public/a.prpt" ), file( "public/b.prpt" ), file( "public/c.prpt" ) )
+      .forEach( bulkImporter::add );
+
+    long count = bulkImporter.importAll( pendingImport -> imported.add( pendingImport.getSourcePath() ) );
+
+    assertEquals( 3, count );
+    assertEquals( Arrays.asList( "public/a.prpt", "public/b.prpt", "public/c.prpt" ), imported );
+    // the last batch only has one file, which needs no transaction
+    verify( transactionTemplate, times( 1 ) ).execute( any() );
+  }
+
+  @Test
+  public void testFailedBatchIsImportedOneFileAtATime() throws Exception {
+    TransactionStatus status = mock( TransactionStatus.class );
+    BulkRestoreImporter bulkImporter =
+      new BulkRestoreImporter( importSession, transactionTemplate( status ), 1, 3, log );
+    Arrays.asList( file( "public/a.prpt" ), file( "public/bad.prpt" ), file( "public/c.prpt" ) )
+      .forEach( bulkImporter::add );
+
+    long count = bulkImporter.importAll( pendingImport -> {
+      imported.add( pendingImport.getSourcePath() );
+      if ( pendingImport.getSourcePath().contains( "bad" ) ) {
+        throw new PlatformImportException( "bad" );
+      }
+    } );
+
+    assertEquals( 2, count );
+    verify( status ).setRollbackOnly();
+    assertEquals( Arrays.asList( "public/a.prpt", "public/bad.prpt", "public/a.prpt", "public/bad.prpt",
+      "public/c.prpt" ), imported );
+    verify( log ).error( contains( "bad.prpt" ) );
+  }
+
+  @Test
+  public void testWorkerSessionsAreMerged() throws Exception {
+    BulkRestoreImporter bulkImporter = new BulkRestoreImporter( importSession, null, 2, 1, log );
+    bulkImporter.add( file( "public/a.prpt" ) );
+    bulkImporter.add( file( "home/bob/b.prpt" ) );
+
+    bulkImporter.importAll( pendingImport -> {
+      ImportSession.getSession().getSkippedFiles().add( pendingImport.getSourcePath() );
+      assertTrue( ImportSession.getSession() != importSession );
+    } );
+
+    assertEquals( 2, importSession.getSkippedFiles().size() );
+  }
+
+  @SuppressWarnings( "unchecked" )
+  private static TransactionTemplate transactionTemplate( TransactionStatus status ) {
+    TransactionTemplate transactionTemplate = mock( TransactionTemplate.class );
+    when( transactionTemplate.execute( any() ) ).thenAnswer(
+      invocation -> ( (TransactionCallback<Object>) invocation.getArgument( 0 ) ).doInTransaction( status ) );
+    return transactionTemplate;
+  }
+
+  private static PendingImport folder( String path ) {
+    return pendingImport( path, true );
+  }
+
+  private static PendingImport file( String path ) {
+    return pendingImport( path, false );
+  }
+
+  private static PendingImport pendingImport( String path, boolean folder ) {
+    IRepositoryFileBundle fileBundle = mock( IRepositoryFileBundle.class );
+    String name = path.substring( path.lastIndexOf( '/' ) + 1 );
+    when( fileBundle.getFile() ).thenReturn( new RepositoryFile.Builder( name ).folder( folder ).build() );
+    return new PendingImport( fileBundle, new RepositoryFileImportBundle.Builder(), new byte[] { 1, 2, 3 }, path,
+      "/" + path );
+  }
+}
@@ -0,0 +1,95 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.platform.plugin.services.importexport;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SpooledRepositoryFileBundleTest {
+
+  private static final RepositoryFile FILE = new RepositoryFile.Builder( "dummy.ext" ).build();
+
+  private static final byte[] CONTENT = "0123456789abcdef".getBytes( StandardCharsets.UTF_8 );
+
+  @Test
+  public void testSmallContentStaysInMemory() throws Exception {
+    SpooledRepositoryFileBundle bundle = spool( CONTENT.length );
+
+    assertTrue( bundle.isInMemory() );
+    assertEquals( CONTENT.length, bundle.getSize() );
+    assertArrayEquals( CONTENT, read( bundle ) );
+    assertArrayEquals( CONTENT, read( bundle ) );
+  }
+
+  @Test
+  public void testLargeContentIsMovedToFile() throws Exception {
+    SpooledRepositoryFileBundle bundle = spool( CONTENT.length - 1 );
+    try {
+      assertFalse( bundle.isInMemory() );
+      assertEquals( CONTENT.length, bundle.getSize() );
+      assertArrayEquals( CONTENT, read( bundle ) );
+      assertArrayEquals( CONTENT, read( bundle ) );
+    } finally {
+      bundle.dispose();
+    }
+  }
+
+  @Test
+  public void testFileContentCanBeReset() throws Exception {
+    SpooledRepositoryFileBundle bundle = spool( 0 );
+    try ( InputStream is = bundle.getInputStream() ) {
+      assertTrue( is.markSupported() );
+      assertEquals( '0', is.read() );
+      assertEquals( 8, is.skip( 8 ) );
+      is.mark( 1 );
+      assertEquals( '9', is.read() );
+      assertEquals( "abcdef", new String( IOUtils.toByteArray( is ), StandardCharsets.UTF_8 ) );
+
+      is.reset();
+      assertEquals( "9abcdef", new String( IOUtils.toByteArray( is ), StandardCharsets.UTF_8 ) );
+    } finally {
+      bundle.dispose();
+    }
+  }
+
+  @Test
+  public void testEmptyContent() throws Exception {
+    SpooledRepositoryFileBundle bundle = SpooledRepositoryFileBundle.spool( FILE, null, "/",
+      new ByteArrayInputStream( new byte[ 0 ] ), 0, "UTF-8", null );
+
+    assertTrue( bundle.isInMemory() );
+    assertEquals( 0, read( bundle ).length );
+  }
+
+  private static SpooledRepositoryFileBundle spool( int threshold ) throws Exception {
+    return SpooledRepositoryFileBundle.spool( FILE, null, "/", new ByteArrayInputStream( CONTENT ), threshold,
+      "UTF-8", null );
+  }
+
+  private static byte[] read( SpooledRepositoryFileBundle bundle ) throws Exception {
+    try ( InputStream is = bundle.getInputStream() ) {
+      return IOUtils.toByteArray( is );
+    }
+  }
+}
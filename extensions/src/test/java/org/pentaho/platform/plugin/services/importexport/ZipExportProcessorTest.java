@@ -27,9 +27,13 @@ import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.Serializable;
 import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -42,6 +46,7 @@ import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
 import org.apache.logging.log4j.Level;
 import org.junit.After;
 import org.junit.AfterClass;
@@ -348,6 +353,84 @@ public class ZipExportProcessorTest {
     assertEquals( "entries count", expectedEntries.length, zipEntriesFiles.size() );
   }
 
+  @Test
+  public void testPerformExport_streamedWithPrefetch() throws Exception {
+    String expFolderPath = "/home/test user/two words/";
+    ZipExportProcessor zipMF = new ZipExportProcessor( expFolderPath, repo, true );
+    zipMF.setPrefetchThreads( 2 );
+
+    exportHandler.setConverters( assignConverterForExt( defaultConverter, "prpt" ) );
+    zipMF.addExportHandler( exportHandler );
+
+    ByteArrayOutputStream zip = new ByteArrayOutputStream();
+    zipMF.performExport( repo.getFile( expFolderPath ), zip );
+
+    Set<String> zipEntriesFiles = extractZipEntries( new ByteArrayInputStream( zip.toByteArray() ) );
+    final String[] expectedEntries =
+        new String[] {"two+words/eval+%28%2B%29%25.prpt", "two+words/eval+%28%2B%29%25.prpt_en.locale",
+            "two+words/index_en.locale", "exportManifest.xml"};
+    for ( String e : expectedEntries ) {
+      assertTrue( "expected entry: [" + e + "]", zipEntriesFiles.contains( e ) );
+    }
+    assertEquals( "entries count", expectedEntries.length, zipEntriesFiles.size() );
+  }
+
+  @Test
+  public void testPerformExport_prefetchKeepsEntryOrder() throws Exception {
+    RepositoryFile sub = folder( "/docs/sub" );
+    final Map<String, List<RepositoryFile>> children = new HashMap<>();
+    children.put( "/docs", Arrays.asList( file( "/docs/a.prpt" ), sub, file( "/docs/b.prpt" ), file( "/docs/c.prpt" ),
+        file( "/docs/d.prpt" ), file( "/docs/e.prpt" ) ) );
+    children.put( "/docs/sub", Arrays.asList( file( "/docs/sub/f.prpt" ), folder( "/docs/sub/empty" ),
+        file( "/docs/sub/g.prpt" ) ) );
+    IUnifiedRepository folderRepo = mock( IUnifiedRepository.class );
+    doAnswer( invocation -> children.getOrDefault( ( (RepositoryRequest) invocation.getArgument( 0 ) ).getPath(),
+        Collections.emptyList() ) ).when( folderRepo ).getChildren( any( RepositoryRequest.class ) );
+    RepositoryFileAcl acl = repo.getAcl( "/" );
+    doReturn( acl ).when( folderRepo ).getAcl( any( Serializable.class ) );
+
+    ZipExportProcessor zipMF = new ZipExportProcessor( "/docs", folderRepo, true );
+    zipMF.setLocaleExportList( Collections.singletonList( ".locale" ) );
+    // two files read ahead at most, so the subfolder is written while its parent holds the whole allowance
+    zipMF.setPrefetchThreads( 1 );
+    zipMF.addExportHandler( ( repositoryFile, filePath ) -> {
+      // the files later in the alphabet are read faster, so the reads finish out of order
+      try {
+        Thread.sleep( 'h' - repositoryFile.getName().charAt( 0 ) );
+      } catch ( InterruptedException e ) {
+        Thread.currentThread().interrupt();
+      }
+      return new ByteArrayInputStream( repositoryFile.getName().getBytes( StandardCharsets.UTF_8 ) );
+    } );
+
+    ByteArrayOutputStream zip = new ByteArrayOutputStream();
+    zipMF.performExport( folder( "/docs" ), zip );
+
+    List<String> entries = new ArrayList<>();
+    try ( ZipInputStream zis = new ZipInputStream( new ByteArrayInputStream( zip.toByteArray() ) ) ) {
+      for ( ZipEntry entry = zis.getNextEntry(); entry != null; entry = zis.getNextEntry() ) {
+        entries.add( entry.getName() );
+        if ( entry.getName().endsWith( ".prpt" ) ) {
+          String name = entry.getName().substring( entry.getName().lastIndexOf( '/' ) + 1 );
+          assertEquals( "content of " + entry.getName(), name, IOUtils.toString( zis, StandardCharsets.UTF_8 ) );
+        }
+      }
+    }
+    assertEquals( Arrays.asList( "docs/", "docs/a.prpt", "docs/sub/", "docs/sub/f.prpt", "docs/sub/empty/",
+        "docs/sub/g.prpt", "docs/b.prpt", "docs/c.prpt", "docs/d.prpt", "docs/e.prpt", "exportManifest.xml" ),
+        entries );
+  }
+
+  private static RepositoryFile folder( String path ) {
+    return new RepositoryFile.Builder( path.substring( path.lastIndexOf( '/' ) + 1 ) ).path( path ).id( path )
+        .folder( true ).build();
+  }
+
+  private static RepositoryFile file( String path ) {
+    return new RepositoryFile.Builder( path.substring( path.lastIndexOf( '/' ) + 1 ) ).path( path ).id( path )
+        .folder( false ).build();
+  }
+
   private Map<String, Converter> assignConverterForExt( Converter conv, String... exts ) {
     final Map<String, Converter> converters = new HashMap<String, Converter>();
     for ( String ext : exts ) {
@@ -357,11 +440,15 @@ public class ZipExportProcessorTest {
   }
 
   private Set<String> extractZipEntries( File zipFile ) throws IOException {
+    return extractZipEntries( new FileInputStream( zipFile ) );
+  }
+
+  private Set<String> extractZipEntries( InputStream zip ) throws IOException {
     Set<String> result = new HashSet<String>();
-    FileInputStream fis = null;
+    InputStream fis = null;
     ZipInputStream zis = null;
     try {
-      fis = new FileInputStream( zipFile );
+      fis = zip;
       zis = new ZipInputStream( fis );
       for ( ZipEntry entry = zis.getNextEntry(); entry != null; entry = zis.getNextEntry() ) {
         if ( !entry.isDirectory() ) {
@@ -18,16 +18,26 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import org.mockito.Mockito;
+import org.pentaho.metadata.model.Category;
 import org.pentaho.metadata.model.Domain;
+import org.pentaho.metadata.model.LogicalColumn;
+import org.pentaho.metadata.model.LogicalModel;
+import org.pentaho.metadata.model.concept.Concept;
+import org.pentaho.metadata.model.concept.security.Security;
+import org.pentaho.metadata.model.concept.security.SecurityOwner;
 import org.pentaho.metadata.repository.IMetadataDomainRepository;
 import org.pentaho.platform.api.engine.ICacheManager;
 import org.pentaho.platform.api.engine.IConfiguration;
+import org.pentaho.platform.api.engine.IPentahoAclEntry;
 import org.pentaho.platform.api.engine.IPentahoSession;
 import org.pentaho.platform.api.engine.ISystemConfig;
 import org.pentaho.platform.config.SystemConfig;
 import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
 import org.pentaho.platform.engine.core.system.StandaloneSession;
 import org.pentaho.test.platform.plugin.services.metadata.MockSessionAwareMetadataDomainRepository;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -44,6 +54,8 @@ import java.util.concurrent.TimeUnit;
 
 import static org.hamcrest.CoreMatchers.containsString;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
@@ -340,6 +352,72 @@ public class SessionCachingMetadataDomainRepositoryTest {
     assertNotSame( "domainKeys are the same", domainKey1, domainKey2 );
   }
 
+  @Test
+  public void testGetSecurityProfile() throws Exception {
+    SessionCachingMetadataDomainRepository repo = new SessionCachingMetadataDomainRepository(
+            null, null, true, 1 );
+    IPentahoSession session1 = new StandaloneSession( "joe", "1" );
+    IPentahoSession session2 = new StandaloneSession( "joe", "2" );
+    IPentahoSession session3 = new StandaloneSession( "suzy", "3" );
+    try {
+      SecurityContextHolder.getContext().setAuthentication( new UsernamePasswordAuthenticationToken( "joe", null,
+              Arrays.asList( new SimpleGrantedAuthority( "Power User" ), new SimpleGrantedAuthority( "Admin" ) ) ) );
+      String profile = repo.getSecurityProfile( session1, false );
+      String userProfile = repo.getSecurityProfile( session1, true );
+
+      // sessions with the same roles share a profile, whatever order the roles are granted in
+      SecurityContextHolder.getContext().setAuthentication( new UsernamePasswordAuthenticationToken( "joe", null,
+              Arrays.asList( new SimpleGrantedAuthority( "Admin" ), new SimpleGrantedAuthority( "Power User" ) ) ) );
+      assertEquals( profile, repo.getSecurityProfile( session2, false ) );
+      assertEquals( userProfile, repo.getSecurityProfile( session2, true ) );
+      // also sessions of other users, unless the domain's ACLs name users
+      assertEquals( profile, repo.getSecurityProfile( session3, false ) );
+      assertNotEquals( userProfile, repo.getSecurityProfile( session3, true ) );
+      assertNotEquals( profile, userProfile );
+
+      SecurityContextHolder.getContext().setAuthentication( new UsernamePasswordAuthenticationToken( "joe", null,
+              Arrays.asList( new SimpleGrantedAuthority( "Power User" ) ) ) );
+      assertNotEquals( profile, repo.getSecurityProfile( session2, false ) );
+      assertNotEquals( userProfile, repo.getSecurityProfile( session2, true ) );
+    } finally {
+      SecurityContextHolder.clearContext();
+    }
+  }
+
+  @Test
+  public void testIsUserSecured() throws Exception {
+    Domain domain = new Domain();
+    LogicalModel model = new LogicalModel();
+    Category category = new Category();
+    LogicalColumn column = new LogicalColumn();
+    category.addLogicalColumn( column );
+    model.addCategory( category );
+    domain.addLogicalModel( model );
+    model.setProperty( Concept.SECURITY_PROPERTY, security( SecurityOwner.OwnerType.ROLE, "Admin" ) );
+    assertFalse( SessionCachingMetadataDomainRepository.isUserSecured( domain ) );
+
+    column.setProperty( Concept.SECURITY_PROPERTY, security( SecurityOwner.OwnerType.USER, "joe" ) );
+    assertTrue( SessionCachingMetadataDomainRepository.isUserSecured( domain ) );
+  }
+
+  private static Security security( SecurityOwner.OwnerType type, String owner ) {
+    Security security = new Security();
+    security.putOwnerRights( new SecurityOwner( type, owner ), IPentahoAclEntry.PERM_EXECUTE );
+    return security;
+  }
+
+  @Test
+  public void testProfileCacheKey() throws Exception {
+    SessionCachingMetadataDomainRepository.CacheKey key =
+            new SessionCachingMetadataDomainRepository.ProfileCacheKey( "joe|Admin", "domain" );
+
+    assertEquals( key, new SessionCachingMetadataDomainRepository.ProfileCacheKey( "joe|Admin", "domain" ) );
+    assertEquals( key.hashCode(),
+            new SessionCachingMetadataDomainRepository.ProfileCacheKey( "joe|Admin", "domain" ).hashCode() );
+    assertNotEquals( key, new SessionCachingMetadataDomainRepository.ProfileCacheKey( "suzy|Admin", "domain" ) );
+    assertNotEquals( key, new SessionCachingMetadataDomainRepository.CacheKey( null, "domain" ) );
+  }
+
   @Test
   public void testGetNumberOfThreads() throws Exception {
     //  test various versions cases and versions of number
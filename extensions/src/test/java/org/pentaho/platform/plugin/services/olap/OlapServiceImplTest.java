@@ -33,6 +33,7 @@ import org.pentaho.platform.api.repository2.unified.IUnifiedRepository;
 import org.pentaho.platform.api.repository2.unified.RepositoryFile;
 import org.pentaho.platform.api.repository2.unified.RepositoryFilePermission;
 import org.pentaho.platform.api.util.IPasswordService;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
 import org.pentaho.platform.engine.core.system.StandaloneSession;
 import org.pentaho.platform.plugin.action.olap.IOlapService;
 import org.pentaho.platform.plugin.action.olap.IOlapServiceException;
@@ -43,10 +44,16 @@ import org.pentaho.platform.util.messages.LocaleHelper;
 
 import java.io.InputStream;
 import java.io.PrintWriter;
+import java.util.ArrayList;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
@@ -54,6 +61,7 @@ import static org.junit.Assert.fail;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.nullable;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
@@ -831,6 +839,50 @@ public class OlapServiceImplTest {
     }
   }
 
+  @Test
+  public void testCatalogsAreLoadedOnceUnderContention() throws Exception {
+    PentahoSystem.getCacheManager( session ).clearRegionCache( OlapServiceImpl.CATALOG_CACHE_REGION );
+    stubHostedServer();
+    final CountDownLatch loading = new CountDownLatch( 1 );
+    doAnswer( invocation -> {
+      loading.await( 10, TimeUnit.SECONDS );
+      throw new IOlapServiceException( "no connection in tests" );
+    } ).when( olapService ).getConnection( eq( "myHostedServer" ), nullable( IPentahoSession.class ) );
+
+    ExecutorService executor = Executors.newFixedThreadPool( 4 );
+    try {
+      List<Future<List<IOlapService.Catalog>>> results = new ArrayList<>();
+      for ( int i = 0; i < 4; i++ ) {
+        results.add( executor.submit( () -> olapService.getCatalogs( session ) ) );
+      }
+      Thread.sleep( 200 );
+      loading.countDown();
+      for ( Future<List<IOlapService.Catalog>> result : results ) {
+        assertTrue( result.get( 10, TimeUnit.SECONDS ).isEmpty() );
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    olapService.getCatalogs( session );
+
+    verify( olapService, times( 1 ) ).getConnection( eq( "myHostedServer" ), nullable( IPentahoSession.class ) );
+  }
+
+  @Test
+  public void testFlushAllReloadsCatalogs() throws Exception {
+    PentahoSystem.getCacheManager( session ).clearRegionCache( OlapServiceImpl.CATALOG_CACHE_REGION );
+    stubHostedServer();
+    doAnswer( invocation -> {
+      throw new IOlapServiceException( "no connection in tests" );
+    } ).when( olapService ).getConnection( eq( "myHostedServer" ), nullable( IPentahoSession.class ) );
+
+    olapService.getCatalogs( session );
+    olapService.flushAll( session );
+    olapService.getCatalogs( session );
+
+    verify( olapService, times( 2 ) ).getConnection( eq( "myHostedServer" ), nullable( IPentahoSession.class ) );
+  }
+
   private static Locale getLocale() {
     return LocaleHelper.getLocale();
   }
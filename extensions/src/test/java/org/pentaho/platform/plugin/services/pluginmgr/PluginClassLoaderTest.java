@@ -0,0 +1,93 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.platform.plugin.services.pluginmgr;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.net.URL;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@SuppressWarnings( "nls" )
+public class PluginClassLoaderTest {
+
+  private static final String PLUGIN_DIR = "./src/test/resources/PluginResourceLoaderTest";
+
+  // lib/bad.jar is not a jar
+  private static final String UNINDEXABLE_PLUGIN_DIR = "./src/test/resources/PluginClassLoaderTest";
+
+  @Test
+  public void testIndexesPackagesOfJars() {
+    PluginClassLoader loader = new PluginClassLoader( new File( PLUGIN_DIR ), getClass().getClassLoader() );
+
+    List<URL> jars = loader.getJarsForPackage( "" );
+    assertEquals( 1, jars.size() );
+    assertTrue( jars.get( 0 ).toString().endsWith( "pluginResourceTest.jar" ) );
+    // the jar has resources in this package, but no classes
+    assertTrue( loader.getJarsForPackage( "org.pentaho.test" ).isEmpty() );
+  }
+
+  @Test
+  public void testLoadsFromOwnClasspathFirstInOverrideMode() throws Exception {
+    PluginClassLoader loader = new PluginClassLoader( new File( PLUGIN_DIR ), getClass().getClassLoader() );
+    loader.setOverrideLoad( true );
+
+    Class<?> dummy = loader.loadClass( "PluginResLoaderDummyClass" );
+    assertSame( loader, dummy.getClassLoader() );
+    assertSame( dummy, loader.loadClass( "PluginResLoaderDummyClass" ) );
+    assertSame( String.class, loader.loadClass( "java.lang.String" ) );
+
+    PluginClassLoader.Statistics statistics = loader.getStatistics();
+    assertEquals( 1, statistics.getLocalLoads() );
+    assertEquals( 1, statistics.getCachedLoads() );
+    assertEquals( 1, statistics.getLocalLookups() );
+    // java.lang is not on the plugin's classpath, so it was never searched for there; defining the dummy class loads
+    // its superclass the same way
+    assertTrue( statistics.getParentLoads() >= 1 );
+    assertEquals( statistics.getParentLoads(), statistics.getSkippedLookups() );
+  }
+
+  @Test
+  public void testMissingClassIsNotSearchedFor() {
+    PluginClassLoader loader = new PluginClassLoader( new File( PLUGIN_DIR ), getClass().getClassLoader() );
+    try {
+      loader.loadClass( "org.pentaho.test.Missing" );
+      fail( "ClassNotFoundException expected" );
+    } catch ( ClassNotFoundException e ) {
+      assertEquals( "org.pentaho.test.Missing", e.getMessage() );
+    }
+    assertEquals( 1, loader.getStatistics().getSkippedLookups() );
+    assertEquals( 0, loader.getStatistics().getLocalLookups() );
+  }
+
+  @Test
+  public void testSearchesClasspathWhenItCannotBeIndexed() {
+    PluginClassLoader loader =
+      new PluginClassLoader( new File( UNINDEXABLE_PLUGIN_DIR ), getClass().getClassLoader() );
+
+    assertTrue( loader.getJarsForPackage( "" ).isEmpty() );
+    try {
+      loader.loadClass( "org.pentaho.test.Missing" );
+      fail( "ClassNotFoundException expected" );
+    } catch ( ClassNotFoundException e ) {
+      // expected
+    }
+    assertEquals( 0, loader.getStatistics().getSkippedLookups() );
+    assertEquals( 1, loader.getStatistics().getLocalLookups() );
+  }
+}
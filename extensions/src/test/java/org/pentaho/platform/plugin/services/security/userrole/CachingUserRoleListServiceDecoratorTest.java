@@ -16,9 +16,16 @@ package org.pentaho.platform.plugin.services.security.userrole;
 import org.junit.Test;
 import org.pentaho.platform.api.engine.IUserRoleListService;
 import org.pentaho.platform.api.mt.ITenant;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.*;
 
@@ -159,4 +166,84 @@ public class CachingUserRoleListServiceDecoratorTest {
 
     verify( mockService, times( 1 ) ).getAllUsers( tenant );
   }
+
+  @Test
+  public void testConcurrentMissesShareOneLoad() throws Exception {
+    IUserRoleListService mockService = mock( IUserRoleListService.class );
+    final CountDownLatch release = new CountDownLatch( 1 );
+    when( mockService.getRolesForUser( null, "concurrent" ) ).thenAnswer( invocation -> {
+      release.await( 10, TimeUnit.SECONDS );
+      return Arrays.asList( "foo", "bar" );
+    } );
+
+    final CachingUserRoleListServiceDecorator decorator = new CachingUserRoleListServiceDecorator( mockService );
+    ExecutorService executor = Executors.newFixedThreadPool( 8 );
+    try {
+      List<Future<List<String>>> results = new ArrayList<>();
+      for ( int i = 0; i < 8; i++ ) {
+        results.add( executor.submit( () -> decorator.getRolesForUser( null, "concurrent" ) ) );
+      }
+      Thread.sleep( 200 );
+      release.countDown();
+      for ( Future<List<String>> result : results ) {
+        assertArrayEquals( "does not match", new String[] { "foo", "bar" },
+          result.get( 10, TimeUnit.SECONDS ).toArray() );
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    verify( mockService, times( 1 ) ).getRolesForUser( null, "concurrent" );
+    assertEquals( 1, decorator.getStatistics().get( "getRolesForUser" ).getLoads() );
+  }
+
+  @Test
+  public void testStaleEntryIsServedWhileRefreshing() throws Exception {
+    IUserRoleListService mockService = mock( IUserRoleListService.class );
+    when( mockService.getRolesForUser( null, "stale" ) ).thenReturn( Arrays.asList( "fresh" ) );
+    // entries put in the region by anyone else are due for a refresh
+    CachingUserRoleListServiceDecorator decorator = new CachingUserRoleListServiceDecorator( mockService );
+    PentahoSystem.getCacheManager( null ).putInRegionCache( "userRoleListCache", "roles by user_stale",
+      Arrays.asList( "stale" ) );
+
+    assertArrayEquals( "does not match", new String[] { "stale" },
+      decorator.getRolesForUser( null, "stale" ).toArray() );
+
+    verify( mockService, timeout( 10000 ) ).getRolesForUser( null, "stale" );
+    long deadline = System.currentTimeMillis() + 10000;
+    List<String> roles = decorator.getRolesForUser( null, "stale" );
+    while ( !roles.contains( "fresh" ) && System.currentTimeMillis() < deadline ) {
+      Thread.sleep( 10 );
+      roles = decorator.getRolesForUser( null, "stale" );
+    }
+    assertArrayEquals( "does not match", new String[] { "fresh" }, roles.toArray() );
+    assertEquals( 1, decorator.getStatistics().get( "getRolesForUser" ).getRefreshes() );
+  }
+
+  @Test
+  public void testStatistics() throws Exception {
+    IUserRoleListService mockService = mock( IUserRoleListService.class );
+    when( mockService.getUsersInRole( null, "statistics" ) ).thenReturn( Arrays.asList( "foo", "bar" ) );
+
+    CachingUserRoleListServiceDecorator decorator = new CachingUserRoleListServiceDecorator( mockService );
+    decorator.getUsersInRole( null, "statistics" );
+    decorator.getUsersInRole( null, "statistics" );
+    decorator.getUsersInRole( null, "statistics" );
+
+    CachingUserRoleListServiceDecorator.OperationStatistics statistics =
+      decorator.getStatistics().get( "getUsersInRole" );
+    assertEquals( 1, statistics.getMisses() );
+    assertEquals( 2, statistics.getHits() );
+    assertEquals( 1, statistics.getLoads() );
+    assertEquals( 0, statistics.getRefreshes() );
+  }
+
+  @Test( expected = UnsupportedOperationException.class )
+  public void testResultsCannotBeModified() throws Exception {
+    IUserRoleListService mockService = mock( IUserRoleListService.class );
+    when( mockService.getAllUsers( null ) ).thenReturn( new ArrayList<>( Arrays.asList( "foo", "bar" ) ) );
+
+    CachingUserRoleListServiceDecorator decorator = new CachingUserRoleListServiceDecorator( mockService );
+    decorator.getAllUsers( null ).add( "baz" );
+  }
 }
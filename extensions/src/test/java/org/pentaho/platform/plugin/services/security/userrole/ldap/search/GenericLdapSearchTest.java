@@ -0,0 +1,228 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.platform.plugin.services.security.userrole.ldap.search;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.ldap.core.ContextSource;
+
+import javax.naming.NamingEnumeration;
+import javax.naming.NamingException;
+import javax.naming.directory.DirContext;
+import javax.naming.directory.SearchControls;
+import javax.naming.directory.SearchResult;
+import javax.naming.ldap.Control;
+import javax.naming.ldap.LdapContext;
+import javax.naming.ldap.PagedResultsControl;
+import javax.naming.ldap.PagedResultsResponseControl;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class GenericLdapSearchTest {
+
+  private static final byte[] COOKIE = { 1, 2, 3 };
+
+  private ContextSource contextSource;
+
+  private LdapContext context;
+
+  private GenericLdapSearch search;
+
+  private final List<Object> handled = new ArrayList<>();
+
+  @Before
+  public void setUp() {
+    LdapSearchParams params = mock( LdapSearchParams.class );
+    when( params.getBase() ).thenReturn( "ou=users" ); //$NON-NLS-1$
+    when( params.getFilter() ).thenReturn( "(objectClass=person)" ); //$NON-NLS-1$
+    when( params.getFilterArgs() ).thenReturn( new Object[0] );
+    when( params.getSearchControls() ).thenReturn( new SearchControls() );
+    LdapSearchParamsFactory paramsFactory = mock( LdapSearchParamsFactory.class );
+    when( paramsFactory.createParams( any() ) ).thenReturn( params );
+
+    context = mock( LdapContext.class );
+    contextSource = mock( ContextSource.class );
+    when( contextSource.getReadOnlyContext() ).thenReturn( context );
+    search = new GenericLdapSearch( contextSource, paramsFactory );
+    search.setPageSize( 2 );
+  }
+
+  @Test
+  public void testPagesThroughAllResults() throws Exception {
+    Results first = new Results( "a", "b" );
+    Results second = new Results( "c" );
+    when( context.search( anyString(), anyString(), any( Object[].class ), any( SearchControls.class ) ) )
+        .thenReturn( first, second );
+    when( context.getResponseControls() ).thenReturn( response( COOKIE ), response( new byte[0] ) );
+
+    assertEquals( 3, search.search( new Object[0] ).size() );
+
+    List<Control[]> requests = requestControls( 3 );
+    assertPaged( requests.get( 0 ), 2, null );
+    assertPaged( requests.get( 1 ), 2, COOKIE );
+    assertNull( requests.get( 2 ) );
+    assertTrue( first.closed && second.closed );
+    verify( context ).close();
+  }
+
+  @Test
+  public void testHandlerStopsEarly() throws Exception {
+    Results first = new Results( "a", "b" );
+    Results abandoned = new Results();
+    when( context.search( anyString(), anyString(), any( Object[].class ), any( SearchControls.class ) ) )
+        .thenReturn( first, abandoned );
+    when( context.getResponseControls() ).thenReturn( response( COOKIE ) );
+
+    search.search( new Object[0], result -> {
+      handled.add( result );
+      return false;
+    } );
+
+    assertEquals( 1, handled.size() );
+    List<Control[]> requests = requestControls( 3 );
+    assertPaged( requests.get( 0 ), 2, null );
+    // the abandon request, sent before the paging control is cleared
+    assertPaged( requests.get( 1 ), 0, COOKIE );
+    assertNull( requests.get( 2 ) );
+    assertTrue( first.closed && abandoned.closed );
+    verify( context ).close();
+  }
+
+  @Test
+  public void testFailureWhilePagingIsThrown() throws Exception {
+    Results first = new Results( "a", "b" );
+    when( context.search( anyString(), anyString(), any( Object[].class ), any( SearchControls.class ) ) )
+        .thenReturn( first ).thenThrow( new NamingException( "connection lost" ) ); //$NON-NLS-1$
+    when( context.getResponseControls() ).thenReturn( response( COOKIE ) );
+
+    try {
+      search.search( new Object[0], result -> handled.add( result ) );
+      fail( "the failed page should be reported" ); //$NON-NLS-1$
+    } catch ( org.springframework.ldap.NamingException e ) {
+      assertTrue( e.getCause() instanceof NamingException );
+    }
+
+    assertEquals( 2, handled.size() );
+    List<Control[]> requests = requestControls( 3 );
+    assertNull( requests.get( 2 ) );
+    verify( context ).close();
+  }
+
+  @Test
+  public void testSearchesWithoutPagingWhenTheContextCannotPage() throws Exception {
+    DirContext dirContext = mock( DirContext.class );
+    when( contextSource.getReadOnlyContext() ).thenReturn( dirContext );
+    Results results = new Results( "a", "b", "c" );
+    when( dirContext.search( anyString(), anyString(), any( Object[].class ), any( SearchControls.class ) ) )
+        .thenReturn( results );
+
+    assertEquals( 3, search.search( new Object[0] ).size() );
+
+    verify( dirContext, times( 1 ) )
+        .search( anyString(), anyString(), any( Object[].class ), any( SearchControls.class ) );
+    assertTrue( results.closed );
+    verify( dirContext ).close();
+  }
+
+  @Test
+  public void testSearchesWithoutPagingWithoutAPageSize() throws Exception {
+    search.setPageSize( 0 );
+    when( context.search( anyString(), anyString(), any( Object[].class ), any( SearchControls.class ) ) )
+        .thenReturn( new Results( "a" ) );
+
+    assertEquals( 1, search.search( new Object[0] ).size() );
+
+    verify( context, never() ).setRequestControls( any() );
+    verify( context ).close();
+  }
+
+  private List<Control[]> requestControls( final int count ) throws NamingException {
+    ArgumentCaptor<Control[]> captor = ArgumentCaptor.forClass( Control[].class );
+    verify( context, times( count ) ).setRequestControls( captor.capture() );
+    return captor.getAllValues();
+  }
+
+  private static void assertPaged( final Control[] controls, final int pageSize, final byte[] cookie )
+    throws Exception {
+    assertEquals( 1, controls.length );
+    assertTrue( controls[0] instanceof PagedResultsControl );
+    assertArrayEquals( new PagedResultsControl( pageSize, cookie, Control.NONCRITICAL ).getEncodedValue(),
+        controls[0].getEncodedValue() );
+  }
+
+  private static Control[] response( final byte[] cookie ) {
+    PagedResultsResponseControl control = mock( PagedResultsResponseControl.class );
+    when( control.getCookie() ).thenReturn( cookie );
+    return new Control[] { control };
+  }
+
+  /**
+   * One page of search results, named after the entries.
+   */
+  private static class Results implements NamingEnumeration<SearchResult> {
+
+    private final Iterator<String> names;
+
+    private boolean closed;
+
+    Results( final String... names ) {
+      this.names = Arrays.asList( names ).iterator();
+    }
+
+    @Override
+    public SearchResult next() {
+      if ( !names.hasNext() ) {
+        throw new NoSuchElementException();
+      }
+      return new SearchResult( names.next(), null, null );
+    }
+
+    @Override
+    public boolean hasMore() {
+      return names.hasNext();
+    }
+
+    @Override
+    public void close() {
+      closed = true;
+    }
+
+    @Override
+    public boolean hasMoreElements() {
+      return hasMore();
+    }
+
+    @Override
+    public SearchResult nextElement() {
+      return next();
+    }
+  }
+}
@@ -0,0 +1,54 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.platform.plugin.services.security.userrole.ldap.search;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+public class UnionizingLdapSearchTest {
+
+  @Test
+  public void testStopsAfterTheSearchTheHandlerEnded() {
+    LdapSearch first = mock( LdapSearch.class );
+    LdapSearch second = mock( LdapSearch.class );
+    doAnswer( invocation -> {
+      LdapSearchResultHandler handler = invocation.getArgument( 1 );
+      if ( handler.handleResult( "a" ) ) { //$NON-NLS-1$
+        handler.handleResult( "b" ); //$NON-NLS-1$
+      }
+      return null;
+    } ).when( first ).search( any( Object[].class ), any( LdapSearchResultHandler.class ) );
+    UnionizingLdapSearch search = new UnionizingLdapSearch( new LinkedHashSet<>( Arrays.asList( first, second ) ) );
+
+    List<Object> handled = new ArrayList<>();
+    search.search( new Object[0], result -> {
+      handled.add( result );
+      return false;
+    } );
+
+    assertEquals( Arrays.asList( "a" ), handled ); //$NON-NLS-1$
+    verify( second, never() ).search( any( Object[].class ), any( LdapSearchResultHandler.class ) );
+  }
+}
@@ -50,6 +50,7 @@ import org.springframework.beans.factory.NoSuchBeanDefinitionException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.ws.rs.WebApplicationException;
 import jakarta.ws.rs.core.MultivaluedMap;
+import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.StreamingOutput;
 import jakarta.xml.bind.JAXBContext;
@@ -1659,6 +1660,35 @@ public class FileResourceTest {
     verify( fileResource.fileService ).doGetTree( PATH_ID, depth, filter, showHidden, includeAcls, includeSysDirs );
   }
 
+  @Test
+  public void testDoGetTreeStream() {
+    Integer depth = -1;
+    String filter = "filter";
+    Boolean showHidden = Boolean.TRUE;
+    Boolean includeAcls = Boolean.TRUE;
+    Boolean includeSysDirs = Boolean.FALSE;
+
+    StreamingOutput mockStreamingOutput = mock( StreamingOutput.class );
+    doReturn( mockStreamingOutput ).when( fileResource.fileService )
+      .doGetTreeStream( PATH_ID, depth, filter, showHidden, includeAcls, includeSysDirs, MediaType.APPLICATION_JSON_TYPE,
+        null );
+    Response mockResponse = mock( Response.class );
+    doReturn( mockResponse ).when( fileResource ).buildOkResponse( mockStreamingOutput, MediaType.APPLICATION_JSON );
+
+    assertEquals( mockResponse,
+      fileResource.doGetTreeStreamAsJson( PATH_ID, depth, filter, showHidden, includeAcls, includeSysDirs ) );
+
+    // root not found
+    doReturn( null ).when( fileResource.fileService )
+      .doGetTreeStream( PATH_ID, depth, filter, showHidden, includeAcls, includeSysDirs, MediaType.APPLICATION_XML_TYPE,
+        null );
+    Response mockNoContentResponse = mock( Response.class );
+    doReturn( mockNoContentResponse ).when( fileResource ).buildStatusResponse( Response.Status.NO_CONTENT );
+
+    assertEquals( mockNoContentResponse,
+      fileResource.doGetTreeStreamAsXml( PATH_ID, depth, filter, showHidden, includeAcls, includeSysDirs ) );
+  }
+
   @Test
   public void testDoGetChildren() {
 
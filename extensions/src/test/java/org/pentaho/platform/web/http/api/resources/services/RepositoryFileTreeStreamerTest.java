@@ -0,0 +1,181 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.platform.web.http.api.resources.services;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.platform.api.engine.IAuthorizationPolicy;
+import org.pentaho.platform.api.repository2.unified.IUnifiedRepository;
+import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+import org.pentaho.platform.api.repository2.unified.RepositoryFileTree;
+import org.pentaho.platform.api.repository2.unified.RepositoryRequest;
+import org.pentaho.platform.api.repository2.unified.webservices.RepositoryFileDto;
+import org.pentaho.platform.api.repository2.unified.webservices.RepositoryFileTreeDto;
+import org.pentaho.platform.repository2.unified.webservices.DefaultUnifiedRepositoryWebService;
+import org.pentaho.platform.repository2.unified.webservices.RepositoryFileTreeAdapter;
+
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.StreamingOutput;
+import jakarta.ws.rs.ext.MessageBodyWriter;
+import jakarta.ws.rs.ext.Providers;
+import jakarta.xml.bind.JAXBContext;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class RepositoryFileTreeStreamerTest {
+
+  private final ObjectMapper mapper = new ObjectMapper();
+
+  private IUnifiedRepository repository;
+
+  private Providers providers;
+
+  private FileService fileService;
+
+  private RepositoryFileTree tree;
+
+  @Before
+  @SuppressWarnings( "unchecked" )
+  public void setUp() throws Exception {
+    List<RepositoryFileTree> a = new ArrayList<>( Arrays.asList(
+      leaf( file( "/a/z.prpt", "Zed" ) ),
+      leaf( file( "/a/y.prpt", "why" ) ),
+      new RepositoryFileTree( folder( "/a/.hidden", "hidden" ).hidden( true ).build(), null ),
+      new RepositoryFileTree( folder( "/a/empty", "empty" ).build(), new ArrayList<>() ) ) );
+    tree = new RepositoryFileTree( folder( "/", "" ).build(), new ArrayList<>( Arrays.asList(
+      new RepositoryFileTree( folder( "/b", "Beta" ).build(),
+        new ArrayList<>( Arrays.asList( leaf( file( "/b/other.xaction", "other" ) ) ) ) ),
+      new RepositoryFileTree( folder( "/public", "public" ).build(), new ArrayList<>() ),
+      new RepositoryFileTree( folder( "/home", "home" ).build(), new ArrayList<>() ),
+      new RepositoryFileTree( folder( "/a", "alpha" ).build(), a ) ) ) );
+
+    repository = mock( IUnifiedRepository.class );
+    when( repository.getTree( any( RepositoryRequest.class ) ) ).thenAnswer( invocation -> tree );
+
+    MessageBodyWriter<RepositoryFileDto> fileWriter = mock( MessageBodyWriter.class );
+    doAnswer( invocation -> {
+      mapper.writeValue( (OutputStream) invocation.getArgument( 6 ), invocation.getArgument( 0 ) );
+      return null;
+    } ).when( fileWriter ).writeTo( any(), any(), any(), any(), any(), any(), any() );
+    providers = mock( Providers.class );
+    when( providers.getMessageBodyWriter( eq( RepositoryFileDto.class ), any(), any(), any() ) )
+      .thenReturn( fileWriter );
+
+    // doGetTree goes through the repository web service, which marshals the tree the repository returns
+    DefaultUnifiedRepositoryWebService repoWs = mock( DefaultUnifiedRepositoryWebService.class );
+    when( repoWs.getTreeFromRequest( any( RepositoryRequest.class ) ) ).thenAnswer( invocation -> {
+      RepositoryRequest request = invocation.getArgument( 0 );
+      return new RepositoryFileTreeAdapter( request ).marshal( repository.getTree( request ) );
+    } );
+    fileService = spy( FileService.class );
+    fileService.repository = repository;
+    fileService.policy = mock( IAuthorizationPolicy.class );
+    doReturn( repoWs ).when( fileService ).getRepoWs();
+  }
+
+  @Test
+  public void testWritesTheDocumentOfDoGetTree() throws Exception {
+    JsonNode expected =
+      mapper.readTree( mapper.writeValueAsBytes( fileService.doGetTree( "/", -1, null, true, false, false ) ) );
+
+    JsonNode streamed = mapper.readTree( stream( "/", MediaType.APPLICATION_JSON_TYPE ) );
+
+    assertEquals( expected, streamed );
+    JsonNode children = streamed.get( "children" );
+    assertEquals( Arrays.asList( "/a", "/b", "/home", "/public" ), paths( children ) );
+    assertEquals( Arrays.asList( "/a/.hidden", "/a/empty", "/a/y.prpt", "/a/z.prpt" ),
+      paths( children.get( 0 ).get( "children" ) ) );
+    assertFalse( children.get( 0 ).get( "children" ).get( 0 ).has( "children" ) );
+  }
+
+  @Test
+  public void testWritesTheFilesOfDoGetTreeAsXml() throws Exception {
+    RepositoryFileTreeDto expected = fileService.doGetTree( "/", -1, null, true, false, false );
+
+    RepositoryFileTreeDto streamed = (RepositoryFileTreeDto) JAXBContext.newInstance( RepositoryFileTreeDto.class )
+      .createUnmarshaller().unmarshal( new ByteArrayInputStream( stream( "/", MediaType.APPLICATION_XML_TYPE ) ) );
+
+    assertEquals( expected.getFile().getPath(), streamed.getFile().getPath() );
+    assertEquals( expected.getChildren().size(), streamed.getChildren().size() );
+    for ( int i = 0; i < expected.getChildren().size(); i++ ) {
+      assertEquals( mapper.valueToTree( expected.getChildren().get( i ).getFile() ),
+        mapper.valueToTree( streamed.getChildren().get( i ).getFile() ) );
+    }
+  }
+
+  @Test
+  public void testReadsTheTreeWithOneRequest() throws Exception {
+    stream( "/", MediaType.APPLICATION_JSON_TYPE );
+
+    verify( repository, times( 1 ) ).getTree( any( RepositoryRequest.class ) );
+  }
+
+  @Test
+  public void testMissingRoot() {
+    tree = null;
+
+    assertNull( fileService.doGetTreeStream( ":missing", -1, null, true, false, false,
+      MediaType.APPLICATION_JSON_TYPE, providers ) );
+  }
+
+  private byte[] stream( final String pathId, final MediaType mediaType ) throws Exception {
+    StreamingOutput output =
+      fileService.doGetTreeStream( pathId, -1, null, true, false, false, mediaType, providers );
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    output.write( bytes );
+    return bytes.toByteArray();
+  }
+
+  private static List<String> paths( final JsonNode children ) {
+    List<String> paths = new ArrayList<>();
+    for ( JsonNode child : children ) {
+      paths.add( child.get( "file" ).get( "path" ).asText() );
+    }
+    return paths;
+  }
+
+  private static RepositoryFileTree leaf( final RepositoryFile file ) {
+    return new RepositoryFileTree( file, new ArrayList<>() );
+  }
+
+  private static RepositoryFile.Builder folder( final String path, final String title ) {
+    return new RepositoryFile.Builder( path, name( path ) ).path( path ).title( title ).folder( true );
+  }
+
+  private static RepositoryFile file( final String path, final String title ) {
+    return new RepositoryFile.Builder( path, name( path ) ).path( path ).title( title ).build();
+  }
+
+  private static String name( final String path ) {
+    return path.equals( "/" ) ? "" : path.substring( path.lastIndexOf( '/' ) + 1 );
+  }
+}
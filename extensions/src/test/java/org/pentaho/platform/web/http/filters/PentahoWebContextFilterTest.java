@@ -17,6 +17,7 @@ import org.apache.commons.lang.StringEscapeUtils;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 import org.pentaho.platform.api.engine.IApplicationContext;
 import org.pentaho.platform.api.engine.ICacheManager;
@@ -45,11 +46,13 @@ import jakarta.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
@@ -77,6 +80,8 @@ public class PentahoWebContextFilterTest {
   private java.io.ByteArrayOutputStream mockResponseOutputStream;
 
   private PentahoWebContextFilter pentahoWebContextFilter;
+  private IPluginManager mockPluginManager;
+  private IPentahoSession mockSession;
 
   @After
   public void cleanup() throws IOException, ServletException {
@@ -173,9 +178,9 @@ public class PentahoWebContextFilterTest {
     doReturn( mockUserSettingsService ).when( this.pentahoWebContextFilter ).getUserSettingsService();
 
     this.sessionName = "testSession";
-    IPentahoSession mockSession = mock( IPentahoSession.class );
-    when( mockSession.getName() ).thenReturn( this.sessionName );
-    doReturn( mockSession ).when( this.pentahoWebContextFilter ).getSession();
+    this.mockSession = mock( IPentahoSession.class );
+    when( this.mockSession.getName() ).thenReturn( this.sessionName );
+    doReturn( this.mockSession ).when( this.pentahoWebContextFilter ).getSession();
 
     this.reservedChars = new ArrayList<>( 2 );
     this.reservedChars.add('r');
@@ -183,8 +188,8 @@ public class PentahoWebContextFilterTest {
     doReturn( this.reservedChars ).when( this.pentahoWebContextFilter ).getRepositoryReservedChars();
 
 
-    IPluginManager mockPluginManager = mock( IPluginManager.class );
-    doReturn( mockPluginManager ).when( this.pentahoWebContextFilter ).getPluginManager();
+    this.mockPluginManager = mock( IPluginManager.class );
+    doReturn( this.mockPluginManager ).when( this.pentahoWebContextFilter ).getPluginManager();
     doReturn( PentahoWebContextFilter.DEFAULT_SERVICES_ROOT )
             .when( this.pentahoWebContextFilter ).initializeServicesPath();
 
@@ -458,6 +463,53 @@ public class PentahoWebContextFilterTest {
     }
   }
 
+  @Test
+  public void testCompiledWebContextIsReusedUntilPluginsReload() throws ServletException, IOException {
+    when( this.mockPluginManager.getExternalResourcesForContext( "global" ) )
+      .thenReturn( Collections.singletonList( "content/plugin/global.js" ) );
+
+    String first = executeWebContextFilter();
+    when( this.mockSession.getName() ).thenReturn( "otherSession" );
+    this.mockResponseOutputStream.reset();
+    String second = executeWebContextFilter();
+
+    verify( this.mockPluginManager, times( 1 ) ).getExternalResourcesForContext( "global" );
+    assertTrue( first.contains( getWebContextVarDefinition( "SESSION_NAME", this.sessionName ) ) );
+    assertTrue( second.contains( getWebContextVarDefinition( "SESSION_NAME", "otherSession" ) ) );
+    assertTrue( second.contains( getWebContextVarDefinition( "HOME_FOLDER", "/home/otherSession" ) ) );
+    assertTrue( second.contains( "content/plugin/global.js" ) );
+    assertEquals( first.replace( this.sessionName, "otherSession" ), second );
+
+    when( this.mockPluginManager.getExternalResourcesForContext( "global" ) )
+      .thenReturn( Collections.singletonList( "content/plugin/reloaded.js" ) );
+    this.pentahoWebContextFilter.onPluginManagerReload();
+    this.mockResponseOutputStream.reset();
+    String reloaded = executeWebContextFilter();
+
+    verify( this.mockPluginManager, times( 2 ) ).getExternalResourcesForContext( "global" );
+    assertTrue( reloaded.contains( "content/plugin/reloaded.js" ) );
+  }
+
+  @Test
+  public void testUnchangedWebContextIsNotModified() throws ServletException, IOException {
+    executeWebContextFilter();
+    ArgumentCaptor<String> eTag = ArgumentCaptor.forClass( String.class );
+    verify( this.mockResponse ).setHeader( eq( "ETag" ), eTag.capture() );
+
+    when( this.mockRequest.getHeader( "If-None-Match" ) ).thenReturn( eTag.getValue() );
+    this.mockResponseOutputStream.reset();
+    String response = executeWebContextFilter();
+
+    assertEquals( "", response );
+    verify( this.mockResponse ).setStatus( HttpServletResponse.SC_NOT_MODIFIED );
+
+    when( this.mockSession.getName() ).thenReturn( "otherSession" );
+    response = executeWebContextFilter();
+
+    assertTrue( response.contains( getWebContextVarDefinition( "SESSION_NAME", "otherSession" ) ) );
+    verify( this.mockResponse, times( 1 ) ).setStatus( HttpServletResponse.SC_NOT_MODIFIED );
+  }
+
   @Test
   public void testDoGetWithFullyQualifiedUrlDefaultLocalReferer() throws ServletException, IOException {
     when( this.mockRequest.getHeader( "referer" ) ).thenReturn( this.serverAddress + "/other/app" );
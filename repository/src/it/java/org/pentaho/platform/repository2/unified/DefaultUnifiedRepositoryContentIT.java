@@ -1801,6 +1801,39 @@ public class DefaultUnifiedRepositoryContentIT extends DefaultUnifiedRepositoryB
     assertEquals( 1, root.getChildren().size() );
   }
 
+  @Test
+  public void testGetTreeParallel() throws Exception {
+    loginAsSysTenantAdmin();
+
+    ITenant tenantAcme =
+        tenantManager.createTenant( systemTenant, TENANT_ID_ACME, tenantAdminRoleName, tenantAuthenticatedRoleName,
+            ANONYMOUS_ROLE_NAME );
+    userRoleDao.createUser( tenantAcme, USERNAME_ADMIN, PASSWORD, "", new String[] { tenantAdminRoleName } );
+
+    login( USERNAME_ADMIN, tenantAcme, new String[] { tenantAdminRoleName, tenantAuthenticatedRoleName } );
+    userRoleDao.createUser( tenantAcme, USERNAME_SUZY, PASSWORD, "", null );
+
+    for ( String filter : new String[] { null, "*uz*", "*|FOLDERS" } ) {
+      RepositoryRequest request = new RepositoryRequest( ClientRepositoryPaths.getRootFolderPath(), true, -1, filter );
+      RepositoryFileTree sequential = repo.getTree( request );
+      request.setParallel( true );
+      RepositoryFileTree parallel = repo.getTree( request );
+      assertSameTree( sequential, parallel );
+    }
+  }
+
+  private static void assertSameTree( final RepositoryFileTree expected, final RepositoryFileTree actual ) {
+    assertEquals( expected.getFile(), actual.getFile() );
+    if ( expected.getChildren() == null ) {
+      assertNull( actual.getChildren() );
+      return;
+    }
+    assertEquals( expected.getChildren().size(), actual.getChildren().size() );
+    for ( int i = 0; i < expected.getChildren().size(); i++ ) {
+      assertSameTree( expected.getChildren().get( i ), actual.getChildren().get( i ) );
+    }
+  }
+
   @Test
   public void testGetTreeWithFileTypeFilter() throws Exception {
     RepositoryFileTree root = null;
@@ -13,6 +13,8 @@
 
 package org.pentaho.platform.repository.usersettings;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import org.pentaho.platform.api.engine.IAuthorizationPolicy;
 import org.pentaho.platform.api.engine.IPentahoSession;
 import org.pentaho.platform.api.repository2.unified.IUnifiedRepository;
@@ -32,20 +34,52 @@ import org.slf4j.LoggerFactory;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
-
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stores user settings as metadata of the user's home folder, and global user settings as metadata of the tenant's
+ * <code>/etc</code> folder.
+ * <p>
+ * The settings read from either folder are cached as immutable snapshots, keyed by tenant and user, so reading a
+ * setting is a map lookup once the snapshot of the user and that of the tenant are loaded. Snapshots are dropped by
+ * the methods of this service that change settings; changes made to the folder metadata in other ways are picked up
+ * once a snapshot expires, {@link #SNAPSHOT_EXPIRY_MINUTES} minutes after it was read.
+ */
 public class UserSettingService implements IAnyUserSettingService, IUserSettingService {
 
   public static final String SETTING_PREFIX = "_USERSETTING"; //$NON-NLS-1$
   IPentahoSession session = null;
   private static final byte[] lock = new byte[0];
 
+  static final int MAX_CACHED_USERS = 1000;
+
+  static final long SNAPSHOT_EXPIRY_MINUTES = 10;
+
   protected IUnifiedRepository repository;
   private Logger log = LoggerFactory.getLogger( getClass() );
 
+  // (tenant id, user name) -> settings of the user
+  private final Cache<List<String>, Map<String, String>> userSnapshots = CacheBuilder.newBuilder()
+    .maximumSize( MAX_CACHED_USERS ).expireAfterWrite( SNAPSHOT_EXPIRY_MINUTES, TimeUnit.MINUTES ).build();
+
+  // tenant id -> global settings of the tenant
+  private final Cache<String, Map<String, String>> globalSnapshots = CacheBuilder.newBuilder()
+    .expireAfterWrite( SNAPSHOT_EXPIRY_MINUTES, TimeUnit.MINUTES ).build();
+
+  // incremented by every change, so that a snapshot read before a change is not cached after it
+  private final AtomicLong changeCount = new AtomicLong();
+
+  // held while counting a change and dropping its snapshot, and while checking the count and caching a snapshot
+  private final Object snapshotLock = new Object();
+
   public UserSettingService( IUnifiedRepository repository ) {
     this.repository = repository;
   }
@@ -60,7 +94,8 @@ public class UserSettingService implements IAnyUserSettingService, IUserSettingS
 
   // delete all settings for a given user
   public void deleteUserSettings() {
-    String homePath = ClientRepositoryPaths.getUserHomeFolderPath( PentahoSessionHolder.getSession().getName() );
+    String name = PentahoSessionHolder.getSession().getName();
+    String homePath = ClientRepositoryPaths.getUserHomeFolderPath( name );
     Serializable id = repository.getFile( homePath ).getId();
 
     Map<String, Serializable> fileMetadata = repository.getFileMetadata( id );
@@ -71,17 +106,17 @@ public class UserSettingService implements IAnyUserSettingService, IUserSettingS
         finalMetadata.put( key, entry.getValue() );
       }
     }
-    repository.setFileMetadata( id, finalMetadata );
+    try {
+      repository.setFileMetadata( id, finalMetadata );
+    } finally {
+      userSettingsChanged( name );
+    }
   }
 
   // ////////////////////////////////////////////////////////////////////////////////////////////////
   // USER SETTINGS METHODS
   // ////////////////////////////////////////////////////////////////////////////////////////////////
 
-  private static UserSetting createSetting( String name, Serializable value ) {
-    return createSetting( name, value.toString() );
-  }
-
   private static UserSetting createSetting( String name, String value ) {
     UserSetting setting = new UserSetting();
     setting.setSettingName( name );
@@ -92,36 +127,19 @@ public class UserSettingService implements IAnyUserSettingService, IUserSettingS
   public List<IUserSetting> getUserSettings() {
     // get the global settings and the user settings
     // merge unseen global settings into the user settings list
-    List<IUserSetting> userSettings = new ArrayList<IUserSetting>();
-
-    String tentantHomePath = ClientRepositoryPaths.getEtcFolderPath();
-    Serializable tenantHomeId = repository.getFile( tentantHomePath ).getId();
-    Map<String, Serializable> tenantMetadata = repository.getFileMetadata( tenantHomeId );
+    Map<String, String> globalSettings = getGlobalSettingsSnapshot();
+    Map<String, String> userSettings = getUserSettingsSnapshot( PentahoSessionHolder.getSession().getName() );
 
-    for ( Map.Entry<String, Serializable> entry : tenantMetadata.entrySet() ) {
-      String key = entry.getKey();
-      if ( key.startsWith( SETTING_PREFIX ) ) {
-        UserSetting setting = createSetting( key.substring( SETTING_PREFIX.length() ), entry.getValue() );
-        userSettings.add( setting );
+    List<IUserSetting> settings = new ArrayList<IUserSetting>( globalSettings.size() + userSettings.size() );
+    for ( Map.Entry<String, String> entry : globalSettings.entrySet() ) {
+      if ( !userSettings.containsKey( entry.getKey() ) ) {
+        settings.add( createSetting( entry.getKey(), entry.getValue() ) );
       }
     }
-
-    String homePath = ClientRepositoryPaths.getUserHomeFolderPath( PentahoSessionHolder.getSession().getName() );
-    Serializable userHomeId = repository.getFile( homePath ).getId();
-    Map<String, Serializable> userMetadata = repository.getFileMetadata( userHomeId );
-
-    for ( Map.Entry<String, Serializable> entry : userMetadata.entrySet() ) {
-      String key = entry.getKey();
-      if ( key.startsWith( SETTING_PREFIX ) ) {
-        UserSetting setting = createSetting( key.substring( SETTING_PREFIX.length() ), entry.getValue() );
-        // see if a global setting exists which will be overridden
-        if ( userSettings.contains( setting ) ) {
-          userSettings.remove( setting );
-        }
-        userSettings.add( setting );
-      }
+    for ( Map.Entry<String, String> entry : userSettings.entrySet() ) {
+      settings.add( createSetting( entry.getKey(), entry.getValue() ) );
     }
-    return userSettings;
+    return settings;
   }
 
   public IUserSetting getUserSetting( String settingName, String defaultValue ) {
@@ -129,33 +147,12 @@ public class UserSettingService implements IAnyUserSettingService, IUserSettingS
     boolean hasAuth = PentahoSessionHolder.getSession().getAttribute( "SPRING_SECURITY_CONTEXT" ) != null;
     if ( hasAuth ) {
       try {
-        String homePath = ClientRepositoryPaths.getUserHomeFolderPath( PentahoSessionHolder.getSession().getName() );
-
-        Serializable userHomeId = repository.getFile( homePath ).getId();
-        Map<String, Serializable> userMetadata = repository.getFileMetadata( userHomeId );
-
-        for ( Map.Entry<String, Serializable> entry : userMetadata.entrySet() ) {
-          String key = entry.getKey();
-          if ( key.startsWith( SETTING_PREFIX ) ) {
-            String settingFromKey = key.substring( SETTING_PREFIX.length() );
-            if ( settingFromKey.equals( settingName ) ) {
-              return createSetting( settingFromKey, entry.getValue() );
-            }
-          }
+        String value = getUserSettingsSnapshot( PentahoSessionHolder.getSession().getName() ).get( settingName );
+        if ( value == null ) {
+          value = getGlobalSettingsSnapshot().get( settingName );
         }
-
-        String tentantHomePath = ClientRepositoryPaths.getEtcFolderPath();
-        Serializable tenantHomeId = repository.getFile( tentantHomePath ).getId();
-        Map<String, Serializable> tenantMetadata = repository.getFileMetadata( tenantHomeId );
-
-        for ( Map.Entry<String, Serializable> entry : tenantMetadata.entrySet() ) {
-          String key = entry.getKey();
-          if ( key.startsWith( SETTING_PREFIX ) ) {
-            String settingFromKey = key.substring( SETTING_PREFIX.length() );
-            if ( settingFromKey.equals( settingName ) ) {
-              return createSetting( settingFromKey, entry.getValue() );
-            }
-          }
+        if ( value != null ) {
+          return createSetting( settingName, value );
         }
       } catch ( Throwable ignored ) {
         // if anything goes wrong with authentication (anonymous user) or permissions
@@ -191,6 +188,8 @@ public class UserSettingService implements IAnyUserSettingService, IUserSettingS
             + settingValue, e );
         }
         log.error( "Error storing user setting", e );
+      } finally {
+        userSettingsChanged( name );
       }
     }
   }
@@ -208,7 +207,11 @@ public class UserSettingService implements IAnyUserSettingService, IUserSettingS
           finalMetadata.put( key, entry.getValue() );
         }
       }
-      repository.setFileMetadata( id, finalMetadata );
+      try {
+        repository.setFileMetadata( id, finalMetadata );
+      } finally {
+        userSettingsChanged( username );
+      }
     } else {
       throw new SecurityException( "Unauthorized User" );
     }
@@ -219,17 +222,8 @@ public class UserSettingService implements IAnyUserSettingService, IUserSettingS
     List<IUserSetting> userSettings = new ArrayList<>();
     if ( canAdminister() ) {
       try {
-        String homePath = ClientRepositoryPaths.getUserHomeFolderPath( username );
-
-        Serializable userHomeId = repository.getFile( homePath ).getId();
-        Map<String, Serializable> userMetadata = repository.getFileMetadata( userHomeId );
-
-        for ( Map.Entry<String, Serializable> entry : userMetadata.entrySet() ) {
-          String key = entry.getKey();
-          if ( key.startsWith( SETTING_PREFIX ) ) {
-            String settingFromKey = key.substring( SETTING_PREFIX.length() );
-            userSettings.add( createSetting( settingFromKey, entry.getValue() ) );
-          }
+        for ( Map.Entry<String, String> entry : getUserSettingsSnapshot( username ).entrySet() ) {
+          userSettings.add( createSetting( entry.getKey(), entry.getValue() ) );
         }
       } catch ( Throwable ignored ) {
         // if anything goes wrong with authentication (anonymous user) or permissions
@@ -248,19 +242,9 @@ public class UserSettingService implements IAnyUserSettingService, IUserSettingS
     // if the user does not have the setting, check if a global setting exists
     if ( canAdminister() ) {
       try {
-        String homePath = ClientRepositoryPaths.getUserHomeFolderPath( PentahoSessionHolder.getSession().getName() );
-
-        Serializable userHomeId = repository.getFile( homePath ).getId();
-        Map<String, Serializable> userMetadata = repository.getFileMetadata( userHomeId );
-
-        for ( Map.Entry<String, Serializable> entry : userMetadata.entrySet() ) {
-          String key = entry.getKey();
-          if ( key.startsWith( SETTING_PREFIX ) ) {
-            String settingFromKey = key.substring( SETTING_PREFIX.length() );
-            if ( settingFromKey.equals( settingName ) ) {
-              return createSetting( settingFromKey, entry.getValue() );
-            }
-          }
+        String value = getUserSettingsSnapshot( PentahoSessionHolder.getSession().getName() ).get( settingName );
+        if ( value != null ) {
+          return createSetting( settingName, value );
         }
       } catch ( Throwable ignored ) {
         // if anything goes wrong with authentication (anonymous user) or permissions
@@ -300,6 +284,8 @@ public class UserSettingService implements IAnyUserSettingService, IUserSettingS
               + settingValue, e );
           }
           log.error( "Error storing user setting", e );
+        } finally {
+          userSettingsChanged( username );
         }
       }
     } else {
@@ -312,31 +298,19 @@ public class UserSettingService implements IAnyUserSettingService, IUserSettingS
   // ////////////////////////////////////////////////////////////////////////////////////////////////
 
   public IUserSetting getGlobalUserSetting( String settingName, String defaultValue ) {
-    String tentantHomePath = ClientRepositoryPaths.getEtcFolderPath();
-    Serializable tenantHomeId = repository.getFile( tentantHomePath ).getId();
-    Map<String, Serializable> tenantMetadata = repository.getFileMetadata( tenantHomeId );
-
-    String key = SETTING_PREFIX + settingName;
-    Serializable value = tenantMetadata.get( key );
+    String value = getGlobalSettingsSnapshot().get( settingName );
     if ( value != null ) {
-      return createSetting( settingName, value.toString() );
+      return createSetting( settingName, value );
     }
 
     return createSetting( settingName, defaultValue );
   }
 
   public List<IUserSetting> getGlobalUserSettings() {
-
-    String tentantHomePath = ClientRepositoryPaths.getEtcFolderPath();
-    Serializable tenantHomeId = repository.getFile( tentantHomePath ).getId();
-    Map<String, Serializable> tenantMetadata = repository.getFileMetadata( tenantHomeId );
-
-    List<IUserSetting> userSettings = new ArrayList<IUserSetting>( tenantMetadata.size() );
-    for ( Map.Entry<String, Serializable> entry : tenantMetadata.entrySet() ) {
-      String key = entry.getKey();
-      if ( key.startsWith( SETTING_PREFIX ) ) {
-        userSettings.add( createSetting( key.substring( SETTING_PREFIX.length() ), entry.getValue() ) );
-      }
+    Map<String, String> globalSettings = getGlobalSettingsSnapshot();
+    List<IUserSetting> userSettings = new ArrayList<IUserSetting>( globalSettings.size() );
+    for ( Map.Entry<String, String> entry : globalSettings.entrySet() ) {
+      userSettings.add( createSetting( entry.getKey(), entry.getValue() ) );
     }
     return userSettings;
   }
@@ -347,8 +321,84 @@ public class UserSettingService implements IAnyUserSettingService, IUserSettingS
       Serializable tenantHomeId = repository.getFile( tentantHomePath ).getId();
       Map<String, Serializable> tenantMetadata = repository.getFileMetadata( tenantHomeId );
       tenantMetadata.put( SETTING_PREFIX + settingName, settingValue );
-      repository.setFileMetadata( tenantHomeId, tenantMetadata );
+      try {
+        repository.setFileMetadata( tenantHomeId, tenantMetadata );
+      } finally {
+        globalSettingsChanged();
+      }
+    }
+  }
+
+  // ////////////////////////////////////////////////////////////////////////////////////////////////
+  // SNAPSHOTS
+  // ////////////////////////////////////////////////////////////////////////////////////////////////
+
+  /**
+   * @return the settings stored in the home folder of the given user, by name
+   */
+  private Map<String, String> getUserSettingsSnapshot( String username ) {
+    List<String> key = Arrays.asList( getTenantId(), username );
+    Map<String, String> snapshot = userSnapshots.getIfPresent( key );
+    if ( snapshot == null ) {
+      long changes = changeCount.get();
+      Serializable userHomeId = repository.getFile( ClientRepositoryPaths.getUserHomeFolderPath( username ) ).getId();
+      snapshot = toSnapshot( repository.getFileMetadata( userHomeId ) );
+      synchronized ( snapshotLock ) {
+        if ( changes == changeCount.get() ) {
+          userSnapshots.put( key, snapshot );
+        }
+      }
     }
+    return snapshot;
+  }
+
+  /**
+   * @return the global settings of the current tenant, by name
+   */
+  private Map<String, String> getGlobalSettingsSnapshot() {
+    String key = getTenantId();
+    Map<String, String> snapshot = globalSnapshots.getIfPresent( key );
+    if ( snapshot == null ) {
+      long changes = changeCount.get();
+      Serializable tenantHomeId = repository.getFile( ClientRepositoryPaths.getEtcFolderPath() ).getId();
+      snapshot = toSnapshot( repository.getFileMetadata( tenantHomeId ) );
+      synchronized ( snapshotLock ) {
+        if ( changes == changeCount.get() ) {
+          globalSnapshots.put( key, snapshot );
+        }
+      }
+    }
+    return snapshot;
+  }
+
+  private void userSettingsChanged( String username ) {
+    synchronized ( snapshotLock ) {
+      changeCount.incrementAndGet();
+      userSnapshots.invalidate( Arrays.asList( getTenantId(), username ) );
+    }
+  }
+
+  private void globalSettingsChanged() {
+    synchronized ( snapshotLock ) {
+      changeCount.incrementAndGet();
+      globalSnapshots.invalidate( getTenantId() );
+    }
+  }
+
+  private static Map<String, String> toSnapshot( Map<String, Serializable> metadata ) {
+    Map<String, String> settings = new LinkedHashMap<String, String>();
+    for ( Map.Entry<String, Serializable> entry : metadata.entrySet() ) {
+      String key = entry.getKey();
+      if ( key.startsWith( SETTING_PREFIX ) && entry.getValue() != null ) {
+        settings.put( key.substring( SETTING_PREFIX.length() ), entry.getValue().toString() );
+      }
+    }
+    return Collections.unmodifiableMap( settings );
+  }
+
+  private static String getTenantId() {
+    IPentahoSession pentahoSession = PentahoSessionHolder.getSession();
+    return String.valueOf( pentahoSession != null ? pentahoSession.getAttribute( IPentahoSession.TENANT_ID_KEY ) : null );
   }
 
   protected boolean canAdminister() {
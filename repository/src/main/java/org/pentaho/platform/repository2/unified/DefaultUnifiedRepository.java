@@ -535,6 +535,11 @@ public class DefaultUnifiedRepository implements IUnifiedRepository {
     return repositoryFileDao.getFileMetadata( fileId );
   }
 
+  public Map<Serializable, Map<String, Serializable>> getFilesMetadata( final List<Serializable> fileIds ) {
+    Assert.notNull( fileIds, "File IDs must not be null" );
+    return repositoryFileDao.getFilesMetadata( fileIds );
+  }
+
   public List<Character> getReservedChars() {
     return repositoryFileDao.getReservedChars();
   }
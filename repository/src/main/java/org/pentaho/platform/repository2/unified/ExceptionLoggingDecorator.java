@@ -589,6 +589,14 @@ public class ExceptionLoggingDecorator implements IUnifiedRepository {
     }, Messages.getInstance().getString( "ExceptionLoggingDecorator.getFileMetadata", fileId ) ); //$NON-NLS-1$
   }
 
+  public Map<Serializable, Map<String, Serializable>> getFilesMetadata( final List<Serializable> fileIds ) {
+    return callLogThrow( new Callable<Map<Serializable, Map<String, Serializable>>>() {
+      public Map<Serializable, Map<String, Serializable>> call() throws Exception {
+        return delegatee.getFilesMetadata( fileIds );
+      }
+    }, Messages.getInstance().getString( "ExceptionLoggingDecorator.getFilesMetadata", fileIds ) ); //$NON-NLS-1$
+  }
+
   public List<Character> getReservedChars() {
     return callLogThrow( new Callable<List<Character>>() {
       public List<Character> call() throws Exception {
@@ -14,6 +14,7 @@
 package org.pentaho.platform.repository2.unified;
 
 import java.io.Serializable;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -117,6 +118,14 @@ public interface IRepositoryFileDao {
 
   Map<String, Serializable> getFileMetadata( final Serializable fileId );
 
+  default Map<Serializable, Map<String, Serializable>> getFilesMetadata( final List<Serializable> fileIds ) {
+    Map<Serializable, Map<String, Serializable>> metadata = new LinkedHashMap<Serializable, Map<String, Serializable>>();
+    for ( Serializable fileId : fileIds ) {
+      metadata.put( fileId, getFileMetadata( fileId ) );
+    }
+    return metadata;
+  }
+
   List<Character> getReservedChars();
 
   List<Locale> getAvailableLocalesForFileById( final Serializable fileId );
@@ -25,21 +25,47 @@ import org.pentaho.platform.engine.core.system.PentahoSystem;
 import org.pentaho.platform.repository.RepositoryFilenameUtils;
 import org.pentaho.platform.util.web.MimeHelper;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
+/**
+ * Collects the content of a repository file and stores it in the repository when flushed or closed.
+ * <p>
+ * Content is kept in memory up to a threshold (see {@link #setSpillThreshold(long)}); beyond it, everything written so
+ * far is moved to a temporary file and later writes are appended to that file. Flushing streams the file into the
+ * repository, so large generated content such as report output does not have to fit on the heap. The temporary file
+ * is deleted when the stream is closed or reset.
+ */
 public class RepositoryFileOutputStream extends ByteArrayOutputStream implements ISourcesStreamEvents {
 
   private static final String TRANS_EXT = "ktr";
   private static final String JOB_EXT = "kjb";
 
+  /**
+   * System setting holding the number of bytes kept in memory before content is moved to a temporary file; a negative
+   * value keeps all content in memory.
+   */
+  public static final String SPILL_THRESHOLD_SETTING = "repository-output-spill-threshold"; //$NON-NLS-1$
+  public static final long DEFAULT_SPILL_THRESHOLD = 32L * 1024 * 1024;
+
+  private static final int SPILL_BUFFER_SIZE = 64 * 1024;
+
   protected boolean hidden = false;
   protected String path = null;
   protected IUnifiedRepository repository;
@@ -50,6 +76,11 @@ public class RepositoryFileOutputStream extends ByteArrayOutputStream implements
   protected boolean flushed = false;
   protected boolean forceFlush = true;
   protected ArrayList<IStreamListener> listeners = new ArrayList<>();
+  protected long spillThreshold = getDefaultSpillThreshold();
+
+  private Path spillFile;
+  private OutputStream spillStream;
+  private long spillSize;
 
   public RepositoryFileOutputStream( final String path, final boolean autoCreateUniqueFileName,
       final boolean autoCreateDirStructure, final IUnifiedRepository repository, final boolean hidden ) {
@@ -156,17 +187,19 @@ public class RepositoryFileOutputStream extends ByteArrayOutputStream implements
     }
     super.flush();
 
-    byte[] data = toByteArray();
-
-    if ( !forceFlush && data.length == 0 ) {
+    if ( !forceFlush && getContentSize() == 0 ) {
       for ( IStreamListener listener : listeners ) {
         listener.streamComplete();
       }
       flushed = true;
       return;
     }
-    ByteArrayInputStream bis = new ByteArrayInputStream( data );
+    try ( InputStream bis = openContent() ) {
+      store( bis );
+    }
+  }
 
+  private void store( InputStream bis ) throws IOException {
     // make an effort to determine the correct mime type, default to application/octet-stream
     String extension = RepositoryFilenameUtils.getExtension( path );
     String mimeType = "application/octet-stream"; //$NON-NLS-1$
@@ -289,13 +322,190 @@ public class RepositoryFileOutputStream extends ByteArrayOutputStream implements
   @Override
   public void close() throws IOException {
     if ( !closed ) {
-      flush();
-      closed = true;
-      reset();
+      try {
+        flush();
+      } finally {
+        closed = true;
+        reset();
+      }
+    }
+  }
+
+  /**
+   * Sets the number of bytes to keep in memory before the content is moved to a temporary file. Takes effect on the
+   * next write; content already moved stays in the file.
+   *
+   * @param spillThreshold number of bytes, or a negative value to keep all content in memory
+   */
+  public void setSpillThreshold( long spillThreshold ) {
+    this.spillThreshold = spillThreshold;
+  }
+
+  public long getSpillThreshold() {
+    return spillThreshold;
+  }
+
+  /**
+   * @return whether the content has been moved to a temporary file
+   */
+  public synchronized boolean isSpilled() {
+    return spillFile != null;
+  }
+
+  @Override
+  public synchronized void write( int b ) {
+    if ( spillFile == null && !spill( 1 ) ) {
+      super.write( b );
+      return;
+    }
+    try {
+      spillStream.write( b );
+      spillSize++;
+    } catch ( IOException e ) {
+      throw new UncheckedIOException( e );
+    }
+  }
+
+  @Override
+  public synchronized void write( byte[] b, int off, int len ) {
+    if ( spillFile == null && !spill( len ) ) {
+      super.write( b, off, len );
+      return;
+    }
+    try {
+      spillStream.write( b, off, len );
+      spillSize += len;
+    } catch ( IOException e ) {
+      throw new UncheckedIOException( e );
+    }
+  }
+
+  /**
+   * Moves the content to a temporary file if writing the given number of bytes more would exceed the threshold.
+   *
+   * @return whether the content is in a temporary file now
+   */
+  private boolean spill( int len ) {
+    if ( spillThreshold < 0 || (long) count + len <= spillThreshold ) {
+      return false;
+    }
+    Path file = null;
+    try {
+      file = Files.createTempFile( "repository-output-", ".tmp" ); //$NON-NLS-1$ //$NON-NLS-2$
+      spillStream = new BufferedOutputStream( Files.newOutputStream( file ), SPILL_BUFFER_SIZE );
+      spillStream.write( buf, 0, count );
+    } catch ( IOException e ) {
+      discardSpillFile( file );
+      throw new UncheckedIOException( e );
+    }
+    spillFile = file;
+    spillSize = count;
+    // let go of the memory
+    buf = new byte[ 32 ];
+    count = 0;
+    return true;
+  }
+
+  private long getContentSize() {
+    return spillFile != null ? spillSize : count;
+  }
+
+  /**
+   * Opens the content written so far, without copying it.
+   */
+  private synchronized InputStream openContent() throws IOException {
+    if ( spillFile == null ) {
+      return new ByteArrayInputStream( buf, 0, count );
+    }
+    spillStream.flush();
+    return new BufferedInputStream( Files.newInputStream( spillFile ), SPILL_BUFFER_SIZE );
+  }
+
+  @Override
+  public synchronized void reset() {
+    super.reset();
+    if ( spillFile != null ) {
+      discardSpillFile( spillFile );
+      spillFile = null;
+      spillSize = 0;
+    }
+  }
+
+  private void discardSpillFile( Path file ) {
+    try {
+      if ( spillStream != null ) {
+        spillStream.close();
+      }
+    } catch ( IOException e ) {
+      // the file goes away anyway
+    } finally {
+      spillStream = null;
+    }
+    if ( file != null ) {
+      try {
+        Files.deleteIfExists( file );
+      } catch ( IOException e ) {
+        file.toFile().deleteOnExit();
+      }
+    }
+  }
+
+  @Override
+  public synchronized int size() {
+    return (int) Math.min( Integer.MAX_VALUE, getContentSize() );
+  }
+
+  @Override
+  public synchronized byte[] toByteArray() {
+    if ( spillFile == null ) {
+      return super.toByteArray();
+    }
+    try {
+      spillStream.flush();
+      return Files.readAllBytes( spillFile );
+    } catch ( IOException e ) {
+      throw new UncheckedIOException( e );
+    }
+  }
+
+  @Override
+  public synchronized void writeTo( OutputStream out ) throws IOException {
+    if ( spillFile == null ) {
+      super.writeTo( out );
+      return;
+    }
+    spillStream.flush();
+    Files.copy( spillFile, out );
+  }
+
+  @Override
+  public synchronized String toString() {
+    return spillFile == null ? super.toString() : new String( toByteArray(), Charset.defaultCharset() );
+  }
+
+  @Override
+  public synchronized String toString( String charsetName ) throws UnsupportedEncodingException {
+    return spillFile == null ? super.toString( charsetName ) : new String( toByteArray(), charsetName );
+  }
+
+  @Override
+  public synchronized String toString( Charset charset ) {
+    return spillFile == null ? super.toString( charset ) : new String( toByteArray(), charset );
+  }
+
+  private static long getDefaultSpillThreshold() {
+    String threshold = PentahoSystem.getSystemSetting( SPILL_THRESHOLD_SETTING, null );
+    if ( StringUtils.isBlank( threshold ) ) {
+      return DEFAULT_SPILL_THRESHOLD;
+    }
+    try {
+      return Long.parseLong( threshold.trim() );
+    } catch ( NumberFormatException e ) {
+      return DEFAULT_SPILL_THRESHOLD;
     }
   }
 
-  IRepositoryFileData convert( Converter converter, ByteArrayInputStream bis, String mimeType ) {
+  IRepositoryFileData convert( Converter converter, InputStream bis, String mimeType ) {
     final IRepositoryFileData payload;
     if ( converter != null ) {
       payload = converter.convert( bis, charsetName, mimeType );
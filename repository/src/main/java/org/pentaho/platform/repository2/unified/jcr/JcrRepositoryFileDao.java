@@ -19,11 +19,13 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.EnumSet;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.Executors;
 
 import javax.jcr.AccessDeniedException;
 import javax.jcr.Item;
@@ -37,6 +39,7 @@ import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 import javax.jcr.lock.Lock;
 
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.pentaho.platform.api.locale.IPentahoLocale;
@@ -58,6 +61,7 @@ import org.pentaho.platform.repository2.messages.Messages;
 import org.pentaho.platform.repository2.unified.IRepositoryFileAclDao;
 import org.pentaho.platform.repository2.unified.IRepositoryFileDao;
 import org.pentaho.platform.repository2.unified.ServerRepositoryPaths;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.extensions.jcr.JcrCallback;
 import org.springframework.extensions.jcr.JcrTemplate;
 import org.springframework.util.Assert;
@@ -68,7 +72,7 @@ import org.springframework.util.StringUtils;
  * 
  * @author mlowery
  */
-public class JcrRepositoryFileDao implements IRepositoryFileDao {
+public class JcrRepositoryFileDao implements IRepositoryFileDao, DisposableBean {
   private static final Log logger = LogFactory.getLog( JcrRepositoryFileDao.class );
 
   // ~ Static fields/initializers
@@ -92,6 +96,10 @@ public class JcrRepositoryFileDao implements IRepositoryFileDao {
 
   private IRepositoryAccessVoterManager accessVoterManager;
 
+  private int treeWalkerThreads = Runtime.getRuntime().availableProcessors();
+
+  private ParallelTreeBuilder parallelTreeBuilder;
+
   // ~ Constructors
   // ====================================================================================================
 
@@ -1068,8 +1076,11 @@ public class JcrRepositoryFileDao implements IRepositoryFileDao {
     return (RepositoryFileTree) jcrTemplate.execute( new JcrCallback() {
       @Override
       public Object doInJcr( final Session session ) throws RepositoryException, IOException {
-        PentahoJcrConstants pentahoJcrConstants = new PentahoJcrConstants( session );
         String absPath = pathConversionHelper.relToAbs( repositoryRequest.getPath() );
+        if ( repositoryRequest.isParallel() ) {
+          return getParallelTreeBuilder().getTree( session, absPath, repositoryRequest );
+        }
+        PentahoJcrConstants pentahoJcrConstants = new PentahoJcrConstants( session );
         return JcrRepositoryFileUtils.getTree( session, pentahoJcrConstants, pathConversionHelper, lockHelper, absPath,
             repositoryRequest, accessVoterManager );
       }
@@ -1173,11 +1184,67 @@ public class JcrRepositoryFileDao implements IRepositoryFileDao {
     } );
   }
 
+  @Override
+  @SuppressWarnings( "unchecked" )
+  public Map<Serializable, Map<String, Serializable>> getFilesMetadata( final List<Serializable> fileIds ) {
+    Assert.notNull( fileIds, "File IDs must not be null" );
+    return (Map<Serializable, Map<String, Serializable>>) jcrTemplate.execute( new JcrCallback() {
+      @Override
+      public Object doInJcr( Session session ) throws IOException, RepositoryException {
+        Map<Serializable, Map<String, Serializable>> metadata =
+            new LinkedHashMap<Serializable, Map<String, Serializable>>( fileIds.size() );
+        for ( Serializable fileId : fileIds ) {
+          metadata.put( fileId, JcrRepositoryFileUtils.getFileMetadata( session, fileId ) );
+        }
+        return metadata;
+      }
+    } );
+  }
+
   @Override
   public List<Character> getReservedChars() {
     return JcrRepositoryFileUtils.getReservedChars();
   }
 
+  private synchronized ParallelTreeBuilder getParallelTreeBuilder() {
+    if ( parallelTreeBuilder == null ) {
+      BasicThreadFactory threadFactory = new BasicThreadFactory.Builder()
+          .namingPattern( "repository-tree-walker-%d" ) //$NON-NLS-1$
+          .daemon( true )
+          .build();
+      parallelTreeBuilder =
+          new ParallelTreeBuilder( jcrTemplate, pathConversionHelper, lockHelper, accessVoterManager, Executors
+              .newFixedThreadPool( treeWalkerThreads, threadFactory ) );
+    }
+    return parallelTreeBuilder;
+  }
+
+  /**
+   * Stops the threads of the parallel tree walk, if it was ever used.
+   * 
+   * @see org.springframework.beans.factory.DisposableBean#destroy()
+   */
+  @Override
+  public synchronized void destroy() {
+    if ( parallelTreeBuilder != null ) {
+      parallelTreeBuilder.shutdown();
+      parallelTreeBuilder = null;
+    }
+  }
+
+  public int getTreeWalkerThreads() {
+    return treeWalkerThreads;
+  }
+
+  /**
+   * Sets the number of threads shared by all tree requests that ask for a parallel walk. Each thread holds its own
+   * JCR session while it walks a subtree. Defaults to the number of available processors.
+   */
+  public void setTreeWalkerThreads( final int treeWalkerThreads ) {
+    Assert.isTrue( treeWalkerThreads > 0, "Tree walker threads must be greater than zero" );
+    this.treeWalkerThreads = treeWalkerThreads;
+  }
+
   public IRepositoryDefaultAclHandler getDefaultAclHandler() {
     return defaultAclHandler;
   }
@@ -26,6 +26,7 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Properties;
+import java.util.Set;
 import java.util.regex.Pattern;
 
 import javax.jcr.AccessDeniedException;
@@ -60,7 +61,6 @@ import org.pentaho.platform.api.repository2.unified.IRepositoryVersionManager;
 import org.pentaho.platform.api.repository2.unified.IUnifiedRepository;
 import org.pentaho.platform.api.repository2.unified.RepositoryFile;
 import org.pentaho.platform.api.repository2.unified.RepositoryFileAcl;
-import org.pentaho.platform.api.repository2.unified.RepositoryFilePermission;
 import org.pentaho.platform.api.repository2.unified.RepositoryFileSid;
 import org.pentaho.platform.api.repository2.unified.RepositoryFileTree;
 import org.pentaho.platform.api.repository2.unified.RepositoryRequest;
@@ -1181,11 +1181,17 @@ public class JcrRepositoryFileUtils {
     Assert.isTrue( fileItem.isNode(), "The specified item must be a node. Ensure the provided path corresponds to a valid node in the repository." );
     Node fileNode = (Node) fileItem;
 
-    return getTreeByNode( session, pentahoJcrConstants, pathConversionHelper, lockHelper, fileNode, repositoryRequest
-        .getDepth(), repositoryRequest.getChildNodeFilter(), repositoryRequest.isShowHidden(), accessVoterManager,
-        repositoryRequest.getTypes(), new MutableBoolean( false ), repositoryRequest.isIncludeSystemFolders(),
-        absPath );
-
+    TreeAclResolver aclResolver = new TreeAclResolver( session, pentahoJcrConstants, accessVoterManager );
+    RepositoryFileTree tree =
+        getTreeByNode( session, pentahoJcrConstants, pathConversionHelper, lockHelper, fileNode, repositoryRequest
+            .getDepth(), repositoryRequest.getChildNodeFilter(), repositoryRequest.isShowHidden(), aclResolver,
+            repositoryRequest.getTypes(), new MutableBoolean( false ), repositoryRequest.isIncludeSystemFolders(),
+            absPath );
+    if ( logger.isDebugEnabled() ) {
+      logger.debug( String.format( "tree '%s': %d ACL reads, %d ACL reads and %d access checks saved", absPath, //$NON-NLS-1$
+          aclResolver.getAclReads(), aclResolver.getAclReadsSaved(), aclResolver.getAccessChecksSaved() ) );
+    }
+    return tree;
   }
 
   /**
@@ -1215,8 +1221,8 @@ public class JcrRepositoryFileUtils {
    *          The filter sent to JCR to retrieve defining which files are in scope
    * @param showHidden
    *          Whether to return hidden files
-   * @param accessVoterManager
-   *          See IRepositoryAccessVoterManager
+   * @param aclResolver
+   *          Resolves ACLs and READ access for the nodes of this tree walk, reading each ACL at most once
    * @param types
    *          <code>FILE_TYPE_FILTERS</code> Types of files to return including FILES, FOLDERS, FILES_FOLDERS
    * @param foundFiltered
@@ -1229,71 +1235,36 @@ public class JcrRepositoryFileUtils {
    */
   private static RepositoryFileTree getTreeByNode( final Session session, final PentahoJcrConstants pentahoJcrConstants,
       final IPathConversionHelper pathConversionHelper, final ILockHelper lockHelper, final Node fileNode,
-      final int depth, final String childNodeFilter, final boolean showHidden,
-      IRepositoryAccessVoterManager accessVoterManager, RepositoryRequest.FILES_TYPE_FILTER types,
-      MutableBoolean foundFiltered, final boolean includeSystemFolders, final String rootPath )
-      throws RepositoryException {
+      final int depth, final String childNodeFilter, final boolean showHidden, final TreeAclResolver aclResolver,
+      RepositoryRequest.FILES_TYPE_FILTER types, MutableBoolean foundFiltered, final boolean includeSystemFolders,
+      final String rootPath ) throws RepositoryException {
 
     RepositoryFile rootFile =
         nodeToFile( session, pentahoJcrConstants, pathConversionHelper, lockHelper, fileNode, false, null );
-    if ( ( !showHidden && rootFile.isHidden() ) || rootFile.isAclNode() || ( !accessVoterManager.hasAccess( rootFile,
-        RepositoryFilePermission.READ, JcrRepositoryFileAclUtils.getAcl( session, pentahoJcrConstants, rootFile
-            .getId() ), PentahoSessionHolder.getSession() ) ) ) {
+    if ( ( !showHidden && rootFile.isHidden() ) || rootFile.isAclNode() || !aclResolver.hasReadAccess( rootFile ) ) {
       return null;
     }
     List<RepositoryFileTree> children;
-    HashSet<Node> childrenFolderSet;
     // if depth is neither negative (indicating unlimited depth) nor positive (indicating at least one more level
     // to go)
     if ( depth != 0 ) {
       children = new ArrayList<RepositoryFileTree>();
-      int numberOfPasses = childNodeFilter != null && !childNodeFilter.equals( "*" ) ? 2 : 1;
-
-      // get Filtered Children set
-      HashSet<Node> filteredChildrenSet;
-      filteredChildrenSet = new HashSet<Node>();
-      NodeIterator childNodes = fileNode.getNodes( childNodeFilter );
-      while ( childNodes.hasNext() ) {
-        Node childNode = childNodes.nextNode();
-
-        boolean pentahoFolder = isPentahoFolder( pentahoJcrConstants, childNode );
-        if ( !( !pentahoFolder && types == RepositoryRequest.FILES_TYPE_FILTER.FOLDERS || pentahoFolder
-            && types == RepositoryRequest.FILES_TYPE_FILTER.FILES ) ) {
-          // do not to include (skip) system_folder children that are at root level if includeSystemFolders is false
-          if ( !( !includeSystemFolders && ( rootPath.equals( childNode.getParent().getPath() ) && isSystemFolder(
-            session, childNode ) ) ) ) {
-            filteredChildrenSet.add( childNode );
-          }
-        }
-      }
-
-      // Now get the unfiltered folder set not already in Filtered Set
-      childrenFolderSet = new HashSet<Node>();
-      if ( numberOfPasses == 2 ) {
-        if ( isPentahoFolder( pentahoJcrConstants, fileNode ) ) {
-          childNodes = fileNode.getNodes();
-          while ( childNodes.hasNext() ) {
-            Node childNode = childNodes.nextNode();
-            boolean pentahoFolder = isPentahoFolder( pentahoJcrConstants, childNode );
-            if ( pentahoFolder ) {
-              childrenFolderSet.add( childNode );
-            }
-          }
-        }
-      }
+      TreeChildNodes childNodes =
+          getTreeChildNodes( session, pentahoJcrConstants, fileNode, childNodeFilter, types, includeSystemFolders,
+              rootPath );
 
       // Now work on the unfiltered set of folders, if any, add them only if file have been found somewhere down the
       // tree
-      for ( Node childNode : childrenFolderSet ) {
+      for ( Node childNode : childNodes.folderChildren ) {
         checkNodeForTree( childNode, children, session, pentahoJcrConstants, pathConversionHelper, childNodeFilter,
-            lockHelper, depth, showHidden, accessVoterManager, types, foundFiltered, false, includeSystemFolders, rootPath );
+            lockHelper, depth, showHidden, aclResolver, types, foundFiltered, false, includeSystemFolders, rootPath );
       }
 
       // And finally, add Children in filtered
-      for ( Node childNode : filteredChildrenSet ) {
+      for ( Node childNode : childNodes.filteredChildren ) {
         foundFiltered.setValue( true );
         checkNodeForTree( childNode, children, session, pentahoJcrConstants, pathConversionHelper, childNodeFilter,
-            lockHelper, depth, showHidden, accessVoterManager, types, foundFiltered, true, includeSystemFolders, rootPath );
+            lockHelper, depth, showHidden, aclResolver, types, foundFiltered, true, includeSystemFolders, rootPath );
       }
 
       children.removeIf( Objects::isNull );
@@ -1304,6 +1275,62 @@ public class JcrRepositoryFileUtils {
     return new RepositoryFileTree( rootFile, children );
   }
 
+  /**
+   * The child nodes of a folder that a tree walk visits. <code>filteredChildren</code> holds the children that
+   * satisfied the childNodeFilter and type filter, <code>folderChildren</code> holds every child folder when a name
+   * filter is in effect, so that files matching the filter further down the tree can still be found.
+   */
+  static class TreeChildNodes {
+    final Set<Node> filteredChildren;
+
+    final Set<Node> folderChildren;
+
+    TreeChildNodes( final Set<Node> filteredChildren, final Set<Node> folderChildren ) {
+      this.filteredChildren = filteredChildren;
+      this.folderChildren = folderChildren;
+    }
+  }
+
+  static TreeChildNodes getTreeChildNodes( final Session session, final PentahoJcrConstants pentahoJcrConstants,
+      final Node fileNode, final String childNodeFilter, RepositoryRequest.FILES_TYPE_FILTER types,
+      final boolean includeSystemFolders, final String rootPath ) throws RepositoryException {
+    int numberOfPasses = childNodeFilter != null && !childNodeFilter.equals( "*" ) ? 2 : 1;
+
+    // get Filtered Children set
+    HashSet<Node> filteredChildrenSet;
+    filteredChildrenSet = new HashSet<Node>();
+    NodeIterator childNodes = fileNode.getNodes( childNodeFilter );
+    while ( childNodes.hasNext() ) {
+      Node childNode = childNodes.nextNode();
+
+      boolean pentahoFolder = isPentahoFolder( pentahoJcrConstants, childNode );
+      if ( !( !pentahoFolder && types == RepositoryRequest.FILES_TYPE_FILTER.FOLDERS || pentahoFolder
+          && types == RepositoryRequest.FILES_TYPE_FILTER.FILES ) ) {
+        // do not to include (skip) system_folder children that are at root level if includeSystemFolders is false
+        if ( !( !includeSystemFolders && ( rootPath.equals( childNode.getParent().getPath() ) && isSystemFolder(
+          session, childNode ) ) ) ) {
+          filteredChildrenSet.add( childNode );
+        }
+      }
+    }
+
+    // Now get the unfiltered folder set not already in Filtered Set
+    HashSet<Node> childrenFolderSet = new HashSet<Node>();
+    if ( numberOfPasses == 2 ) {
+      if ( isPentahoFolder( pentahoJcrConstants, fileNode ) ) {
+        childNodes = fileNode.getNodes();
+        while ( childNodes.hasNext() ) {
+          Node childNode = childNodes.nextNode();
+          boolean pentahoFolder = isPentahoFolder( pentahoJcrConstants, childNode );
+          if ( pentahoFolder ) {
+            childrenFolderSet.add( childNode );
+          }
+        }
+      }
+    }
+    return new TreeChildNodes( filteredChildrenSet, childrenFolderSet );
+  }
+
   private static boolean isSystemFolder( Session session, Node childNode ) throws RepositoryException {
     Map<String, Serializable> fileMeta = getFileMetadata( session, ( (NodeImpl) childNode ).getNodeId() );
     boolean isSystemFolder = fileMeta.containsKey( IUnifiedRepository.SYSTEM_FOLDER ) ? (Boolean) fileMeta
@@ -1325,20 +1352,30 @@ public class JcrRepositoryFileUtils {
       final IRepositoryAccessVoterManager accessVoterManager, RepositoryRequest.FILES_TYPE_FILTER types,
       MutableBoolean foundFiltered, boolean isRootFiltered, final boolean includeSystemFolders,
       final String rootPath ) throws RepositoryException {
+    checkNodeForTree( childNode, children, session, pentahoJcrConstants, pathConversionHelper, childNodeFilter,
+        lockHelper, depth, showHidden, new TreeAclResolver( session, pentahoJcrConstants, accessVoterManager ), types,
+        foundFiltered, isRootFiltered, includeSystemFolders, rootPath );
+  }
+
+  static void checkNodeForTree( final Node childNode, List<RepositoryFileTree> children, final Session session,
+      final PentahoJcrConstants pentahoJcrConstants, final IPathConversionHelper pathConversionHelper,
+      final String childNodeFilter, final ILockHelper lockHelper, final int depth, final boolean showHidden,
+      final TreeAclResolver aclResolver, RepositoryRequest.FILES_TYPE_FILTER types, MutableBoolean foundFiltered,
+      boolean isRootFiltered, final boolean includeSystemFolders, final String rootPath ) throws RepositoryException {
 
     RepositoryFile file = nodeToFile( session, pentahoJcrConstants, pathConversionHelper, lockHelper, childNode );
     if ( isSupportedNodeType( pentahoJcrConstants, childNode ) ) {
-      RepositoryFileAcl fileAcl;
+      boolean readAccess;
       try {
-        fileAcl = JcrRepositoryFileAclUtils.getAcl( session, pentahoJcrConstants, file.getId() );
+        readAccess = aclResolver.hasReadAccess( file );
       } catch ( AccessDeniedException e ) {
         return;
       }
-      if ( accessVoterManager.hasAccess( file, RepositoryFilePermission.READ, fileAcl, PentahoSessionHolder.getSession() ) ) {
+      if ( readAccess ) {
         MutableBoolean foundFilteredAtomic = new MutableBoolean( !isPentahoFolder( pentahoJcrConstants, childNode ) );
         RepositoryFileTree repositoryFileTree =
             getTreeByNode( session, pentahoJcrConstants, pathConversionHelper, lockHelper, childNode, depth - 1,
-                childNodeFilter, showHidden, accessVoterManager, types, foundFilteredAtomic, includeSystemFolders, rootPath );
+                childNodeFilter, showHidden, aclResolver, types, foundFilteredAtomic, includeSystemFolders, rootPath );
         if ( repositoryFileTree != null && ( foundFilteredAtomic.booleanValue() || isRootFiltered ) ) {
           foundFiltered.setValue( true );
           children.add( repositoryFileTree );
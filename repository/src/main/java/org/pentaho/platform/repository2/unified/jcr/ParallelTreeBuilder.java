@@ -0,0 +1,202 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.platform.repository2.unified.jcr;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import javax.jcr.Item;
+import javax.jcr.Node;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+import org.apache.commons.lang.mutable.MutableBoolean;
+import org.pentaho.platform.api.engine.IPentahoSession;
+import org.pentaho.platform.api.repository2.unified.IRepositoryAccessVoterManager;
+import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+import org.pentaho.platform.api.repository2.unified.RepositoryFileTree;
+import org.pentaho.platform.api.repository2.unified.RepositoryRequest;
+import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
+import org.springframework.extensions.jcr.JcrCallback;
+import org.springframework.extensions.jcr.JcrTemplate;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.util.Assert;
+
+/**
+ * Builds a {@link RepositoryFileTree} by walking the child folders of the tree root concurrently. JCR sessions are not
+ * thread safe, so every child folder is walked by a worker that obtains its own session from the {@link JcrTemplate}
+ * on behalf of the calling user. Children are filtered by the same rules as
+ * {@link JcrRepositoryFileUtils#getTree(Session, PentahoJcrConstants, IPathConversionHelper, ILockHelper, String,
+ * RepositoryRequest, IRepositoryAccessVoterManager)} and sorted once all workers are done, so the result is identical
+ * to a sequential walk.
+ */
+class ParallelTreeBuilder {
+
+  private final JcrTemplate jcrTemplate;
+
+  private final IPathConversionHelper pathConversionHelper;
+
+  private final ILockHelper lockHelper;
+
+  private final IRepositoryAccessVoterManager accessVoterManager;
+
+  private final ExecutorService executor;
+
+  ParallelTreeBuilder( final JcrTemplate jcrTemplate, final IPathConversionHelper pathConversionHelper,
+      final ILockHelper lockHelper, final IRepositoryAccessVoterManager accessVoterManager,
+      final ExecutorService executor ) {
+    this.jcrTemplate = jcrTemplate;
+    this.pathConversionHelper = pathConversionHelper;
+    this.lockHelper = lockHelper;
+    this.accessVoterManager = accessVoterManager;
+    this.executor = executor;
+  }
+
+  RepositoryFileTree getTree( final Session session, final String absPath, final RepositoryRequest repositoryRequest )
+    throws RepositoryException {
+    PentahoJcrConstants pentahoJcrConstants = new PentahoJcrConstants( session );
+    Item fileItem = session.getItem( JcrStringHelper.pathEncode( absPath ) );
+    // items are nodes or properties; this must be a node
+    Assert.isTrue( fileItem.isNode(), "The specified item must be a node. Ensure the provided path corresponds to a valid node in the repository." );
+    Node fileNode = (Node) fileItem;
+
+    RepositoryFile rootFile =
+        JcrRepositoryFileUtils.nodeToFile( session, pentahoJcrConstants, pathConversionHelper, lockHelper, fileNode,
+            false, null );
+    TreeAclResolver aclResolver = new TreeAclResolver( session, pentahoJcrConstants, accessVoterManager );
+    if ( ( !repositoryRequest.isShowHidden() && rootFile.isHidden() ) || rootFile.isAclNode()
+        || !aclResolver.hasReadAccess( rootFile ) ) {
+      return null;
+    }
+    if ( repositoryRequest.getDepth() == 0 ) {
+      return new RepositoryFileTree( rootFile, null );
+    }
+
+    JcrRepositoryFileUtils.TreeChildNodes childNodes =
+        JcrRepositoryFileUtils.getTreeChildNodes( session, pentahoJcrConstants, fileNode, repositoryRequest
+            .getChildNodeFilter(), repositoryRequest.getTypes(), repositoryRequest.isIncludeSystemFolders(), absPath );
+
+    List<RepositoryFileTree> children = new ArrayList<RepositoryFileTree>();
+    List<Future<List<RepositoryFileTree>>> subtrees = new ArrayList<Future<List<RepositoryFileTree>>>();
+    MutableBoolean foundFiltered = new MutableBoolean( false );
+    for ( Node childNode : childNodes.folderChildren ) {
+      subtrees.add( executor.submit( new SubtreeWalker( childNode.getIdentifier(), repositoryRequest, absPath,
+          false ) ) );
+    }
+    for ( Node childNode : childNodes.filteredChildren ) {
+      if ( JcrRepositoryFileUtils.isPentahoFolder( pentahoJcrConstants, childNode ) ) {
+        subtrees.add( executor.submit( new SubtreeWalker( childNode.getIdentifier(), repositoryRequest, absPath,
+            true ) ) );
+      } else {
+        // files have no subtree worth handing off to another session
+        JcrRepositoryFileUtils.checkNodeForTree( childNode, children, session, pentahoJcrConstants,
+            pathConversionHelper, repositoryRequest.getChildNodeFilter(), lockHelper, repositoryRequest.getDepth(),
+            repositoryRequest.isShowHidden(), aclResolver, repositoryRequest.getTypes(), foundFiltered, true,
+            repositoryRequest.isIncludeSystemFolders(), absPath );
+      }
+    }
+    for ( Future<List<RepositoryFileTree>> subtree : subtrees ) {
+      children.addAll( waitFor( subtree ) );
+    }
+
+    children.removeIf( Objects::isNull );
+    Collections.sort( children );
+    return new RepositoryFileTree( rootFile, children );
+  }
+
+  /**
+   * Stops the walker threads. Walks already running are interrupted.
+   */
+  void shutdown() {
+    executor.shutdownNow();
+  }
+
+  private static List<RepositoryFileTree> waitFor( final Future<List<RepositoryFileTree>> subtree )
+    throws RepositoryException {
+    try {
+      return subtree.get();
+    } catch ( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+      throw new RepositoryException( e );
+    } catch ( ExecutionException e ) {
+      Throwable cause = e.getCause();
+      if ( cause instanceof RuntimeException ) {
+        throw (RuntimeException) cause;
+      }
+      if ( cause instanceof Error ) {
+        throw (Error) cause;
+      }
+      throw new RepositoryException( cause );
+    }
+  }
+
+  /**
+   * Walks the subtree of one child of the tree root on the calling user's behalf, in a session of its own.
+   */
+  private class SubtreeWalker implements Callable<List<RepositoryFileTree>> {
+
+    private final String nodeId;
+
+    private final RepositoryRequest repositoryRequest;
+
+    private final String rootPath;
+
+    private final boolean isRootFiltered;
+
+    private final IPentahoSession pentahoSession = PentahoSessionHolder.getSession();
+
+    private final SecurityContext securityContext = SecurityContextHolder.getContext();
+
+    SubtreeWalker( final String nodeId, final RepositoryRequest repositoryRequest, final String rootPath,
+        final boolean isRootFiltered ) {
+      this.nodeId = nodeId;
+      this.repositoryRequest = repositoryRequest;
+      this.rootPath = rootPath;
+      this.isRootFiltered = isRootFiltered;
+    }
+
+    @Override
+    @SuppressWarnings( "unchecked" )
+    public List<RepositoryFileTree> call() {
+      PentahoSessionHolder.setSession( pentahoSession );
+      SecurityContextHolder.setContext( securityContext );
+      try {
+        return (List<RepositoryFileTree>) jcrTemplate.execute( new JcrCallback() {
+          @Override
+          public Object doInJcr( final Session session ) throws RepositoryException, IOException {
+            PentahoJcrConstants pentahoJcrConstants = new PentahoJcrConstants( session );
+            List<RepositoryFileTree> children = new ArrayList<RepositoryFileTree>( 1 );
+            JcrRepositoryFileUtils.checkNodeForTree( session.getNodeByIdentifier( nodeId ), children, session,
+                pentahoJcrConstants, pathConversionHelper, repositoryRequest.getChildNodeFilter(), lockHelper,
+                repositoryRequest.getDepth(), repositoryRequest.isShowHidden(),
+                new TreeAclResolver( session, pentahoJcrConstants, accessVoterManager ), repositoryRequest.getTypes(),
+                new MutableBoolean( false ), isRootFiltered, repositoryRequest.isIncludeSystemFolders(), rootPath );
+            return children;
+          }
+        } );
+      } finally {
+        SecurityContextHolder.clearContext();
+        PentahoSessionHolder.removeSession();
+      }
+    }
+  }
+}
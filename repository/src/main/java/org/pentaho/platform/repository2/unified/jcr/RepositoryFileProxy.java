@@ -19,6 +19,9 @@ import org.apache.commons.lang.StringUtils;
 import org.pentaho.platform.api.locale.IPentahoLocale;
 import org.pentaho.platform.api.repository2.unified.RepositoryFile;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.pentaho.platform.repository2.unified.jcr.sejcr.CredentialsStrategySessionFactory;
+import org.pentaho.platform.repository2.unified.jcr.sejcr.PentahoJcrSessionFactory;
+import org.pentaho.platform.repository2.unified.jcr.sejcr.PooledPentahoJcrSessionFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.extensions.jcr.JcrTemplate;
@@ -635,7 +638,7 @@ public class RepositoryFileProxy extends RepositoryFile {
 
   private void executeOperation( final SessionOperation op ) {
     try {
-      if ( node.getSession().isLive() ) {
+      if ( isSessionUsable( node.getSession() ) ) {
         op.execute( node.getSession() );
       } else {
         template.execute( session -> {
@@ -651,6 +654,29 @@ public class RepositoryFileProxy extends RepositoryFile {
     }
   }
 
+  /**
+   * A pooled session may only be used by the thread it is lent to; once the callback that read the node is done, the
+   * session belongs to the pool again, and the node has to be read anew in a session of the current thread.
+   */
+  private boolean isSessionUsable( Session session ) {
+    if ( !session.isLive() ) {
+      return false;
+    }
+    PooledPentahoJcrSessionFactory sessionPool = getSessionPool();
+    return sessionPool == null || !sessionPool.isPooled( session ) || sessionPool.isBorrowedByCurrentThread( session );
+  }
+
+  private PooledPentahoJcrSessionFactory getSessionPool() {
+    if ( template != null && template.getSessionFactory() instanceof CredentialsStrategySessionFactory ) {
+      PentahoJcrSessionFactory sessionFactory =
+        ( (CredentialsStrategySessionFactory) template.getSessionFactory() ).getSessionFactory();
+      if ( sessionFactory instanceof PooledPentahoJcrSessionFactory ) {
+        return (PooledPentahoJcrSessionFactory) sessionFactory;
+      }
+    }
+    return null;
+  }
+
   private interface SessionOperation {
     void execute( Session session );
   }
@@ -0,0 +1,109 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.platform.repository2.unified.jcr;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+import org.pentaho.platform.api.engine.IPentahoSession;
+import org.pentaho.platform.api.repository2.unified.IRepositoryAccessVoterManager;
+import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+import org.pentaho.platform.api.repository2.unified.RepositoryFileAcl;
+import org.pentaho.platform.api.repository2.unified.RepositoryFilePermission;
+import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
+
+/**
+ * Memoizes ACL reads and READ access decisions for the duration of a single tree walk. A tree walk visits every
+ * folder twice (once when its parent decides whether to descend into it and once as the root of its own subtree), so
+ * without this each ACL would be read from JCR and evaluated by the access voters twice.
+ * <p>
+ * Instances are not thread safe and must not outlive the JCR session they were created with.
+ */
+class TreeAclResolver {
+
+  private final Session session;
+
+  private final PentahoJcrConstants pentahoJcrConstants;
+
+  private final IRepositoryAccessVoterManager accessVoterManager;
+
+  private final IPentahoSession pentahoSession;
+
+  private final Map<Serializable, RepositoryFileAcl> acls = new HashMap<Serializable, RepositoryFileAcl>();
+
+  private final Map<Serializable, Boolean> readAccess = new HashMap<Serializable, Boolean>();
+
+  private int aclReads;
+
+  private int aclReadsSaved;
+
+  private int accessChecksSaved;
+
+  TreeAclResolver( final Session session, final PentahoJcrConstants pentahoJcrConstants,
+      final IRepositoryAccessVoterManager accessVoterManager ) {
+    this.session = session;
+    this.pentahoJcrConstants = pentahoJcrConstants;
+    this.accessVoterManager = accessVoterManager;
+    this.pentahoSession = PentahoSessionHolder.getSession();
+  }
+
+  /**
+   * Returns the ACL of the file with the given id, reading it from the repository only the first time it is asked
+   * for.
+   */
+  RepositoryFileAcl getAcl( final Serializable fileId ) throws RepositoryException {
+    RepositoryFileAcl acl = acls.get( fileId );
+    if ( acl != null ) {
+      aclReadsSaved++;
+      return acl;
+    }
+    acl = JcrRepositoryFileAclUtils.getAcl( session, pentahoJcrConstants, fileId );
+    aclReads++;
+    acls.put( fileId, acl );
+    return acl;
+  }
+
+  /**
+   * Returns whether the current user may read the given file, consulting the access voters only the first time the
+   * file is checked.
+   */
+  boolean hasReadAccess( final RepositoryFile file ) throws RepositoryException {
+    Boolean access = readAccess.get( file.getId() );
+    if ( access != null ) {
+      aclReadsSaved++;
+      accessChecksSaved++;
+      return access;
+    }
+    access = accessVoterManager.hasAccess( file, RepositoryFilePermission.READ, getAcl( file.getId() ),
+        pentahoSession );
+    readAccess.put( file.getId(), access );
+    return access;
+  }
+
+  int getAclReads() {
+    return aclReads;
+  }
+
+  int getAclReadsSaved() {
+    return aclReadsSaved;
+  }
+
+  int getAccessChecksSaved() {
+    return accessChecksSaved;
+  }
+}
@@ -50,6 +50,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Copy-and-paste of {@link JcrSessionFactory} except that this implementation delegates to a {@link
@@ -157,7 +158,7 @@ public class CredentialsStrategySessionFactory implements InitializingBean, Disp
   public PentahoJcrSessionFactory getSessionFactory() {
     if ( sessionFactory == null ) {
       // use default
-      sessionFactory = new GuavaCachePoolPentahoJcrSessionFactory( this.repository, this.workspaceName, null );
+      sessionFactory = new PooledPentahoJcrSessionFactory( this.repository, this.workspaceName, null );
     }
     return sessionFactory;
   }
@@ -367,9 +368,26 @@ public class CredentialsStrategySessionFactory implements InitializingBean, Disp
    * @return
    */
   public Session createSessionProxy( Session session ) {
+    LogoutSuppressingInvocationHandler handler = new LogoutSuppressingInvocationHandler( session );
+    if ( sessionFactory instanceof PooledPentahoJcrSessionFactory ) {
+      handler.setSessionPool( (PooledPentahoJcrSessionFactory) sessionFactory );
+    }
     return (Session) Proxy
         .newProxyInstance( this.getClass().getClassLoader(), new Class[] { Session.class, XASession.class },
-            new LogoutSuppressingInvocationHandler( session ) );
+            handler );
+  }
+
+  /**
+   * Hands a session obtained from {@link #getSession()} back to a pooling session factory. Sessions of other session
+   * factories are left alone, as they are reused or logged out by the factory itself.
+   *
+   * @param session the session proxy
+   */
+  public void releaseSession( Session session ) {
+    if ( session != null && Proxy.isProxyClass( session.getClass() )
+        && Proxy.getInvocationHandler( session ) instanceof LogoutSuppressingInvocationHandler ) {
+      ( (LogoutSuppressingInvocationHandler) Proxy.getInvocationHandler( session ) ).release();
+    }
   }
 
 
@@ -625,6 +643,8 @@ public class CredentialsStrategySessionFactory implements InitializingBean, Disp
 
     private LogoutDelegate logoutDelegate = LogoutDelegate.DefaultLogoutDelegate;
     private final Session target;
+    private PooledPentahoJcrSessionFactory sessionPool;
+    private final AtomicBoolean released = new AtomicBoolean();
 
     public LogoutSuppressingInvocationHandler( Session target ) {
       this.target = target;
@@ -635,13 +655,29 @@ public class CredentialsStrategySessionFactory implements InitializingBean, Disp
       this.logoutDelegate = delegate;
     }
 
+    /**
+     * Makes logging out return the session to the given pool instead, if it was borrowed from it.
+     */
+    public void setSessionPool( PooledPentahoJcrSessionFactory sessionPool ) {
+      this.sessionPool = sessionPool;
+    }
+
+    void release() {
+      // a proxy is handed out once per borrow, so it returns its session at most once
+      if ( sessionPool != null && released.compareAndSet( false, true ) ) {
+        sessionPool.returnSession( target );
+      }
+    }
+
     public Object invoke( Object proxy, Method method, Object[] args ) throws Throwable {
       if ( method.getName().equals( "equals" ) ) {
         return proxy == args[ 0 ] ? Boolean.TRUE : Boolean.FALSE;
       } else if ( method.getName().equals( "hashCode" ) ) {
         return this.hashCode();
       } else if ( method.getName().equals( "logout" ) ) {
-        if ( logoutDelegate.shouldLogout() ) {
+        if ( sessionPool != null && sessionPool.isBorrowed( target ) ) {
+          release();
+        } else if ( logoutDelegate.shouldLogout() ) {
           target.logout();
         }
         return null;
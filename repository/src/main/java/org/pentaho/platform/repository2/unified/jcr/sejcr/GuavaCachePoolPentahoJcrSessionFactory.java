@@ -38,7 +38,11 @@ import java.util.concurrent.atomic.AtomicInteger;
  * be configured with repository.spring.properties
  * <p>
  * Created by nbaker on 6/9/14.
+ *
+ * @deprecated Sessions are keyed by thread, so the cache thrashes once there are more threads and users than it can
+ * hold. Use {@link PooledPentahoJcrSessionFactory} instead.
  */
+@Deprecated
 class GuavaCachePoolPentahoJcrSessionFactory extends NoCachePentahoJcrSessionFactory
   implements PentahoJcrSessionFactory {
 
@@ -20,6 +20,7 @@ import org.springframework.dao.DataAccessException;
 import org.springframework.extensions.jcr.JcrCallback;
 import org.springframework.extensions.jcr.JcrTemplate;
 import org.springframework.extensions.jcr.SessionFactoryUtils;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import javax.jcr.AccessDeniedException;
 import javax.jcr.RepositoryException;
@@ -42,6 +43,11 @@ public class PentahoJcrTemplate extends JcrTemplate {
   // ~ Instance fields
   // =================================================================================================
 
+  /**
+   * Session borrowed by the outermost execute of the current thread, reused by nested executes.
+   */
+  private final ThreadLocal<Session> borrowedSession = new ThreadLocal<>();
+
   // ~ Constructors
   // ====================================================================================================
 
@@ -53,14 +59,25 @@ public class PentahoJcrTemplate extends JcrTemplate {
   // =========================================================================================================
 
   /**
-   * Copy of superclass' execute with pentahoConvertJcrAccessException substitutions.
+   * Copy of superclass' execute with pentahoConvertJcrAccessException substitutions. Outside of a transaction, the
+   * session is borrowed for the duration of the outermost execute of the thread and handed back to the session
+   * factory afterwards.
    */
   @Override
   public Object execute( JcrCallback action, boolean exposeNativeSession ) throws DataAccessException {
 
     Session session = null;
+    boolean borrowed = false;
     try {
-      session = getSession();
+      if ( TransactionSynchronizationManager.hasResource( getSessionFactory() ) || borrowedSession.get() == null ) {
+        session = getSession();
+        borrowed = !SessionFactoryUtils.isSessionThreadBound( session, getSessionFactory() );
+        if ( borrowed ) {
+          borrowedSession.set( session );
+        }
+      } else {
+        session = borrowedSession.get();
+      }
       useSession( session );
 
       Session sessionToExpose = ( exposeNativeSession ? session : createSessionProxy( session ) );
@@ -81,6 +98,10 @@ public class PentahoJcrTemplate extends JcrTemplate {
       // Session will be null if getSession() fails.
       if ( session != null ) {
         releaseSession( session );
+        if ( borrowed ) {
+          borrowedSession.remove();
+          returnSession( session );
+        }
       }
     }
   }
@@ -110,6 +131,15 @@ public class PentahoJcrTemplate extends JcrTemplate {
     }
   }
 
+  /**
+   * Hands a session borrowed by the outermost execute back to a pooling session factory.
+   */
+  private void returnSession( Session session ) {
+    if ( getSessionFactory() instanceof CredentialsStrategySessionFactory ) {
+      ( (CredentialsStrategySessionFactory) getSessionFactory() ).releaseSession( session );
+    }
+  }
+
   @Override
   protected Session getSession() {
     return SessionFactoryUtils.getSession( getSessionFactory(), this.isAllowCreate() );
@@ -0,0 +1,364 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.platform.repository2.unified.jcr.sejcr;
+
+import org.apache.commons.pool2.BaseKeyedPooledObjectFactory;
+import org.apache.commons.pool2.PooledObject;
+import org.apache.commons.pool2.impl.DefaultPooledObject;
+import org.apache.commons.pool2.impl.GenericKeyedObjectPool;
+import org.apache.commons.pool2.impl.GenericKeyedObjectPoolConfig;
+import org.pentaho.platform.api.engine.ISystemConfig;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.jcr.Credentials;
+import javax.jcr.Repository;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.SimpleCredentials;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.NoSuchElementException;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * JCR Session Factory which pools Sessions per user. A Session is borrowed by
+ * {@link PentahoJcrTemplate#execute(org.springframework.extensions.jcr.JcrCallback, boolean)} and returned once the
+ * callback is done, or when the session proxy handed out by {@link CredentialsStrategySessionFactory} is logged out,
+ * so that any thread can reuse the idle sessions of a user.
+ * <p>
+ * The pool is configured with repository.spring.properties: sessions idle for <code>cache-ttl</code> seconds are
+ * logged out, and a user has at most <code>session-pool-max-per-user</code> pooled sessions. A borrower that finds the
+ * limit reached waits up to <code>session-pool-max-wait</code> milliseconds for a session to be returned and is then
+ * given an unpooled session, which is logged out when returned. The wait is kept short by default: all background
+ * work runs as the same repository admin user, and while a request waits it holds up its thread, whereas an unpooled
+ * session only costs a login. A longer wait bounds the number of sessions more strictly at the price of blocking.
+ * <p>
+ * A pooled session belongs to the thread it is lent to until it is returned. Objects that keep items of a session
+ * beyond the callback that read them, like {@link org.pentaho.platform.repository2.unified.jcr.RepositoryFileProxy},
+ * must check {@link #isPooled(Session)} and {@link #isBorrowedByCurrentThread(Session)} before using it again.
+ */
+public class PooledPentahoJcrSessionFactory extends NoCachePentahoJcrSessionFactory
+  implements PentahoJcrSessionFactory {
+
+  private static final Logger logger = LoggerFactory.getLogger( PooledPentahoJcrSessionFactory.class );
+
+  private static final long EVICTION_INTERVAL_MILLIS = 60000L;
+
+  static final int DEFAULT_MAX_PER_USER = 16;
+
+  static final long DEFAULT_MAX_WAIT_MILLIS = 50L;
+
+  private final PentahoTransactionManager transactionManager;
+
+  private final GenericKeyedObjectPool<String, Session> pool;
+
+  /**
+   * Latest credentials per user, used to log in new sessions for the pool.
+   */
+  private final ConcurrentMap<String, Credentials> credentials = new ConcurrentHashMap<>();
+
+  /**
+   * Borrowed pooled sessions, with the user they are pooled for and the thread they are lent to.
+   */
+  private final ConcurrentMap<Session, Borrow> borrowed = new ConcurrentHashMap<>();
+
+  /**
+   * Every live session of the pool, borrowed or idle.
+   */
+  private final Set<Session> pooled = ConcurrentHashMap.newKeySet();
+
+  private final AtomicLong unpooled = new AtomicLong();
+
+  public PooledPentahoJcrSessionFactory( Repository repository, String workspace ) {
+    this( repository, workspace, null );
+  }
+
+  public PooledPentahoJcrSessionFactory( Repository repository, String workspace,
+                                         PentahoTransactionManager transactionManager ) {
+    this( repository, workspace, transactionManager, getRepositoryProperties() );
+  }
+
+  private PooledPentahoJcrSessionFactory( Repository repository, String workspace,
+                                          PentahoTransactionManager transactionManager, Properties properties ) {
+    this( repository, workspace, transactionManager,
+      Integer.parseInt( properties.getProperty( "cache-ttl", "300" ) ),
+      Integer.parseInt( properties.getProperty( "session-pool-max-per-user", String.valueOf( DEFAULT_MAX_PER_USER ) ) ),
+      Long.parseLong( properties.getProperty( "session-pool-max-wait", String.valueOf( DEFAULT_MAX_WAIT_MILLIS ) ) ) );
+  }
+
+  PooledPentahoJcrSessionFactory( Repository repository, String workspace,
+                                  PentahoTransactionManager transactionManager, int idleSeconds, int maxPerUser,
+                                  long maxWaitMillis ) {
+    super( repository, workspace );
+    this.transactionManager = transactionManager;
+
+    GenericKeyedObjectPoolConfig<Session> config = new GenericKeyedObjectPoolConfig<>();
+    config.setMaxTotalPerKey( maxPerUser );
+    config.setMaxIdlePerKey( maxPerUser );
+    config.setMaxTotal( -1 );
+    config.setMaxWait( Duration.ofMillis( maxWaitMillis ) );
+    config.setLifo( true );
+    config.setTestOnBorrow( true );
+    config.setMinEvictableIdleTimeMillis( idleSeconds * 1000L );
+    config.setTimeBetweenEvictionRunsMillis( Math.min( EVICTION_INTERVAL_MILLIS, idleSeconds * 1000L ) );
+    // check every idle session on each eviction run
+    config.setNumTestsPerEvictionRun( -1 );
+    config.setJmxNamePrefix( "jcrSessionPool" );
+    pool = new GenericKeyedObjectPool<>( new SessionObjectFactory(), config );
+  }
+
+  private static Properties getRepositoryProperties() {
+    ISystemConfig systemConfig = PentahoSystem.get( ISystemConfig.class );
+    if ( systemConfig != null && systemConfig.getConfiguration( "repository" ) != null ) {
+      try {
+        return systemConfig.getConfiguration( "repository" ).getProperties();
+      } catch ( IOException e ) {
+        logger.info( "Could not read the repository session pool settings" );
+      }
+    }
+    return new Properties();
+  }
+
+  @Override public Session getSession( Credentials creds ) throws RepositoryException {
+    if ( transactionManager != null && transactionManager.isCreatingTransaction() ) {
+      if ( logger.isDebugEnabled() ) {
+        logger.debug( "Thread is transacted, obtaining session directly, not pooled: " + creds );
+      }
+      return super.getSession( creds );
+    }
+
+    String userId = getUserId( creds );
+    if ( userId == null ) {
+      return super.getSession( creds );
+    }
+    credentials.put( userId, creds );
+    Session session;
+    try {
+      session = pool.borrowObject( userId );
+    } catch ( NoSuchElementException e ) {
+      logger.warn( "No pooled session became available for " + userId + " in time. Creating one directly instead." );
+      unpooled.incrementAndGet();
+      return super.getSession( creds );
+    } catch ( RepositoryException | RuntimeException e ) {
+      throw e;
+    } catch ( Exception e ) {
+      throw new RepositoryException( e );
+    }
+    borrowed.put( session, new Borrow( userId ) );
+    return session;
+  }
+
+  /**
+   * Returns a session obtained from {@link #getSession(Credentials)}. Sessions that are not pooled are logged out.
+   *
+   * @param session the session, not a proxy of it
+   */
+  public void returnSession( Session session ) {
+    Borrow borrow = borrowed.remove( session );
+    if ( borrow == null ) {
+      if ( session.isLive() ) {
+        session.logout();
+      }
+      return;
+    }
+    String userId = borrow.userId;
+    try {
+      if ( session.isLive() ) {
+        pool.returnObject( userId, session );
+      } else {
+        pool.invalidateObject( userId, session );
+      }
+    } catch ( Exception e ) {
+      logger.warn( "Could not return session to the pool: " + session, e );
+    }
+  }
+
+  boolean isBorrowed( Session session ) {
+    return borrowed.containsKey( session );
+  }
+
+  /**
+   * @param session a session, not a proxy of it
+   * @return <code>true</code> if the session belongs to the pool, whether it is borrowed or idle
+   */
+  public boolean isPooled( Session session ) {
+    return pooled.contains( session );
+  }
+
+  /**
+   * @param session a session, not a proxy of it
+   * @return <code>true</code> if the session is currently lent to the calling thread
+   */
+  public boolean isBorrowedByCurrentThread( Session session ) {
+    Borrow borrow = borrowed.get( session );
+    return borrow != null && borrow.thread == Thread.currentThread();
+  }
+
+  /**
+   * Logs out every idle session and stops evicting. Borrowed sessions are logged out when returned.
+   */
+  public void close() {
+    pool.close();
+  }
+
+  public SessionPoolStatistics getStatistics() {
+    return new SessionPoolStatistics( pool, unpooled.get() );
+  }
+
+  private static String getUserId( Credentials creds ) {
+    return creds instanceof SimpleCredentials ? ( (SimpleCredentials) creds ).getUserID() : null;
+  }
+
+  private class SessionObjectFactory extends BaseKeyedPooledObjectFactory<String, Session> {
+
+    @Override public Session create( String userId ) throws Exception {
+      if ( logger.isDebugEnabled() ) {
+        logger.debug( "Creating pooled session for " + userId );
+      }
+      Session session = PooledPentahoJcrSessionFactory.super.getSession( credentials.get( userId ) );
+      pooled.add( session );
+      return session;
+    }
+
+    @Override public PooledObject<Session> wrap( Session session ) {
+      return new DefaultPooledObject<>( session );
+    }
+
+    @Override public boolean validateObject( String userId, PooledObject<Session> pooledSession ) {
+      return pooledSession.getObject().isLive();
+    }
+
+    @Override public void activateObject( String userId, PooledObject<Session> pooledSession ) throws Exception {
+      // drop whatever state the previous borrower left behind
+      pooledSession.getObject().refresh( false );
+    }
+
+    @Override public void destroyObject( String userId, PooledObject<Session> pooledSession ) {
+      Session session = pooledSession.getObject();
+      pooled.remove( session );
+      if ( session.isLive() ) {
+        if ( logger.isDebugEnabled() ) {
+          logger.debug( "Logging out pooled session " + session );
+        }
+        session.logout();
+      }
+    }
+  }
+
+  private static class Borrow {
+    private final String userId;
+    private final Thread thread = Thread.currentThread();
+
+    Borrow( String userId ) {
+      this.userId = userId;
+    }
+  }
+
+  /**
+   * Point-in-time statistics of the session pool.
+   */
+  public static class SessionPoolStatistics {
+    private final int active;
+    private final int idle;
+    private final int waiters;
+    private final long borrowed;
+    private final long created;
+    private final long destroyed;
+    private final long unpooled;
+    private final long meanBorrowWaitTimeMillis;
+    private final long maxBorrowWaitTimeMillis;
+
+    SessionPoolStatistics( GenericKeyedObjectPool<String, Session> pool, long unpooled ) {
+      active = pool.getNumActive();
+      idle = pool.getNumIdle();
+      waiters = pool.getNumWaiters();
+      borrowed = pool.getBorrowedCount();
+      created = pool.getCreatedCount();
+      destroyed = pool.getDestroyedCount();
+      this.unpooled = unpooled;
+      meanBorrowWaitTimeMillis = pool.getMeanBorrowWaitTimeMillis();
+      maxBorrowWaitTimeMillis = pool.getMaxBorrowWaitTimeMillis();
+    }
+
+    /**
+     * @return the number of pooled sessions currently borrowed
+     */
+    public int getActive() {
+      return active;
+    }
+
+    /**
+     * @return the number of sessions currently idle in the pool
+     */
+    public int getIdle() {
+      return idle;
+    }
+
+    /**
+     * @return the number of live pooled sessions, borrowed or idle
+     */
+    public int getLive() {
+      return active + idle;
+    }
+
+    /**
+     * @return the number of threads currently waiting for a session
+     */
+    public int getWaiters() {
+      return waiters;
+    }
+
+    /**
+     * @return the number of sessions borrowed since the pool was built
+     */
+    public long getBorrowed() {
+      return borrowed;
+    }
+
+    /**
+     * @return the number of sessions logged in for the pool since it was built
+     */
+    public long getCreated() {
+      return created;
+    }
+
+    /**
+     * @return the number of pooled sessions logged out since the pool was built
+     */
+    public long getDestroyed() {
+      return destroyed;
+    }
+
+    /**
+     * @return the number of sessions created outside the pool because a user's limit was reached
+     */
+    public long getUnpooled() {
+      return unpooled;
+    }
+
+    public long getMeanBorrowWaitTimeMillis() {
+      return meanBorrowWaitTimeMillis;
+    }
+
+    public long getMaxBorrowWaitTimeMillis() {
+      return maxBorrowWaitTimeMillis;
+    }
+  }
+}
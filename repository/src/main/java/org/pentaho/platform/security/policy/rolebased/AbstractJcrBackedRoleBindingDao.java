@@ -22,6 +22,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.jcr.NamespaceException;
 import javax.jcr.Node;
@@ -64,6 +66,15 @@ public abstract class AbstractJcrBackedRoleBindingDao implements IRoleAuthorizat
 
   private List<IAuthorizationAction> authorizationActions = Collections.emptyList();
 
+  private final AtomicLong roleBindingsVersion = new AtomicLong();
+
+  /**
+   * Key of a marker kept in the role binding region next to the cached bindings. It is gone once the region has been
+   * cleared or the marker has expired, and the version changes then too. The key is unique to this DAO, so DAOs
+   * sharing a clustered region do not take each other's marker for their own.
+   */
+  private final String roleBindingsVersionKey = ROLE_BINDINGS_VERSION_KEY_PREFIX + UUID.randomUUID();
+
   public static final String FOLDER_NAME_AUTHZ = ".authz"; //$NON-NLS-1$
 
   public static final String FOLDER_NAME_ROLEBASED = "roleBased"; //$NON-NLS-1$
@@ -72,6 +83,8 @@ public abstract class AbstractJcrBackedRoleBindingDao implements IRoleAuthorizat
 
   private static final String LOGICAL_ROLE_BINDINGS_REGION = "roleBindingCache";
 
+  private static final String ROLE_BINDINGS_VERSION_KEY_PREFIX = "roleBindingsVersion:"; //$NON-NLS-1$
+
   public AbstractJcrBackedRoleBindingDao() {
 
     cacheManager = PentahoSystem.getCacheManager( null );
@@ -128,6 +141,7 @@ public abstract class AbstractJcrBackedRoleBindingDao implements IRoleAuthorizat
             if ( cacheManager.cacheEnabled( LOGICAL_ROLE_BINDINGS_REGION ) ) {
               cacheManager.removeRegionCache( LOGICAL_ROLE_BINDINGS_REGION );
             }
+            roleBindingsVersion.incrementAndGet();
             loaded = true;
           }
         }
@@ -148,6 +162,23 @@ public abstract class AbstractJcrBackedRoleBindingDao implements IRoleAuthorizat
     this.authorizationActions = authorizationActions;
   }
 
+  /**
+   * {@inheritDoc}
+   * <p>
+   * Bumped after {@link #setRoleBindings(Session, ITenant, String, List)} has stored the new bindings, after the
+   * immutable role bindings have been reloaded, and whenever the role binding cache region lost its content, whether
+   * it was cleared or its entries expired. What callers derive from the bindings thus lives no longer than the
+   * bindings cached in the region.
+   */
+  @Override
+  public long getRoleBindingsVersion() {
+    if ( cacheManager.getFromRegionCache( LOGICAL_ROLE_BINDINGS_REGION, roleBindingsVersionKey ) == null ) {
+      roleBindingsVersion.incrementAndGet();
+      cacheManager.putInRegionCache( LOGICAL_ROLE_BINDINGS_REGION, roleBindingsVersionKey, Boolean.TRUE );
+    }
+    return roleBindingsVersion.get();
+  }
+
   @Override
   public List<String> getBoundLogicalRoleNames( Session session, List<String> runtimeRoleNames )
       throws NamespaceException, RepositoryException {
@@ -307,6 +338,7 @@ public abstract class AbstractJcrBackedRoleBindingDao implements IRoleAuthorizat
     // update cache
     String roleId = tenantedRoleNameUtils.getPrincipleId( tenant, runtimeRoleName );
     cacheManager.putInRegionCache( LOGICAL_ROLE_BINDINGS_REGION, roleId, logicalRoleNames );
+    roleBindingsVersion.incrementAndGet();
   }
 
   private String getPrincipalName( String principalId ) {
@@ -115,4 +115,15 @@ public interface IRoleAuthorizationPolicyRoleBindingDao {
    * @return list of logical role names, never {@code null}
    */
   List<String> getBoundLogicalRoleNames( final Session session, final ITenant tenant, final List<String> runtimeRoleNames ) throws RepositoryException;
+
+  /**
+   * Gets a number that changes whenever the bindings returned by {@link #getBoundLogicalRoleNames(List)} may have
+   * changed, so that callers can keep what they derived from them until it does.
+   *
+   * @return the current version of the role bindings, or a negative number if this DAO does not track changes, in
+   *         which case the bindings must not be cached by callers
+   */
+  default long getRoleBindingsVersion() {
+    return -1;
+  }
 }
@@ -14,10 +14,19 @@
 package org.pentaho.platform.security.policy.rolebased;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.pentaho.platform.api.engine.IAuthorizationPolicy;
+import org.pentaho.platform.api.engine.IPentahoSession;
+import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -25,6 +34,11 @@ import org.springframework.util.Assert;
 
 /**
  * An authorization policy based on roles.
+ * <p>
+ * The logical roles bound to a set of runtime roles are compiled once into a bit set over all logical role names seen
+ * so far, and kept for as long as the {@link IRoleAuthorizationPolicyRoleBindingDao#getRoleBindingsVersion() version}
+ * of the role bindings does not change. A check for a user whose set of runtime roles was seen before is then a hash
+ * lookup plus a bit test.
  * 
  * @author mlowery
  */
@@ -33,11 +47,26 @@ public class RoleAuthorizationPolicy implements IAuthorizationPolicy {
   // ~ Static fields/initializers
   // ======================================================================================
 
+  /**
+   * Upper bound on the number of distinct role sets kept compiled; they are all dropped when it is exceeded.
+   */
+  private static final int MAX_COMPILED_ROLE_SETS = 1024;
+
   // ~ Instance fields
   // =================================================================================================
 
   private IRoleAuthorizationPolicyRoleBindingDao roleBindingDao;
 
+  /**
+   * Index of every logical role name in the compiled bit sets. Names are never removed, so indexes stay valid across
+   * versions of the role bindings.
+   */
+  private final Map<String, Integer> logicalRoleIndex = new ConcurrentHashMap<String, Integer>();
+
+  private final AtomicInteger nextLogicalRoleIndex = new AtomicInteger();
+
+  private volatile CompiledRoleSets compiledRoleSets = new CompiledRoleSets( Long.MIN_VALUE );
+
   // ~ Constructors
   // ====================================================================================================
 
@@ -55,13 +84,14 @@ public class RoleAuthorizationPolicy implements IAuthorizationPolicy {
    */
   public List<String> getAllowedActions( String actionNamespace ) {
     List<String> assignedRolesInNamespace = new ArrayList<String>();
+    List<String> assignedRoles = getCompiledRoleSet().logicalRoleNames;
     if ( actionNamespace == null ) {
-      assignedRolesInNamespace.addAll( roleBindingDao.getBoundLogicalRoleNames( getRuntimeRoleNames() ) );
+      assignedRolesInNamespace.addAll( assignedRoles );
     } else {
       if ( !actionNamespace.endsWith( "." ) ) {
         actionNamespace += ".";
       }
-      for ( String assignedRole : roleBindingDao.getBoundLogicalRoleNames( getRuntimeRoleNames() ) ) {
+      for ( String assignedRole : assignedRoles ) {
         if ( assignedRole.startsWith( actionNamespace ) ) {
           assignedRolesInNamespace.add( assignedRole );
         }
@@ -74,7 +104,60 @@ public class RoleAuthorizationPolicy implements IAuthorizationPolicy {
    * {@inheritDoc}
    */
   public boolean isAllowed( String actionName ) {
-    return roleBindingDao.getBoundLogicalRoleNames( getRuntimeRoleNames() ).contains( actionName );
+    BitSet logicalRoles = getCompiledRoleSet().logicalRoles;
+    // a name that was never bound to any role set has no index
+    Integer index = actionName != null ? logicalRoleIndex.get( actionName ) : null;
+    return index != null && logicalRoles.get( index );
+  }
+
+  /**
+   * Gets the logical roles bound to the runtime roles of the current user, compiling them if this set of runtime
+   * roles was not seen since the role bindings last changed.
+   */
+  private CompiledRoleSet getCompiledRoleSet() {
+    List<String> runtimeRoleNames = getRuntimeRoleNames();
+    long version = roleBindingDao.getRoleBindingsVersion();
+    if ( version < 0 ) {
+      return compile( roleBindingDao.getBoundLogicalRoleNames( runtimeRoleNames ) );
+    }
+
+    CompiledRoleSets current = compiledRoleSets;
+    if ( current.version != version ) {
+      current = new CompiledRoleSets( version );
+      compiledRoleSets = current;
+    }
+    RoleSetKey key = new RoleSetKey( getTenantId(), runtimeRoleNames );
+    CompiledRoleSet compiled = current.roleSets.get( key );
+    if ( compiled == null ) {
+      // the version was read before the bindings, so a concurrent change at worst compiles into a discarded map
+      compiled = compile( roleBindingDao.getBoundLogicalRoleNames( runtimeRoleNames ) );
+      if ( current.roleSets.size() >= MAX_COMPILED_ROLE_SETS ) {
+        current.roleSets.clear();
+      }
+      current.roleSets.put( key, compiled );
+    }
+    return compiled;
+  }
+
+  private CompiledRoleSet compile( final List<String> logicalRoleNames ) {
+    BitSet logicalRoles = new BitSet();
+    for ( String logicalRoleName : logicalRoleNames ) {
+      Integer index = logicalRoleIndex.get( logicalRoleName );
+      if ( index == null ) {
+        index = logicalRoleIndex.computeIfAbsent( logicalRoleName, name -> nextLogicalRoleIndex.getAndIncrement() );
+      }
+      logicalRoles.set( index );
+    }
+    return new CompiledRoleSet( logicalRoles, logicalRoleNames );
+  }
+
+  /**
+   * Runtime role names that do not name their tenant resolve against the tenant of the current session, so that
+   * tenant is part of the role set.
+   */
+  private static String getTenantId() {
+    IPentahoSession session = PentahoSessionHolder.getSession();
+    return session != null ? (String) session.getAttribute( IPentahoSession.TENANT_ID_KEY ) : null;
   }
 
   protected List<String> getRuntimeRoleNames() {
@@ -88,4 +171,66 @@ public class RoleAuthorizationPolicy implements IAuthorizationPolicy {
     return runtimeRoles;
   }
 
+  /**
+   * The role sets compiled for one version of the role bindings.
+   */
+  private static class CompiledRoleSets {
+
+    private final long version;
+
+    private final Map<RoleSetKey, CompiledRoleSet> roleSets = new ConcurrentHashMap<RoleSetKey, CompiledRoleSet>();
+
+    CompiledRoleSets( final long version ) {
+      this.version = version;
+    }
+  }
+
+  private static class CompiledRoleSet {
+
+    private final BitSet logicalRoles;
+
+    private final List<String> logicalRoleNames;
+
+    CompiledRoleSet( final BitSet logicalRoles, final List<String> logicalRoleNames ) {
+      this.logicalRoles = logicalRoles;
+      this.logicalRoleNames = Collections.unmodifiableList( new ArrayList<String>( logicalRoleNames ) );
+    }
+  }
+
+  /**
+   * A set of runtime role names, regardless of their order, in a tenant.
+   */
+  private static class RoleSetKey {
+
+    private final String tenantId;
+
+    private final Set<String> runtimeRoleNames;
+
+    private final int hash;
+
+    RoleSetKey( final String tenantId, final List<String> runtimeRoleNames ) {
+      this.tenantId = tenantId;
+      this.runtimeRoleNames = new HashSet<String>( runtimeRoleNames );
+      this.hash = 31 * ( tenantId != null ? tenantId.hashCode() : 0 ) + this.runtimeRoleNames.hashCode();
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals( final Object obj ) {
+      if ( this == obj ) {
+        return true;
+      }
+      if ( !( obj instanceof RoleSetKey ) ) {
+        return false;
+      }
+      RoleSetKey other = (RoleSetKey) obj;
+      return hash == other.hash && ( tenantId == null ? other.tenantId == null : tenantId.equals( other.tenantId ) )
+          && runtimeRoleNames.equals( other.runtimeRoleNames );
+    }
+  }
+
 }
@@ -45,6 +45,7 @@ import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -392,6 +393,41 @@ public class UserSettingServiceTest {
     verify( repository ).setFileMetadata( eq( TENANT_FOLDER_ID ), anyMap() );
   }
 
+  @Test
+  public void testGetUserSettingIsReadFromSnapshot() throws Exception {
+    when( session.getAttribute( eq( "SPRING_SECURITY_CONTEXT" ) ) ).thenReturn( 1 );
+
+    assertEquals( USER_SETTING_VALUE_3, userSettingService.getUserSetting( USER_SETTING_NAME_3, null ).getSettingValue() );
+    assertEquals( GLOBAL_SETTING_VALUE_3, userSettingService.getUserSetting( GLOBAL_SETTING_NAME_3, null )
+      .getSettingValue() );
+    assertEquals( 3, userSettingService.getUserSettings().size() );
+
+    verify( repository, times( 1 ) ).getFileMetadata( eq( USER_FOLDER_ID ) );
+    verify( repository, times( 1 ) ).getFileMetadata( eq( TENANT_FOLDER_ID ) );
+  }
+
+  @Test
+  public void testSetUserSettingInvalidatesSnapshot() throws Exception {
+    when( session.getAttribute( eq( "SPRING_SECURITY_CONTEXT" ) ) ).thenReturn( 1 );
+    assertEquals( "defaultValue", userSettingService.getUserSetting( "settingName", "defaultValue" ).getSettingValue() );
+
+    userSettingService.setUserSetting( "settingName", "settingValue" );
+
+    assertEquals( "settingValue", userSettingService.getUserSetting( "settingName", "defaultValue" ).getSettingValue() );
+  }
+
+  @Test
+  public void testSetGlobalUserSettingInvalidatesSnapshot() throws Exception {
+    ( (UserSettingServiceForTesting) userSettingService ).setCanAdministerOverrideValue( true );
+    assertEquals( "defaultValue", userSettingService.getGlobalUserSetting( "settingName", "defaultValue" )
+      .getSettingValue() );
+
+    userSettingService.setGlobalUserSetting( "settingName", "settingValue" );
+
+    assertEquals( "settingValue", userSettingService.getGlobalUserSetting( "settingName", "defaultValue" )
+      .getSettingValue() );
+  }
+
   private class UserSettingServiceForTesting extends UserSettingService {
 
     private Boolean canAdministerOverrideValue = null;
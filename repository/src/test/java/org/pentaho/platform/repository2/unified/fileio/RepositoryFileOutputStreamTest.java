@@ -13,6 +13,7 @@
 
 package org.pentaho.platform.repository2.unified.fileio;
 
+import org.apache.commons.io.IOUtils;
 import org.junit.Test;
 import org.mockito.Mockito;
 import org.pentaho.platform.api.repository2.unified.Converter;
@@ -26,10 +27,17 @@ import org.pentaho.platform.api.repository2.unified.data.simple.SimpleRepository
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.nullable;
 import static org.mockito.Mockito.doCallRealMethod;
 import static org.mockito.Mockito.mock;
@@ -114,4 +122,58 @@ public class RepositoryFileOutputStreamTest {
     verify( streamListener, times( 1 ) ).streamComplete();
     verify( streamListener, times( 0 ) ).fileCreated( any() );
   }
+
+  @Test
+  public void testKeepsContentInMemoryUpToThreshold() throws IOException {
+    IUnifiedRepository repository = mock( IUnifiedRepository.class );
+    List<String> stored = captureUpdates( repository );
+
+    RepositoryFileOutputStream stream = new RepositoryFileOutputStream( "/public/out.csv", false, false, repository,
+      false );
+    stream.setSpillThreshold( 16 );
+    stream.write( "a,b,c\n".getBytes( StandardCharsets.UTF_8 ) );
+    assertFalse( stream.isSpilled() );
+    stream.close();
+
+    assertEquals( Collections.singletonList( "a,b,c\n" ), stored );
+  }
+
+  @Test
+  public void testSpillsContentToTemporaryFileAboveThreshold() throws IOException {
+    IUnifiedRepository repository = mock( IUnifiedRepository.class );
+    List<String> stored = captureUpdates( repository );
+
+    RepositoryFileOutputStream stream = new RepositoryFileOutputStream( "/public/out.csv", false, false, repository,
+      false );
+    stream.setSpillThreshold( 8 );
+    stream.write( "a,b,c\n".getBytes( StandardCharsets.UTF_8 ) );
+    assertFalse( stream.isSpilled() );
+    stream.write( "1,2,3\n".getBytes( StandardCharsets.UTF_8 ) );
+    stream.write( '4' );
+    assertTrue( stream.isSpilled() );
+    assertEquals( 13, stream.size() );
+    assertEquals( "a,b,c\n1,2,3\n4", stream.toString( "UTF-8" ) );
+
+    stream.flush();
+    stream.write( ",5,6\n".getBytes( StandardCharsets.UTF_8 ) );
+    stream.close();
+
+    assertEquals( Arrays.asList( "a,b,c\n1,2,3\n4", "a,b,c\n1,2,3\n4,5,6\n" ), stored );
+    assertFalse( stream.isSpilled() );
+    assertEquals( 0, stream.size() );
+  }
+
+  private static List<String> captureUpdates( IUnifiedRepository repository ) {
+    RepositoryFile file = new RepositoryFile.Builder( "out.csv" ).id( "id" ).path( "/public/out.csv" ).build();
+    when( repository.getFile( "/public/out.csv" ) ).thenReturn( file );
+    when( repository.getFile( "/public" ) ).thenReturn(
+      new RepositoryFile.Builder( "public" ).id( "public" ).path( "/public" ).folder( true ).build() );
+    List<String> stored = new ArrayList<>();
+    when( repository.updateFile( eq( file ), any( IRepositoryFileData.class ), any() ) ).thenAnswer( invocation -> {
+      SimpleRepositoryFileData data = invocation.getArgument( 1 );
+      stored.add( IOUtils.toString( data.getInputStream(), StandardCharsets.UTF_8 ) );
+      return file;
+    } );
+    return stored;
+  }
 }
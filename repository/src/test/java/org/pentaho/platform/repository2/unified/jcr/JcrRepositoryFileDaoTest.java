@@ -31,12 +31,18 @@ import org.springframework.extensions.jcr.JcrTemplate;
 
 import javax.jcr.AccessDeniedException;
 import javax.jcr.Node;
+import javax.jcr.PathNotFoundException;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 import javax.jcr.Workspace;
+import java.io.Serializable;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.Mockito.nullable;
 import static org.mockito.Mockito.doReturn;
@@ -52,9 +58,11 @@ public class JcrRepositoryFileDaoTest {
 
   private IPentahoSession pentahoSession;
 
+  private Node node;
+
   @Before
   public void setUp() throws RepositoryException {
-    Node node = mock( Node.class );
+    node = mock( Node.class );
     Node nodeParent = mock( Node.class );
     when( node.getIdentifier() ).thenReturn( "" );
     when( nodeParent.getIdentifier() ).thenReturn( "" );
@@ -161,4 +169,17 @@ public class JcrRepositoryFileDaoTest {
       }
     }
   }
+
+  @Test
+  public void testGetFilesMetadataReturnsEntryPerFileInRequestOrder() throws RepositoryException {
+    when( node.getNode( nullable( String.class ) ) ).thenThrow( new PathNotFoundException() );
+
+    List<Serializable> fileIds = Arrays.<Serializable>asList( "b", "a", "c" );
+    Map<Serializable, Map<String, Serializable>> metadata = dao.getFilesMetadata( fileIds );
+
+    assertEquals( fileIds, Arrays.asList( metadata.keySet().toArray() ) );
+    for ( Map<String, Serializable> fileMetadata : metadata.values() ) {
+      assertTrue( fileMetadata.isEmpty() );
+    }
+  }
 }
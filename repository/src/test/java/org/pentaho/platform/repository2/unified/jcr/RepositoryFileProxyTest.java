@@ -13,7 +13,12 @@
 
 package org.pentaho.platform.repository2.unified.jcr;
 
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.io.Serializable;
@@ -25,15 +30,21 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.doReturn;
 
+import javax.jcr.Credentials;
 import javax.jcr.Node;
+import javax.jcr.Repository;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
+import javax.jcr.SimpleCredentials;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.pentaho.platform.api.locale.IPentahoLocale;
 import org.pentaho.platform.api.repository2.unified.RepositoryFile;
 import org.pentaho.platform.repository2.locale.PentahoLocale;
+import org.pentaho.platform.repository2.unified.jcr.sejcr.CredentialsStrategySessionFactory;
+import org.pentaho.platform.repository2.unified.jcr.sejcr.PooledPentahoJcrSessionFactory;
+import org.springframework.extensions.jcr.JcrCallback;
 import org.springframework.extensions.jcr.JcrTemplate;
 
 public class RepositoryFileProxyTest {
@@ -82,4 +93,30 @@ public class RepositoryFileProxyTest {
     assertFalse( repoFileProxySpy.isSchedulable() );
   }
 
+  @Test
+  public void testPooledSessionIsOnlyUsedByTheThreadItIsLentTo() throws Exception {
+    Repository repository = mock( Repository.class );
+    when( repository.login( any( Credentials.class ), anyString() ) ).thenReturn( sessionMock );
+    PooledPentahoJcrSessionFactory sessionPool = new PooledPentahoJcrSessionFactory( repository, "default" );
+    Credentials credentials = new SimpleCredentials( "joe", new char[ 0 ] );
+    CredentialsStrategySessionFactory sessionFactory =
+      new CredentialsStrategySessionFactory( repository, () -> credentials );
+    sessionFactory.setSessionFactory( sessionPool );
+    when( templateMock.getSessionFactory() ).thenReturn( sessionFactory );
+    try {
+      Session session = sessionPool.getSession( credentials );
+
+      // the node is read in its own session while that session is lent to this thread
+      repoFileProxy.getCreatedDate();
+      verify( templateMock, never() ).execute( any( JcrCallback.class ) );
+
+      // once the session is back in the pool, the node is read again in a session borrowed for the purpose
+      sessionPool.returnSession( session );
+      new RepositoryFileProxy( nodeMock, templateMock, pentahoLocale ).getCreatedDate();
+      verify( templateMock, atLeastOnce() ).execute( any( JcrCallback.class ) );
+    } finally {
+      sessionPool.close();
+    }
+  }
+
 }
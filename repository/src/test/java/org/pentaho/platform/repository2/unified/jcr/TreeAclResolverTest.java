@@ -0,0 +1,80 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.platform.repository2.unified.jcr;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import javax.jcr.Session;
+
+import org.junit.Test;
+import org.mockito.MockedStatic;
+import org.pentaho.platform.api.repository2.unified.IRepositoryAccessVoterManager;
+import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+import org.pentaho.platform.api.repository2.unified.RepositoryFileAcl;
+import org.pentaho.platform.api.repository2.unified.RepositoryFilePermission;
+
+public class TreeAclResolverTest {
+
+  private final Session session = mock( Session.class );
+
+  private final PentahoJcrConstants pentahoJcrConstants = mock( PentahoJcrConstants.class );
+
+  private final IRepositoryAccessVoterManager accessVoterManager = mock( IRepositoryAccessVoterManager.class );
+
+  @Test
+  public void testAclIsReadOncePerFile() throws Exception {
+    RepositoryFileAcl acl = mock( RepositoryFileAcl.class );
+    try ( MockedStatic<JcrRepositoryFileAclUtils> aclUtils = mockStatic( JcrRepositoryFileAclUtils.class ) ) {
+      aclUtils.when( () -> JcrRepositoryFileAclUtils.getAcl( session, pentahoJcrConstants, "id" ) ).thenReturn( acl );
+
+      TreeAclResolver resolver = new TreeAclResolver( session, pentahoJcrConstants, accessVoterManager );
+      assertSame( acl, resolver.getAcl( "id" ) );
+      assertSame( acl, resolver.getAcl( "id" ) );
+
+      aclUtils.verify( () -> JcrRepositoryFileAclUtils.getAcl( session, pentahoJcrConstants, "id" ), times( 1 ) );
+      assertEquals( 1, resolver.getAclReads() );
+      assertEquals( 1, resolver.getAclReadsSaved() );
+    }
+  }
+
+  @Test
+  public void testReadAccessIsEvaluatedOncePerFile() throws Exception {
+    RepositoryFileAcl acl = mock( RepositoryFileAcl.class );
+    RepositoryFile file = mock( RepositoryFile.class );
+    when( file.getId() ).thenReturn( "id" );
+    when( accessVoterManager.hasAccess( eq( file ), eq( RepositoryFilePermission.READ ), eq( acl ), any() ) )
+      .thenReturn( true );
+    try ( MockedStatic<JcrRepositoryFileAclUtils> aclUtils = mockStatic( JcrRepositoryFileAclUtils.class ) ) {
+      aclUtils.when( () -> JcrRepositoryFileAclUtils.getAcl( session, pentahoJcrConstants, "id" ) ).thenReturn( acl );
+
+      TreeAclResolver resolver = new TreeAclResolver( session, pentahoJcrConstants, accessVoterManager );
+      assertTrue( resolver.hasReadAccess( file ) );
+      assertTrue( resolver.hasReadAccess( file ) );
+
+      verify( accessVoterManager, times( 1 ) ).hasAccess( eq( file ), eq( RepositoryFilePermission.READ ), eq( acl ),
+        any() );
+      assertEquals( 1, resolver.getAclReads() );
+      assertEquals( 1, resolver.getAccessChecksSaved() );
+    }
+  }
+}
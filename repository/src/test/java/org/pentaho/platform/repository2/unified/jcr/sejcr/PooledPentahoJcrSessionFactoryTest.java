@@ -0,0 +1,203 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.platform.repository2.unified.jcr.sejcr;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.extensions.jcr.SessionHolder;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.jcr.Credentials;
+import javax.jcr.Repository;
+import javax.jcr.Session;
+import javax.jcr.SimpleCredentials;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class PooledPentahoJcrSessionFactoryTest {
+
+  private Repository repository;
+
+  private PooledPentahoJcrSessionFactory factory;
+
+  @Before
+  public void setUp() throws Exception {
+    repository = mock( Repository.class );
+    when( repository.login( any( Credentials.class ), anyString() ) ).thenAnswer( invocation -> {
+      Session session = mock( Session.class );
+      when( session.isLive() ).thenReturn( true );
+      return session;
+    } );
+    factory = new PooledPentahoJcrSessionFactory( repository, "default", null, 300, 2, 50 );
+  }
+
+  @After
+  public void tearDown() {
+    factory.close();
+  }
+
+  @Test
+  public void testReturnedSessionIsReusedByAnotherThread() throws Exception {
+    Session session = factory.getSession( credentials( "joe" ) );
+    factory.returnSession( session );
+
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Session reused = executor.submit( () -> factory.getSession( credentials( "joe" ) ) ).get();
+      assertSame( session, reused );
+      verify( session, times( 2 ) ).refresh( false );
+    } finally {
+      executor.shutdown();
+    }
+    verify( repository, times( 1 ) ).login( any( Credentials.class ), anyString() );
+    assertEquals( 1, factory.getStatistics().getCreated() );
+    assertEquals( 2, factory.getStatistics().getBorrowed() );
+  }
+
+  @Test
+  public void testSessionsArePooledPerUser() throws Exception {
+    Session joe = factory.getSession( credentials( "joe" ) );
+    factory.returnSession( joe );
+
+    Session suzy = factory.getSession( credentials( "suzy" ) );
+
+    assertNotSame( joe, suzy );
+    assertEquals( 1, factory.getStatistics().getActive() );
+    assertEquals( 1, factory.getStatistics().getIdle() );
+    assertEquals( 2, factory.getStatistics().getLive() );
+  }
+
+  @Test
+  public void testUnpooledSessionIsCreatedOnceUserLimitIsReached() throws Exception {
+    Session first = factory.getSession( credentials( "joe" ) );
+    Session second = factory.getSession( credentials( "joe" ) );
+    Session third = factory.getSession( credentials( "joe" ) );
+
+    assertTrue( factory.isBorrowed( first ) );
+    assertTrue( factory.isBorrowed( second ) );
+    assertFalse( factory.isBorrowed( third ) );
+    assertEquals( 1, factory.getStatistics().getUnpooled() );
+
+    factory.returnSession( third );
+    verify( third ).logout();
+    factory.returnSession( first );
+    verify( first, never() ).logout();
+  }
+
+  @Test
+  public void testDeadSessionIsNotReused() throws Exception {
+    Session session = factory.getSession( credentials( "joe" ) );
+    factory.returnSession( session );
+    when( session.isLive() ).thenReturn( false );
+
+    Session next = factory.getSession( credentials( "joe" ) );
+
+    assertNotSame( session, next );
+    assertEquals( 2, factory.getStatistics().getCreated() );
+  }
+
+  @Test
+  public void testSessionProxyLogoutReturnsSession() throws Exception {
+    CredentialsStrategySessionFactory sessionFactory =
+      new CredentialsStrategySessionFactory( repository, () -> credentials( "joe" ) );
+    sessionFactory.setSessionFactory( factory );
+
+    Session proxy = sessionFactory.getSession();
+    assertEquals( 1, factory.getStatistics().getActive() );
+
+    proxy.logout();
+    proxy.logout();
+
+    assertEquals( 0, factory.getStatistics().getActive() );
+    assertEquals( 1, factory.getStatistics().getIdle() );
+  }
+
+  @Test
+  public void testTemplateBorrowsSessionForOutermostExecute() throws Exception {
+    PentahoJcrTemplate template = template( "joe" );
+    List<Session> sessions = new ArrayList<>();
+
+    template.execute( session -> {
+      sessions.add( session );
+      assertEquals( 1, factory.getStatistics().getActive() );
+      template.execute( nested -> sessions.add( nested ), true );
+      // nested executes reuse the session of the outermost one
+      assertEquals( 1, factory.getStatistics().getActive() );
+      return null;
+    }, true );
+
+    assertSame( sessions.get( 0 ), sessions.get( 1 ) );
+    assertEquals( 1, factory.getStatistics().getBorrowed() );
+    assertEquals( 0, factory.getStatistics().getActive() );
+    assertEquals( 1, factory.getStatistics().getIdle() );
+
+    template.execute( session -> sessions.add( session ), true );
+    assertEquals( 2, factory.getStatistics().getBorrowed() );
+    assertEquals( 1, factory.getStatistics().getCreated() );
+    assertEquals( 0, factory.getStatistics().getActive() );
+  }
+
+  @Test
+  public void testTemplateLeavesTransactionBoundSessionToTheTransaction() throws Exception {
+    PentahoJcrTemplate template = template( "joe" );
+    Session transactionSession = template.getSessionFactory().getSession();
+    TransactionSynchronizationManager.bindResource( template.getSessionFactory(),
+      new SessionHolder( transactionSession ) );
+    try {
+      template.execute( session -> {
+        assertSame( transactionSession, session );
+        return null;
+      }, true );
+      // still in use by the transaction
+      assertEquals( 1, factory.getStatistics().getActive() );
+    } finally {
+      TransactionSynchronizationManager.unbindResource( template.getSessionFactory() );
+    }
+
+    // transaction cleanup logs the session out, which hands it back
+    transactionSession.logout();
+    assertEquals( 0, factory.getStatistics().getActive() );
+    assertEquals( 1, factory.getStatistics().getIdle() );
+  }
+
+  private PentahoJcrTemplate template( String userId ) {
+    CredentialsStrategySessionFactory sessionFactory =
+      new CredentialsStrategySessionFactory( repository, () -> credentials( userId ) );
+    sessionFactory.setSessionFactory( factory );
+    PentahoJcrTemplate template = new PentahoJcrTemplate();
+    template.setSessionFactory( sessionFactory );
+    template.setAllowCreate( true );
+    return template;
+  }
+
+  private static Credentials credentials( String userId ) {
+    return new SimpleCredentials( userId, new char[ 0 ] );
+  }
+}
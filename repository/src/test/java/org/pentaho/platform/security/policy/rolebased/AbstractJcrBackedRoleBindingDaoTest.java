@@ -14,6 +14,7 @@
 package org.pentaho.platform.security.policy.rolebased;
 
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.pentaho.platform.api.engine.ICacheManager;
 import org.pentaho.platform.api.engine.IPentahoRegistrableObjectFactory;
 import org.pentaho.platform.api.mt.ITenant;
@@ -21,6 +22,9 @@ import org.pentaho.platform.engine.core.system.PentahoSystem;
 
 import java.util.List;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 /**
@@ -38,6 +42,27 @@ public class AbstractJcrBackedRoleBindingDaoTest {
     verify( cm, times( 1 ) ).addCacheRegion( "roleBindingCache");
   }
 
+  @Test
+  public void testRoleBindingsVersionChangesWhenTheRegionIsCleared() throws Exception {
+    ICacheManager cm = mock( ICacheManager.class );
+    PentahoSystem.registerObject( cm, IPentahoRegistrableObjectFactory.Types.INTERFACES );
+    when( cm.cacheEnabled( "roleBindingCache" ) ).thenReturn( true );
+    AbstractJcrBackedRoleBindingDao dao = new AbstractJcrBackedRoleBindingDaoImpl();
+
+    long version = dao.getRoleBindingsVersion();
+    ArgumentCaptor<Object> marker = ArgumentCaptor.forClass( Object.class );
+    verify( cm ).putInRegionCache( eq( "roleBindingCache" ), marker.capture(), eq( Boolean.TRUE ) );
+
+    // the marker is still cached
+    when( cm.getFromRegionCache( "roleBindingCache", marker.getValue() ) ).thenReturn( Boolean.TRUE );
+    assertEquals( version, dao.getRoleBindingsVersion() );
+
+    // the region was cleared, or the marker expired
+    when( cm.getFromRegionCache( "roleBindingCache", marker.getValue() ) ).thenReturn( null );
+    assertNotEquals( version, dao.getRoleBindingsVersion() );
+    verify( cm, times( 2 ) ).putInRegionCache( "roleBindingCache", marker.getValue(), Boolean.TRUE );
+  }
+
   private static class AbstractJcrBackedRoleBindingDaoImpl extends AbstractJcrBackedRoleBindingDao {
     @Override public RoleBindingStruct getRoleBindingStruct( String locale ) {
       return null;
@@ -0,0 +1,140 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+
+package org.pentaho.platform.security.policy.rolebased;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+public class RoleAuthorizationPolicyTest {
+
+  private static final String READ = "org.pentaho.repository.read";
+
+  private static final String CREATE = "org.pentaho.repository.create";
+
+  private static final String SCHEDULE = "org.pentaho.scheduler.manage";
+
+  private IRoleAuthorizationPolicyRoleBindingDao roleBindingDao;
+
+  private RoleAuthorizationPolicy policy;
+
+  @Before
+  public void setUp() {
+    roleBindingDao = mock( IRoleAuthorizationPolicyRoleBindingDao.class );
+    when( roleBindingDao.getRoleBindingsVersion() ).thenReturn( 0L );
+    when( roleBindingDao.getBoundLogicalRoleNames( Arrays.asList( "Power User", "Authenticated" ) ) )
+      .thenReturn( Arrays.asList( READ, CREATE ) );
+    when( roleBindingDao.getBoundLogicalRoleNames( Arrays.asList( "Authenticated", "Power User" ) ) )
+      .thenReturn( Arrays.asList( READ, CREATE ) );
+    when( roleBindingDao.getBoundLogicalRoleNames( Arrays.asList( "Administrator" ) ) )
+      .thenReturn( Arrays.asList( READ, CREATE, SCHEDULE ) );
+    policy = new RoleAuthorizationPolicy( roleBindingDao );
+  }
+
+  @After
+  public void tearDown() {
+    SecurityContextHolder.clearContext();
+  }
+
+  @Test
+  public void testIsAllowed() {
+    login( "Power User", "Authenticated" );
+    assertTrue( policy.isAllowed( READ ) );
+    assertTrue( policy.isAllowed( CREATE ) );
+    assertFalse( policy.isAllowed( SCHEDULE ) );
+    assertFalse( policy.isAllowed( "unknown" ) );
+    assertFalse( policy.isAllowed( null ) );
+
+    login( "Administrator" );
+    assertTrue( policy.isAllowed( SCHEDULE ) );
+  }
+
+  @Test
+  public void testRoleSetIsCompiledOnce() {
+    login( "Power User", "Authenticated" );
+    for ( int i = 0; i < 10; i++ ) {
+      assertTrue( policy.isAllowed( READ ) );
+    }
+    // the same roles in another order are the same role set
+    login( "Authenticated", "Power User" );
+    assertTrue( policy.isAllowed( CREATE ) );
+    assertEquals( Arrays.asList( CREATE ), policy.getAllowedActions( "org.pentaho.repository.create" ) );
+
+    verify( roleBindingDao, times( 1 ) ).getBoundLogicalRoleNames( anyList() );
+  }
+
+  @Test
+  public void testRoleSetIsRecompiledWhenBindingsChange() {
+    login( "Power User", "Authenticated" );
+    assertFalse( policy.isAllowed( SCHEDULE ) );
+
+    when( roleBindingDao.getBoundLogicalRoleNames( Arrays.asList( "Power User", "Authenticated" ) ) )
+      .thenReturn( Arrays.asList( READ, SCHEDULE ) );
+    assertFalse( policy.isAllowed( SCHEDULE ) );
+
+    when( roleBindingDao.getRoleBindingsVersion() ).thenReturn( 1L );
+    assertTrue( policy.isAllowed( SCHEDULE ) );
+    assertFalse( policy.isAllowed( CREATE ) );
+    verify( roleBindingDao, times( 2 ) ).getBoundLogicalRoleNames( anyList() );
+  }
+
+  @Test
+  public void testUnversionedBindingsAreNotCached() {
+    when( roleBindingDao.getRoleBindingsVersion() ).thenReturn( -1L );
+    login( "Administrator" );
+    assertTrue( policy.isAllowed( SCHEDULE ) );
+    assertTrue( policy.isAllowed( SCHEDULE ) );
+
+    verify( roleBindingDao, times( 2 ) ).getBoundLogicalRoleNames( anyList() );
+  }
+
+  @Test
+  public void testGetAllowedActions() {
+    login( "Administrator" );
+    assertEquals( Arrays.asList( READ, CREATE, SCHEDULE ), policy.getAllowedActions( null ) );
+    assertEquals( Arrays.asList( READ, CREATE ), policy.getAllowedActions( "org.pentaho.repository" ) );
+    assertEquals( Collections.emptyList(), policy.getAllowedActions( "org.pentaho.security" ) );
+
+    // callers may modify what they get back
+    policy.getAllowedActions( null ).clear();
+    assertEquals( 3, policy.getAllowedActions( null ).size() );
+  }
+
+  private static void login( final String... roles ) {
+    List<GrantedAuthority> authorities = new ArrayList<>();
+    for ( String role : roles ) {
+      authorities.add( new SimpleGrantedAuthority( role ) );
+    }
+    SecurityContextHolder.getContext().setAuthentication(
+      new UsernamePasswordAuthenticationToken( "joe", "password", authorities ) );
+  }
+}